@@ -0,0 +1,102 @@
+package conversationLog.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import conversationLog.ConversationLog;
+
+/**
+ * Ingesting a batch of entries into an empty log: one {@code appendAll} call,
+ * against a loop of single {@code append} calls.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class AppendAllBenchmark {
+
+    /**
+     * Seed of the workload.
+     */
+    private static final long SEED = 20240101L;
+
+    /**
+     * The implementation class.
+     */
+    @Param({ "conversationLog.ConversationLogSecondary",
+            "conversationLog.ConversationLog1A",
+            "conversationLog.ConversationLogWordIndexed",
+            "conversationLog.ConversationLogConcurrent" })
+    public String implementation;
+
+    /**
+     * Number of entries in a batch.
+     */
+    @Param({ "100", "10000" })
+    public int batch;
+
+    /**
+     * Speakers of the batch.
+     */
+    private String[] speakers;
+
+    /**
+     * Texts of the batch.
+     */
+    private String[] texts;
+
+    /**
+     * Generates the batch.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Workload workload = new Workload(SEED);
+        this.speakers = new String[this.batch];
+        this.texts = new String[this.batch];
+        for (int k = 0; k < this.batch; k++) {
+            this.speakers[k] = workload.nextSpeaker();
+            this.texts[k] = workload.nextText();
+        }
+    }
+
+    /**
+     * Appends the batch one entry at a time.
+     *
+     * @return the log
+     */
+    @Benchmark
+    public ConversationLog appendLoop() {
+        ConversationLog log = Workload.newLog(this.implementation);
+        for (int k = 0; k < this.batch; k++) {
+            log.append(this.speakers[k], this.texts[k]);
+        }
+        return log;
+    }
+
+    /**
+     * Appends the batch with one call.
+     *
+     * @return the log
+     */
+    @Benchmark
+    public ConversationLog appendAll() {
+        ConversationLog log = Workload.newLog(this.implementation);
+        log.appendAll(this.speakers, this.texts);
+        return log;
+    }
+
+}
@@ -0,0 +1,149 @@
+package conversationLog.bench;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.map.Map;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter1L;
+import conversationLog.ConversationLog1A;
+import conversationLog.ConversationLogBinary;
+
+/**
+ * Compares the binary format of {@link ConversationLogBinary} with the text
+ * transcript of {@code exportChat} on the same {@link ConversationLog1A}: full
+ * round trips, and reading one entry by index. The size of both files is
+ * printed when a trial ends.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class BinaryFormatBenchmark {
+
+    /**
+     * Seed of the workload.
+     */
+    private static final long SEED = 20240101L;
+
+    /**
+     * Number of entries of the log.
+     */
+    @Param({ "1000", "100000", "1000000", "10000000" })
+    public int size;
+
+    /**
+     * The log.
+     */
+    private ConversationLog1A log;
+
+    /**
+     * The log in the binary format.
+     */
+    private File binary;
+
+    /**
+     * The log as a text transcript.
+     */
+    private File text;
+
+    /**
+     * Index of the entry read by {@code readEntry}, moved on every call.
+     */
+    private long next;
+
+    /**
+     * Builds the log and writes it in both formats.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.log = new ConversationLog1A();
+        new Workload(SEED).fill(this.log, this.size);
+        this.binary = ConversationLogBenchmark.tempFile("binary");
+        this.text = ConversationLogBenchmark.tempFile("text");
+        ConversationLogBinary.save(this.log, this.binary.getPath());
+        this.log.exportChat(new SimpleWriter1L(this.text.getPath()));
+    }
+
+    /**
+     * Prints the size of both files and deletes them.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println("binary " + this.binary.length() + " bytes, text "
+                + this.text.length() + " bytes");
+        this.binary.delete();
+        this.text.delete();
+    }
+
+    /**
+     * Writes the log in the binary format.
+     */
+    @Benchmark
+    public void saveBinary() {
+        ConversationLogBinary.save(this.log, this.binary.getPath());
+    }
+
+    /**
+     * Writes the log as a text transcript.
+     */
+    @Benchmark
+    public void exportText() {
+        this.log.exportChat(new SimpleWriter1L(this.text.getPath()));
+    }
+
+    /**
+     * Reads the binary file into a new log.
+     *
+     * @return the read log
+     */
+    @Benchmark
+    public ConversationLog1A loadBinary() {
+        ConversationLog1A loaded = new ConversationLog1A();
+        ConversationLogBinary.load(this.binary.getPath(), loaded);
+        return loaded;
+    }
+
+    /**
+     * Reads the text transcript into a new log.
+     *
+     * @return the read log
+     */
+    @Benchmark
+    public ConversationLog1A importText() {
+        ConversationLog1A loaded = new ConversationLog1A();
+        loaded.importChat(new SimpleReader1L(this.text.getPath()));
+        return loaded;
+    }
+
+    /**
+     * Reads one entry of the binary file by index.
+     *
+     * @return the entry
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Map<String, String> readEntry() {
+        this.next = (this.next + 1) % this.size;
+        return ConversationLogBinary.readEntry(this.binary.getPath(),
+                this.next);
+    }
+
+}
@@ -0,0 +1,326 @@
+package conversationLog.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.map.Map;
+import components.sequence.Sequence;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter1L;
+import conversationLog.ConversationLog;
+
+/**
+ * Benchmarks of every ConversationLog operation, for each implementation
+ * class and log size.
+ *
+ * <p>
+ * Read-only operations run repeatedly on one log per trial. Operations that
+ * change the log either undo themselves ({@code appendThenRemove}), keep its
+ * size by sliding it as a window ({@code appendThenTrim}), run once
+ * per iteration on a log rebuilt before it ({@code removeAll},
+ * {@code segment}), or build a log of their own ({@code build},
+ * {@code importChat}).
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ConversationLogBenchmark {
+
+    /**
+     * Seed of the workload, fixed so every implementation sees the same log.
+     */
+    private static final long SEED = 20240101L;
+
+    /**
+     * A log of {@code size} entries, built once per trial.
+     */
+    @State(Scope.Benchmark)
+    public static class Filled {
+
+        /**
+         * The implementation class under test.
+         */
+        @Param({ "conversationLog.ConversationLogSecondary",
+                "conversationLog.ConversationLog1A",
+                "conversationLog.ConversationLogWordIndexed",
+                "conversationLog.ConversationLogSubstringIndexed",
+                "conversationLog.ConversationLogConcurrent",
+                "conversationLog.ConversationLogOffHeap",
+                "conversationLog.ConversationLogTiered",
+                "conversationLog.ConversationLogPersistent" })
+        public String implementation;
+
+        /**
+         * Number of entries of the log.
+         */
+        @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+        public int size;
+
+        /**
+         * Generator of the entries.
+         */
+        Workload workload;
+
+        /**
+         * The log.
+         */
+        ConversationLog log;
+
+        /**
+         * A transcript of the log, written with {@code exportChat}.
+         */
+        File transcript;
+
+        /**
+         * Builds the log and its transcript.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.workload = new Workload(SEED);
+            this.log = Workload.newLog(this.implementation);
+            this.workload.fill(this.log, this.size);
+            this.transcript = tempFile("transcript");
+            this.log.exportChat(
+                    new SimpleWriter1L(this.transcript.getPath()));
+        }
+
+        /**
+         * Deletes the transcript.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.transcript.delete();
+        }
+    }
+
+    /**
+     * A log of {@code size} entries, rebuilt before every iteration for
+     * operations that consume it.
+     */
+    @State(Scope.Thread)
+    public static class Fresh {
+
+        /**
+         * The log.
+         */
+        ConversationLog log;
+
+        /**
+         * Rebuilds the log from the same entries as {@link Filled}.
+         *
+         * @param filled
+         *            the trial log, for its parameters
+         */
+        @Setup(Level.Iteration)
+        public void setUp(Filled filled) {
+            this.log = Workload.newLog(filled.implementation);
+            new Workload(SEED).fill(this.log, filled.size);
+        }
+    }
+
+    /**
+     * Makes a temporary file deleted when the JVM exits.
+     *
+     * @param prefix
+     *            prefix of the file name
+     * @return the file
+     */
+    static File tempFile(String prefix) {
+        try {
+            File file = File.createTempFile(prefix, ".txt");
+            file.deleteOnExit();
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends one entry and removes it again, keeping the log at its size.
+     *
+     * @param filled
+     *            the log
+     * @return the removed entry
+     */
+    @Benchmark
+    public Map<String, String> appendThenRemove(Filled filled) {
+        filled.log.append(filled.workload.nextSpeaker(),
+                filled.workload.nextText());
+        return filled.log.removeChat();
+    }
+
+    /**
+     * Appends one entry and drops the oldest one, sliding the log as a
+     * window of its size.
+     *
+     * @param filled
+     *            the log
+     * @return the log
+     */
+    @Benchmark
+    public ConversationLog appendThenTrim(Filled filled) {
+        filled.log.append(filled.workload.nextSpeaker(),
+                filled.workload.nextText());
+        return filled.log.segment(1, filled.log.length());
+    }
+
+    /**
+     * Builds a log of {@code size} entries with {@code append}.
+     *
+     * @param filled
+     *            the parameters
+     * @return the built log
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ConversationLog build(Filled filled) {
+        ConversationLog log = Workload.newLog(filled.implementation);
+        new Workload(SEED).fill(log, filled.size);
+        return log;
+    }
+
+    /**
+     * Empties a log of {@code size} entries with {@code removeChat}.
+     *
+     * @param fresh
+     *            the log to empty
+     * @return the emptied log
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ConversationLog removeAll(Fresh fresh) {
+        while (!fresh.log.isEmpty()) {
+            fresh.log.removeChat();
+        }
+        return fresh.log;
+    }
+
+    /**
+     * Keeps the middle half of a log of {@code size} entries.
+     *
+     * @param fresh
+     *            the log to cut
+     * @param filled
+     *            the parameters
+     * @return the segment
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ConversationLog segment(Fresh fresh, Filled filled) {
+        return fresh.log.segment(filled.size / 4, 3 * (filled.size / 4));
+    }
+
+    /**
+     * Searches for a word found in many entries.
+     *
+     * @param filled
+     *            the log
+     * @return the matching indices
+     */
+    @Benchmark
+    public Sequence<Integer> findFrequent(Filled filled) {
+        return filled.log.find(filled.workload.frequentWord());
+    }
+
+    /**
+     * Searches for a word found in few entries.
+     *
+     * @param filled
+     *            the log
+     * @return the matching indices
+     */
+    @Benchmark
+    public Sequence<Integer> findRare(Filled filled) {
+        return filled.log.find(filled.workload.rareWord());
+    }
+
+    /**
+     * Collects the entries of the most frequent speaker.
+     *
+     * @param filled
+     *            the log
+     * @return the texts of the speaker
+     */
+    @Benchmark
+    public Sequence<String> speakerChatFrequent(Filled filled) {
+        return filled.log.speakerChat(filled.workload.frequentSpeaker());
+    }
+
+    /**
+     * Collects the entries of the least frequent speaker.
+     *
+     * @param filled
+     *            the log
+     * @return the texts of the speaker
+     */
+    @Benchmark
+    public Sequence<String> speakerChatRare(Filled filled) {
+        return filled.log.speakerChat(filled.workload.rareSpeaker());
+    }
+
+    /**
+     * Renders the whole log as one string.
+     *
+     * @param filled
+     *            the log
+     * @return the transcript
+     */
+    @Benchmark
+    public String toTranscript(Filled filled) {
+        return filled.log.toTranscript();
+    }
+
+    /**
+     * Writes the whole log to a file.
+     *
+     * @param filled
+     *            the log
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void exportChat(Filled filled) {
+        File out = tempFile("export");
+        filled.log.exportChat(new SimpleWriter1L(out.getPath()));
+        out.delete();
+    }
+
+    /**
+     * Reads the transcript of the log into a new log.
+     *
+     * @param filled
+     *            the transcript
+     * @return the read log
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ConversationLog importChat(Filled filled) {
+        ConversationLog log = filled.log.newInstance();
+        log.importChat(new SimpleReader1L(filled.transcript.getPath()));
+        return log;
+    }
+
+}
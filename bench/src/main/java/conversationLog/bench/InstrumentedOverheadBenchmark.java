@@ -0,0 +1,125 @@
+package conversationLog.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.map.Map;
+import components.sequence.Sequence;
+import conversationLog.ConversationLog;
+import conversationLog.ConversationLogInstrumented;
+
+/**
+ * Cost of {@link ConversationLogInstrumented}: the same calls on a bare log
+ * and on the same kind of log wrapped in the decorator. The difference
+ * between the {@code instrumented=true} and {@code false} rows is the
+ * overhead per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class InstrumentedOverheadBenchmark {
+
+    /**
+     * Seed of the workload.
+     */
+    private static final long SEED = 20240101L;
+
+    /**
+     * The implementation class of the (wrapped) log.
+     */
+    @Param({ "conversationLog.ConversationLog1A",
+            "conversationLog.ConversationLogConcurrent" })
+    public String implementation;
+
+    /**
+     * Whether the log is wrapped in the decorator.
+     */
+    @Param({ "false", "true" })
+    public boolean instrumented;
+
+    /**
+     * Number of entries of the log.
+     */
+    @Param({ "1000", "100000" })
+    public int size;
+
+    /**
+     * Generator of the entries.
+     */
+    private Workload workload;
+
+    /**
+     * The log under test.
+     */
+    private ConversationLog log;
+
+    /**
+     * Builds the log.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.workload = new Workload(SEED);
+        this.log = Workload.newLog(this.implementation);
+        if (this.instrumented) {
+            this.log = new ConversationLogInstrumented(this.log);
+        }
+        this.workload.fill(this.log, this.size);
+    }
+
+    /**
+     * Appends one entry and removes it again.
+     *
+     * @return the removed entry
+     */
+    @Benchmark
+    public Map<String, String> appendThenRemove() {
+        this.log.append(this.workload.nextSpeaker(), this.workload.nextText());
+        return this.log.removeChat();
+    }
+
+    /**
+     * Reports the length of the log, the cheapest call there is.
+     *
+     * @return the length
+     */
+    @Benchmark
+    public int length() {
+        return this.log.length();
+    }
+
+    /**
+     * Searches for a rare word.
+     *
+     * @return the matching indices
+     */
+    @Benchmark
+    public Sequence<Integer> findRare() {
+        return this.log.find(this.workload.rareWord());
+    }
+
+    /**
+     * Collects the entries of the least frequent speaker.
+     *
+     * @return the texts of the speaker
+     */
+    @Benchmark
+    public Sequence<String> speakerChatRare() {
+        return this.log.speakerChat(this.workload.rareSpeaker());
+    }
+
+}
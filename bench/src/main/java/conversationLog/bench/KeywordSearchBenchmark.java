@@ -0,0 +1,134 @@
+package conversationLog.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.map.Map;
+import components.sequence.Sequence;
+import conversationLog.ConversationLog;
+import conversationLog.KeywordAutomaton;
+
+/**
+ * Checking a log for many patterns: one {@code find} per pattern, against
+ * one {@code findAny} pass with a precompiled {@link KeywordAutomaton}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class KeywordSearchBenchmark {
+
+    /**
+     * Seed of the workload.
+     */
+    private static final long SEED = 20240101L;
+
+    /**
+     * The implementation class searched.
+     */
+    @Param({ "conversationLog.ConversationLog1A" })
+    public String implementation;
+
+    /**
+     * Number of entries in the log.
+     */
+    @Param({ "10000", "1000000" })
+    public int size;
+
+    /**
+     * Number of patterns, taken from the rarest words of the vocabulary.
+     */
+    @Param({ "10", "100", "500" })
+    public int patternCount;
+
+    /**
+     * The log searched.
+     */
+    private ConversationLog log;
+
+    /**
+     * The patterns.
+     */
+    private List<String> patterns;
+
+    /**
+     * The patterns, compiled once.
+     */
+    private KeywordAutomaton automaton;
+
+    /**
+     * Fills the log and compiles the patterns.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Workload workload = new Workload(SEED);
+        this.log = Workload.newLog(this.implementation);
+        workload.fill(this.log, this.size);
+        this.patterns = new ArrayList<>();
+        for (int k = 1; k <= this.patternCount; k++) {
+            this.patterns.add(workload.word(Workload.VOCABULARY - k));
+        }
+        this.automaton = new KeywordAutomaton(this.patterns);
+    }
+
+    /**
+     * Calls {@code find} once per pattern.
+     *
+     * @return the total number of matches
+     */
+    @Benchmark
+    public int findLoop() {
+        int matches = 0;
+        for (String pattern : this.patterns) {
+            matches += this.log.find(pattern).length();
+        }
+        return matches;
+    }
+
+    /**
+     * Scans the log once with the compiled patterns.
+     *
+     * @return the entries matching some pattern
+     */
+    @Benchmark
+    public Sequence<Integer> findAny() {
+        return this.log.findAny(this.automaton);
+    }
+
+    /**
+     * Scans the log once and reports the matches of every pattern.
+     *
+     * @return the matches of each pattern
+     */
+    @Benchmark
+    public Map<String, Sequence<Integer>> findAll() {
+        return this.log.findAll(this.automaton);
+    }
+
+    /**
+     * Compiles the patterns.
+     *
+     * @return the automaton
+     */
+    @Benchmark
+    public KeywordAutomaton compile() {
+        return new KeywordAutomaton(this.patterns);
+    }
+
+}
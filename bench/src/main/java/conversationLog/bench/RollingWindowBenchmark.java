@@ -0,0 +1,103 @@
+package conversationLog.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import conversationLog.ConversationLog;
+import conversationLog.ConversationLogRolling;
+
+/**
+ * Keeping the last {@code window} entries of a stream: {@code append} on a
+ * full {@link ConversationLogRolling}, against {@code append} followed by
+ * {@code segment(1, length())} on an unbounded log.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class RollingWindowBenchmark {
+
+    /**
+     * Seed of the workload.
+     */
+    private static final long SEED = 20240101L;
+
+    /**
+     * The unbounded implementation class trimmed with {@code segment}.
+     */
+    @Param({ "conversationLog.ConversationLogSecondary",
+            "conversationLog.ConversationLog1A" })
+    public String implementation;
+
+    /**
+     * Number of entries kept.
+     */
+    @Param({ "100", "10000", "1000000" })
+    public int window;
+
+    /**
+     * Generator of the entries.
+     */
+    private Workload workload;
+
+    /**
+     * Unbounded log of {@code window} entries.
+     */
+    private ConversationLog trimmed;
+
+    /**
+     * Full rolling log of {@code window} entries.
+     */
+    private ConversationLogRolling rolling;
+
+    /**
+     * Fills both logs.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.workload = new Workload(SEED);
+        this.trimmed = Workload.newLog(this.implementation);
+        this.workload.fill(this.trimmed, this.window);
+        this.rolling = new ConversationLogRolling(this.window);
+        this.workload.fill(this.rolling, this.window);
+    }
+
+    /**
+     * Appends one entry and trims the oldest one with {@code segment}.
+     *
+     * @return the log
+     */
+    @Benchmark
+    public ConversationLog appendThenSegment() {
+        this.trimmed.append(this.workload.nextSpeaker(),
+                this.workload.nextText());
+        return this.trimmed.segment(1, this.trimmed.length());
+    }
+
+    /**
+     * Appends one entry to the full rolling log, evicting the oldest one.
+     *
+     * @return the log
+     */
+    @Benchmark
+    public ConversationLog appendRolling() {
+        this.rolling.append(this.workload.nextSpeaker(),
+                this.workload.nextText());
+        return this.rolling;
+    }
+
+}
@@ -0,0 +1,92 @@
+package conversationLog.bench;
+
+import java.io.File;
+
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter1L;
+import conversationLog.ConversationLog;
+
+/**
+ * Reports the heap retained by a log imported from a synthetic transcript.
+ *
+ * <p>
+ * Usage: {@code SpeakerDictionaryFootprint [lines [className]]}, by default
+ * 10,000,000 lines into a {@code ConversationLog1A}. The transcript is written
+ * from a {@link Workload} first, so the imported log holds one fresh text
+ * string per line, as it would for a real file. Run with a heap large enough
+ * for the log (about 3g for the default size).
+ * </p>
+ */
+public final class SpeakerDictionaryFootprint {
+
+    /**
+     * Default number of lines of the transcript.
+     */
+    private static final int DEFAULT_LINES = 10_000_000;
+
+    /**
+     * Seed of the workload.
+     */
+    private static final long SEED = 20240101L;
+
+    /**
+     * Bytes in a mebibyte.
+     */
+    private static final long MIB = 1L << 20;
+
+    /**
+     * Number of collections run before reading the used heap.
+     */
+    private static final int COLLECTIONS = 3;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SpeakerDictionaryFootprint() {
+    }
+
+    /**
+     * Reports the heap in use after collecting garbage.
+     *
+     * @return the used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < COLLECTIONS; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the number of lines and the log class, both optional
+     */
+    public static void main(String[] args) {
+        int lines = DEFAULT_LINES;
+        if (args.length > 0) {
+            lines = Integer.parseInt(args[0]);
+        }
+        String className = "conversationLog.ConversationLog1A";
+        if (args.length > 1) {
+            className = args[1];
+        }
+        File transcript = ConversationLogBenchmark.tempFile("footprint");
+        ConversationLog source = Workload.newLog(className);
+        new Workload(SEED).fill(source, lines);
+        source.exportChat(new SimpleWriter1L(transcript.getPath()));
+        source = null;
+
+        long before = usedHeap();
+        ConversationLog log = Workload.newLog(className);
+        log.importChat(new SimpleReader1L(transcript.getPath()));
+        long after = usedHeap();
+        System.out.printf("%s: %d lines, %d MiB retained (%.1f bytes/line)%n",
+                className, log.length(), (after - before) / MIB,
+                (double) (after - before) / lines);
+        transcript.delete();
+    }
+
+}
@@ -0,0 +1,292 @@
+package conversationLog.bench;
+
+import java.util.SplittableRandom;
+
+import conversationLog.ConversationLog;
+
+/**
+ * Deterministic generator of chat entries with a realistic shape.
+ *
+ * <p>
+ * Speakers follow a Zipf distribution over {@value #SPEAKERS} names, so a few
+ * speakers write most of the entries. Texts are sentences of Zipf-distributed
+ * words from a vocabulary of {@value #VOCABULARY} words, with a log-normal
+ * number of words (about 9 on average). To keep the heap of a 10M-entry log
+ * reasonable, texts are drawn from a pool of {@value #TEXT_POOL} generated
+ * sentences.
+ * </p>
+ */
+public final class Workload {
+
+    /**
+     * Number of distinct speakers.
+     */
+    static final int SPEAKERS = 64;
+
+    /**
+     * Number of distinct words.
+     */
+    static final int VOCABULARY = 4096;
+
+    /**
+     * Number of distinct texts.
+     */
+    static final int TEXT_POOL = 1 << 16;
+
+    /**
+     * Zipf exponent of the speaker distribution.
+     */
+    private static final double SPEAKER_SKEW = 1.2;
+
+    /**
+     * Zipf exponent of the word distribution.
+     */
+    private static final double WORD_SKEW = 1.0;
+
+    /**
+     * Mean of the logarithm of the number of words of a text.
+     */
+    private static final double WORDS_LOG_MEAN = 2.0;
+
+    /**
+     * Standard deviation of the logarithm of the number of words of a text.
+     */
+    private static final double WORDS_LOG_DEVIATION = 0.6;
+
+    /**
+     * Most words in one text.
+     */
+    private static final int MAX_WORDS = 200;
+
+    /**
+     * Shortest generated word.
+     */
+    private static final int MIN_WORD_LENGTH = 2;
+
+    /**
+     * Longest generated word.
+     */
+    private static final int MAX_WORD_LENGTH = 10;
+
+    /**
+     * Number of letters words are made of.
+     */
+    private static final int LETTERS = 26;
+
+    /**
+     * Speaker names, most frequent first.
+     */
+    private final String[] speakers;
+
+    /**
+     * Cumulative probability of each speaker rank.
+     */
+    private final double[] speakerCdf;
+
+    /**
+     * Vocabulary, most frequent word first.
+     */
+    private final String[] words;
+
+    /**
+     * The pool texts are drawn from.
+     */
+    private final String[] texts;
+
+    /**
+     * Source of the entries.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Constructor for Workload.
+     *
+     * @param seed
+     *            the seed; equal seeds give equal entries
+     */
+    public Workload(long seed) {
+        this.random = new SplittableRandom(seed);
+        this.speakers = new String[SPEAKERS];
+        for (int i = 0; i < SPEAKERS; i++) {
+            this.speakers[i] = "user" + i;
+        }
+        this.speakerCdf = zipfCdf(SPEAKERS, SPEAKER_SKEW);
+        this.words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            this.words[i] = this.randomWord();
+        }
+        double[] wordCdf = zipfCdf(VOCABULARY, WORD_SKEW);
+        this.texts = new String[TEXT_POOL];
+        for (int i = 0; i < TEXT_POOL; i++) {
+            long count = Math.min(MAX_WORDS,
+                    Math.max(1, Math.round(Math.exp(this.random
+                            .nextGaussian(WORDS_LOG_MEAN, WORDS_LOG_DEVIATION)))));
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < count; w++) {
+                if (w > 0) {
+                    text.append(' ');
+                }
+                text.append(this.words[this.sample(wordCdf)]);
+            }
+            this.texts[i] = text.toString();
+        }
+    }
+
+    /**
+     * Reports the cumulative probabilities of a Zipf distribution.
+     *
+     * @param n
+     *            the number of ranks
+     * @param skew
+     *            the exponent
+     * @return the probability of each rank or a lower one
+     */
+    private static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1 / Math.pow(i + 1, skew);
+            cdf[i] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= total;
+        }
+        return cdf;
+    }
+
+    /**
+     * Draws a rank from a cumulative distribution.
+     *
+     * @param cdf
+     *            the cumulative probabilities
+     * @return the drawn rank
+     */
+    private int sample(double[] cdf) {
+        double u = this.random.nextDouble();
+        int low = 0;
+        int high = cdf.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cdf[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Makes a random lowercase word.
+     *
+     * @return the word
+     */
+    private String randomWord() {
+        int length = this.random.nextInt(MIN_WORD_LENGTH, MAX_WORD_LENGTH + 1);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + this.random.nextInt(LETTERS)));
+        }
+        return word.toString();
+    }
+
+    /**
+     * Reports the speaker of the next entry.
+     *
+     * @return a speaker name
+     */
+    public String nextSpeaker() {
+        return this.speakers[this.sample(this.speakerCdf)];
+    }
+
+    /**
+     * Reports the text of the next entry.
+     *
+     * @return a text
+     */
+    public String nextText() {
+        return this.texts[this.random.nextInt(TEXT_POOL)];
+    }
+
+    /**
+     * Appends {@code count} entries to {@code log}.
+     *
+     * @param log
+     *            the log to fill
+     * @param count
+     *            the number of entries to append
+     * @updates log
+     */
+    public void fill(ConversationLog log, int count) {
+        for (int i = 0; i < count; i++) {
+            log.append(this.nextSpeaker(), this.nextText());
+        }
+    }
+
+    /**
+     * Reports the most frequent speaker.
+     *
+     * @return the speaker of most entries
+     */
+    public String frequentSpeaker() {
+        return this.speakers[0];
+    }
+
+    /**
+     * Reports the least frequent speaker.
+     *
+     * @return the speaker of the fewest entries
+     */
+    public String rareSpeaker() {
+        return this.speakers[SPEAKERS - 1];
+    }
+
+    /**
+     * Reports the most frequent word.
+     *
+     * @return a word found in many entries
+     */
+    public String frequentWord() {
+        return this.words[0];
+    }
+
+    /**
+     * Reports the least frequent word.
+     *
+     * @return a word found in few entries, if any
+     */
+    public String rareWord() {
+        return this.words[VOCABULARY - 1];
+    }
+
+    /**
+     * Reports the word of frequency rank {@code rank}.
+     *
+     * @param rank
+     *            the rank, 0 for the most frequent word (0 ≤ rank <
+     *            VOCABULARY)
+     * @return the word
+     */
+    public String word(int rank) {
+        return this.words[rank];
+    }
+
+    /**
+     * Makes a log of the given class.
+     *
+     * @param className
+     *            the fully qualified name of a ConversationLog implementation
+     *            with a public no-argument constructor
+     * @return a new, empty log
+     */
+    public static ConversationLog newLog(String className) {
+        try {
+            return (ConversationLog) Class.forName(className)
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(
+                    "Cannot instantiate " + className, e);
+        }
+    }
+
+}
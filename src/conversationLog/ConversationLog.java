@@ -1,6 +1,17 @@
 package conversationLog;
 
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import components.map.Map;
+import components.map.Map1L;
 import components.sequence.Sequence;
+import components.sequence.Sequence1L;
 import components.simplereader.SimpleReader;
 import components.simplewriter.SimpleWriter;
 
@@ -60,4 +71,266 @@ public interface ConversationLog extends ConversationLogKernel {
      * @return a sequence of chats from the specified speaker
      */
     Sequence<String> speakerChat(String speaker);
+
+    // Batch appends: one call per batch instead of one per entry
+    /**
+     * Append entries to the log, {@code speakers[k]} saying {@code texts[k]}
+     * for each k in order, as a loop of {@code append} would.
+     *
+     * @param speakers
+     *            the speakers, non-null/non-empty
+     * @param texts
+     *            the texts, non-null
+     * @updates this
+     * @requires |speakers| = |texts|
+     */
+    default void appendAll(String[] speakers, String[] texts) {
+        for (int k = 0; k < speakers.length; k++) {
+            this.append(speakers[k], texts[k]);
+        }
+    }
+
+    /**
+     * Append the given entries to the log, in order; their indices are
+     * ignored.
+     *
+     * @param entries
+     *            the entries to append
+     * @updates this
+     */
+    default void appendAll(List<LogEntry> entries) {
+        int count = entries.size();
+        String[] speakers = new String[count];
+        String[] texts = new String[count];
+        int k = 0;
+        for (LogEntry entry : entries) {
+            speakers[k] = entry.speaker();
+            texts[k] = entry.text();
+            k++;
+        }
+        this.appendAll(speakers, texts);
+    }
+
+    /**
+     * Append every entry of {@code source} to the log, in order; source is
+     * not changed (it may be this log, whose entries are then repeated).
+     *
+     * @param source
+     *            the log whose entries to append
+     * @updates this
+     */
+    default void appendAll(ConversationLog source) {
+        int count = source.length();
+        String[] speakers = new String[count];
+        String[] texts = new String[count];
+        for (int k = 0; k < count; k++) {
+            speakers[k] = source.speakerAt(k);
+            texts[k] = source.textAt(k);
+        }
+        this.appendAll(speakers, texts);
+    }
+
+    // Multi-pattern search: one pass over the texts for many patterns
+    /**
+     * Search for any of several substrings in one pass and return the
+     * indices of the entries containing at least one of them.
+     *
+     * @param patterns
+     *            the compiled substrings to search for
+     * @return a sequence of indices where some pattern is found
+     */
+    default Sequence<Integer> findAny(KeywordAutomaton patterns) {
+        Sequence<Integer> indices = new Sequence1L<>();
+        int length = this.length();
+        for (int i = 0; i < length; i++) {
+            if (patterns.matchesAny(this.textAt(i))) {
+                indices.add(indices.length(), i);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Search for any of several substrings in one pass; compiles them first,
+     * so callers checking the same patterns repeatedly should compile a
+     * {@link KeywordAutomaton} once and pass it instead.
+     *
+     * @param patterns
+     *            the substrings to search for
+     * @return a sequence of indices where some pattern is found
+     */
+    default Sequence<Integer> findAny(Collection<String> patterns) {
+        return this.findAny(new KeywordAutomaton(patterns));
+    }
+
+    /**
+     * Search for several substrings in one pass and report, for each of
+     * them, the indices of the entries containing it, as {@code find} would.
+     *
+     * @param patterns
+     *            the compiled substrings to search for
+     * @return a map from each pattern to the ascending indices where it is
+     *         found (empty if nowhere)
+     */
+    default Map<String, Sequence<Integer>> findAll(KeywordAutomaton patterns) {
+        int count = patterns.patternCount();
+        IndexList[] hits = new IndexList[count];
+        for (int id = 0; id < count; id++) {
+            hits[id] = new IndexList();
+        }
+        int length = this.length();
+        for (int i = 0; i < length; i++) {
+            int entry = i;
+            patterns.forEachMatch(this.textAt(i), id -> {
+                IndexList list = hits[id];
+                if (list.length() == 0 || list.last() != entry) {
+                    list.add(entry);
+                }
+            });
+        }
+        Map<String, Sequence<Integer>> found = new Map1L<>();
+        for (int id = 0; id < count; id++) {
+            Sequence<Integer> indices = new Sequence1L<>();
+            for (int k = 0; k < hits[id].length(); k++) {
+                indices.add(k, hits[id].get(k));
+            }
+            found.add(patterns.pattern(id), indices);
+        }
+        return found;
+    }
+
+    /**
+     * Search for several substrings in one pass and report where each one is
+     * found; compiles them first, see {@link #findAny(Collection)}.
+     *
+     * @param patterns
+     *            the substrings to search for
+     * @return a map from each pattern to the ascending indices where it is
+     *         found (empty if nowhere)
+     */
+    default Map<String, Sequence<Integer>> findAll(
+            Collection<String> patterns) {
+        return this.findAll(new KeywordAutomaton(patterns));
+    }
+
+    // Lazy reads: entries are read one at a time, only when asked for
+    /**
+     * Reports entry {@code i} as a LogEntry.
+     *
+     * @param i
+     *            the entry index
+     * @return entry {@code i}
+     * @requires 0 ≤ i < |this|
+     */
+    default LogEntry entryAt(int i) {
+        return new LogEntry(i, this.speakerAt(i), this.textAt(i));
+    }
+
+    /**
+     * Iterate over entries [from, to), reading each one when it is reached.
+     * Throws {@link ConcurrentModificationException} if the log gets shorter
+     * than {@code to} meanwhile.
+     *
+     * @param from
+     *            inclusive index
+     * @param to
+     *            exclusive index (0 ≤ from ≤ to ≤ |this|)
+     * @return an iterator over the entries
+     */
+    default Iterator<LogEntry> entryIterator(int from, int to) {
+        return new Iterator<LogEntry>() {
+
+            /**
+             * Index of the next entry.
+             */
+            private int next = from;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < to;
+            }
+
+            @Override
+            public LogEntry next() {
+                if (this.next >= to) {
+                    throw new NoSuchElementException();
+                }
+                if (ConversationLog.this.length() < to) {
+                    throw new ConcurrentModificationException();
+                }
+                LogEntry entry = ConversationLog.this.entryAt(this.next);
+                this.next++;
+                return entry;
+            }
+        };
+    }
+
+    /**
+     * Stream entries [from, to), reading each one when it is reached.
+     *
+     * @param from
+     *            inclusive index
+     * @param to
+     *            exclusive index (0 ≤ from ≤ to ≤ |this|)
+     * @return an ordered stream of the entries
+     */
+    default Stream<LogEntry> entries(int from, int to) {
+        return IntStream.range(from, to).mapToObj(this::entryAt);
+    }
+
+    /**
+     * Read one page of at most {@code limit} entries, starting at entry
+     * {@code cursor}; costs {@code limit} reads of {@link #entryAt(int)},
+     * so O(limit) however long the log is when reads are O(1).
+     *
+     * @param cursor
+     *            index of the first entry of the page, 0 for the first page
+     *            or the {@code nextCursor} of the previous page
+     * @param limit
+     *            the most entries in the page (limit > 0)
+     * @return the page
+     * @requires 0 ≤ cursor ≤ |this|
+     */
+    default LogPage page(int cursor, int limit) {
+        int length = this.length();
+        int end = (int) Math.min(length, (long) cursor + limit);
+        Sequence<LogEntry> entries = new Sequence1L<>();
+        for (int i = cursor; i < end; i++) {
+            entries.add(entries.length(), this.entryAt(i));
+        }
+        return new LogPage(entries, end, end < length);
+    }
+
+    /**
+     * Lazy {@code find}: stream the entries from {@code from} on whose text
+     * contains {@code substring}, searching only as far as the stream is
+     * consumed.
+     *
+     * @param substring
+     *            the substring to search for
+     * @param from
+     *            index where the search starts (0 ≤ from ≤ |this|)
+     * @return an ordered stream of the matching entries
+     */
+    default Stream<LogEntry> findStream(String substring, int from) {
+        return IntStream.range(from, this.length())
+                .filter(i -> this.textAt(i).contains(substring))
+                .mapToObj(this::entryAt);
+    }
+
+    /**
+     * Lazy {@code speakerChat}: stream the entries from {@code from} on of
+     * {@code speaker}, searching only as far as the stream is consumed.
+     *
+     * @param speaker
+     *            the speaker to filter by
+     * @param from
+     *            index where the search starts (0 ≤ from ≤ |this|)
+     * @return an ordered stream of the entries of {@code speaker}
+     */
+    default Stream<LogEntry> speakerChatStream(String speaker, int from) {
+        return IntStream.range(from, this.length())
+                .filter(i -> this.speakerAt(i).equals(speaker))
+                .mapToObj(this::entryAt);
+    }
 }
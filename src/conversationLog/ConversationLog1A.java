@@ -0,0 +1,1503 @@
+package conversationLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+import components.simplereader.SimpleReader;
+import components.simplewriter.SimpleWriter;
+
+/**
+ * Array-backed implementation of ConversationLog .
+ *
+ * <p>
+ * Entries live in two growable parallel arrays (one of speaker ids, one of
+ * texts), so {@code append} is amortized O(1), {@code removeChat} is O(1) and
+ * every scan reads entry {@code i} in O(1) instead of walking a
+ * {@code Sequence}. Behaves exactly like {@link ConversationLogSecondary}.
+ * </p>
+ *
+ * <p>
+ * Speakers are dictionary-encoded: each distinct name is stored once and
+ * entries hold its small int id, so {@code speakerChat} and the speaker index
+ * compare ints, and {@code importChat} reuses the dictionary name instead of
+ * keeping a fresh substring per line.
+ * </p>
+ *
+ * <p>
+ * The log is a window [offset, offset + size) over the arrays, so
+ * {@code segment} narrows the window instead of copying entries; it still
+ * trims the tail of every speaker's postings, so it costs
+ * O(speakers · log n). Slots outside the window are reclaimed in one batch,
+ * by sliding the window back to the start of the arrays, once they outnumber
+ * the slots inside it; that pass also drops the speakers left without
+ * entries from the dictionary.
+ * </p>
+ *
+ * <p>
+ * Each speaker also has an ascending list of the array slots of its entries,
+ * so {@code speakerChat} costs O(k) for k matching entries.
+ * </p>
+ *
+ * <p>
+ * {@code writeTranscript} streams the transcript to an {@link Appendable} or a
+ * {@link WritableByteChannel} without materializing it, {@code toTranscript}
+ * sizes its buffer exactly from {@link #transcriptLength()}, and
+ * {@code exportChat} renders through the same code.
+ * </p>
+ *
+ * <p>
+ * Once the log holds at least {@link #parallelThreshold()} entries,
+ * {@code find} splits its scan into chunks that run on the common
+ * {@link ForkJoinPool}; the result is the same as the serial scan.
+ * </p>
+ *
+ * <p>
+ * Entries may carry a time, for example epoch milliseconds, appended with
+ * {@link #append(String, String, long)}. Times never decrease along the log,
+ * so they live in one more parallel {@code long} array, allocated by the
+ * first timed append, and {@link #rangeByTime(long, long)} binary-searches
+ * it. An untimed entry of a timed log takes the time of the entry before
+ * it; entries from before the first timed append have {@link #NO_TIME}.
+ * The transcript of a timed log starts with the line {@link #TIMED_HEADER},
+ * and then writes every entry as {@code @time speaker: text}, or
+ * {@code @ speaker: text} if it is untimed, so a speaker starting with
+ * {@code '@'} reads back as it was; {@code importChat} only reads prefixes
+ * after that header, and untimed transcripts are unchanged. The first line
+ * of an untimed transcript always holds {@code ": "}, so only a transcript
+ * written by hand or by another tool, starting with a bare {@code @timed}
+ * line that older versions skipped, now reads differently.
+ * </p>
+ */
+public class ConversationLog1A implements TimedConversationLog {
+
+    /**
+     * Time of an untimed entry; sorts before every real time.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    /**
+     * First line of a timed transcript; it holds no {@code ": "}, so readers
+     * that do not know it skip it like any other line without an entry.
+     */
+    static final String TIMED_HEADER = "@timed";
+
+    /**
+     * Capacity of the arrays of a freshly created log.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Default number of entries from which {@code find} scans in parallel.
+     */
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 17;
+
+    /**
+     * Number of entries scanned by one task of a parallel scan.
+     */
+    private static final int SCAN_CHUNK = 1 << 13;
+
+    /**
+     * Size in bytes of the buffer used to write a transcript to a channel.
+     */
+    private static final int CHANNEL_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Separator between the speaker and the text of a transcript line.
+     */
+    private static final String SEPARATOR = ": ";
+
+    /**
+     * Line terminator of {@code toTranscript} and {@code writeTranscript}.
+     */
+    private static final String LINE_END = "\n";
+
+    /**
+     * First char of the time prefix of a transcript line.
+     */
+    private static final char TIME_MARK = '@';
+
+    /**
+     * Char ending the time prefix of a transcript line.
+     */
+    private static final char TIME_END = ' ';
+
+    /**
+     * Channel buffer of each thread, reused by every {@code writeTranscript}.
+     */
+    private static final ThreadLocal<ByteBuffer> CHANNEL_BUFFER = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE));
+
+    /**
+     * Number of speakers below which {@code importChat} looks a speaker up by
+     * comparing it with every name instead of hashing a substring.
+     */
+    private static final int SMALL_DICTIONARY = 16;
+
+    /**
+     * Speaker id of each entry; entry i is in slot offset + i.
+     */
+    private int[] speakerIds;
+
+    /**
+     * Text of each entry; entry i is in slot offset + i.
+     */
+    private String[] texts;
+
+    /**
+     * Time of each entry, entry i in slot offset + i, never decreasing; null
+     * until the first timed append.
+     */
+    private long[] times;
+
+    /**
+     * Slot of the first entry of the log.
+     */
+    private int offset;
+
+    /**
+     * Number of entries in the log.
+     */
+    private int size;
+
+    /**
+     * One past the last slot that may still reference a string.
+     */
+    private int used;
+
+    /**
+     * Name of each speaker id.
+     */
+    private String[] speakerNames;
+
+    /**
+     * Number of speaker ids handed out.
+     */
+    private int speakerCount;
+
+    /**
+     * Id of each speaker name.
+     */
+    private HashMap<String, Integer> speakerIdOf;
+
+    /**
+     * Ascending slots of the entries of each speaker id. Slots before offset
+     * are stale and skipped by the queries; there are none at or after offset
+     * + size.
+     */
+    private IndexList[] postings;
+
+    /**
+     * Id of the speaker of the last appended entry, tried first by lookups,
+     * or -1.
+     */
+    private int lastSpeaker;
+
+    /**
+     * Number of entries from which {@code find} scans in parallel; kept across
+     * {@code clear}.
+     */
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Scans a range of scan chunks for entries containing a substring, one
+     * chunk per leaf task, each leaf filling its own slot of the results.
+     */
+    private static final class FindTask extends RecursiveAction {
+
+        /**
+         * Serialization version, as required of a ForkJoinTask.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Texts of the log being scanned.
+         */
+        private final String[] texts;
+
+        /**
+         * Slot of the first entry of the log being scanned.
+         */
+        private final int offset;
+
+        /**
+         * Number of entries of the log being scanned.
+         */
+        private final int size;
+
+        /**
+         * The substring to search for.
+         */
+        private final String substring;
+
+        /**
+         * Matching indices of each chunk.
+         */
+        private final IndexList[] results;
+
+        /**
+         * First chunk of this task.
+         */
+        private final int fromChunk;
+
+        /**
+         * One past the last chunk of this task.
+         */
+        private final int toChunk;
+
+        /**
+         * Constructor: a task scanning chunks [fromChunk, toChunk).
+         *
+         * @param texts
+         *            texts of the log
+         * @param offset
+         *            slot of the first entry of the log
+         * @param size
+         *            number of entries of the log
+         * @param substring
+         *            the substring to search for
+         * @param results
+         *            matching indices of each chunk
+         * @param fromChunk
+         *            first chunk
+         * @param toChunk
+         *            one past the last chunk
+         */
+        FindTask(String[] texts, int offset, int size, String substring,
+                IndexList[] results, int fromChunk, int toChunk) {
+            this.texts = texts;
+            this.offset = offset;
+            this.size = size;
+            this.substring = substring;
+            this.results = results;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.toChunk - this.fromChunk == 1) {
+                IndexList matches = new IndexList();
+                int end = Math.min(this.size,
+                        (this.fromChunk + 1) * SCAN_CHUNK);
+                for (int i = this.fromChunk * SCAN_CHUNK; i < end; i++) {
+                    if (this.texts[this.offset + i].contains(this.substring)) {
+                        matches.add(i);
+                    }
+                }
+                this.results[this.fromChunk] = matches;
+            } else {
+                int mid = (this.fromChunk + this.toChunk) >>> 1;
+                invokeAll(
+                        new FindTask(this.texts, this.offset, this.size,
+                                this.substring, this.results, this.fromChunk,
+                                mid),
+                        new FindTask(this.texts, this.offset, this.size,
+                                this.substring, this.results, mid,
+                                this.toChunk));
+            }
+        }
+    }
+
+    /**
+     * Appendable that encodes what it is given to UTF-8 in a pooled buffer and
+     * writes the buffer to a channel whenever it fills up.
+     */
+    private static final class ChannelAppendable implements Appendable {
+
+        /**
+         * The channel written to.
+         */
+        private final WritableByteChannel channel;
+
+        /**
+         * The pooled buffer of the calling thread.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * UTF-8 encoder, replacing unpaired surrogates like
+         * {@code String.getBytes} does.
+         */
+        private final CharsetEncoder encoder;
+
+        /**
+         * Constructor for ChannelAppendable.
+         *
+         * @param channel
+         *            the channel to write to
+         */
+        ChannelAppendable(WritableByteChannel channel) {
+            this.channel = channel;
+            this.buffer = CHANNEL_BUFFER.get();
+            this.buffer.clear();
+            this.encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        /**
+         * Encodes {@code chars} into the buffer, draining it as needed.
+         *
+         * @param chars
+         *            the chars to encode
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        private void encode(CharBuffer chars) throws IOException {
+            CoderResult result = this.encoder.encode(chars, this.buffer, true);
+            while (result.isOverflow()) {
+                this.drain();
+                result = this.encoder.encode(chars, this.buffer, true);
+            }
+            this.encoder.reset();
+        }
+
+        /**
+         * Writes the buffered bytes to the channel and empties the buffer.
+         *
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        void drain() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            this.encode(CharBuffer.wrap(csq));
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end)
+                throws IOException {
+            this.encode(CharBuffer.wrap(csq, start, end));
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            this.encode(CharBuffer.wrap(String.valueOf(c)));
+            return this;
+        }
+    }
+
+    /**
+     * Appendable that prints what it is given to a SimpleWriter.
+     */
+    private static final class SimpleWriterAppendable implements Appendable {
+
+        /**
+         * The writer printed to.
+         */
+        private final SimpleWriter out;
+
+        /**
+         * Constructor for SimpleWriterAppendable.
+         *
+         * @param out
+         *            the writer to print to
+         */
+        SimpleWriterAppendable(SimpleWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) {
+            this.out.print(csq.toString());
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            this.out.print(csq.subSequence(start, end).toString());
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            this.out.print(c);
+            return this;
+        }
+    }
+
+    /**
+     * Constructor for ConversationLog1A.
+     */
+    public ConversationLog1A() {
+        this.createNewRep();
+    }
+
+    /**
+     * Initializes the representation to an empty log.
+     *
+     * @updates this
+     * @ensures {@code size = 0}
+     */
+    private void createNewRep() {
+        this.speakerIds = new int[INITIAL_CAPACITY];
+        this.texts = new String[INITIAL_CAPACITY];
+        this.times = null;
+        this.offset = 0;
+        this.size = 0;
+        this.used = 0;
+        this.speakerNames = new String[INITIAL_CAPACITY];
+        this.speakerCount = 0;
+        this.speakerIdOf = new HashMap<>();
+        this.postings = new IndexList[INITIAL_CAPACITY];
+        this.lastSpeaker = -1;
+    }
+
+    /**
+     * Makes sure {@code extra} more entries fit after the window: by sliding
+     * the window to the start of the arrays when that frees at least half of
+     * them, and otherwise by doubling them with every slot kept in place, so
+     * the postings stay valid and a window trimmed after each append does not
+     * pay a compaction per append.
+     *
+     * @param extra
+     *            the number of entries about to be appended
+     * @updates this
+     */
+    private void ensureCapacity(int extra) {
+        int capacity = this.texts.length;
+        if (this.offset + this.size + extra > capacity) {
+            if (this.size + extra <= capacity / 2) {
+                this.compact();
+            } else {
+                int limit = this.offset + this.size;
+                int newCapacity = Math.max(limit + extra, 2 * capacity);
+                int[] newSpeakerIds = new int[newCapacity];
+                String[] newTexts = new String[newCapacity];
+                System.arraycopy(this.speakerIds, this.offset, newSpeakerIds,
+                        this.offset, this.size);
+                System.arraycopy(this.texts, this.offset, newTexts,
+                        this.offset, this.size);
+                this.speakerIds = newSpeakerIds;
+                this.texts = newTexts;
+                if (this.times != null) {
+                    this.times = Arrays.copyOf(this.times, newCapacity);
+                }
+                this.used = limit;
+            }
+        }
+    }
+
+    /**
+     * Moves the window to the start of the arrays, drops every reference
+     * outside of it and rebuilds the speaker dictionary and index for the new
+     * slots, keeping only the speakers of the window, numbered by first
+     * appearance.
+     *
+     * @updates this
+     */
+    private void compact() {
+        if (this.offset > 0) {
+            System.arraycopy(this.speakerIds, this.offset, this.speakerIds, 0,
+                    this.size);
+            System.arraycopy(this.texts, this.offset, this.texts, 0,
+                    this.size);
+            if (this.times != null) {
+                System.arraycopy(this.times, this.offset, this.times, 0,
+                        this.size);
+            }
+        }
+        for (int i = this.size; i < this.used; i++) {
+            this.texts[i] = null;
+        }
+        this.offset = 0;
+        this.used = this.size;
+        int[] newIds = new int[this.speakerCount];
+        Arrays.fill(newIds, -1);
+        String[] names = new String[this.speakerNames.length];
+        int count = 0;
+        for (int i = 0; i < this.size; i++) {
+            int id = this.speakerIds[i];
+            if (newIds[id] < 0) {
+                newIds[id] = count;
+                names[count] = this.speakerNames[id];
+                this.postings[count] = new IndexList();
+                count++;
+            }
+            this.speakerIds[i] = newIds[id];
+            this.postings[newIds[id]].add(i);
+        }
+        Arrays.fill(this.postings, count, this.speakerCount, null);
+        this.speakerNames = names;
+        this.speakerCount = count;
+        this.speakerIdOf = new HashMap<>();
+        for (int id = 0; id < count; id++) {
+            this.speakerIdOf.put(names[id], id);
+        }
+        this.lastSpeaker = -1;
+    }
+
+    /**
+     * Reports the id of {@code speaker}, adding it to the dictionary if it is
+     * not there yet.
+     *
+     * @param speaker
+     *            the speaker name
+     * @return the id of {@code speaker}
+     * @updates this.speakerNames, this.speakerCount, this.speakerIdOf,
+     *          this.postings, this.lastSpeaker
+     */
+    private int speakerId(String speaker) {
+        int id = this.lastSpeaker;
+        if (id < 0 || !this.speakerNames[id].equals(speaker)) {
+            Integer known = this.speakerIdOf.get(speaker);
+            if (known == null) {
+                id = this.speakerCount;
+                if (id == this.speakerNames.length) {
+                    this.speakerNames = Arrays.copyOf(this.speakerNames,
+                            2 * id);
+                    this.postings = Arrays.copyOf(this.postings, 2 * id);
+                }
+                this.speakerNames[id] = speaker;
+                this.postings[id] = new IndexList();
+                this.speakerIdOf.put(speaker, id);
+                this.speakerCount++;
+            } else {
+                id = known;
+            }
+            this.lastSpeaker = id;
+        }
+        return id;
+    }
+
+    /**
+     * Reports whether {@code name} is spelled by {@code line[start, end)}.
+     *
+     * @param name
+     *            the name, or null
+     * @param line
+     *            the line holding the speaker
+     * @param start
+     *            start of the speaker in {@code line}
+     * @param end
+     *            end of the speaker in {@code line}
+     * @return true if {@code name} is not null and equals the speaker
+     */
+    private static boolean spells(String name, String line, int start,
+            int end) {
+        return name != null && name.length() == end - start
+                && line.regionMatches(start, name, 0, end - start);
+    }
+
+    /**
+     * Reports the name equal to {@code line[start, end)} among
+     * {@code previous} and the dictionary, if it is cheap to find without
+     * making a substring.
+     *
+     * @param previous
+     *            the speaker of the line before, or null
+     * @param line
+     *            the line holding the speaker
+     * @param start
+     *            start of the speaker in {@code line}
+     * @param end
+     *            end of the speaker in {@code line}
+     * @return the name, or null if it was not found
+     */
+    private String knownSpeaker(String previous, String line, int start,
+            int end) {
+        String known = null;
+        if (spells(previous, line, start, end)) {
+            known = previous;
+        } else if (this.lastSpeaker >= 0 && spells(
+                this.speakerNames[this.lastSpeaker], line, start, end)) {
+            known = this.speakerNames[this.lastSpeaker];
+        }
+        for (int id = 0; known == null && this.speakerCount <= SMALL_DICTIONARY
+                && id < this.speakerCount; id++) {
+            if (spells(this.speakerNames[id], line, start, end)) {
+                known = this.speakerNames[id];
+            }
+        }
+        return known;
+    }
+
+    /**
+     * Reports the time of the last entry.
+     *
+     * @return the time of the last entry, or {@code NO_TIME} if the log is
+     *         empty or untimed
+     */
+    final long lastTime() {
+        long last = NO_TIME;
+        if (this.times != null && this.size > 0) {
+            last = this.times[this.offset + this.size - 1];
+        }
+        return last;
+    }
+
+    /**
+     * Checks that {@code time} may follow an entry of time {@code last}.
+     *
+     * @param last
+     *            the time of the entry before
+     * @param time
+     *            the time of the new entry, or {@code NO_TIME}
+     * @return the time the new entry gets
+     * @throws IllegalArgumentException
+     *             if {@code time} is before {@code last}
+     */
+    static long checkTime(long last, long time) {
+        long checked = last;
+        if (time != NO_TIME) {
+            if (time < last) {
+                throw new IllegalArgumentException("Time " + time
+                        + " is before the time of the entry before, " + last);
+            }
+            checked = time;
+        }
+        return checked;
+    }
+
+    /**
+     * Checks that entries of times {@code newTimes[0, count)} may be
+     * appended, in order, to this log.
+     *
+     * @param newTimes
+     *            the times of the new entries, or null if they are untimed
+     * @param count
+     *            the number of new entries
+     * @throws IllegalArgumentException
+     *             if a time is before the time of the entry before it
+     */
+    final void checkTimes(long[] newTimes, int count) {
+        if (newTimes != null) {
+            long last = this.lastTime();
+            for (int k = 0; k < count; k++) {
+                last = checkTime(last, newTimes[k]);
+            }
+        }
+    }
+
+    /**
+     * Allocates the time column if the log is untimed, every entry so far
+     * getting {@code NO_TIME}.
+     *
+     * @return the time of the last entry
+     * @updates this.times
+     */
+    private long timeColumn() {
+        if (this.times == null) {
+            this.times = new long[this.texts.length];
+            Arrays.fill(this.times, NO_TIME);
+        }
+        return this.lastTime();
+    }
+
+    /**
+     * Renders one entry as a line of a timed transcript, without its line
+     * end.
+     *
+     * @param speaker
+     *            the speaker of the entry
+     * @param text
+     *            the text of the entry
+     * @param time
+     *            the time of the entry, or {@code NO_TIME}
+     * @return the line, {@code @time speaker: text} or
+     *         {@code @ speaker: text}
+     */
+    static String transcriptLine(String speaker, String text, long time) {
+        StringBuilder line = new StringBuilder().append(TIME_MARK);
+        if (time != NO_TIME) {
+            line.append(time);
+        }
+        return line.append(TIME_END).append(speaker).append(SEPARATOR)
+                .append(text).toString();
+    }
+
+    /**
+     * Reports the length of the {@code @time } prefix of a line of a timed
+     * transcript: {@code '@'}, a decimal long in ASCII digits or nothing for
+     * an untimed entry, and a space.
+     *
+     * @param line
+     *            the transcript line
+     * @return the length of the prefix, space included, or 0 if there is none
+     */
+    static int timePrefixLength(String line) {
+        int length = 0;
+        int end = line.indexOf(TIME_END);
+        if (end > 0 && line.charAt(0) == TIME_MARK) {
+            boolean digits = true;
+            for (int k = 1; digits && k < end; k++) {
+                char c = line.charAt(k);
+                digits = (c >= '0' && c <= '9') || (c == '-' && k == 1);
+            }
+            try {
+                if (digits && end > 1) {
+                    Long.parseLong(line.substring(1, end));
+                }
+                if (digits) {
+                    length = end + 1;
+                }
+            } catch (NumberFormatException e) {
+                // Too long for a long: the line starts with its speaker
+                length = 0;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Reports the time written in the prefix of a line of a timed
+     * transcript.
+     *
+     * @param line
+     *            the transcript line
+     * @param prefix
+     *            {@code timePrefixLength(line)}
+     * @return the time, or {@code NO_TIME} if the line has no prefix or an
+     *         empty one
+     */
+    static long prefixTime(String line, int prefix) {
+        long time = NO_TIME;
+        if (prefix > 2) {
+            time = Long.parseLong(line.substring(1, prefix - 1));
+        }
+        return time;
+    }
+
+    /**
+     * Writes one "speaker: text" line per entry to {@code out}.
+     *
+     * @param out
+     *            where to write the lines
+     * @param lineEnd
+     *            the terminator written after each line
+     * @throws IOException
+     *             if {@code out} cannot be written
+     */
+    private void render(Appendable out, String lineEnd) throws IOException {
+        if (this.times != null) {
+            out.append(TIMED_HEADER).append(lineEnd);
+        }
+        for (int i = this.offset; i < this.offset + this.size; i++) {
+            if (this.times != null) {
+                out.append(TIME_MARK);
+                if (this.times[i] != NO_TIME) {
+                    out.append(Long.toString(this.times[i]));
+                }
+                out.append(TIME_END);
+            }
+            out.append(this.speakerNames[this.speakerIds[i]]).append(SEPARATOR)
+                    .append(this.texts[i]).append(lineEnd);
+        }
+    }
+
+    /**
+     * Reports the speaker of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the speaker of entry {@code i}
+     */
+    @Override
+    public final String speakerAt(int i) {
+        return this.speakerNames[this.speakerIds[this.offset + i]];
+    }
+
+    /**
+     * Reports the text of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the text of entry {@code i}
+     */
+    @Override
+    public final String textAt(int i) {
+        return this.texts[this.offset + i];
+    }
+
+    /**
+     * Appends entries {@code [0, count)} of two parallel arrays in one bulk
+     * copy, untimed.
+     *
+     * @param newSpeakers
+     *            the speakers of the new entries
+     * @param newTexts
+     *            the texts of the new entries
+     * @param count
+     *            the number of entries to append
+     * @updates this
+     */
+    final void appendBlock(String[] newSpeakers, String[] newTexts,
+            int count) {
+        this.appendBlock(newSpeakers, newTexts, null, count);
+    }
+
+    /**
+     * Appends entries {@code [0, count)} of parallel arrays in one bulk copy.
+     * Subclasses that index or journal entries override this method and
+     * {@link #append(String, String, long)}.
+     *
+     * @param newSpeakers
+     *            the speakers of the new entries
+     * @param newTexts
+     *            the texts of the new entries
+     * @param newTimes
+     *            the times of the new entries, {@code NO_TIME} for untimed
+     *            ones, or null if they are all untimed
+     * @param count
+     *            the number of entries to append
+     * @updates this
+     * @throws IllegalArgumentException
+     *             if a time is before the time of the entry before it
+     */
+    void appendBlock(String[] newSpeakers, String[] newTexts, long[] newTimes,
+            int count) {
+        this.checkTimes(newTimes, count);
+        this.ensureCapacity(count);
+        int limit = this.offset + this.size;
+        System.arraycopy(newTexts, 0, this.texts, limit, count);
+        if (newTimes != null || this.times != null) {
+            long last = this.timeColumn();
+            for (int k = 0; k < count; k++) {
+                if (newTimes != null && newTimes[k] != NO_TIME) {
+                    last = newTimes[k];
+                }
+                this.times[limit + k] = last;
+            }
+        }
+        for (int k = 0; k < count; k++) {
+            int id = this.speakerId(newSpeakers[k]);
+            this.speakerIds[limit + k] = id;
+            this.postings[id].add(limit + k);
+        }
+        this.size += count;
+        this.used = Math.max(this.used, limit + count);
+    }
+
+    // Standard interface methods
+    /**
+     * Returns a new object with the same <i>dynamic</i> type as {@code this},
+     * having an initial value.
+     */
+    @Override
+    public ConversationLog1A newInstance() {
+        return new ConversationLog1A();
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     */
+    @Override
+    public void clear() {
+        this.createNewRep();
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value; the declaration notwithstanding, the
+     * <i>dynamic</i> type of {@code source} must be the same as the
+     * <i>dynamic</i> type of {@code this}.
+     */
+    @Override
+    public void transferFrom(ConversationLog source) {
+        if (this != source) {
+            ConversationLog1A that = (ConversationLog1A) source;
+            this.speakerIds = that.speakerIds;
+            this.texts = that.texts;
+            this.times = that.times;
+            this.offset = that.offset;
+            this.size = that.size;
+            this.used = that.used;
+            this.speakerNames = that.speakerNames;
+            this.speakerCount = that.speakerCount;
+            this.speakerIdOf = that.speakerIdOf;
+            this.postings = that.postings;
+            this.lastSpeaker = that.lastSpeaker;
+            that.createNewRep();
+        }
+    }
+
+    // Kernel interface methods
+    /**
+     * Report the number of chat entries in the log.
+     *
+     * @return the number of chat entries
+     */
+    @Override
+    public int length() {
+        return this.size;
+    }
+
+    /**
+     * Check if the log is empty.
+     *
+     * @return true if the log is empty, false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Append a chat entry to the log.
+     *
+     * @param speaker
+     *            non-null/non-empty
+     * @param text
+     *            non-null
+     */
+    @Override
+    public void append(String speaker, String text) {
+        this.append(speaker, text, NO_TIME);
+    }
+
+    /**
+     * Append a timed chat entry to the log. Subclasses that index or journal
+     * entries override this method, which {@code append(speaker, text)} calls
+     * with {@code NO_TIME}.
+     *
+     * @param speaker
+     *            non-null/non-empty
+     * @param text
+     *            non-null
+     * @param time
+     *            the time of the entry, or {@code NO_TIME} for the time of
+     *            the entry before it
+     * @throws IllegalArgumentException
+     *             if {@code time} is before the time of the last entry
+     */
+    public void append(String speaker, String text, long time) {
+        long last = checkTime(this.lastTime(), time);
+        this.ensureCapacity(1);
+        int slot = this.offset + this.size;
+        int id = this.speakerId(speaker);
+        this.speakerIds[slot] = id;
+        this.texts[slot] = text;
+        if (time != NO_TIME || this.times != null) {
+            this.timeColumn();
+            this.times[slot] = last;
+        }
+        this.postings[id].add(slot);
+        this.size++;
+        this.used = Math.max(this.used, slot + 1);
+    }
+
+    /**
+     * Append entries to the log in one bulk copy: the arrays grow at most
+     * once, and subclasses index or journal the entries as one batch.
+     *
+     * @param newSpeakers
+     *            the speakers, non-null/non-empty
+     * @param newTexts
+     *            the texts, non-null
+     * @updates this
+     * @requires |newSpeakers| = |newTexts|
+     */
+    @Override
+    public void appendAll(String[] newSpeakers, String[] newTexts) {
+        this.appendBlock(newSpeakers, newTexts, newSpeakers.length);
+    }
+
+    /**
+     * Undo chat: removes the last entry and reports it as a map with keys
+     * "speaker", "text".
+     *
+     * @return removed entry encoded as a Map<String,String>
+     * @requires |this| > 0
+     */
+    @Override
+    public Map<String, String> removeChat() {
+        this.size--;
+        int slot = this.offset + this.size;
+        Map<String, String> removedMap = new Map1L<>();
+        int id = this.speakerIds[slot];
+        removedMap.add("speaker", this.speakerNames[id]);
+        removedMap.add("text", this.texts[slot]);
+        this.postings[id].removeLast();
+        // Drop the reference so the removed text can be collected
+        this.texts[slot] = null;
+        if (this.used == slot + 1) {
+            this.used = slot;
+        }
+        return removedMap;
+    }
+
+    /**
+     * Reset the conversation log to empty.
+     *
+     * @clear this
+     */
+    @Override
+    public void reset() {
+        this.clear();
+    }
+
+    /**
+     * Keeps only entries in [start, end) and deletes all other chat, in
+     * O(speakers · log n) for the postings, plus an amortized compaction.
+     *
+     * @param start
+     *            inclusive index
+     * @param end
+     *            exclusive index (0 ≤ start ≤ end ≤ |#this|)
+     * @updates this
+     * @return this (now containing only the chosen segment)
+     */
+    @Override
+    public ConversationLog segment(int start, int end) {
+        int limit = this.offset + end;
+        // Slots past the window are reused by the next appends, so their
+        // postings go now; postings before the window are just skipped
+        for (int id = 0; id < this.speakerCount; id++) {
+            IndexList postings = this.postings[id];
+            postings.truncate(postings.lowerBound(limit));
+        }
+        this.offset += start;
+        this.size = end - start;
+        if (this.offset + (this.used - limit) > this.size) {
+            this.compact();
+        }
+        return this;
+    }
+
+    // Secondary interface methods
+    /**
+     * Export the chat log to a SimpleWriter.
+     *
+     * @param out
+     *            the SimpleWriter to write to
+     */
+    @Override
+    public void exportChat(SimpleWriter out) {
+        try {
+            // println ends lines with the platform line separator
+            this.render(new SimpleWriterAppendable(out),
+                    System.lineSeparator());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out.close();
+    }
+
+    /**
+     * Import the chat log from a SimpleReader. The whole transcript is read
+     * and its times checked before any entry is appended, so a transcript
+     * that cannot be imported leaves the log unchanged; {@code in} is closed
+     * either way.
+     *
+     * @param in
+     *            the SimpleReader to read from
+     * @throws IllegalArgumentException
+     *             if a time of a timed transcript is before the time of the
+     *             entry before it
+     */
+    @Override
+    public void importChat(SimpleReader in) {
+        String[] newSpeakers = new String[INITIAL_CAPACITY];
+        String[] newTexts = new String[INITIAL_CAPACITY];
+        long[] newTimes = null;
+        int count = 0;
+        try {
+            TranscriptReader transcript = new TranscriptReader(in);
+            String previous = null;
+            while (transcript.next()) {
+                if (count == newTexts.length) {
+                    newSpeakers = Arrays.copyOf(newSpeakers, 2 * count);
+                    newTexts = Arrays.copyOf(newTexts, 2 * count);
+                    if (newTimes != null) {
+                        newTimes = Arrays.copyOf(newTimes, 2 * count);
+                    }
+                }
+                if (newTimes == null && transcript.isTimed()) {
+                    newTimes = new long[newTexts.length];
+                    Arrays.fill(newTimes, NO_TIME);
+                }
+                // Repeated speakers share one name
+                String speaker = this.knownSpeaker(previous, transcript.line(),
+                        transcript.speakerStart(), transcript.speakerEnd());
+                if (speaker == null) {
+                    speaker = transcript.speaker();
+                }
+                previous = speaker;
+                newSpeakers[count] = speaker;
+                newTexts[count] = transcript.text();
+                if (newTimes != null) {
+                    newTimes[count] = transcript.time();
+                }
+                count++;
+            }
+        } finally {
+            in.close();
+        }
+        this.checkTimes(newTimes, count);
+        this.appendBlock(newSpeakers, newTexts, newTimes, count);
+    }
+
+    /**
+     * Import the chat log from a transcript file, parsing byte ranges of the
+     * file in parallel and appending the entries in file order. Produces the
+     * same entries as {@code importChat} on the same file.
+     *
+     * @param fileName
+     *            the transcript file, in the {@code exportChat} format
+     */
+    public void importChatParallel(String fileName) {
+        List<ParallelImport.Block> blocks = ParallelImport.parse(fileName);
+        // Check every time first, so a bad file leaves the log unchanged
+        long last = this.lastTime();
+        for (ParallelImport.Block block : blocks) {
+            long[] blockTimes = block.times();
+            for (int k = 0; blockTimes != null && k < block.count(); k++) {
+                last = checkTime(last, blockTimes[k]);
+            }
+        }
+        for (ParallelImport.Block block : blocks) {
+            this.appendBlock(block.speakers(), block.texts(), block.times(),
+                    block.count());
+        }
+    }
+
+    /**
+     * Convert the entire conversation log to a transcript string.
+     *
+     * @return the transcript string
+     */
+    @Override
+    public String toTranscript() {
+        long length = this.transcriptLength();
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Transcript of " + length
+                    + " chars does not fit in a String; use writeTranscript");
+        }
+        StringBuilder transcript = new StringBuilder((int) length);
+        try {
+            this.render(transcript, LINE_END);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return transcript.toString();
+    }
+
+    /**
+     * Reports the exact number of chars of {@code toTranscript()}.
+     *
+     * @return the length of the transcript
+     */
+    public long transcriptLength() {
+        long length = 0;
+        if (this.times != null) {
+            length += TIMED_HEADER.length() + LINE_END.length();
+        }
+        for (int i = this.offset; i < this.offset + this.size; i++) {
+            length += this.speakerNames[this.speakerIds[i]].length()
+                    + SEPARATOR.length()
+                    + this.texts[i].length() + LINE_END.length();
+            if (this.times != null) {
+                // The mark and the space, around the time if there is one
+                length += 2;
+                if (this.times[i] != NO_TIME) {
+                    length += Long.toString(this.times[i]).length();
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes the transcript to {@code out}, one entry at a time, without
+     * building it in memory. Writes exactly the chars of
+     * {@code toTranscript()}.
+     *
+     * @param out
+     *            where to write the transcript
+     * @throws UncheckedIOException
+     *             if {@code out} cannot be written
+     */
+    public void writeTranscript(Appendable out) {
+        try {
+            this.render(out, LINE_END);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the transcript to {@code channel} as UTF-8, through a buffer
+     * reused by every call on the same thread. Does not close
+     * {@code channel}.
+     *
+     * @param channel
+     *            where to write the transcript
+     * @throws UncheckedIOException
+     *             if {@code channel} cannot be written
+     */
+    public void writeTranscript(WritableByteChannel channel) {
+        try {
+            ChannelAppendable out = new ChannelAppendable(channel);
+            this.render(out, LINE_END);
+            out.drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Search for a substring in the chat log and return the list of indices
+     * where found.
+     *
+     * @param substring
+     *            the substring to search for
+     * @return a sequence of indices where the substring is found
+     */
+    @Override
+    public Sequence<Integer> find(String substring) {
+        Sequence<Integer> indices = new Sequence1L<>();
+        if (this.size > 0 && this.size >= this.parallelThreshold) {
+            int chunks = (this.size + SCAN_CHUNK - 1) / SCAN_CHUNK;
+            IndexList[] results = new IndexList[chunks];
+            ForkJoinPool.commonPool().invoke(new FindTask(this.texts,
+                    this.offset, this.size, substring, results, 0, chunks));
+            // Chunks are in index order, so concatenating them keeps it
+            for (IndexList matches : results) {
+                for (int k = 0; k < matches.length(); k++) {
+                    indices.add(indices.length(), matches.get(k));
+                }
+            }
+        } else {
+            for (int i = 0; i < this.size; i++) {
+                if (this.texts[this.offset + i].contains(substring)) {
+                    indices.add(indices.length(), i);
+                }
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Get all chats from a specific speaker.
+     *
+     * @param speaker
+     *            the speaker whose chats to retrieve
+     * @return a sequence of chats from the specified speaker
+     */
+    @Override
+    public Sequence<String> speakerChat(String speaker) {
+        Sequence<String> chats = new Sequence1L<>();
+        Integer id = this.speakerIdOf.get(speaker);
+        if (id != null) {
+            IndexList postings = this.postings[id];
+            for (int i = postings.lowerBound(this.offset); i < postings
+                    .length(); i++) {
+                chats.add(chats.length(), this.texts[postings.get(i)]);
+            }
+        }
+        return chats;
+    }
+
+    /**
+     * Stream the entries from {@code from} on of {@code speaker}, walking
+     * only the speaker's postings, so reading k entries costs O(log n + k).
+     *
+     * @param speaker
+     *            the speaker to filter by
+     * @param from
+     *            index where the search starts (0 ≤ from ≤ |this|)
+     * @return an ordered stream of the entries of {@code speaker}
+     */
+    @Override
+    public Stream<LogEntry> speakerChatStream(String speaker, int from) {
+        Stream<LogEntry> entries = Stream.empty();
+        Integer id = this.speakerIdOf.get(speaker);
+        if (id != null) {
+            IndexList postings = this.postings[id];
+            int base = this.offset;
+            entries = IntStream
+                    .range(postings.lowerBound(base + from), postings.length())
+                    .mapToObj(j -> this.entryAt(postings.get(j) - base));
+        }
+        return entries;
+    }
+
+    // Timestamps
+    /**
+     * Reports whether some entry was appended with a time.
+     *
+     * @return true if the log has a time column
+     */
+    @Override
+    public final boolean isTimed() {
+        return this.times != null;
+    }
+
+    /**
+     * Reports the time of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the time of entry {@code i}, or {@code NO_TIME}
+     */
+    @Override
+    public final long timeAt(int i) {
+        long time = NO_TIME;
+        if (this.times != null) {
+            time = this.times[this.offset + i];
+        }
+        return time;
+    }
+
+    /**
+     * Reports the index of the first entry at or after {@code time}, by
+     * binary search, in O(log n).
+     *
+     * @param time
+     *            the time to look for
+     * @return the least index whose time is at least {@code time}, or |this|
+     *         if there is none
+     */
+    public final int indexOfTime(long time) {
+        int low = 0;
+        int high = this.size;
+        if (this.times == null) {
+            if (time > NO_TIME) {
+                low = this.size;
+            }
+        } else {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.times[this.offset + mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Report the indices of the entries whose time is in [from, to), in
+     * O(log n + k) for k entries.
+     *
+     * @param from
+     *            inclusive time
+     * @param to
+     *            exclusive time
+     * @return a sequence of the ascending indices of those entries
+     */
+    public Sequence<Integer> rangeByTime(long from, long to) {
+        Sequence<Integer> indices = new Sequence1L<>();
+        int start = this.indexOfTime(from);
+        int end = this.indexOfTime(to);
+        for (int i = start; i < end; i++) {
+            indices.add(indices.length(), i);
+        }
+        return indices;
+    }
+
+    /**
+     * Keeps only the entries whose time is in [from, to), with the semantics
+     * of {@code segment}.
+     *
+     * @param from
+     *            inclusive time
+     * @param to
+     *            exclusive time
+     * @updates this
+     * @return this (now containing only the chosen entries)
+     */
+    public ConversationLog segmentByTime(long from, long to) {
+        int start = this.indexOfTime(from);
+        return this.segment(start, Math.max(start, this.indexOfTime(to)));
+    }
+
+    // Parallel scans
+    /**
+     * Report the number of entries from which {@code find} scans in
+     * parallel.
+     *
+     * @return the parallel scan threshold
+     */
+    public final int parallelThreshold() {
+        return this.parallelThreshold;
+    }
+
+    /**
+     * Sets the number of entries from which {@code find} scans in parallel;
+     * use 0 to always scan in parallel and {@link Integer#MAX_VALUE} to never
+     * do so.
+     *
+     * @param threshold
+     *            the new parallel scan threshold (threshold ≥ 0)
+     * @updates this
+     */
+    public final void setParallelThreshold(int threshold) {
+        this.parallelThreshold = threshold;
+    }
+
+    // Speaker queries
+    /**
+     * Report every speaker that has at least one entry in the log, in order
+     * of first appearance.
+     *
+     * @return a sequence of the distinct speakers of the log
+     */
+    public Sequence<String> speakers() {
+        // Each present speaker as (first slot, id), sorted by first slot
+        long[] firsts = new long[this.speakerCount];
+        int present = 0;
+        for (int id = 0; id < this.speakerCount; id++) {
+            IndexList postings = this.postings[id];
+            int first = postings.lowerBound(this.offset);
+            if (first < postings.length()) {
+                firsts[present] = (long) postings.get(first) << Integer.SIZE
+                        | id;
+                present++;
+            }
+        }
+        Arrays.sort(firsts, 0, present);
+        Sequence<String> names = new Sequence1L<>();
+        for (int k = 0; k < present; k++) {
+            names.add(names.length(), this.speakerNames[(int) firsts[k]]);
+        }
+        return names;
+    }
+
+    /**
+     * Report the number of entries from a specific speaker.
+     *
+     * @param speaker
+     *            the speaker whose entries to count
+     * @return the number of entries from {@code speaker}
+     */
+    public int countBySpeaker(String speaker) {
+        int count = 0;
+        Integer id = this.speakerIdOf.get(speaker);
+        if (id != null) {
+            IndexList postings = this.postings[id];
+            count = postings.length() - postings.lowerBound(this.offset);
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,779 @@
+package conversationLog;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Compact, versioned binary file format for a ConversationLog.
+ *
+ * <p>
+ * Unlike the {@code speaker: text} lines of {@code exportChat}, the format is
+ * lossless (texts may hold line breaks, speakers may hold {@code ": "}) and
+ * loads without parsing. Layout, with every length and id an unsigned LEB128
+ * varint and every string UTF-8:
+ * </p>
+ *
+ * <pre>
+ * header   int magic "CLOG", byte version, byte flags
+ * record*  varint tag = (speakerId + 1) * 2 + isNewSpeaker, then, when
+ *          isNewSpeaker, varint length + name (inline speaker dictionary),
+ *          then varint length + text, then, when flags has TIMED, varlong
+ *          time - previous time (the previous time of the first record
+ *          being NO_TIME)
+ * end      varint 0
+ * footer   varint speakerCount, (varint length + name)*  (whole dictionary)
+ *          long offset of each name                     (speaker table)
+ *          long offset of each record                   (offset table)
+ * trailer  long dictionary offset, long offset table offset, long entry count,
+ *          int magic "CLOG"
+ * </pre>
+ *
+ * <p>
+ * A {@link Writer} and a {@link Reader} stream the format in one pass, and
+ * the trailer lets {@link #readEntry(String, long)} seek to any entry and its
+ * speaker, reading each with one buffered read. Times
+ * never decrease, so their deltas are unsigned and usually one or two bytes.
+ * Version 1 files, which have no flags byte, times or speaker table, still
+ * load.
+ * </p>
+ */
+public final class ConversationLogBinary {
+
+    /**
+     * Magic number at both ends of a file: "CLOG" in ASCII.
+     */
+    private static final int MAGIC = 0x434C4F47;
+
+    /**
+     * Version of the format written by this class.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Version of the format without a flags byte.
+     */
+    private static final int VERSION_UNTIMED = 1;
+
+    /**
+     * Bit of the header flags set when every record carries a time.
+     */
+    private static final int TIMED = 1;
+
+    /**
+     * Bytes of the fixed-size trailer.
+     */
+    private static final int TRAILER_BYTES = 3 * Long.BYTES + Integer.BYTES;
+
+    /**
+     * Most bytes of one varint.
+     */
+    private static final int VARINT_MAX_BYTES = 5;
+
+    /**
+     * Bytes of the header.
+     */
+    private static final int HEADER_BYTES = Integer.BYTES + 2;
+
+    /**
+     * Payload bits of one varint byte.
+     */
+    private static final int VARINT_BITS = 7;
+
+    /**
+     * Mask of the payload bits of one varint byte.
+     */
+    private static final int VARINT_PAYLOAD = 0x7F;
+
+    /**
+     * Mask of the payload bits of one varlong byte.
+     */
+    private static final long VARLONG_PAYLOAD = 0x7FL;
+
+    /**
+     * Flag marking a varint byte that is followed by another one.
+     */
+    private static final int VARINT_MORE = 0x80;
+
+    /**
+     * Number of entries a load collects before each bulk copy into the log.
+     */
+    private static final int LOAD_BATCH = 4096;
+
+    /**
+     * Bit of a record tag set when the record introduces its speaker.
+     */
+    private static final int NEW_SPEAKER = 1;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ConversationLogBinary() {
+    }
+
+    /**
+     * Streams entries into the binary format.
+     */
+    public static final class Writer {
+
+        /**
+         * The stream written to.
+         */
+        private final DataOutputStream out;
+
+        /**
+         * Number of bytes written so far.
+         */
+        private long position;
+
+        /**
+         * Id of each speaker written so far.
+         */
+        private final HashMap<String, Integer> speakerIds;
+
+        /**
+         * Speakers written so far, by id.
+         */
+        private final List<String> speakers;
+
+        /**
+         * Offset of each record written so far.
+         */
+        private long[] offsets;
+
+        /**
+         * Number of records written so far.
+         */
+        private int count;
+
+        /**
+         * Whether every record carries a time.
+         */
+        private final boolean timed;
+
+        /**
+         * Time of the last record written.
+         */
+        private long lastTime;
+
+        /**
+         * Constructor: starts an untimed binary log on {@code out} by writing
+         * its header.
+         *
+         * @param out
+         *            the stream to write to; closed by {@link #close()}
+         */
+        public Writer(OutputStream out) {
+            this(out, false);
+        }
+
+        /**
+         * Constructor: starts a binary log on {@code out} by writing its
+         * header.
+         *
+         * @param out
+         *            the stream to write to; closed by {@link #close()}
+         * @param timed
+         *            whether every record carries a time
+         */
+        public Writer(OutputStream out, boolean timed) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.position = 0;
+            this.speakerIds = new HashMap<>();
+            this.speakers = new ArrayList<>();
+            this.offsets = new long[LOAD_BATCH];
+            this.count = 0;
+            this.timed = timed;
+            this.lastTime = ConversationLog1A.NO_TIME;
+            int flags = 0;
+            if (timed) {
+                flags |= TIMED;
+            }
+            try {
+                this.out.writeInt(MAGIC);
+                this.out.writeByte(VERSION);
+                this.out.writeByte(flags);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.position = HEADER_BYTES;
+        }
+
+        /**
+         * Writes an unsigned varint.
+         *
+         * @param value
+         *            the value to write (value ≥ 0)
+         * @throws IOException
+         *             if the stream cannot be written
+         */
+        private void writeVarint(int value) throws IOException {
+            int rest = value;
+            while ((rest & ~VARINT_PAYLOAD) != 0) {
+                this.out.writeByte((rest & VARINT_PAYLOAD) | VARINT_MORE);
+                rest >>>= VARINT_BITS;
+                this.position++;
+            }
+            this.out.writeByte(rest);
+            this.position++;
+        }
+
+        /**
+         * Writes an unsigned varlong.
+         *
+         * @param value
+         *            the value to write, read as unsigned
+         * @throws IOException
+         *             if the stream cannot be written
+         */
+        private void writeVarlong(long value) throws IOException {
+            long rest = value;
+            while ((rest & ~VARLONG_PAYLOAD) != 0) {
+                this.out.writeByte((int) (rest & VARLONG_PAYLOAD) | VARINT_MORE);
+                rest >>>= VARINT_BITS;
+                this.position++;
+            }
+            this.out.writeByte((int) rest);
+            this.position++;
+        }
+
+        /**
+         * Writes a length-prefixed UTF-8 string.
+         *
+         * @param s
+         *            the string to write
+         * @throws IOException
+         *             if the stream cannot be written
+         */
+        private void writeString(String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            this.writeVarint(bytes.length);
+            this.out.write(bytes);
+            this.position += bytes.length;
+        }
+
+        /**
+         * Writes one entry, with the time of the entry before it if the log is
+         * timed.
+         *
+         * @param speaker
+         *            non-null/non-empty
+         * @param text
+         *            non-null
+         */
+        public void append(String speaker, String text) {
+            this.append(speaker, text, ConversationLog1A.NO_TIME);
+        }
+
+        /**
+         * Writes one entry with its time; the time is dropped if the log is
+         * untimed.
+         *
+         * @param speaker
+         *            non-null/non-empty
+         * @param text
+         *            non-null
+         * @param time
+         *            the time of the entry, or {@code NO_TIME} for the time of
+         *            the entry before it
+         * @throws IllegalArgumentException
+         *             if {@code time} is before the time of the entry before
+         */
+        public void append(String speaker, String text, long time) {
+            long checked = ConversationLog1A.checkTime(this.lastTime, time);
+            try {
+                if (this.count == this.offsets.length) {
+                    this.offsets = Arrays.copyOf(this.offsets, 2 * this.count);
+                }
+                this.offsets[this.count] = this.position;
+                this.count++;
+                Integer id = this.speakerIds.get(speaker);
+                if (id == null) {
+                    id = this.speakers.size();
+                    this.speakerIds.put(speaker, id);
+                    this.speakers.add(speaker);
+                    this.writeVarint(((id + 1) << 1) | NEW_SPEAKER);
+                    this.writeString(speaker);
+                } else {
+                    this.writeVarint((id + 1) << 1);
+                }
+                this.writeString(text);
+                if (this.timed) {
+                    this.writeVarlong(checked - this.lastTime);
+                    this.lastTime = checked;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Writes the end marker, the footer and the trailer, then closes the
+         * stream.
+         */
+        public void close() {
+            try {
+                this.writeVarint(0);
+                long dictionaryOffset = this.position;
+                this.writeVarint(this.speakers.size());
+                long[] nameOffsets = new long[this.speakers.size()];
+                for (int id = 0; id < nameOffsets.length; id++) {
+                    nameOffsets[id] = this.position;
+                    this.writeString(this.speakers.get(id));
+                }
+                for (long nameOffset : nameOffsets) {
+                    this.out.writeLong(nameOffset);
+                    this.position += Long.BYTES;
+                }
+                long tableOffset = this.position;
+                for (int i = 0; i < this.count; i++) {
+                    this.out.writeLong(this.offsets[i]);
+                }
+                this.out.writeLong(dictionaryOffset);
+                this.out.writeLong(tableOffset);
+                this.out.writeLong(this.count);
+                this.out.writeInt(MAGIC);
+                this.out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Streams entries out of the binary format, one at a time.
+     */
+    public static final class Reader {
+
+        /**
+         * The stream read from.
+         */
+        private final DataInputStream in;
+
+        /**
+         * Speakers read so far, by id.
+         */
+        private final List<String> speakers;
+
+        /**
+         * Buffer reused to decode strings.
+         */
+        private byte[] buffer;
+
+        /**
+         * Speaker of the current entry.
+         */
+        private String speaker;
+
+        /**
+         * Text of the current entry.
+         */
+        private String text;
+
+        /**
+         * Time of the current entry.
+         */
+        private long time;
+
+        /**
+         * Whether every record carries a time.
+         */
+        private final boolean timed;
+
+        /**
+         * Whether the end marker has been read.
+         */
+        private boolean done;
+
+        /**
+         * Constructor: starts reading a binary log from {@code in} by checking
+         * its header.
+         *
+         * @param in
+         *            the stream to read from; closed by {@link #close()}
+         */
+        public Reader(InputStream in) {
+            this.in = new DataInputStream(new BufferedInputStream(in));
+            this.speakers = new ArrayList<>();
+            this.buffer = new byte[LOAD_BATCH];
+            this.done = false;
+            this.time = ConversationLog1A.NO_TIME;
+            int flags = 0;
+            try {
+                if (this.in.readInt() != MAGIC) {
+                    throw new IOException("Not a ConversationLog binary file");
+                }
+                int version = this.in.readUnsignedByte();
+                if (version == VERSION) {
+                    flags = this.in.readUnsignedByte();
+                } else if (version != VERSION_UNTIMED) {
+                    throw new IOException("Unsupported version " + version);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.timed = (flags & TIMED) != 0;
+        }
+
+        /**
+         * Reports whether the records carry times.
+         *
+         * @return true if the log was written timed
+         */
+        public boolean isTimed() {
+            return this.timed;
+        }
+
+        /**
+         * Reads the next entry, if any; its speaker and text are then reported
+         * by {@link #speaker()} and {@link #text()}.
+         *
+         * @return true if an entry was read, false at the end of the log
+         */
+        public boolean next() {
+            try {
+                if (!this.done) {
+                    int tag = readVarint(this.in);
+                    if (tag == 0) {
+                        this.done = true;
+                    } else {
+                        if ((tag & NEW_SPEAKER) != 0) {
+                            this.speakers.add(this.readString());
+                        }
+                        this.speaker = this.speakers.get((tag >>> 1) - 1);
+                        this.text = this.readString();
+                        if (this.timed) {
+                            this.time += readVarlong(this.in);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return !this.done;
+        }
+
+        /**
+         * Report the speaker of the current entry.
+         *
+         * @return the speaker of the last entry read by {@link #next()}
+         */
+        public String speaker() {
+            return this.speaker;
+        }
+
+        /**
+         * Report the text of the current entry.
+         *
+         * @return the text of the last entry read by {@link #next()}
+         */
+        public String text() {
+            return this.text;
+        }
+
+        /**
+         * Report the time of the current entry.
+         *
+         * @return the time of the last entry read by {@link #next()}, or
+         *         {@code NO_TIME} if the log is untimed
+         */
+        public long time() {
+            return this.time;
+        }
+
+        /**
+         * Closes the stream.
+         */
+        public void close() {
+            try {
+                this.in.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Reads a length-prefixed UTF-8 string.
+         *
+         * @return the string read
+         * @throws IOException
+         *             if the stream cannot be read
+         */
+        private String readString() throws IOException {
+            int length = readVarint(this.in);
+            if (this.buffer.length < length) {
+                this.buffer = new byte[Math.max(length, 2 * this.buffer.length)];
+            }
+            this.in.readFully(this.buffer, 0, length);
+            return new String(this.buffer, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param in
+     *            the stream to read from
+     * @return the value read
+     * @throws IOException
+     *             if the stream cannot be read
+     */
+    private static int readVarint(DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b = VARINT_MORE;
+        while ((b & VARINT_MORE) != 0) {
+            b = in.readUnsignedByte();
+            value |= (b & VARINT_PAYLOAD) << shift;
+            shift += VARINT_BITS;
+        }
+        return value;
+    }
+
+    /**
+     * Reads an unsigned varlong.
+     *
+     * @param in
+     *            the stream to read from
+     * @return the value read, as unsigned
+     * @throws IOException
+     *             if the stream cannot be read
+     */
+    private static long readVarlong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b = VARINT_MORE;
+        while ((b & VARINT_MORE) != 0) {
+            b = in.readUnsignedByte();
+            value |= (b & VARLONG_PAYLOAD) << shift;
+            shift += VARINT_BITS;
+        }
+        return value;
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     *
+     * @param in
+     *            the stream to read from
+     * @return the string read
+     * @throws IOException
+     *             if the stream cannot be read
+     */
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarint(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes every entry of {@code log} to {@code fileName} in the binary
+     * format, with their times if the log is timed.
+     *
+     * @param log
+     *            the log to save
+     * @param fileName
+     *            the file to write, replaced if it exists
+     */
+    public static void save(ConversationLog1A log, String fileName) {
+        // The file is closed even if a write fails before the footer
+        try (FileOutputStream file = new FileOutputStream(fileName)) {
+            Writer writer = new Writer(file, log.isTimed());
+            for (int i = 0; i < log.length(); i++) {
+                writer.append(log.speakerAt(i), log.textAt(i), log.timeAt(i));
+            }
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends every entry of the binary file {@code fileName} to {@code log},
+     * with their times if the file is timed, copying them into the log in
+     * bulk batches.
+     *
+     * @param fileName
+     *            the file to read
+     * @param log
+     *            the log to load into
+     * @updates log
+     */
+    public static void load(String fileName, ConversationLog1A log) {
+        // The file is closed even if it is corrupt or a time is rejected
+        try (FileInputStream file = new FileInputStream(fileName)) {
+            Reader reader = new Reader(file);
+            String[] speakers = new String[LOAD_BATCH];
+            String[] texts = new String[LOAD_BATCH];
+            long[] times = null;
+            if (reader.isTimed()) {
+                times = new long[LOAD_BATCH];
+            }
+            int count = 0;
+            while (reader.next()) {
+                speakers[count] = reader.speaker();
+                texts[count] = reader.text();
+                if (times != null) {
+                    times[count] = reader.time();
+                }
+                count++;
+                if (count == LOAD_BATCH) {
+                    log.appendBlock(speakers, texts, times, count);
+                    count = 0;
+                }
+            }
+            log.appendBlock(speakers, texts, times, count);
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads {@code length} bytes of {@code file} at {@code offset} with one
+     * read.
+     *
+     * @param file
+     *            the file to read
+     * @param offset
+     *            the position of the first byte
+     * @param length
+     *            the number of bytes to read
+     * @return a stream over the bytes read
+     * @throws IOException
+     *             if the bytes cannot be read
+     */
+    private static DataInputStream readAt(RandomAccessFile file, long offset,
+            long length) throws IOException {
+        if (offset < 0 || length < 0 || length > Integer.MAX_VALUE
+                || offset + length > file.length()) {
+            throw new IOException("Corrupt ConversationLog binary file");
+        }
+        byte[] bytes = new byte[(int) length];
+        file.seek(offset);
+        file.readFully(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Reads the name of speaker {@code id} from the footer of
+     * {@code file}: through the speaker table in version 2, by a scan of the
+     * dictionary, read whole, in version 1.
+     *
+     * @param file
+     *            the file to read
+     * @param version
+     *            the format version of the file
+     * @param dictionaryOffset
+     *            the position of the dictionary
+     * @param tableOffset
+     *            the position of the offset table
+     * @param id
+     *            the speaker id
+     * @return the name of the speaker
+     * @throws IOException
+     *             if the name cannot be read
+     */
+    private static String speakerName(RandomAccessFile file, int version,
+            long dictionaryOffset, long tableOffset, int id) throws IOException {
+        String name;
+        if (version == VERSION_UNTIMED) {
+            DataInputStream in = readAt(file, dictionaryOffset,
+                    tableOffset - dictionaryOffset);
+            readVarint(in);
+            for (int i = 0; i < id; i++) {
+                in.skipBytes(readVarint(in));
+            }
+            name = readString(in);
+        } else {
+            int speakerCount = readVarint(readAt(file, dictionaryOffset,
+                    Math.min(VARINT_MAX_BYTES, tableOffset - dictionaryOffset)));
+            long speakerTable = tableOffset - (long) speakerCount * Long.BYTES;
+            if (id >= speakerCount) {
+                throw new IOException("Corrupt ConversationLog binary file");
+            }
+            DataInputStream offsets = readAt(file,
+                    speakerTable + (long) id * Long.BYTES, 2 * Long.BYTES);
+            long nameOffset = offsets.readLong();
+            long nameEnd = speakerTable;
+            if (id + 1 < speakerCount) {
+                nameEnd = offsets.readLong();
+            }
+            name = readString(readAt(file, nameOffset, nameEnd - nameOffset));
+        }
+        return name;
+    }
+
+    /**
+     * Reads entry {@code index} of the binary file {@code fileName} through
+     * its offset table, without reading the other entries. The record, and
+     * the name of its speaker when the record does not hold it, are each
+     * read with one buffered read.
+     *
+     * @param fileName
+     *            the file to read
+     * @param index
+     *            the entry index (0 ≤ index < entry count of the file)
+     * @return the entry encoded as a Map<String,String> with keys "speaker",
+     *         "text", like {@code removeChat}
+     */
+    public static Map<String, String> readEntry(String fileName, long index) {
+        Map<String, String> entry = new Map1L<>();
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            DataInputStream trailer = readAt(file,
+                    file.length() - TRAILER_BYTES, TRAILER_BYTES);
+            long dictionaryOffset = trailer.readLong();
+            long tableOffset = trailer.readLong();
+            long count = trailer.readLong();
+            if (trailer.readInt() != MAGIC || index < 0 || index >= count) {
+                throw new EOFException("No entry " + index + " in " + fileName);
+            }
+            int version = readAt(file, Integer.BYTES, 1).readUnsignedByte();
+            // A record ends where the next one starts, the last one at the
+            // end marker just before the dictionary
+            DataInputStream offsets = readAt(file,
+                    tableOffset + index * Long.BYTES, 2 * Long.BYTES);
+            long recordOffset = offsets.readLong();
+            long recordEnd = dictionaryOffset - 1;
+            if (index + 1 < count) {
+                recordEnd = offsets.readLong();
+            }
+            DataInputStream record = readAt(file, recordOffset,
+                    recordEnd - recordOffset);
+            int tag = readVarint(record);
+            String speaker;
+            if ((tag & NEW_SPEAKER) != 0) {
+                speaker = readString(record);
+            } else {
+                speaker = speakerName(file, version, dictionaryOffset,
+                        tableOffset, (tag >>> 1) - 1);
+            }
+            String text = readString(record);
+            entry.add("speaker", speaker);
+            entry.add("text", text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return entry;
+    }
+
+}
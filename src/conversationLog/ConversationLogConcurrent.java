@@ -0,0 +1,983 @@
+package conversationLog;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+import components.simplereader.SimpleReader;
+import components.simplewriter.SimpleWriter;
+
+/**
+ * Thread-safe implementation of ConversationLog for many concurrent writers.
+ *
+ * <p>
+ * Entries live in fixed-size chunks. {@code append} claims the next slot with
+ * one compare-and-set on an atomic tail, fills it, and then publishes it by
+ * advancing a counter in slot order, so appends from different threads never
+ * block each other except to keep publication in order. Readers
+ * ({@code length}, {@code find}, {@code speakerChat}, {@code toTranscript},
+ * {@code exportChat}) take no lock: they read the published count once and see
+ * exactly that prefix of the log, while writers keep appending after it. The
+ * lazy reads ({@code entryAt}, {@code entryIterator}, {@code entries},
+ * {@code page}, {@code findStream}, {@code speakerChatStream}) and the
+ * multi-pattern searches likewise read one state when called and keep
+ * reading it, so a concurrent {@code segment} or {@code removeChat} cannot
+ * shift the entries under them.
+ * </p>
+ *
+ * <p>
+ * {@code removeChat}, {@code segment} and {@code clear} are linearizable: each
+ * seals the current state so that no new slot can be claimed, waits for the
+ * appends already claimed to be published, builds the new state and swaps it
+ * in. Appends that find the state sealed retry on its replacement. Full chunks
+ * are shared with the new state and only the chunk holding its last entry is
+ * copied, so readers still working on the old state keep seeing it unchanged.
+ * Such an operation therefore removes or keeps exactly the entries published
+ * when it sealed the state, and never loses an append. Its preconditions are
+ * checked against that sealed state too: a {@code removeChat} on a log
+ * emptied meanwhile, or a {@code segment} whose bounds a concurrent removal
+ * made stale, throws {@code IndexOutOfBoundsException} and still installs
+ * an unsealed copy of the state.
+ * </p>
+ *
+ * <p>
+ * {@code importChat} appends one entry at a time, so its entries can
+ * interleave with those of other writers. {@code transferFrom} must not run
+ * concurrently with other operations on {@code source}.
+ * </p>
+ */
+public class ConversationLogConcurrent implements ConversationLog {
+
+    /**
+     * Bits of the slot number inside one chunk.
+     */
+    private static final int CHUNK_BITS = 10;
+
+    /**
+     * Number of entries per chunk.
+     */
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /**
+     * Mask extracting the slot number inside one chunk.
+     */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Initial number of chunk references in a directory.
+     */
+    private static final int INITIAL_DIRECTORY = 4;
+
+    /**
+     * Bit of the tail that marks a sealed state.
+     */
+    private static final int SEALED = Integer.MIN_VALUE;
+
+    /**
+     * Number of busy spins before a waiting thread starts yielding, so that a
+     * writer preempted between claim and publish gets the CPU back.
+     */
+    private static final int SPIN_LIMIT = 64;
+
+    /**
+     * A fixed-size block of entries.
+     */
+    private static final class Chunk {
+
+        /**
+         * Speaker of each slot.
+         */
+        private final String[] speakers = new String[CHUNK_SIZE];
+
+        /**
+         * Text of each slot.
+         */
+        private final String[] texts = new String[CHUNK_SIZE];
+    }
+
+    /**
+     * One version of the log. Slot {@code base + i} holds entry i, slots
+     * [base, published) are visible to readers and slots [published, tail)
+     * are being filled.
+     */
+    private static final class State {
+
+        /**
+         * Slot of entry 0, inside the first chunk.
+         */
+        private final int base;
+
+        /**
+         * One past the last claimed slot, with the SEALED bit once sealed.
+         */
+        private final AtomicInteger tail;
+
+        /**
+         * One past the last published slot; every slot before it is filled.
+         */
+        private final AtomicInteger published;
+
+        /**
+         * The chunks, chunk k holding slots [k * CHUNK_SIZE, (k + 1) *
+         * CHUNK_SIZE); replaced by a larger copy when full.
+         */
+        private volatile AtomicReferenceArray<Chunk> directory;
+
+        /**
+         * Constructor for State.
+         *
+         * @param base
+         *            slot of entry 0
+         * @param limit
+         *            one past the last filled slot
+         * @param directory
+         *            the chunks holding slots [0, limit)
+         */
+        State(int base, int limit, AtomicReferenceArray<Chunk> directory) {
+            this.base = base;
+            this.tail = new AtomicInteger(limit);
+            this.published = new AtomicInteger(limit);
+            this.directory = directory;
+        }
+
+        /**
+         * Constructor for an empty State.
+         */
+        State() {
+            this(0, 0, new AtomicReferenceArray<>(INITIAL_DIRECTORY));
+        }
+
+        /**
+         * Claims the next {@code count} slots.
+         *
+         * @param count
+         *            the number of slots to claim
+         * @return the first claimed slot, or -1 if this state is sealed
+         */
+        int claim(int count) {
+            int slot = this.tail.get();
+            while (slot >= 0
+                    && !this.tail.compareAndSet(slot, slot + count)) {
+                slot = this.tail.get();
+            }
+            return Math.max(slot, -1);
+        }
+
+        /**
+         * Reports the chunk holding {@code slot}, allocating it (and growing
+         * the directory) if needed.
+         *
+         * @param slot
+         *            a claimed slot
+         * @return the chunk holding {@code slot}
+         */
+        Chunk chunkFor(int slot) {
+            int index = slot >>> CHUNK_BITS;
+            AtomicReferenceArray<Chunk> dir = this.directory;
+            Chunk chunk = null;
+            if (index < dir.length()) {
+                chunk = dir.get(index);
+            }
+            if (chunk == null) {
+                synchronized (this) {
+                    dir = this.directory;
+                    if (index >= dir.length()) {
+                        AtomicReferenceArray<Chunk> grown = new AtomicReferenceArray<>(
+                                Math.max(index + 1, 2 * dir.length()));
+                        for (int k = 0; k < dir.length(); k++) {
+                            grown.set(k, dir.get(k));
+                        }
+                        dir = grown;
+                        this.directory = grown;
+                    }
+                    chunk = dir.get(index);
+                    if (chunk == null) {
+                        chunk = new Chunk();
+                        dir.set(index, chunk);
+                    }
+                }
+            }
+            return chunk;
+        }
+
+        /**
+         * Makes slots [first, first + count) visible together, once every
+         * slot before them is.
+         *
+         * @param first
+         *            the first of the claimed and filled slots
+         * @param count
+         *            the number of slots
+         */
+        void publish(int first, int count) {
+            int spins = 0;
+            while (this.published.get() != first) {
+                spins = backOff(spins);
+            }
+            this.published.set(first + count);
+        }
+
+        /**
+         * Reports the speaker of {@code slot}.
+         *
+         * @param dir
+         *            the directory read after the published count
+         * @param slot
+         *            a published slot
+         * @return the speaker of {@code slot}
+         */
+        static String speakerAt(AtomicReferenceArray<Chunk> dir, int slot) {
+            return dir.get(slot >>> CHUNK_BITS).speakers[slot & CHUNK_MASK];
+        }
+
+        /**
+         * Reports the text of {@code slot}.
+         *
+         * @param dir
+         *            the directory read after the published count
+         * @param slot
+         *            a published slot
+         * @return the text of {@code slot}
+         */
+        static String textAt(AtomicReferenceArray<Chunk> dir, int slot) {
+            return dir.get(slot >>> CHUNK_BITS).texts[slot & CHUNK_MASK];
+        }
+    }
+
+    /**
+     * The entries published in one state when it was read: entry i is slot
+     * {@code base + i} of {@code dir}, for 0 ≤ i < {@code length}.
+     */
+    private static final class Snapshot {
+
+        /**
+         * Slot of entry 0.
+         */
+        private final int base;
+
+        /**
+         * Number of entries.
+         */
+        private final int length;
+
+        /**
+         * The directory, read after the published count.
+         */
+        private final AtomicReferenceArray<Chunk> dir;
+
+        /**
+         * Constructor for Snapshot.
+         *
+         * @param state
+         *            the state to read
+         */
+        Snapshot(State state) {
+            this.base = state.base;
+            this.length = state.published.get() - state.base;
+            this.dir = state.directory;
+        }
+
+        /**
+         * Reports the speaker of entry {@code i}.
+         *
+         * @param i
+         *            the entry index (0 ≤ i < length)
+         * @return the speaker of entry {@code i}
+         */
+        String speakerAt(int i) {
+            return State.speakerAt(this.dir, this.base + i);
+        }
+
+        /**
+         * Reports the text of entry {@code i}.
+         *
+         * @param i
+         *            the entry index (0 ≤ i < length)
+         * @return the text of entry {@code i}
+         */
+        String textAt(int i) {
+            return State.textAt(this.dir, this.base + i);
+        }
+
+        /**
+         * Reports entry {@code i} as a LogEntry.
+         *
+         * @param i
+         *            the entry index (0 ≤ i < length)
+         * @return entry {@code i}
+         */
+        LogEntry entryAt(int i) {
+            return new LogEntry(i, this.speakerAt(i), this.textAt(i));
+        }
+
+        /**
+         * Checks that entries [from, to) are in this snapshot.
+         *
+         * @param from
+         *            inclusive index
+         * @param to
+         *            exclusive index
+         */
+        void checkRange(int from, int to) {
+            if (from < 0 || from > to) {
+                throw new IndexOutOfBoundsException(
+                        "Invalid range [" + from + ", " + to + ")");
+            }
+            if (to > this.length) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * The current version of the log.
+     */
+    private volatile State state;
+
+    /**
+     * Constructor for ConversationLogConcurrent.
+     */
+    public ConversationLogConcurrent() {
+        this.state = new State();
+    }
+
+    /**
+     * Seals the current state and waits until every slot claimed in it is
+     * published. Until the caller installs a new state, every other writer
+     * waits.
+     *
+     * @return the sealed state, all of whose claimed slots are published
+     */
+    private State seal() {
+        State sealed = null;
+        while (sealed == null) {
+            State current = this.state;
+            int tail = current.tail.get();
+            if (tail >= 0) {
+                if (current.tail.compareAndSet(tail, tail | SEALED)) {
+                    int spins = 0;
+                    while (current.published.get() != tail) {
+                        spins = backOff(spins);
+                    }
+                    sealed = current;
+                }
+            } else {
+                this.awaitReplacement(current);
+            }
+        }
+        return sealed;
+    }
+
+    /**
+     * Installs the state that replaces {@code sealed}, or, if the operation
+     * that sealed it failed before building one, a copy of {@code sealed}
+     * itself, so that no writer waits on a sealed state forever.
+     *
+     * @param sealed
+     *            the sealed current state, all of whose claimed slots are
+     *            published
+     * @param replacement
+     *            the new state, or null if the operation failed
+     * @updates this.state
+     */
+    private void install(State sealed, State replacement) {
+        State next = replacement;
+        if (next == null) {
+            next = slice(sealed, sealed.base, sealed.published.get());
+        }
+        this.state = next;
+    }
+
+    /**
+     * Waits until {@code sealed} is no longer the current state.
+     *
+     * @param sealed
+     *            a sealed state
+     */
+    private void awaitReplacement(State sealed) {
+        int spins = 0;
+        while (this.state == sealed) {
+            spins = backOff(spins);
+        }
+    }
+
+    /**
+     * Waits a little: spins at first, then yields the CPU.
+     *
+     * @param spins
+     *            the number of times the caller already waited
+     * @return {@code spins + 1}
+     */
+    private static int backOff(int spins) {
+        if (spins < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+        return spins + 1;
+    }
+
+    /**
+     * Builds a state holding slots [from, to) of a sealed state. Chunks full
+     * of kept entries are shared; the chunk holding the last kept entry is
+     * copied, since the new state will append into it.
+     *
+     * @param sealed
+     *            a sealed state, all of whose claimed slots are published
+     * @param from
+     *            first slot to keep
+     * @param to
+     *            one past the last slot to keep (from ≤ to)
+     * @return the new state
+     */
+    private static State slice(State sealed, int from, int to) {
+        State sliced;
+        if (from == to) {
+            sliced = new State();
+        } else {
+            AtomicReferenceArray<Chunk> dir = sealed.directory;
+            int first = from >>> CHUNK_BITS;
+            int chunks = ((to - 1) >>> CHUNK_BITS) - first + 1;
+            AtomicReferenceArray<Chunk> kept = new AtomicReferenceArray<>(
+                    Math.max(INITIAL_DIRECTORY, chunks));
+            for (int k = 0; k < chunks; k++) {
+                kept.set(k, dir.get(first + k));
+            }
+            int inLast = to & CHUNK_MASK;
+            if (inLast != 0) {
+                Chunk last = dir.get(first + chunks - 1);
+                Chunk copy = new Chunk();
+                System.arraycopy(last.speakers, 0, copy.speakers, 0, inLast);
+                System.arraycopy(last.texts, 0, copy.texts, 0, inLast);
+                kept.set(chunks - 1, copy);
+            }
+            int shift = first << CHUNK_BITS;
+            sliced = new State(from - shift, to - shift, kept);
+        }
+        return sliced;
+    }
+
+    // Standard interface methods
+    /**
+     * Returns a new object with the same <i>dynamic</i> type as {@code this},
+     * having an initial value.
+     */
+    @Override
+    public ConversationLogConcurrent newInstance() {
+        return new ConversationLogConcurrent();
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     */
+    @Override
+    public void clear() {
+        this.seal();
+        this.state = new State();
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value; the declaration notwithstanding, the
+     * <i>dynamic</i> type of {@code source} must be the same as the
+     * <i>dynamic</i> type of {@code this}.
+     */
+    @Override
+    public void transferFrom(ConversationLog source) {
+        if (this != source) {
+            ConversationLogConcurrent that = (ConversationLogConcurrent) source;
+            State taken = that.seal();
+            that.state = new State();
+            this.seal();
+            int limit = taken.published.get();
+            this.state = new State(taken.base, limit, taken.directory);
+        }
+    }
+
+    // Kernel interface methods
+    /**
+     * Return the number of chat entries in the log.
+     *
+     * @return the number of entries
+     */
+    @Override
+    public int length() {
+        State current = this.state;
+        return current.published.get() - current.base;
+    }
+
+    /**
+     * Check if the chat log is empty.
+     *
+     * @return true if empty, false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.length() == 0;
+    }
+
+    /**
+     * Report the speaker of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the speaker of entry {@code i}
+     */
+    @Override
+    public String speakerAt(int i) {
+        State current = this.state;
+        int slot = current.base + i;
+        // reading the published count first makes the slot visible
+        if (slot >= current.published.get()) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return State.speakerAt(current.directory, slot);
+    }
+
+    /**
+     * Report the text of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the text of entry {@code i}
+     */
+    @Override
+    public String textAt(int i) {
+        State current = this.state;
+        int slot = current.base + i;
+        // reading the published count first makes the slot visible
+        if (slot >= current.published.get()) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return State.textAt(current.directory, slot);
+    }
+
+    /**
+     * Append a chat entry to the log.
+     *
+     * @param speaker
+     *            non-null/non-empty
+     * @param text
+     *            non-null
+     */
+    @Override
+    public void append(String speaker, String text) {
+        State current = this.state;
+        int slot = current.claim(1);
+        while (slot < 0) {
+            this.awaitReplacement(current);
+            current = this.state;
+            slot = current.claim(1);
+        }
+        Chunk chunk = current.chunkFor(slot);
+        chunk.speakers[slot & CHUNK_MASK] = speaker;
+        chunk.texts[slot & CHUNK_MASK] = text;
+        current.publish(slot, 1);
+    }
+
+    /**
+     * Append entries to the log with one claim and one publication, so
+     * readers see either none or all of them, in order and without entries
+     * of other writers in between.
+     *
+     * @param speakers
+     *            the speakers, non-null/non-empty
+     * @param texts
+     *            the texts, non-null
+     * @updates this
+     * @requires |speakers| = |texts|
+     */
+    @Override
+    public void appendAll(String[] speakers, String[] texts) {
+        int count = speakers.length;
+        State current = this.state;
+        int first = current.claim(count);
+        while (first < 0) {
+            this.awaitReplacement(current);
+            current = this.state;
+            first = current.claim(count);
+        }
+        int k = 0;
+        while (k < count) {
+            int slot = first + k;
+            Chunk chunk = current.chunkFor(slot);
+            int run = Math.min(count - k, CHUNK_SIZE - (slot & CHUNK_MASK));
+            System.arraycopy(speakers, k, chunk.speakers, slot & CHUNK_MASK,
+                    run);
+            System.arraycopy(texts, k, chunk.texts, slot & CHUNK_MASK, run);
+            k += run;
+        }
+        current.publish(first, count);
+    }
+
+    /**
+     * Undo chat: removes the last entry and reports it as a map with keys
+     * "speaker", "text". Writers cannot check {@code |this| > 0} atomically
+     * with the removal, so an empty log is checked while the state is sealed
+     * and rejected, leaving the log unchanged and unsealed.
+     *
+     * @return removed entry encoded as a Map<String,String>
+     * @requires |this| > 0
+     * @throws IndexOutOfBoundsException
+     *             if the log is empty when the removal takes effect
+     */
+    @Override
+    public Map<String, String> removeChat() {
+        State sealed = this.seal();
+        int published = sealed.published.get();
+        Map<String, String> removedMap = new Map1L<>();
+        State replacement = null;
+        try {
+            if (published == sealed.base) {
+                throw new IndexOutOfBoundsException(
+                        "removeChat on an empty log");
+            }
+            int last = published - 1;
+            AtomicReferenceArray<Chunk> dir = sealed.directory;
+            removedMap.add("speaker", State.speakerAt(dir, last));
+            removedMap.add("text", State.textAt(dir, last));
+            replacement = slice(sealed, sealed.base, last);
+        } finally {
+            this.install(sealed, replacement);
+        }
+        return removedMap;
+    }
+
+    /**
+     * Resets the chat log to empty.
+     */
+    @Override
+    public void reset() {
+        this.clear();
+    }
+
+    /**
+     * Keeps only entries in [start, end) and deletes all other chat. The
+     * bounds are checked against the length when the state is sealed, so
+     * bounds made stale by a concurrent removal are rejected, leaving the
+     * log unchanged and unsealed.
+     *
+     * @param start
+     *            inclusive index
+     * @param end
+     *            exclusive index (0 ≤ start ≤ end ≤ |#this|)
+     * @updates this
+     * @return this (now containing only the chosen segment)
+     * @throws IndexOutOfBoundsException
+     *             if the bounds are invalid when the segment takes effect
+     */
+    @Override
+    public ConversationLog segment(int start, int end) {
+        State sealed = this.seal();
+        State replacement = null;
+        try {
+            int length = sealed.published.get() - sealed.base;
+            if (start < 0 || start > end || end > length) {
+                throw new IndexOutOfBoundsException("Invalid segment ["
+                        + start + ", " + end + ") of " + length + " entries");
+            }
+            replacement = slice(sealed, sealed.base + start,
+                    sealed.base + end);
+        } finally {
+            this.install(sealed, replacement);
+        }
+        return this;
+    }
+
+    // Secondary methods
+    /**
+     * Export the chat log to a SimpleWriter.
+     *
+     * @param out
+     *            the SimpleWriter to write to
+     */
+    @Override
+    public void exportChat(SimpleWriter out) {
+        State current = this.state;
+        int limit = current.published.get();
+        AtomicReferenceArray<Chunk> dir = current.directory;
+        for (int slot = current.base; slot < limit; slot++) {
+            out.println(State.speakerAt(dir, slot) + ": "
+                    + State.textAt(dir, slot));
+        }
+        out.close();
+    }
+
+    /**
+     * Import the chat log from a SimpleReader; the times of a timed
+     * transcript are dropped.
+     *
+     * @param in
+     *            the SimpleReader to read from
+     */
+    @Override
+    public void importChat(SimpleReader in) {
+        TranscriptReader transcript = new TranscriptReader(in);
+        while (transcript.next()) {
+            this.append(transcript.speaker(), transcript.text());
+        }
+        in.close();
+    }
+
+    /**
+     * Convert the entire conversation log to a transcript string.
+     *
+     * @return the transcript string
+     */
+    @Override
+    public String toTranscript() {
+        State current = this.state;
+        int limit = current.published.get();
+        AtomicReferenceArray<Chunk> dir = current.directory;
+        StringBuilder transcript = new StringBuilder();
+        for (int slot = current.base; slot < limit; slot++) {
+            transcript.append(State.speakerAt(dir, slot)).append(": ")
+                    .append(State.textAt(dir, slot)).append("\n");
+        }
+        return transcript.toString();
+    }
+
+    /**
+     * Search for a substring in the chat log and return the list of indices
+     * where found.
+     *
+     * @param substring
+     *            the substring to search for
+     * @return a sequence of indices where the substring is found
+     */
+    @Override
+    public Sequence<Integer> find(String substring) {
+        State current = this.state;
+        int limit = current.published.get();
+        AtomicReferenceArray<Chunk> dir = current.directory;
+        Sequence<Integer> indices = new Sequence1L<>();
+        for (int slot = current.base; slot < limit; slot++) {
+            if (State.textAt(dir, slot).contains(substring)) {
+                indices.add(indices.length(), slot - current.base);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Retrieve all chat entries from a specific speaker.
+     *
+     * @param speaker
+     *            the speaker to filter by
+     * @return a sequence of chat texts from the given speaker
+     */
+    @Override
+    public Sequence<String> speakerChat(String speaker) {
+        State current = this.state;
+        int limit = current.published.get();
+        AtomicReferenceArray<Chunk> dir = current.directory;
+        Sequence<String> chats = new Sequence1L<>();
+        for (int slot = current.base; slot < limit; slot++) {
+            if (State.speakerAt(dir, slot).equals(speaker)) {
+                chats.add(chats.length(), State.textAt(dir, slot));
+            }
+        }
+        return chats;
+    }
+
+    // Lazy reads and multi-pattern searches, each on one snapshot
+    /**
+     * Reports entry {@code i} as a LogEntry, with its speaker and text read
+     * from the same state.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return entry {@code i}
+     */
+    @Override
+    public LogEntry entryAt(int i) {
+        Snapshot view = new Snapshot(this.state);
+        if (i < 0 || i >= view.length) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return view.entryAt(i);
+    }
+
+    /**
+     * Iterate over entries [from, to) of the log as it is now, reading each
+     * one when it is reached. Throws
+     * {@link ConcurrentModificationException} if the log is already shorter
+     * than {@code to}.
+     *
+     * @param from
+     *            inclusive index
+     * @param to
+     *            exclusive index (0 ≤ from ≤ to ≤ |this|)
+     * @return an iterator over the entries
+     */
+    @Override
+    public Iterator<LogEntry> entryIterator(int from, int to) {
+        Snapshot view = new Snapshot(this.state);
+        view.checkRange(from, to);
+        return new Iterator<LogEntry>() {
+
+            /**
+             * Index of the next entry.
+             */
+            private int next = from;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < to;
+            }
+
+            @Override
+            public LogEntry next() {
+                if (this.next >= to) {
+                    throw new NoSuchElementException();
+                }
+                LogEntry entry = view.entryAt(this.next);
+                this.next++;
+                return entry;
+            }
+        };
+    }
+
+    /**
+     * Stream entries [from, to) of the log as it is now, reading each one
+     * when it is reached.
+     *
+     * @param from
+     *            inclusive index
+     * @param to
+     *            exclusive index (0 ≤ from ≤ to ≤ |this|)
+     * @return an ordered stream of the entries
+     */
+    @Override
+    public Stream<LogEntry> entries(int from, int to) {
+        Snapshot view = new Snapshot(this.state);
+        view.checkRange(from, to);
+        return IntStream.range(from, to).mapToObj(view::entryAt);
+    }
+
+    /**
+     * Read one page of at most {@code limit} entries, starting at entry
+     * {@code cursor}, all from the same state.
+     *
+     * @param cursor
+     *            index of the first entry of the page, 0 for the first page
+     *            or the {@code nextCursor} of the previous page
+     * @param limit
+     *            the most entries in the page (limit > 0)
+     * @return the page
+     * @requires 0 ≤ cursor ≤ |this|
+     */
+    @Override
+    public LogPage page(int cursor, int limit) {
+        Snapshot view = new Snapshot(this.state);
+        int end = (int) Math.min(view.length, (long) cursor + limit);
+        Sequence<LogEntry> entries = new Sequence1L<>();
+        for (int i = cursor; i < end; i++) {
+            entries.add(entries.length(), view.entryAt(i));
+        }
+        return new LogPage(entries, end, end < view.length);
+    }
+
+    /**
+     * Lazy {@code find} over the log as it is now: stream the entries from
+     * {@code from} on whose text contains {@code substring}.
+     *
+     * @param substring
+     *            the substring to search for
+     * @param from
+     *            index where the search starts (0 ≤ from ≤ |this|)
+     * @return an ordered stream of the matching entries
+     */
+    @Override
+    public Stream<LogEntry> findStream(String substring, int from) {
+        Snapshot view = new Snapshot(this.state);
+        return IntStream.range(from, view.length)
+                .filter(i -> view.textAt(i).contains(substring))
+                .mapToObj(view::entryAt);
+    }
+
+    /**
+     * Lazy {@code speakerChat} over the log as it is now: stream the entries
+     * from {@code from} on of {@code speaker}.
+     *
+     * @param speaker
+     *            the speaker to filter by
+     * @param from
+     *            index where the search starts (0 ≤ from ≤ |this|)
+     * @return an ordered stream of the entries of {@code speaker}
+     */
+    @Override
+    public Stream<LogEntry> speakerChatStream(String speaker, int from) {
+        Snapshot view = new Snapshot(this.state);
+        return IntStream.range(from, view.length)
+                .filter(i -> view.speakerAt(i).equals(speaker))
+                .mapToObj(view::entryAt);
+    }
+
+    /**
+     * Search for any of several substrings in one pass over the log as it is
+     * now and return the indices of the entries containing at least one of
+     * them.
+     *
+     * @param patterns
+     *            the compiled substrings to search for
+     * @return a sequence of indices where some pattern is found
+     */
+    @Override
+    public Sequence<Integer> findAny(KeywordAutomaton patterns) {
+        Snapshot view = new Snapshot(this.state);
+        Sequence<Integer> indices = new Sequence1L<>();
+        for (int i = 0; i < view.length; i++) {
+            if (patterns.matchesAny(view.textAt(i))) {
+                indices.add(indices.length(), i);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Search for several substrings in one pass over the log as it is now
+     * and report, for each of them, the indices of the entries containing it.
+     *
+     * @param patterns
+     *            the compiled substrings to search for
+     * @return a map from each pattern to the ascending indices where it is
+     *         found (empty if nowhere)
+     */
+    @Override
+    public Map<String, Sequence<Integer>> findAll(KeywordAutomaton patterns) {
+        Snapshot view = new Snapshot(this.state);
+        int count = patterns.patternCount();
+        IndexList[] hits = new IndexList[count];
+        for (int id = 0; id < count; id++) {
+            hits[id] = new IndexList();
+        }
+        for (int i = 0; i < view.length; i++) {
+            int entry = i;
+            patterns.forEachMatch(view.textAt(i), id -> {
+                IndexList list = hits[id];
+                if (list.length() == 0 || list.last() != entry) {
+                    list.add(entry);
+                }
+            });
+        }
+        Map<String, Sequence<Integer>> found = new Map1L<>();
+        for (int id = 0; id < count; id++) {
+            Sequence<Integer> indices = new Sequence1L<>();
+            for (int k = 0; k < hits[id].length(); k++) {
+                indices.add(k, hits[id].get(k));
+            }
+            found.add(patterns.pattern(id), indices);
+        }
+        return found;
+    }
+
+}
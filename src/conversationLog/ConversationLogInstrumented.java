@@ -0,0 +1,915 @@
+package conversationLog;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+import components.map.Map;
+import components.sequence.Sequence;
+import components.simplereader.SimpleReader;
+import components.simplewriter.SimpleWriter;
+
+/**
+ * ConversationLog decorator that measures the log it wraps.
+ *
+ * <p>
+ * Every kernel and secondary method is timed with {@link System#nanoTime()}
+ * into a latency histogram of its own (log-linear buckets, within 1/32 of the
+ * true value), and {@link Counter}s track entries appended and removed,
+ * characters imported and exported, result sizes and the peak length of the
+ * log. Recording costs two clock reads and a few uncontended atomic updates,
+ * and is thread-safe, so the wrapped log may be a
+ * {@link ConversationLogConcurrent} shared by many threads. The times of a
+ * wrapped {@link TimedConversationLog} are forwarded without being measured;
+ * any other wrapped log reports none.
+ * </p>
+ *
+ * <p>
+ * {@link #snapshot()} copies the numbers for scraping and
+ * {@link #snapshotAndReset()} also starts a new interval. The measurements are
+ * not part of the value of the log: {@code clear} and {@code transferFrom}
+ * leave them alone.
+ * </p>
+ */
+public final class ConversationLogInstrumented
+        implements TimedConversationLog {
+
+    /**
+     * The timed operations.
+     */
+    public enum Operation {
+        /**
+         * {@code length}.
+         */
+        LENGTH,
+        /**
+         * {@code isEmpty}.
+         */
+        IS_EMPTY,
+        /**
+         * {@code append}.
+         */
+        APPEND,
+        /**
+         * {@code removeChat}.
+         */
+        REMOVE_CHAT,
+        /**
+         * {@code reset}.
+         */
+        RESET,
+        /**
+         * {@code segment}.
+         */
+        SEGMENT,
+        /**
+         * {@code exportChat}.
+         */
+        EXPORT_CHAT,
+        /**
+         * {@code importChat}.
+         */
+        IMPORT_CHAT,
+        /**
+         * {@code toTranscript}.
+         */
+        TO_TRANSCRIPT,
+        /**
+         * {@code find}.
+         */
+        FIND,
+        /**
+         * {@code speakerChat}.
+         */
+        SPEAKER_CHAT,
+        /**
+         * {@code findAny}.
+         */
+        FIND_ANY,
+        /**
+         * {@code findAll}.
+         */
+        FIND_ALL,
+        /**
+         * {@code appendAll}.
+         */
+        APPEND_ALL
+    }
+
+    /**
+     * The counted quantities.
+     */
+    public enum Counter {
+        /**
+         * Entries added by {@code append}, {@code appendAll} and
+         * {@code importChat}.
+         */
+        ENTRIES_APPENDED,
+        /**
+         * Entries dropped by {@code removeChat}, {@code reset} and
+         * {@code segment}.
+         */
+        ENTRIES_REMOVED,
+        /**
+         * Characters of the lines read by {@code importChat}, line
+         * terminators counting as one.
+         */
+        CHARS_IMPORTED,
+        /**
+         * Characters of the lines written by {@code exportChat}, line
+         * separators included.
+         */
+        CHARS_EXPORTED,
+        /**
+         * Indices returned by {@code find}.
+         */
+        FIND_RESULTS,
+        /**
+         * Texts returned by {@code speakerChat}.
+         */
+        SPEAKER_CHAT_RESULTS,
+        /**
+         * Indices returned by {@code findAny}.
+         */
+        FIND_ANY_RESULTS,
+        /**
+         * Largest length the log reached.
+         */
+        PEAK_LENGTH
+    }
+
+    /**
+     * A copy of the measurements of a log at one point in time.
+     */
+    public static final class Snapshot {
+
+        /**
+         * Percentile of the typical latency in {@code toString}.
+         */
+        private static final double MEDIAN = 50;
+
+        /**
+         * Percentile of the tail latency in {@code toString}.
+         */
+        private static final double TAIL = 99;
+
+        /**
+         * Latencies of each operation.
+         */
+        private final LatencyHistogram[] latencies;
+
+        /**
+         * Value of each counter.
+         */
+        private final long[] counters;
+
+        /**
+         * Constructor for Snapshot.
+         *
+         * @param latencies
+         *            latencies of each operation
+         * @param counters
+         *            value of each counter
+         */
+        private Snapshot(LatencyHistogram[] latencies, long[] counters) {
+            this.latencies = latencies;
+            this.counters = counters;
+        }
+
+        /**
+         * Reports how many times {@code operation} ran.
+         *
+         * @param operation
+         *            the operation
+         * @return the number of calls
+         */
+        public long count(Operation operation) {
+            return this.latencies[operation.ordinal()].count();
+        }
+
+        /**
+         * Reports the total time spent in {@code operation}.
+         *
+         * @param operation
+         *            the operation
+         * @return the sum of the latencies, in nanoseconds
+         */
+        public long totalNanos(Operation operation) {
+            return this.latencies[operation.ordinal()].sum();
+        }
+
+        /**
+         * Reports the slowest call of {@code operation}.
+         *
+         * @param operation
+         *            the operation
+         * @return the largest latency, in nanoseconds
+         */
+        public long maxNanos(Operation operation) {
+            return this.latencies[operation.ordinal()].max();
+        }
+
+        /**
+         * Reports a percentile of the latencies of {@code operation}.
+         *
+         * @param operation
+         *            the operation
+         * @param percentile
+         *            the percentile (0 ≤ percentile ≤ 100)
+         * @return the latency at {@code percentile}, in nanoseconds
+         */
+        public long percentileNanos(Operation operation, double percentile) {
+            return this.latencies[operation.ordinal()].percentile(percentile);
+        }
+
+        /**
+         * Reports the value of {@code counter}.
+         *
+         * @param counter
+         *            the counter
+         * @return its value
+         */
+        public long counter(Counter counter) {
+            return this.counters[counter.ordinal()];
+        }
+
+        /**
+         * Renders the snapshot, one line per operation that ran and one per
+         * counter.
+         *
+         * @return the report
+         */
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            for (Operation op : Operation.values()) {
+                if (this.count(op) > 0) {
+                    report.append(op).append(" count=").append(this.count(op))
+                            .append(" p50=")
+                            .append(this.percentileNanos(op, MEDIAN))
+                            .append("ns p99=")
+                            .append(this.percentileNanos(op, TAIL))
+                            .append("ns max=").append(this.maxNanos(op))
+                            .append("ns\n");
+                }
+            }
+            for (Counter c : Counter.values()) {
+                report.append(c).append('=').append(this.counter(c))
+                        .append('\n');
+            }
+            return report.toString();
+        }
+    }
+
+    /**
+     * SimpleReader that counts the chars of the lines read through it, each
+     * line end counting as one.
+     */
+    private static final class CountingReader implements SimpleReader {
+
+        /**
+         * The reader read from.
+         */
+        private final SimpleReader in;
+
+        /**
+         * Number of chars read so far.
+         */
+        private long chars;
+
+        /**
+         * Constructor for CountingReader.
+         *
+         * @param in
+         *            the reader to read from
+         */
+        CountingReader(SimpleReader in) {
+            this.in = in;
+            this.chars = 0;
+        }
+
+        /**
+         * Reports the number of chars read so far.
+         *
+         * @return the number of chars read
+         */
+        long chars() {
+            return this.chars;
+        }
+
+        @Override
+        public boolean atEOS() {
+            return this.in.atEOS();
+        }
+
+        @Override
+        public String nextLine() {
+            String line = this.in.nextLine();
+            this.chars += line.length() + 1;
+            return line;
+        }
+
+        @Override
+        public char read() {
+            this.chars++;
+            return this.in.read();
+        }
+
+        @Override
+        public int nextInteger() {
+            return Integer.parseInt(this.nextLine());
+        }
+
+        @Override
+        public double nextDouble() {
+            return Double.parseDouble(this.nextLine());
+        }
+
+        @Override
+        public String name() {
+            return this.in.name();
+        }
+
+        @Override
+        public void close() {
+            this.in.close();
+        }
+    }
+
+    /**
+     * SimpleWriter that counts the chars written through it, each line end
+     * counting as {@code System.lineSeparator()}.
+     */
+    private static final class CountingWriter implements SimpleWriter {
+
+        /**
+         * The writer printed to.
+         */
+        private final SimpleWriter out;
+
+        /**
+         * Number of chars written so far.
+         */
+        private long chars;
+
+        /**
+         * Constructor for CountingWriter.
+         *
+         * @param out
+         *            the writer to print to
+         */
+        CountingWriter(SimpleWriter out) {
+            this.out = out;
+            this.chars = 0;
+        }
+
+        /**
+         * Reports the number of chars written so far.
+         *
+         * @return the number of chars written
+         */
+        long chars() {
+            return this.chars;
+        }
+
+        @Override
+        public void print(boolean b) {
+            this.print(String.valueOf(b));
+        }
+
+        @Override
+        public void print(char c) {
+            this.chars++;
+            this.out.print(c);
+        }
+
+        @Override
+        public void print(double d) {
+            this.print(String.valueOf(d));
+        }
+
+        @Override
+        public void print(int i) {
+            this.print(String.valueOf(i));
+        }
+
+        @Override
+        public void print(long l) {
+            this.print(String.valueOf(l));
+        }
+
+        @Override
+        public void print(String s) {
+            this.chars += s.length();
+            this.out.print(s);
+        }
+
+        @Override
+        public void println() {
+            this.chars += System.lineSeparator().length();
+            this.out.println();
+        }
+
+        @Override
+        public void println(boolean b) {
+            this.println(String.valueOf(b));
+        }
+
+        @Override
+        public void println(char c) {
+            this.println(String.valueOf(c));
+        }
+
+        @Override
+        public void println(double d) {
+            this.println(String.valueOf(d));
+        }
+
+        @Override
+        public void println(int i) {
+            this.println(String.valueOf(i));
+        }
+
+        @Override
+        public void println(long l) {
+            this.println(String.valueOf(l));
+        }
+
+        @Override
+        public void println(String s) {
+            this.chars += s.length() + System.lineSeparator().length();
+            this.out.println(s);
+        }
+
+        @Override
+        public String name() {
+            return this.out.name();
+        }
+
+        @Override
+        public void close() {
+            this.out.close();
+        }
+    }
+
+    /**
+     * The measured log.
+     */
+    private final ConversationLog delegate;
+
+    /**
+     * Latencies of each operation.
+     */
+    private final LatencyHistogram[] latencies;
+
+    /**
+     * Value of each counter.
+     */
+    private final AtomicLongArray counters;
+
+    /**
+     * Constructor for ConversationLogInstrumented.
+     *
+     * @param delegate
+     *            the log to measure
+     */
+    public ConversationLogInstrumented(ConversationLog delegate) {
+        this.delegate = delegate;
+        this.latencies = new LatencyHistogram[Operation.values().length];
+        for (int i = 0; i < this.latencies.length; i++) {
+            this.latencies[i] = new LatencyHistogram();
+        }
+        this.counters = new AtomicLongArray(Counter.values().length);
+    }
+
+    /**
+     * Constructor for ConversationLogInstrumented around a
+     * {@link ConversationLog1A}.
+     */
+    public ConversationLogInstrumented() {
+        this(new ConversationLog1A());
+    }
+
+    /**
+     * Records the latency of a call started at {@code start}.
+     *
+     * @param operation
+     *            the operation called
+     * @param start
+     *            the {@code System.nanoTime()} before the call
+     */
+    private void time(Operation operation, long start) {
+        this.latencies[operation.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Adds {@code amount} to {@code counter}.
+     *
+     * @param counter
+     *            the counter
+     * @param amount
+     *            the amount to add
+     */
+    private void count(Counter counter, long amount) {
+        this.counters.addAndGet(counter.ordinal(), amount);
+    }
+
+    /**
+     * Raises the peak length to {@code length} if it is larger.
+     *
+     * @param length
+     *            the current length of the log
+     */
+    private void observeLength(long length) {
+        int peak = Counter.PEAK_LENGTH.ordinal();
+        long highest = this.counters.get(peak);
+        while (length > highest
+                && !this.counters.compareAndSet(peak, highest, length)) {
+            highest = this.counters.get(peak);
+        }
+    }
+
+    /**
+     * Copies the measurements.
+     *
+     * @return the measurements so far
+     */
+    public Snapshot snapshot() {
+        return this.snapshot(false);
+    }
+
+    /**
+     * Copies the measurements and empties them, so the next snapshot covers
+     * only what happens from now on. The peak length starts over from the
+     * current length.
+     *
+     * @return the measurements since the previous reset
+     */
+    public Snapshot snapshotAndReset() {
+        Snapshot snapshot = this.snapshot(true);
+        this.observeLength(this.delegate.length());
+        return snapshot;
+    }
+
+    /**
+     * Copies the measurements, optionally emptying them.
+     *
+     * @param reset
+     *            whether to empty the measurements
+     * @return the copy
+     */
+    private Snapshot snapshot(boolean reset) {
+        LatencyHistogram[] copies = new LatencyHistogram[this.latencies.length];
+        for (int i = 0; i < copies.length; i++) {
+            copies[i] = this.latencies[i].copy(reset);
+        }
+        long[] values = new long[this.counters.length()];
+        for (int i = 0; i < values.length; i++) {
+            if (reset) {
+                values[i] = this.counters.getAndSet(i, 0);
+            } else {
+                values[i] = this.counters.get(i);
+            }
+        }
+        return new Snapshot(copies, values);
+    }
+
+    // Standard interface methods
+    /**
+     * Returns a new object with the same <i>dynamic</i> type as {@code this},
+     * having an initial value.
+     */
+    @Override
+    public ConversationLogInstrumented newInstance() {
+        return new ConversationLogInstrumented(this.delegate.newInstance());
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     */
+    @Override
+    public void clear() {
+        this.delegate.clear();
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value; the declaration notwithstanding, the
+     * <i>dynamic</i> type of {@code source} must be the same as the
+     * <i>dynamic</i> type of {@code this}.
+     */
+    @Override
+    public void transferFrom(ConversationLog source) {
+        if (this != source) {
+            ConversationLogInstrumented that = (ConversationLogInstrumented) source;
+            this.delegate.transferFrom(that.delegate);
+            this.observeLength(this.delegate.length());
+        }
+    }
+
+    // Kernel interface methods
+    /**
+     * Return the number of chat entries in the log.
+     *
+     * @return the number of entries
+     */
+    @Override
+    public int length() {
+        long start = System.nanoTime();
+        int length = this.delegate.length();
+        this.time(Operation.LENGTH, start);
+        return length;
+    }
+
+    /**
+     * Check if the chat log is empty.
+     *
+     * @return true if empty, false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        long start = System.nanoTime();
+        boolean empty = this.delegate.isEmpty();
+        this.time(Operation.IS_EMPTY, start);
+        return empty;
+    }
+
+    /**
+     * Report the speaker of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the speaker of entry {@code i}
+     */
+    @Override
+    public String speakerAt(int i) {
+        return this.delegate.speakerAt(i);
+    }
+
+    /**
+     * Report the text of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the text of entry {@code i}
+     */
+    @Override
+    public String textAt(int i) {
+        return this.delegate.textAt(i);
+    }
+
+    /**
+     * Reports whether the wrapped log is a TimedConversationLog with times.
+     *
+     * @return true if the entries of the wrapped log carry times
+     */
+    @Override
+    public boolean isTimed() {
+        return this.delegate instanceof TimedConversationLog
+                && ((TimedConversationLog) this.delegate).isTimed();
+    }
+
+    /**
+     * Reports the time of entry {@code i} in the wrapped log.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the time of entry {@code i}, or {@code NO_TIME} if the wrapped
+     *         log has no times
+     */
+    @Override
+    public long timeAt(int i) {
+        long time = ConversationLog1A.NO_TIME;
+        if (this.delegate instanceof TimedConversationLog) {
+            time = ((TimedConversationLog) this.delegate).timeAt(i);
+        }
+        return time;
+    }
+
+    /**
+     * Append a chat entry to the log.
+     *
+     * @param speaker
+     *            non-null/non-empty
+     * @param text
+     *            non-null
+     */
+    @Override
+    public void append(String speaker, String text) {
+        long start = System.nanoTime();
+        this.delegate.append(speaker, text);
+        this.time(Operation.APPEND, start);
+        this.count(Counter.ENTRIES_APPENDED, 1);
+        this.observeLength(this.delegate.length());
+    }
+
+    /**
+     * Append entries to the log as one batch.
+     *
+     * @param speakers
+     *            the speakers, non-null/non-empty
+     * @param texts
+     *            the texts, non-null
+     * @requires |speakers| = |texts|
+     */
+    @Override
+    public void appendAll(String[] speakers, String[] texts) {
+        long start = System.nanoTime();
+        this.delegate.appendAll(speakers, texts);
+        this.time(Operation.APPEND_ALL, start);
+        this.count(Counter.ENTRIES_APPENDED, speakers.length);
+        this.observeLength(this.delegate.length());
+    }
+
+    /**
+     * Undo chat: removes the last entry and reports it as a map with keys
+     * "speaker", "text".
+     *
+     * @return removed entry encoded as a Map<String,String>
+     * @requires |this| > 0
+     */
+    @Override
+    public Map<String, String> removeChat() {
+        long start = System.nanoTime();
+        Map<String, String> removed = this.delegate.removeChat();
+        this.time(Operation.REMOVE_CHAT, start);
+        this.count(Counter.ENTRIES_REMOVED, 1);
+        return removed;
+    }
+
+    /**
+     * Resets the chat log to empty.
+     */
+    @Override
+    public void reset() {
+        int before = this.delegate.length();
+        long start = System.nanoTime();
+        this.delegate.reset();
+        this.time(Operation.RESET, start);
+        this.count(Counter.ENTRIES_REMOVED, before);
+    }
+
+    /**
+     * Keeps only entries in [start, end) and deletes all other chat.
+     *
+     * @param start
+     *            inclusive index
+     * @param end
+     *            exclusive index (0 ≤ start ≤ end ≤ |#this|)
+     * @updates this
+     * @return this (now containing only the chosen segment)
+     */
+    @Override
+    public ConversationLog segment(int start, int end) {
+        int before = this.delegate.length();
+        long started = System.nanoTime();
+        this.delegate.segment(start, end);
+        this.time(Operation.SEGMENT, started);
+        this.count(Counter.ENTRIES_REMOVED, before - (end - start));
+        return this;
+    }
+
+    // Secondary methods
+    /**
+     * Export the chat log to a SimpleWriter.
+     *
+     * @param out
+     *            the SimpleWriter to write to
+     */
+    @Override
+    public void exportChat(SimpleWriter out) {
+        CountingWriter counted = new CountingWriter(out);
+        long start = System.nanoTime();
+        this.delegate.exportChat(counted);
+        this.time(Operation.EXPORT_CHAT, start);
+        this.count(Counter.CHARS_EXPORTED, counted.chars());
+    }
+
+    /**
+     * Import the chat log from a SimpleReader, through the wrapped log's own
+     * import and a reader that counts the chars.
+     *
+     * @param in
+     *            the SimpleReader to read from
+     */
+    @Override
+    public void importChat(SimpleReader in) {
+        CountingReader counted = new CountingReader(in);
+        int before = this.delegate.length();
+        long start = System.nanoTime();
+        this.delegate.importChat(counted);
+        this.time(Operation.IMPORT_CHAT, start);
+        this.count(Counter.CHARS_IMPORTED, counted.chars());
+        this.count(Counter.ENTRIES_APPENDED, this.delegate.length() - before);
+        this.observeLength(this.delegate.length());
+    }
+
+    /**
+     * Convert the entire conversation log to a transcript string.
+     *
+     * @return the transcript string
+     */
+    @Override
+    public String toTranscript() {
+        long start = System.nanoTime();
+        String transcript = this.delegate.toTranscript();
+        this.time(Operation.TO_TRANSCRIPT, start);
+        return transcript;
+    }
+
+    /**
+     * Search for a substring in the chat log and return the list of indices
+     * where found.
+     *
+     * @param substring
+     *            the substring to search for
+     * @return a sequence of indices where the substring is found
+     */
+    @Override
+    public Sequence<Integer> find(String substring) {
+        long start = System.nanoTime();
+        Sequence<Integer> indices = this.delegate.find(substring);
+        this.time(Operation.FIND, start);
+        this.count(Counter.FIND_RESULTS, indices.length());
+        return indices;
+    }
+
+    /**
+     * Retrieve all chat entries from a specific speaker.
+     *
+     * @param speaker
+     *            the speaker to filter by
+     * @return a sequence of chat texts from the given speaker
+     */
+    @Override
+    public Sequence<String> speakerChat(String speaker) {
+        long start = System.nanoTime();
+        Sequence<String> chats = this.delegate.speakerChat(speaker);
+        this.time(Operation.SPEAKER_CHAT, start);
+        this.count(Counter.SPEAKER_CHAT_RESULTS, chats.length());
+        return chats;
+    }
+
+    /**
+     * Search for any of several substrings in one pass.
+     *
+     * @param patterns
+     *            the compiled substrings to search for
+     * @return a sequence of indices where some pattern is found
+     */
+    @Override
+    public Sequence<Integer> findAny(KeywordAutomaton patterns) {
+        long start = System.nanoTime();
+        Sequence<Integer> indices = this.delegate.findAny(patterns);
+        this.time(Operation.FIND_ANY, start);
+        this.count(Counter.FIND_ANY_RESULTS, indices.length());
+        return indices;
+    }
+
+    /**
+     * Search for several substrings in one pass and report where each one is
+     * found.
+     *
+     * @param patterns
+     *            the compiled substrings to search for
+     * @return a map from each pattern to the indices where it is found
+     */
+    @Override
+    public Map<String, Sequence<Integer>> findAll(KeywordAutomaton patterns) {
+        long start = System.nanoTime();
+        Map<String, Sequence<Integer>> found = this.delegate.findAll(patterns);
+        this.time(Operation.FIND_ALL, start);
+        return found;
+    }
+
+    // Lazy reads, untimed: the work happens as the stream is consumed
+    /**
+     * Stream the entries from {@code from} on whose text contains
+     * {@code substring}, as the delegate does.
+     *
+     * @param substring
+     *            the substring to search for
+     * @param from
+     *            index where the search starts (0 ≤ from ≤ |this|)
+     * @return an ordered stream of the matching entries
+     */
+    @Override
+    public Stream<LogEntry> findStream(String substring, int from) {
+        return this.delegate.findStream(substring, from);
+    }
+
+    /**
+     * Stream the entries from {@code from} on of {@code speaker}, as the
+     * delegate does.
+     *
+     * @param speaker
+     *            the speaker to filter by
+     * @param from
+     *            index where the search starts (0 ≤ from ≤ |this|)
+     * @return an ordered stream of the entries of {@code speaker}
+     */
+    @Override
+    public Stream<LogEntry> speakerChatStream(String speaker, int from) {
+        return this.delegate.speakerChatStream(speaker, from);
+    }
+
+}
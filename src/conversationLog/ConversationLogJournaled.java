@@ -0,0 +1,875 @@
+package conversationLog;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import components.map.Map;
+
+/**
+ * Array-backed ConversationLog made durable by an append-only write-ahead
+ * journal.
+ *
+ * <p>
+ * Every {@code append}, {@code removeChat}, {@code segment} and
+ * {@code reset}/{@code clear} is written to {@code base.journal} as a small
+ * length-prefixed, CRC-checked record before it is applied. When the journal
+ * is forced to disk depends on the {@link SyncPolicy}; with
+ * {@link SyncPolicy#GROUP} several records share one {@code fsync} (group
+ * commit). A group that is not full is still written, and forced, at most
+ * {@code groupDelayMillis} after its first record, by a shared daemon thread.
+ * Every {@code snapshotInterval} records the log is written to a
+ * {@link ConversationLogBinary} snapshot and the journal is compacted to
+ * nothing.
+ * </p>
+ *
+ * <p>
+ * Snapshots are named {@code base.snapshot-g} and the journal starts with the
+ * generation {@code g} of the snapshot it continues, so recovery (done by the
+ * constructor) loads the newest snapshot and replays the journal only if it
+ * belongs to that snapshot. After each atomic move the directory is forced
+ * too, so the new name survives a crash. A torn record at the end of the
+ * journal, left by a crash, is dropped, whatever bytes it holds.
+ * </p>
+ */
+public class ConversationLogJournaled extends ConversationLog1A {
+
+    /**
+     * When the journal is forced to stable storage.
+     */
+    public enum SyncPolicy {
+        /**
+         * Force after every record: nothing acknowledged is ever lost.
+         */
+        EVERY_RECORD,
+        /**
+         * Force once per group of records, when a group has waited
+         * {@code groupDelayMillis}, and on {@link #sync()}: a crash loses at
+         * most the records of the last unfinished group.
+         */
+        GROUP,
+        /**
+         * Never force; leave it to the operating system (records still reach
+         * the file on every group boundary, after {@code groupDelayMillis}
+         * and on {@link #sync()}).
+         */
+        NONE
+    }
+
+    /**
+     * Default number of records that share one forced write.
+     */
+    public static final int DEFAULT_GROUP_SIZE = 64;
+
+    /**
+     * Default number of records between two snapshots.
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 1 << 20;
+
+    /**
+     * Default longest time, in milliseconds, the first record of an
+     * unfinished group waits before the group is written and forced.
+     */
+    public static final long DEFAULT_GROUP_DELAY_MILLIS = 10;
+
+    /**
+     * Daemon thread shared by every journaled log to write groups that have
+     * waited too long.
+     */
+    private static final ScheduledExecutorService FLUSHER = Executors
+            .newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "conversation-log-journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Record type of an {@code append}.
+     */
+    private static final byte APPEND = 1;
+
+    /**
+     * Record type of a {@code removeChat}.
+     */
+    private static final byte REMOVE = 2;
+
+    /**
+     * Record type of a {@code segment}.
+     */
+    private static final byte SEGMENT = 3;
+
+    /**
+     * Record type of a {@code reset} or {@code clear}.
+     */
+    private static final byte RESET = 4;
+
+    /**
+     * Record type of a timed {@code append}.
+     */
+    private static final byte APPEND_TIMED = 5;
+
+    /**
+     * Bytes of the journal header (the snapshot generation).
+     */
+    private static final int HEADER_BYTES = Long.BYTES;
+
+    /**
+     * Bytes written to the journal file in one go.
+     */
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    /**
+     * Base path of the journal and snapshot files, or null when the log is
+     * not journaled.
+     */
+    private final String base;
+
+    /**
+     * When the journal is forced to disk.
+     */
+    private final SyncPolicy policy;
+
+    /**
+     * Number of records that share one forced write.
+     */
+    private final int groupSize;
+
+    /**
+     * Number of records between two snapshots.
+     */
+    private final int snapshotInterval;
+
+    /**
+     * Longest time, in milliseconds, an unfinished group waits.
+     */
+    private final long groupDelayMillis;
+
+    /**
+     * The timed write of the unfinished group, or null if none is due.
+     */
+    private ScheduledFuture<?> groupFlush;
+
+    /**
+     * The open journal file.
+     */
+    private FileChannel journal;
+
+    /**
+     * Records not yet written to the journal file.
+     */
+    private ByteBuffer pending;
+
+    /**
+     * Number of records since the journal was last forced.
+     */
+    private int unsynced;
+
+    /**
+     * Number of records in the journal.
+     */
+    private int journaled;
+
+    /**
+     * Generation of the snapshot the journal continues.
+     */
+    private long generation;
+
+    /**
+     * Whether the journal is being replayed, so operations are not logged.
+     */
+    private boolean replaying;
+
+    /**
+     * Constructor for ConversationLogJournaled: an empty log that is not
+     * journaled (this is also what {@code newInstance} returns).
+     */
+    public ConversationLogJournaled() {
+        super();
+        this.base = null;
+        this.policy = SyncPolicy.NONE;
+        this.groupSize = 1;
+        this.snapshotInterval = Integer.MAX_VALUE;
+        this.groupDelayMillis = DEFAULT_GROUP_DELAY_MILLIS;
+    }
+
+    /**
+     * Constructor for ConversationLogJournaled: recovers the log stored at
+     * {@code base} with the default policy ({@link SyncPolicy#GROUP}).
+     *
+     * @param base
+     *            base path of the journal and snapshot files
+     */
+    public ConversationLogJournaled(String base) {
+        this(base, SyncPolicy.GROUP, DEFAULT_GROUP_SIZE,
+                DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Constructor for ConversationLogJournaled: recovers the log stored at
+     * {@code base} (an empty log if there are no files yet) and keeps
+     * journaling to it.
+     *
+     * @param base
+     *            base path of the journal and snapshot files
+     * @param policy
+     *            when the journal is forced to disk
+     * @param groupSize
+     *            number of records that share one forced write (≥ 1)
+     * @param snapshotInterval
+     *            number of records between two snapshots (≥ 1)
+     */
+    public ConversationLogJournaled(String base, SyncPolicy policy,
+            int groupSize, int snapshotInterval) {
+        this(base, policy, groupSize, snapshotInterval,
+                DEFAULT_GROUP_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructor for ConversationLogJournaled: recovers the log stored at
+     * {@code base} (an empty log if there are no files yet) and keeps
+     * journaling to it.
+     *
+     * @param base
+     *            base path of the journal and snapshot files
+     * @param policy
+     *            when the journal is forced to disk
+     * @param groupSize
+     *            number of records that share one forced write (≥ 1)
+     * @param snapshotInterval
+     *            number of records between two snapshots (≥ 1)
+     * @param groupDelayMillis
+     *            longest time, in milliseconds, the first record of an
+     *            unfinished group waits before the group is written (≥ 0)
+     */
+    public ConversationLogJournaled(String base, SyncPolicy policy,
+            int groupSize, int snapshotInterval, long groupDelayMillis) {
+        super();
+        this.base = base;
+        this.policy = policy;
+        this.groupSize = groupSize;
+        this.snapshotInterval = snapshotInterval;
+        this.groupDelayMillis = groupDelayMillis;
+        this.pending = ByteBuffer.allocate(BUFFER_BYTES);
+        this.recover();
+    }
+
+    /**
+     * Reports the path of the snapshot of generation {@code g}.
+     *
+     * @param g
+     *            the generation
+     * @return the snapshot path
+     */
+    private Path snapshotPath(long g) {
+        return Paths.get(this.base + ".snapshot-" + g);
+    }
+
+    /**
+     * Reports the path of the journal.
+     *
+     * @return the journal path
+     */
+    private Path journalPath() {
+        return Paths.get(this.base + ".journal");
+    }
+
+    /**
+     * Forces the directory of the journal, so a file moved into it keeps its
+     * new name after a crash. Platforms that cannot open a directory make the
+     * move durable themselves, so a failure to open it is ignored.
+     *
+     * @throws IOException
+     *             if the directory cannot be forced
+     */
+    private void forceDirectory() throws IOException {
+        Path directory = this.journalPath().toAbsolutePath().getParent();
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Not supported here; the platform makes the move durable
+            channel = null;
+        }
+        if (channel != null) {
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Loads the newest snapshot, replays the journal that continues it and
+     * opens the journal for appending.
+     *
+     * @updates this
+     */
+    private void recover() {
+        try {
+            long journalGeneration = 0;
+            Path journalPath = this.journalPath();
+            boolean hasJournal = Files.exists(journalPath)
+                    && Files.size(journalPath) >= HEADER_BYTES;
+            if (hasJournal) {
+                try (DataInputStream in = new DataInputStream(
+                        Files.newInputStream(journalPath))) {
+                    journalGeneration = in.readLong();
+                }
+            }
+            this.replaying = true;
+            if (Files.exists(this.snapshotPath(journalGeneration + 1))) {
+                // Crashed after a snapshot but before its journal: the old
+                // journal is already in the snapshot
+                this.generation = journalGeneration + 1;
+                ConversationLogBinary.load(
+                        this.snapshotPath(this.generation).toString(), this);
+                this.startJournal();
+                Files.deleteIfExists(this.snapshotPath(journalGeneration));
+            } else {
+                this.generation = journalGeneration;
+                if (this.generation > 0) {
+                    ConversationLogBinary.load(
+                            this.snapshotPath(this.generation).toString(),
+                            this);
+                }
+                if (hasJournal) {
+                    this.replay(journalPath);
+                } else {
+                    this.startJournal();
+                }
+            }
+            this.replaying = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Applies every complete record of the journal, truncates a torn tail and
+     * opens the journal for appending.
+     *
+     * @param journalPath
+     *            the journal
+     * @throws IOException
+     *             if the journal cannot be read or opened
+     * @updates this
+     */
+    private void replay(Path journalPath) throws IOException {
+        long good = HEADER_BYTES;
+        long size = Files.size(journalPath);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(
+                        Files.newInputStream(journalPath)))) {
+            in.readLong();
+            boolean intact = true;
+            while (intact) {
+                try {
+                    int length = in.readInt();
+                    // A garbage length is a torn tail too
+                    intact = length >= 0 && length <= size - good
+                            - Integer.BYTES - Integer.BYTES;
+                    byte[] payload = null;
+                    if (intact) {
+                        payload = new byte[length];
+                        in.readFully(payload);
+                        CRC32 crc = new CRC32();
+                        crc.update(payload);
+                        intact = (int) crc.getValue() == in.readInt();
+                    }
+                    if (intact) {
+                        this.apply(payload);
+                        good += Integer.BYTES + length + Integer.BYTES;
+                        this.journaled++;
+                    }
+                } catch (EOFException e) {
+                    intact = false;
+                }
+            }
+        }
+        this.journal = FileChannel.open(journalPath, StandardOpenOption.WRITE);
+        this.journal.truncate(good);
+        this.journal.position(good);
+    }
+
+    /**
+     * Applies one journal record to the log.
+     *
+     * @param payload
+     *            the record
+     * @throws IOException
+     *             if the record is malformed
+     * @updates this
+     */
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        switch (type) {
+            case APPEND:
+                String speaker = readString(in);
+                this.append(speaker, readString(in));
+                break;
+            case APPEND_TIMED:
+                String timedSpeaker = readString(in);
+                String text = readString(in);
+                this.append(timedSpeaker, text, in.readLong());
+                break;
+            case REMOVE:
+                this.removeChat();
+                break;
+            case SEGMENT:
+                int start = in.readInt();
+                this.segment(start, in.readInt());
+                break;
+            case RESET:
+                this.clear();
+                break;
+            default:
+                throw new IOException("Unknown journal record " + type);
+        }
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     *
+     * @param in
+     *            the stream to read from
+     * @return the string read
+     * @throws IOException
+     *             if the stream cannot be read
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Malformed journal record");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     *
+     * @param out
+     *            the stream to write to
+     * @param s
+     *            the string to write
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Replaces the journal with an empty one continuing the current
+     * generation, through a temporary file and an atomic move.
+     *
+     * @throws IOException
+     *             if the journal cannot be written
+     * @updates this.journal
+     */
+    private void startJournal() throws IOException {
+        if (this.journal != null) {
+            this.journal.close();
+        }
+        Path temp = Paths.get(this.base + ".journal.tmp");
+        try (FileChannel fresh = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putLong(this.generation).flip();
+            while (header.hasRemaining()) {
+                fresh.write(header);
+            }
+            fresh.force(true);
+        }
+        Files.move(temp, this.journalPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        this.forceDirectory();
+        this.journal = FileChannel.open(this.journalPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.journaled = 0;
+        this.unsynced = 0;
+    }
+
+    /**
+     * Reports whether operations are journaled: the log has files and is not
+     * replaying them. Callers check it before encoding a record, so
+     * recovery and logs without files encode nothing.
+     *
+     * @return true if operations are journaled
+     */
+    private boolean journaling() {
+        return this.base != null && !this.replaying;
+    }
+
+    /**
+     * Adds records to the journal, writing and forcing them as the sync
+     * policy requires; a batch counts as one record for forcing, so
+     * {@link SyncPolicy#EVERY_RECORD} forces once per batch. When a snapshot
+     * is due it is taken first, while every earlier record has been applied.
+     * The first record of an unfinished group schedules its timed write.
+     *
+     * @param records
+     *            the records, already encoded
+     * @updates this
+     */
+    private synchronized void log(ByteArrayOutputStream... records) {
+        if (this.journaling()) {
+            if (this.journaled >= this.snapshotInterval) {
+                this.snapshot();
+            }
+            for (ByteArrayOutputStream record : records) {
+                byte[] payload = record.toByteArray();
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                int size = Integer.BYTES + payload.length + Integer.BYTES;
+                if (this.pending.remaining() < size) {
+                    this.flushPending();
+                    if (this.pending.capacity() < size) {
+                        this.pending = ByteBuffer.allocate(size);
+                    }
+                }
+                this.pending.putInt(payload.length).put(payload)
+                        .putInt((int) crc.getValue());
+                this.journaled++;
+                this.unsynced++;
+            }
+            if (this.policy == SyncPolicy.EVERY_RECORD
+                    || this.unsynced >= this.groupSize) {
+                this.sync();
+            } else if (this.groupFlush == null) {
+                this.groupFlush = FLUSHER.schedule(this::flushGroup,
+                        this.groupDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Writes and forces the unfinished group whose delay has run out, unless
+     * it was written in the meantime or the journal is closed.
+     */
+    private synchronized void flushGroup() {
+        if (this.groupFlush != null && this.journal.isOpen()) {
+            this.groupFlush = null;
+            this.sync();
+        }
+    }
+
+    /**
+     * Writes the buffered records to the journal file.
+     *
+     * @updates this.journal, this.pending
+     */
+    private void flushPending() {
+        try {
+            this.pending.flip();
+            while (this.pending.hasRemaining()) {
+                this.journal.write(this.pending);
+            }
+            this.pending.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Starts encoding a record of the given type.
+     *
+     * @param type
+     *            the record type
+     * @param bytes
+     *            the buffer to encode the record into
+     * @return a stream positioned after the type
+     * @throws IOException
+     *             if the record cannot be encoded
+     */
+    private static DataOutputStream record(byte type,
+            ByteArrayOutputStream bytes) throws IOException {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        return out;
+    }
+
+    // Durability
+    /**
+     * Writes every buffered journal record to the file and, unless the
+     * policy is {@link SyncPolicy#NONE}, forces it to stable storage.
+     */
+    public synchronized void sync() {
+        if (this.base != null) {
+            if (this.groupFlush != null) {
+                this.groupFlush.cancel(false);
+                this.groupFlush = null;
+            }
+            this.flushPending();
+            try {
+                if (this.policy != SyncPolicy.NONE) {
+                    this.journal.force(false);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.unsynced = 0;
+        }
+    }
+
+    /**
+     * Writes the whole log to a new snapshot and compacts the journal to
+     * nothing; the previous snapshot is deleted.
+     */
+    public synchronized void snapshot() {
+        if (this.base != null) {
+            this.sync();
+            try {
+                long next = this.generation + 1;
+                Path temp = Paths.get(this.base + ".snapshot.tmp");
+                ConversationLogBinary.save(this, temp.toString());
+                try (FileChannel written = FileChannel.open(temp,
+                        StandardOpenOption.WRITE)) {
+                    written.force(true);
+                }
+                Files.move(temp, this.snapshotPath(next),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                this.forceDirectory();
+                long previous = this.generation;
+                this.generation = next;
+                this.startJournal();
+                Files.deleteIfExists(this.snapshotPath(previous));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Syncs the journal and closes it; the log must not be changed afterwards.
+     */
+    public synchronized void close() {
+        if (this.base != null) {
+            this.sync();
+            try {
+                this.journal.force(true);
+                this.journal.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Standard interface methods
+    /**
+     * Returns a new object with the same <i>dynamic</i> type as {@code this},
+     * having an initial value. The new log is not journaled.
+     */
+    @Override
+    public ConversationLogJournaled newInstance() {
+        return new ConversationLogJournaled();
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     */
+    @Override
+    public void clear() {
+        if (this.journaling()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                record(RESET, bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.log(bytes);
+        }
+        super.clear();
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value; the declaration notwithstanding, the
+     * <i>dynamic</i> type of {@code source} must be the same as the
+     * <i>dynamic</i> type of {@code this}. Both journals record the change:
+     * {@code this} takes a snapshot and {@code source} journals a reset.
+     */
+    @Override
+    public void transferFrom(ConversationLog source) {
+        if (this != source) {
+            ConversationLogJournaled that = (ConversationLogJournaled) source;
+            super.transferFrom(that);
+            this.snapshot();
+            that.clear();
+        }
+    }
+
+    // Kernel interface methods
+    /**
+     * Encodes an append record, timed unless {@code time} is
+     * {@code NO_TIME}.
+     *
+     * @param speaker
+     *            the speaker of the entry
+     * @param text
+     *            the text of the entry
+     * @param time
+     *            the time of the entry, or {@code NO_TIME}
+     * @return the record
+     */
+    private static ByteArrayOutputStream appendRecord(String speaker,
+            String text, long time) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            if (time == NO_TIME) {
+                DataOutputStream out = record(APPEND, bytes);
+                writeString(out, speaker);
+                writeString(out, text);
+            } else {
+                DataOutputStream out = record(APPEND_TIMED, bytes);
+                writeString(out, speaker);
+                writeString(out, text);
+                out.writeLong(time);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes;
+    }
+
+    /**
+     * Append a timed chat entry to the log; the time is checked before the
+     * record is journaled, so the journal never holds an append that fails.
+     *
+     * @param speaker
+     *            non-null/non-empty
+     * @param text
+     *            non-null
+     * @param time
+     *            the time of the entry, or {@code NO_TIME}
+     */
+    @Override
+    public void append(String speaker, String text, long time) {
+        checkTime(this.lastTime(), time);
+        if (this.journaling()) {
+            this.log(appendRecord(speaker, text, time));
+        }
+        super.append(speaker, text, time);
+    }
+
+    /**
+     * Appends entries {@code [0, count)} of two parallel arrays in one bulk
+     * copy, journaling them as one group.
+     *
+     * @param newSpeakers
+     *            the speakers of the new entries
+     * @param newTexts
+     *            the texts of the new entries
+     * @param newTimes
+     *            the times of the new entries, or null
+     * @param count
+     *            the number of entries to append
+     * @updates this
+     */
+    @Override
+    void appendBlock(String[] newSpeakers, String[] newTexts, long[] newTimes,
+            int count) {
+        this.checkTimes(newTimes, count);
+        if (this.journaling()) {
+            ByteArrayOutputStream[] records = new ByteArrayOutputStream[count];
+            for (int i = 0; i < count; i++) {
+                long time = NO_TIME;
+                if (newTimes != null) {
+                    time = newTimes[i];
+                }
+                records[i] = appendRecord(newSpeakers[i], newTexts[i], time);
+            }
+            this.log(records);
+        }
+        super.appendBlock(newSpeakers, newTexts, newTimes, count);
+    }
+
+    /**
+     * Undo chat: removes the last entry and reports it as a map with keys
+     * "speaker", "text"; an empty log is rejected before the record is
+     * journaled, so the journal never holds a removal that fails.
+     *
+     * @return removed entry encoded as a Map<String,String>
+     * @requires |this| > 0
+     * @throws IndexOutOfBoundsException
+     *             if the log is empty
+     */
+    @Override
+    public Map<String, String> removeChat() {
+        if (this.length() == 0) {
+            throw new IndexOutOfBoundsException("removeChat on an empty log");
+        }
+        if (this.journaling()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                record(REMOVE, bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.log(bytes);
+        }
+        return super.removeChat();
+    }
+
+    /**
+     * Keeps only entries in [start, end) and deletes all other chat; invalid
+     * bounds are rejected before the record is journaled.
+     *
+     * @param start
+     *            inclusive index
+     * @param end
+     *            exclusive index (0 ≤ start ≤ end ≤ |#this|)
+     * @updates this
+     * @return this (now containing only the chosen segment)
+     * @throws IndexOutOfBoundsException
+     *             if the bounds are invalid
+     */
+    @Override
+    public ConversationLog segment(int start, int end) {
+        if (start < 0 || start > end || end > this.length()) {
+            throw new IndexOutOfBoundsException("Invalid segment [" + start
+                    + ", " + end + ") of " + this.length() + " entries");
+        }
+        if (this.journaling()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                DataOutputStream out = record(SEGMENT, bytes);
+                out.writeInt(start);
+                out.writeInt(end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.log(bytes);
+        }
+        return super.segment(start, end);
+    }
+
+}
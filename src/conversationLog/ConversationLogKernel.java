@@ -22,6 +22,30 @@ public interface ConversationLogKernel extends Standard<ConversationLog> {
      */
     boolean isEmpty();
 
+    /**
+     * Report the speaker of entry {@code i}. The cost depends on the
+     * implementation: O(1) for the array-backed logs, but O(i) for
+     * {@code ConversationLogSecondary}, and a walk over the sealed blocks
+     * between the last read and {@code i} for {@code ConversationLogTiered}.
+     *
+     * @param i
+     *            the entry index
+     * @return the speaker of entry {@code i}
+     * @requires 0 ≤ i < |this|
+     */
+    String speakerAt(int i);
+
+    /**
+     * Report the text of entry {@code i}; costs the same as
+     * {@link #speakerAt(int)}.
+     *
+     * @param i
+     *            the entry index
+     * @return the text of entry {@code i}
+     * @requires 0 ≤ i < |this|
+     */
+    String textAt(int i);
+
     /**
      * Append a chat entry to the log.
      *
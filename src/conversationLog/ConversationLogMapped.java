@@ -0,0 +1,650 @@
+package conversationLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+import components.simplereader.SimpleReader;
+import components.simplewriter.SimpleWriter;
+
+/**
+ * File-backed implementation of ConversationLog over a memory-mapped
+ * transcript.
+ *
+ * <p>
+ * {@link #ConversationLogMapped(String)} maps a file written by
+ * {@code exportChat} and records only where each {@code speaker: text} line
+ * starts, how long it is and where its {@code ": "} is (16 bytes per entry).
+ * Speaker and text are decoded from the mapping when an entry is read, so the
+ * heap does not grow with the size of the text. Lines without {@code ": "}
+ * are skipped and, in a timed transcript, the {@code @time } prefix of each
+ * line is left out of the entry, exactly like {@code importChat}.
+ * {@code find} and {@code speakerChat} match on the UTF-8 bytes and only
+ * decode the matching entries.
+ * </p>
+ *
+ * <p>
+ * The mapping is read-only: entries appended later live in an in-heap
+ * {@link ConversationLog1A} tail, and {@code removeChat} and {@code segment}
+ * narrow the window of mapped lines still in the log.
+ * </p>
+ */
+public class ConversationLogMapped implements ConversationLog {
+
+    /**
+     * Bits of the offset inside one mapped region.
+     */
+    private static final int REGION_BITS = 30;
+
+    /**
+     * Maximum size of one mapped region.
+     */
+    private static final long REGION_SIZE = 1L << REGION_BITS;
+
+    /**
+     * Capacity of the line index when a file is mapped.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Byte value of a line feed.
+     */
+    private static final byte LF = '\n';
+
+    /**
+     * Byte value of a carriage return.
+     */
+    private static final byte CR = '\r';
+
+    /**
+     * Longest {@code @time } prefix: the mark, a long with its sign, and a
+     * space.
+     */
+    private static final int MAX_TIME_PREFIX = 22;
+
+    /**
+     * Bytes of the first line of a timed transcript.
+     */
+    private static final byte[] TIMED_HEADER = ConversationLog1A.TIMED_HEADER
+            .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Bytes separating speaker and text.
+     */
+    private static final byte[] SEPARATOR = ": "
+            .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Mapped regions of the file, each REGION_SIZE bytes but the last.
+     */
+    private MappedByteBuffer[] regions;
+
+    /**
+     * File offset where each mapped line starts.
+     */
+    private long[] lineStart;
+
+    /**
+     * Length in bytes of each mapped line, without its terminator.
+     */
+    private int[] lineLength;
+
+    /**
+     * Offset of the first {@code ": "} in each mapped line.
+     */
+    private int[] separatorAt;
+
+    /**
+     * First mapped line still in the log.
+     */
+    private int first;
+
+    /**
+     * One past the last mapped line still in the log.
+     */
+    private int last;
+
+    /**
+     * Entries appended after the file was mapped.
+     */
+    private ConversationLog1A tail;
+
+    /**
+     * Scratch buffer used to copy mapped bytes out of the regions.
+     */
+    private byte[] scratch;
+
+    /**
+     * Constructor for ConversationLogMapped: an empty log.
+     */
+    public ConversationLogMapped() {
+        this.createNewRep();
+    }
+
+    /**
+     * Constructor for ConversationLogMapped: a log holding the entries of the
+     * transcript in {@code fileName}, which is memory-mapped and indexed but
+     * not decoded.
+     *
+     * @param fileName
+     *            the transcript file, in the {@code exportChat} format
+     */
+    public ConversationLogMapped(String fileName) {
+        this.createNewRep();
+        this.mapFile(fileName);
+    }
+
+    /**
+     * Initializes the representation to an empty log.
+     *
+     * @updates this
+     * @ensures {@code |this| = 0}
+     */
+    private void createNewRep() {
+        this.regions = new MappedByteBuffer[0];
+        this.lineStart = new long[0];
+        this.lineLength = new int[0];
+        this.separatorAt = new int[0];
+        this.first = 0;
+        this.last = 0;
+        this.tail = new ConversationLog1A();
+        this.scratch = new byte[0];
+    }
+
+    /**
+     * Maps {@code fileName} and builds the line index in one pass over its
+     * bytes, applying the line rules of {@code SimpleReader.nextLine}.
+     *
+     * @param fileName
+     *            the transcript file
+     * @updates this
+     */
+    private void mapFile(String fileName) {
+        try (FileChannel channel = FileChannel
+                .open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            int count = (int) ((fileSize + REGION_SIZE - 1) >>> REGION_BITS);
+            this.regions = new MappedByteBuffer[count];
+            for (int r = 0; r < count; r++) {
+                long start = r * REGION_SIZE;
+                this.regions[r] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        start, Math.min(REGION_SIZE, fileSize - start));
+            }
+            this.indexLines(fileSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records every line of the mapped file that contains {@code ": "}.
+     *
+     * @param fileSize
+     *            the size of the mapped file
+     * @updates this.lineStart, this.lineLength, this.separatorAt, this.last
+     */
+    private void indexLines(long fileSize) {
+        this.lineStart = new long[INITIAL_CAPACITY];
+        this.lineLength = new int[INITIAL_CAPACITY];
+        this.separatorAt = new int[INITIAL_CAPACITY];
+        boolean timed = this.startsTimed(fileSize);
+        long start = 0;
+        int separator = -1;
+        byte previous = 0;
+        long pos = 0;
+        while (pos < fileSize) {
+            byte b = this.byteAt(pos);
+            if (b == LF || b == CR) {
+                this.addLine(start, (int) (pos - start), separator, timed);
+                if (b == CR && pos + 1 < fileSize
+                        && this.byteAt(pos + 1) == LF) {
+                    pos++;
+                }
+                start = pos + 1;
+                separator = -1;
+                previous = 0;
+            } else {
+                if (separator == -1 && previous == SEPARATOR[0]
+                        && b == SEPARATOR[1]) {
+                    separator = (int) (pos - 1 - start);
+                }
+                previous = b;
+            }
+            pos++;
+        }
+        if (start < fileSize) {
+            this.addLine(start, (int) (fileSize - start), separator,
+                    timed);
+        }
+    }
+
+    /**
+     * Reports whether the mapped file starts with the timed header line.
+     *
+     * @param fileSize
+     *            the size of the mapped file
+     * @return true if the first line is the timed header
+     */
+    private boolean startsTimed(long fileSize) {
+        boolean timed = fileSize >= TIMED_HEADER.length;
+        for (int k = 0; timed && k < TIMED_HEADER.length; k++) {
+            timed = this.byteAt(k) == TIMED_HEADER[k];
+        }
+        if (timed && fileSize > TIMED_HEADER.length) {
+            byte after = this.byteAt(TIMED_HEADER.length);
+            timed = after == LF || after == CR;
+        }
+        return timed;
+    }
+
+    /**
+     * Adds a line to the index if it holds a separator, leaving out its
+     * {@code @time } prefix if the file is a timed transcript.
+     *
+     * @param start
+     *            file offset of the line
+     * @param length
+     *            length of the line in bytes
+     * @param separator
+     *            offset of the first separator in the line, or -1
+     * @param timed
+     *            whether the file starts with the timed header
+     * @updates this.lineStart, this.lineLength, this.separatorAt, this.last
+     */
+    private void addLine(long start, int length, int separator,
+            boolean timed) {
+        if (separator != -1) {
+            int prefix = 0;
+            if (timed) {
+                // Same rule as importChat; non-ASCII bytes are never digits
+                int head = Math.min(length, MAX_TIME_PREFIX);
+                prefix = ConversationLog1A.timePrefixLength(new String(
+                        this.copyOut(start, head), 0, head,
+                        StandardCharsets.ISO_8859_1));
+            }
+            if (this.last == this.lineStart.length) {
+                int capacity = 2 * this.lineStart.length;
+                this.lineStart = Arrays.copyOf(this.lineStart, capacity);
+                this.lineLength = Arrays.copyOf(this.lineLength, capacity);
+                this.separatorAt = Arrays.copyOf(this.separatorAt, capacity);
+            }
+            this.lineStart[this.last] = start + prefix;
+            this.lineLength[this.last] = length - prefix;
+            this.separatorAt[this.last] = separator - prefix;
+            this.last++;
+        }
+    }
+
+    /**
+     * Reports the byte at {@code pos} of the mapped file.
+     *
+     * @param pos
+     *            the file offset
+     * @return the byte at {@code pos}
+     */
+    private byte byteAt(long pos) {
+        return this.regions[(int) (pos >>> REGION_BITS)]
+                .get((int) (pos & (REGION_SIZE - 1)));
+    }
+
+    /**
+     * Copies {@code length} mapped bytes starting at {@code pos} into the
+     * scratch buffer.
+     *
+     * @param pos
+     *            the file offset
+     * @param length
+     *            the number of bytes to copy
+     * @return the scratch buffer, holding the bytes in [0, length)
+     * @updates this.scratch
+     */
+    private byte[] copyOut(long pos, int length) {
+        if (this.scratch.length < length) {
+            this.scratch = new byte[Math.max(length, 2 * this.scratch.length)];
+        }
+        int copied = 0;
+        while (copied < length) {
+            long at = pos + copied;
+            int region = (int) (at >>> REGION_BITS);
+            int offset = (int) (at & (REGION_SIZE - 1));
+            int chunk = Math.min(length - copied,
+                    this.regions[region].limit() - offset);
+            this.regions[region].get(offset, this.scratch, copied, chunk);
+            copied += chunk;
+        }
+        return this.scratch;
+    }
+
+    /**
+     * Decodes the speaker of mapped line {@code line}.
+     *
+     * @param line
+     *            the mapped line
+     * @return the speaker of the line
+     */
+    private String mappedSpeaker(int line) {
+        int length = this.separatorAt[line];
+        return new String(this.copyOut(this.lineStart[line], length), 0,
+                length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the text of mapped line {@code line}.
+     *
+     * @param line
+     *            the mapped line
+     * @return the text of the line
+     */
+    private String mappedText(int line) {
+        int skip = this.separatorAt[line] + SEPARATOR.length;
+        int length = this.lineLength[line] - skip;
+        return new String(this.copyOut(this.lineStart[line] + skip, length),
+                0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reports whether {@code pattern} occurs in {@code bytes[0, length)}.
+     *
+     * @param bytes
+     *            the bytes to search
+     * @param length
+     *            the number of bytes to search
+     * @param pattern
+     *            the bytes to look for
+     * @return true if {@code pattern} occurs in the searched bytes
+     */
+    private static boolean containsBytes(byte[] bytes, int length,
+            byte[] pattern) {
+        boolean found = pattern.length == 0;
+        for (int at = 0; !found && at + pattern.length <= length; at++) {
+            int k = 0;
+            while (k < pattern.length && bytes[at + k] == pattern[k]) {
+                k++;
+            }
+            found = k == pattern.length;
+        }
+        return found;
+    }
+
+    /**
+     * Reports the number of mapped lines still in the log.
+     *
+     * @return the number of mapped entries
+     */
+    private int mappedLength() {
+        return this.last - this.first;
+    }
+
+    // Standard interface methods
+    /**
+     * Returns a new object with the same <i>dynamic</i> type as {@code this},
+     * having an initial value.
+     */
+    @Override
+    public ConversationLogMapped newInstance() {
+        return new ConversationLogMapped();
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     */
+    @Override
+    public void clear() {
+        this.createNewRep();
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value; the declaration notwithstanding, the
+     * <i>dynamic</i> type of {@code source} must be the same as the
+     * <i>dynamic</i> type of {@code this}.
+     */
+    @Override
+    public void transferFrom(ConversationLog source) {
+        if (this != source) {
+            ConversationLogMapped that = (ConversationLogMapped) source;
+            this.regions = that.regions;
+            this.lineStart = that.lineStart;
+            this.lineLength = that.lineLength;
+            this.separatorAt = that.separatorAt;
+            this.first = that.first;
+            this.last = that.last;
+            this.tail = that.tail;
+            this.scratch = that.scratch;
+            that.createNewRep();
+        }
+    }
+
+    // Kernel interface methods
+    /**
+     * Report the number of chat entries in the log.
+     *
+     * @return the number of chat entries
+     */
+    @Override
+    public int length() {
+        return this.mappedLength() + this.tail.length();
+    }
+
+    /**
+     * Check if the log is empty.
+     *
+     * @return true if the log is empty, false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.length() == 0;
+    }
+
+    /**
+     * Report the speaker of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the speaker of entry {@code i}
+     */
+    @Override
+    public String speakerAt(int i) {
+        int mapped = this.mappedLength();
+        String speaker;
+        if (i < mapped) {
+            speaker = this.mappedSpeaker(this.first + i);
+        } else {
+            speaker = this.tail.speakerAt(i - mapped);
+        }
+        return speaker;
+    }
+
+    /**
+     * Report the text of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the text of entry {@code i}
+     */
+    @Override
+    public String textAt(int i) {
+        int mapped = this.mappedLength();
+        String text;
+        if (i < mapped) {
+            text = this.mappedText(this.first + i);
+        } else {
+            text = this.tail.textAt(i - mapped);
+        }
+        return text;
+    }
+
+    /**
+     * Append a chat entry to the log.
+     *
+     * @param speaker
+     *            non-null/non-empty
+     * @param text
+     *            non-null
+     */
+    @Override
+    public void append(String speaker, String text) {
+        this.tail.append(speaker, text);
+    }
+
+    /**
+     * Undo chat: removes the last entry and reports it as a map with keys
+     * "speaker", "text".
+     *
+     * @return removed entry encoded as a Map<String,String>
+     * @requires |this| > 0
+     */
+    @Override
+    public Map<String, String> removeChat() {
+        Map<String, String> removedMap;
+        if (this.tail.length() > 0) {
+            removedMap = this.tail.removeChat();
+        } else {
+            this.last--;
+            removedMap = new Map1L<>();
+            removedMap.add("speaker", this.mappedSpeaker(this.last));
+            removedMap.add("text", this.mappedText(this.last));
+        }
+        return removedMap;
+    }
+
+    /**
+     * Reset the conversation log to empty.
+     *
+     * @clear this
+     */
+    @Override
+    public void reset() {
+        this.clear();
+    }
+
+    /**
+     * Keeps only entries in [start, end) and deletes all other chat.
+     *
+     * @param start
+     *            inclusive index
+     * @param end
+     *            exclusive index (0 ≤ start ≤ end ≤ |#this|)
+     * @updates this
+     * @return this (now containing only the chosen segment)
+     */
+    @Override
+    public ConversationLog segment(int start, int end) {
+        int mapped = this.mappedLength();
+        this.tail.segment(Math.max(0, start - mapped),
+                Math.max(0, end - mapped));
+        int oldFirst = this.first;
+        this.first = oldFirst + Math.min(start, mapped);
+        this.last = oldFirst + Math.min(end, mapped);
+        return this;
+    }
+
+    // Secondary interface methods
+    /**
+     * Export the chat log to a SimpleWriter.
+     *
+     * @param out
+     *            the SimpleWriter to write to
+     */
+    @Override
+    public void exportChat(SimpleWriter out) {
+        for (int line = this.first; line < this.last; line++) {
+            out.println(
+                    this.mappedSpeaker(line) + ": " + this.mappedText(line));
+        }
+        this.tail.exportChat(out);
+    }
+
+    /**
+     * Import the chat log from a SimpleReader; the times of a timed
+     * transcript are dropped, so the tail stays untimed.
+     *
+     * @param in
+     *            the SimpleReader to read from
+     */
+    @Override
+    public void importChat(SimpleReader in) {
+        TranscriptReader transcript = new TranscriptReader(in);
+        while (transcript.next()) {
+            this.tail.append(transcript.speaker(), transcript.text());
+        }
+        in.close();
+    }
+
+    /**
+     * Convert the entire conversation log to a transcript string.
+     *
+     * @return the transcript string
+     */
+    @Override
+    public String toTranscript() {
+        StringBuilder transcript = new StringBuilder();
+        for (int line = this.first; line < this.last; line++) {
+            transcript.append(this.mappedSpeaker(line)).append(": ")
+                    .append(this.mappedText(line)).append("\n");
+        }
+        transcript.append(this.tail.toTranscript());
+        return transcript.toString();
+    }
+
+    /**
+     * Search for a substring in the chat log and return the list of indices
+     * where found.
+     *
+     * @param substring
+     *            the substring to search for
+     * @return a sequence of indices where the substring is found
+     */
+    @Override
+    public Sequence<Integer> find(String substring) {
+        Sequence<Integer> indices = new Sequence1L<>();
+        byte[] pattern = substring.getBytes(StandardCharsets.UTF_8);
+        for (int line = this.first; line < this.last; line++) {
+            int skip = this.separatorAt[line] + SEPARATOR.length;
+            int length = this.lineLength[line] - skip;
+            byte[] text = this.copyOut(this.lineStart[line] + skip, length);
+            if (containsBytes(text, length, pattern)) {
+                indices.add(indices.length(), line - this.first);
+            }
+        }
+        Sequence<Integer> tailIndices = this.tail.find(substring);
+        for (Integer i : tailIndices) {
+            indices.add(indices.length(), i + this.mappedLength());
+        }
+        return indices;
+    }
+
+    /**
+     * Get all chats from a specific speaker.
+     *
+     * @param speaker
+     *            the speaker whose chats to retrieve
+     * @return a sequence of chats from the specified speaker
+     */
+    @Override
+    public Sequence<String> speakerChat(String speaker) {
+        Sequence<String> chats = new Sequence1L<>();
+        byte[] name = speaker.getBytes(StandardCharsets.UTF_8);
+        for (int line = this.first; line < this.last; line++) {
+            if (this.separatorAt[line] == name.length) {
+                byte[] bytes = this.copyOut(this.lineStart[line], name.length);
+                if (Arrays.equals(bytes, 0, name.length, name, 0,
+                        name.length)) {
+                    chats.add(chats.length(), this.mappedText(line));
+                }
+            }
+        }
+        chats.append(this.tail.speakerChat(speaker));
+        return chats;
+    }
+
+}
@@ -0,0 +1,635 @@
+package conversationLog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+
+/**
+ * Streaming k-way merge of several ConversationLogs or transcript files into
+ * one log or transcript.
+ *
+ * <p>
+ * Every input is read through a cursor, and a heap holds the next entry of
+ * each one, so merging k inputs of n entries in all takes O(n log k) time and
+ * holds k entries, plus one output batch, in memory. Transcript files are
+ * read one line at a time and never loaded whole. The inputs are left
+ * unchanged.
+ * </p>
+ *
+ * <p>
+ * With {@link Order#TIME} the entries come out by time, so every input that
+ * is not empty must carry times: a {@link TimedConversationLog} with times,
+ * or a timed transcript. As in {@link ConversationLog1A}, an untimed entry
+ * takes the time of the entry before it in its input, so each input must
+ * already be in time order; entries with equal times keep the order of the
+ * inputs list. With
+ * {@link Order#SEQUENCE} the merge takes entry 0 of every input, then entry
+ * 1, and so on, and drops the times.
+ * </p>
+ */
+public final class ConversationLogMerge {
+
+    /**
+     * How merged entries are ordered.
+     */
+    public enum Order {
+        /**
+         * By time, ties going to the earlier input.
+         */
+        TIME,
+        /**
+         * By position in their input, ties going to the earlier input.
+         */
+        SEQUENCE
+    }
+
+    /**
+     * Number of entries collected before each bulk append to an output log.
+     */
+    private static final int BATCH = 4096;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ConversationLogMerge() {
+    }
+
+    /**
+     * A cursor over the entries of one input.
+     */
+    private abstract static class Source {
+
+        /**
+         * Position of the input in the inputs list.
+         */
+        private final int rank;
+
+        /**
+         * Whether the times are checked, because they order the merge.
+         */
+        private final boolean timed;
+
+        /**
+         * Position of the current entry in the input.
+         */
+        private long sequence;
+
+        /**
+         * Speaker of the current entry.
+         */
+        private String speaker;
+
+        /**
+         * Text of the current entry.
+         */
+        private String text;
+
+        /**
+         * Time of the current entry.
+         */
+        private long time;
+
+        /**
+         * Constructor for Source.
+         *
+         * @param rank
+         *            the position of the input in the inputs list
+         * @param timed
+         *            whether the times are checked
+         */
+        Source(int rank, boolean timed) {
+            this.rank = rank;
+            this.timed = timed;
+            this.sequence = -1;
+            this.time = ConversationLog1A.NO_TIME;
+        }
+
+        /**
+         * Reports whether the times are checked.
+         *
+         * @return true if the times order the merge
+         */
+        final boolean isTimed() {
+            return this.timed;
+        }
+
+        /**
+         * Reports the position of the input in the inputs list.
+         *
+         * @return the rank of the input
+         */
+        final int rank() {
+            return this.rank;
+        }
+
+        /**
+         * Reads the next entry of the input, if any, with {@link #take}.
+         *
+         * @return true if an entry was read, false at the end of the input
+         */
+        abstract boolean advance();
+
+        /**
+         * Releases the input.
+         */
+        abstract void close();
+
+        /**
+         * Makes an entry the current one.
+         *
+         * @param newSpeaker
+         *            the speaker of the entry
+         * @param newText
+         *            the text of the entry
+         * @param newTime
+         *            the time of the entry, or {@code NO_TIME} for the time
+         *            of the entry before it
+         * @throws IllegalArgumentException
+         *             if the times are checked and {@code newTime} is before
+         *             the time of the entry before it
+         */
+        final void take(String newSpeaker, String newText, long newTime) {
+            if (this.timed) {
+                this.time = ConversationLog1A.checkTime(this.time, newTime);
+            }
+            this.speaker = newSpeaker;
+            this.text = newText;
+            this.sequence++;
+        }
+    }
+
+    /**
+     * A cursor over the entries of a ConversationLog.
+     */
+    private static final class LogSource extends Source {
+
+        /**
+         * The log read, if its times are read; null otherwise.
+         */
+        private final TimedConversationLog timedLog;
+
+        /**
+         * Iterator over the entries of the log.
+         */
+        private final Iterator<LogEntry> entries;
+
+        /**
+         * Constructor for LogSource.
+         *
+         * @param rank
+         *            the position of the input in the inputs list
+         * @param timed
+         *            whether the times are checked
+         * @param log
+         *            the log to read
+         * @throws IllegalArgumentException
+         *             if the times are checked and {@code log} is not empty
+         *             but carries no times
+         */
+        LogSource(int rank, boolean timed, ConversationLog log) {
+            super(rank, timed);
+            TimedConversationLog times = null;
+            if (timed && log.length() > 0) {
+                if (!(log instanceof TimedConversationLog)
+                        || !((TimedConversationLog) log).isTimed()) {
+                    throw new IllegalArgumentException("Input " + rank
+                            + " carries no times to merge by");
+                }
+                times = (TimedConversationLog) log;
+            }
+            this.timedLog = times;
+            this.entries = log.entryIterator(0, log.length());
+        }
+
+        @Override
+        boolean advance() {
+            boolean read = this.entries.hasNext();
+            if (read) {
+                LogEntry entry = this.entries.next();
+                long time = ConversationLog1A.NO_TIME;
+                if (this.timedLog != null) {
+                    time = this.timedLog.timeAt(entry.index());
+                }
+                this.take(entry.speaker(), entry.text(), time);
+            }
+            return read;
+        }
+
+        @Override
+        void close() {
+            // The log stays with its owner
+        }
+    }
+
+    /**
+     * A cursor over the entries of a transcript file, read one line at a
+     * time with the rules of {@code importChat}.
+     */
+    private static final class FileSource extends Source {
+
+        /**
+         * The reader of the file.
+         */
+        private final SimpleReader in;
+
+        /**
+         * The entries of the file.
+         */
+        private final TranscriptReader transcript;
+
+        /**
+         * Constructor for FileSource.
+         *
+         * @param rank
+         *            the position of the input in the inputs list
+         * @param timed
+         *            whether the times are checked
+         * @param fileName
+         *            the transcript file to read
+         */
+        FileSource(int rank, boolean timed, String fileName) {
+            super(rank, timed);
+            this.in = new SimpleReader1L(fileName);
+            this.transcript = new TranscriptReader(this.in);
+        }
+
+        @Override
+        boolean advance() {
+            boolean read = this.transcript.next();
+            if (read) {
+                long time = ConversationLog1A.NO_TIME;
+                if (this.isTimed() && !this.transcript.isTimed()) {
+                    throw new IllegalArgumentException("Input " + this.rank()
+                            + " is not a timed transcript");
+                }
+                if (this.isTimed()) {
+                    time = this.transcript.time();
+                }
+                this.take(this.transcript.speaker(), this.transcript.text(),
+                        time);
+            }
+            return read;
+        }
+
+        @Override
+        void close() {
+            this.in.close();
+        }
+    }
+
+    /**
+     * Receives the merged entries, in order.
+     */
+    private interface Sink {
+
+        /**
+         * Receives one entry.
+         *
+         * @param speaker
+         *            the speaker of the entry
+         * @param text
+         *            the text of the entry
+         * @param time
+         *            the time of the entry, or {@code NO_TIME}
+         */
+        void accept(String speaker, String text, long time);
+
+        /**
+         * Receives the end of the merge.
+         */
+        void finish();
+    }
+
+    /**
+     * Appends the merged entries to a log in batches: one
+     * {@code appendBlock}, times included, for a ConversationLog1A, one
+     * {@code appendAll} for any other log.
+     */
+    private static final class LogSink implements Sink {
+
+        /**
+         * The log appended to.
+         */
+        private final ConversationLog output;
+
+        /**
+         * Speakers of the batch.
+         */
+        private final String[] speakers = new String[BATCH];
+
+        /**
+         * Texts of the batch.
+         */
+        private final String[] texts = new String[BATCH];
+
+        /**
+         * Times of the batch.
+         */
+        private final long[] times = new long[BATCH];
+
+        /**
+         * Whether some entry of the batch has a time.
+         */
+        private boolean timed = false;
+
+        /**
+         * Number of entries in the batch.
+         */
+        private int count = 0;
+
+        /**
+         * Constructor for LogSink.
+         *
+         * @param output
+         *            the log to append to
+         */
+        LogSink(ConversationLog output) {
+            this.output = output;
+        }
+
+        @Override
+        public void accept(String speaker, String text, long time) {
+            this.speakers[this.count] = speaker;
+            this.texts[this.count] = text;
+            this.times[this.count] = time;
+            this.timed |= time != ConversationLog1A.NO_TIME;
+            this.count++;
+            if (this.count == BATCH) {
+                this.finish();
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (this.output instanceof ConversationLog1A) {
+                long[] batchTimes = null;
+                if (this.timed) {
+                    batchTimes = this.times;
+                }
+                ((ConversationLog1A) this.output).appendBlock(this.speakers,
+                        this.texts, batchTimes, this.count);
+            } else if (this.count == BATCH) {
+                this.output.appendAll(this.speakers, this.texts);
+            } else {
+                this.output.appendAll(
+                        Arrays.copyOf(this.speakers, this.count),
+                        Arrays.copyOf(this.texts, this.count));
+            }
+            this.timed = false;
+            this.count = 0;
+        }
+    }
+
+    /**
+     * Writes the merged entries as transcript lines: a timed transcript, as
+     * {@code ConversationLog1A} writes it, if the merge is by time, and
+     * plain {@code speaker: text} lines otherwise.
+     */
+    private static final class WriterSink implements Sink {
+
+        /**
+         * The writer printed to.
+         */
+        private final SimpleWriter out;
+
+        /**
+         * Whether the lines carry times.
+         */
+        private final boolean timed;
+
+        /**
+         * Whether the header of a timed transcript is still to be written.
+         */
+        private boolean headerDue;
+
+        /**
+         * Constructor for WriterSink.
+         *
+         * @param out
+         *            the writer to print to
+         * @param timed
+         *            whether to write a timed transcript
+         */
+        WriterSink(SimpleWriter out, boolean timed) {
+            this.out = out;
+            this.timed = timed;
+            this.headerDue = timed;
+        }
+
+        /**
+         * Writes the header of a timed transcript, once, when the first
+         * entry or the end comes, so a merge rejected while its inputs are
+         * opened writes nothing.
+         */
+        private void writeHeader() {
+            if (this.headerDue) {
+                this.out.println(ConversationLog1A.TIMED_HEADER);
+                this.headerDue = false;
+            }
+        }
+
+        @Override
+        public void accept(String speaker, String text, long time) {
+            this.writeHeader();
+            if (this.timed) {
+                this.out.println(
+                        ConversationLog1A.transcriptLine(speaker, text, time));
+            } else {
+                this.out.println(speaker + ": " + text);
+            }
+        }
+
+        @Override
+        public void finish() {
+            this.writeHeader();
+            this.out.close();
+        }
+    }
+
+    /**
+     * Merges the entries of {@code sources} into {@code sink}, then closes
+     * the sources.
+     *
+     * @param sources
+     *            the inputs, in order
+     * @param order
+     *            how the entries are ordered
+     * @param sink
+     *            receives the entries
+     */
+    private static void merge(List<Source> sources, Order order, Sink sink) {
+        Comparator<Source> byRank = Comparator.comparingInt(s -> s.rank);
+        Comparator<Source> comparator;
+        if (order == Order.TIME) {
+            comparator = Comparator.<Source>comparingLong(s -> s.time)
+                    .thenComparing(byRank);
+        } else {
+            comparator = Comparator.<Source>comparingLong(s -> s.sequence)
+                    .thenComparing(byRank);
+        }
+        PriorityQueue<Source> heap = new PriorityQueue<>(
+                Math.max(1, sources.size()), comparator);
+        try {
+            for (Source source : sources) {
+                if (source.advance()) {
+                    heap.add(source);
+                }
+            }
+            while (!heap.isEmpty()) {
+                Source head = heap.poll();
+                sink.accept(head.speaker, head.text, head.time);
+                if (head.advance()) {
+                    heap.add(head);
+                }
+            }
+            sink.finish();
+        } finally {
+            for (Source source : sources) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * Opens a cursor over each log of {@code inputs}.
+     *
+     * @param inputs
+     *            the logs to read
+     * @param order
+     *            how the entries are ordered
+     * @return the cursors, in order
+     */
+    private static List<Source> logSources(
+            List<? extends ConversationLog> inputs, Order order) {
+        List<Source> sources = new ArrayList<>();
+        for (ConversationLog input : inputs) {
+            sources.add(new LogSource(sources.size(), order == Order.TIME,
+                    input));
+        }
+        return sources;
+    }
+
+    /**
+     * Opens a cursor over each transcript file of {@code fileNames}.
+     *
+     * @param fileNames
+     *            the transcript files to read
+     * @param order
+     *            how the entries are ordered
+     * @return the cursors, in order
+     */
+    private static List<Source> fileSources(List<String> fileNames,
+            Order order) {
+        List<Source> sources = new ArrayList<>();
+        try {
+            for (String fileName : fileNames) {
+                sources.add(new FileSource(sources.size(), order == Order.TIME,
+                        fileName));
+            }
+        } catch (RuntimeException e) {
+            for (Source source : sources) {
+                source.close();
+            }
+            throw e;
+        }
+        return sources;
+    }
+
+    /**
+     * Appends the entries of {@code inputs}, merged in {@code order}, to
+     * {@code output}; a ConversationLog1A output also gets their times.
+     *
+     * @param inputs
+     *            the logs to merge
+     * @param order
+     *            how the entries are ordered
+     * @param output
+     *            the log to append to
+     * @updates output
+     * @requires output is not one of inputs, and, if output is timed and
+     *           order is TIME, no input entry has a time before the last
+     *           time of output
+     * @throws IllegalArgumentException
+     *             if order is TIME and an input that is not empty carries no
+     *             times
+     */
+    public static void merge(List<? extends ConversationLog> inputs,
+            Order order, ConversationLog output) {
+        merge(logSources(inputs, order), order, new LogSink(output));
+    }
+
+    /**
+     * Writes the entries of {@code inputs}, merged in {@code order}, to
+     * {@code out} in the {@code exportChat} format, a timed transcript if
+     * {@code order} is TIME, then closes {@code out}.
+     *
+     * @param inputs
+     *            the logs to merge
+     * @param order
+     *            how the entries are ordered
+     * @param out
+     *            the SimpleWriter to write to
+     * @throws IllegalArgumentException
+     *             if order is TIME and an input that is not empty carries no
+     *             times
+     */
+    public static void merge(List<? extends ConversationLog> inputs,
+            Order order, SimpleWriter out) {
+        merge(logSources(inputs, order), order, new WriterSink(out,
+                order == Order.TIME));
+    }
+
+    /**
+     * Appends the entries of the transcript files {@code fileNames}, merged
+     * in {@code order}, to {@code output}; a ConversationLog1A output also
+     * gets their times.
+     *
+     * @param fileNames
+     *            the transcript files to merge, in the {@code exportChat}
+     *            format
+     * @param order
+     *            how the entries are ordered
+     * @param output
+     *            the log to append to
+     * @updates output
+     * @requires if output is timed and order is TIME, no input entry has a
+     *           time before the last time of output
+     * @throws IllegalArgumentException
+     *             if order is TIME and a file with entries is not a timed
+     *             transcript or is not in time order
+     */
+    public static void mergeFiles(List<String> fileNames, Order order,
+            ConversationLog output) {
+        merge(fileSources(fileNames, order), order, new LogSink(output));
+    }
+
+    /**
+     * Writes the entries of the transcript files {@code fileNames}, merged in
+     * {@code order}, to {@code out} in the {@code exportChat} format, a timed
+     * transcript if {@code order} is TIME, then closes {@code out}.
+     *
+     * @param fileNames
+     *            the transcript files to merge, in the {@code exportChat}
+     *            format
+     * @param order
+     *            how the entries are ordered
+     * @param out
+     *            the SimpleWriter to write to
+     * @throws IllegalArgumentException
+     *             if order is TIME and a file with entries is not a timed
+     *             transcript or is not in time order
+     */
+    public static void mergeFiles(List<String> fileNames, Order order,
+            SimpleWriter out) {
+        merge(fileSources(fileNames, order), order, new WriterSink(out,
+                order == Order.TIME));
+    }
+
+}
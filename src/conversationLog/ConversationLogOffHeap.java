@@ -0,0 +1,664 @@
+package conversationLog;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+import components.simplereader.SimpleReader;
+import components.simplewriter.SimpleWriter;
+
+/**
+ * Off-heap implementation of ConversationLog.
+ *
+ * <p>
+ * Texts are encoded to UTF-8 straight into an arena of direct
+ * {@link ByteBuffer} chunks, and every entry is described by four ints in
+ * parallel arrays (chunk, offset, byte length, speaker id), so the heap holds
+ * no object per entry and the garbage collector has nothing to trace but a
+ * handful of arrays. Speakers are kept once each in a dictionary. Strings are
+ * only created when an entry leaves the log ({@code removeChat},
+ * {@code speakerChat}, {@code toTranscript}, {@code exportChat}), and
+ * {@code find} matches the UTF-8 bytes of the query directly in the arena.
+ * </p>
+ *
+ * <p>
+ * {@code removeChat} gives the bytes of the entry back to the arena.
+ * {@code segment} gives back the bytes of the entries after the segment at
+ * once and leaves those before it in place until they outnumber the live
+ * bytes, at which point the live entries are copied into a fresh arena.
+ * </p>
+ *
+ * <p>
+ * Texts are expected to be well-formed UTF-16: unpaired surrogates are stored
+ * as {@code '?'}, like {@code String.getBytes} does.
+ * </p>
+ */
+public class ConversationLogOffHeap implements ConversationLog {
+
+    /**
+     * Largest size in bytes of an arena chunk; longer texts get a chunk of
+     * their own.
+     */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Smallest size in bytes of the first arena chunk; each later chunk is
+     * twice the size of the one before, up to {@code CHUNK_SIZE}.
+     */
+    private static final int FIRST_CHUNK_SIZE = 1 << 12;
+
+    /**
+     * Most UTF-8 bytes per UTF-16 char.
+     */
+    private static final int MAX_BYTES_PER_CHAR = 3;
+
+    /**
+     * Initial capacity of the entry table.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Initial capacity of the chunk array.
+     */
+    private static final int INITIAL_CHUNKS = 4;
+
+    /**
+     * The arena; only chunks [0, chunkCount) are in use, and the last one is
+     * where the next text goes.
+     */
+    private ByteBuffer[] chunks;
+
+    /**
+     * Number of chunks in use.
+     */
+    private int chunkCount;
+
+    /**
+     * Chunk of the text of each table slot.
+     */
+    private int[] chunkOf;
+
+    /**
+     * Offset in its chunk of the text of each table slot.
+     */
+    private int[] offsetOf;
+
+    /**
+     * UTF-8 length of the text of each table slot.
+     */
+    private int[] lengthOf;
+
+    /**
+     * Speaker id of each table slot.
+     */
+    private int[] speakerOf;
+
+    /**
+     * Table slot of entry 0.
+     */
+    private int first;
+
+    /**
+     * Number of entries in the log.
+     */
+    private int size;
+
+    /**
+     * Arena bytes of the entries in the log.
+     */
+    private long liveBytes;
+
+    /**
+     * Arena bytes of entries dropped from the front by {@code segment}.
+     */
+    private long deadBytes;
+
+    /**
+     * Name of each speaker id.
+     */
+    private String[] speakerNames;
+
+    /**
+     * Number of speaker ids in use.
+     */
+    private int speakerCount;
+
+    /**
+     * Id of each speaker name.
+     */
+    private HashMap<String, Integer> speakerIds;
+
+    /**
+     * Encoder of the texts into the arena.
+     */
+    private final CharsetEncoder encoder;
+
+    /**
+     * Buffer the texts are copied to before being decoded.
+     */
+    private byte[] scratch;
+
+    /**
+     * Constructor for ConversationLogOffHeap.
+     */
+    public ConversationLogOffHeap() {
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.scratch = new byte[INITIAL_CAPACITY];
+        this.createNewRep();
+    }
+
+    /**
+     * Initializes the representation to an empty log.
+     *
+     * @updates this
+     * @ensures {@code size = 0}
+     */
+    private void createNewRep() {
+        this.chunks = new ByteBuffer[INITIAL_CHUNKS];
+        this.chunkCount = 0;
+        this.chunkOf = new int[INITIAL_CAPACITY];
+        this.offsetOf = new int[INITIAL_CAPACITY];
+        this.lengthOf = new int[INITIAL_CAPACITY];
+        this.speakerOf = new int[INITIAL_CAPACITY];
+        this.first = 0;
+        this.size = 0;
+        this.liveBytes = 0;
+        this.deadBytes = 0;
+        this.speakerNames = new String[INITIAL_CHUNKS];
+        this.speakerCount = 0;
+        this.speakerIds = new HashMap<>();
+    }
+
+    /**
+     * Adds a chunk of at least {@code minBytes} bytes at the end of the
+     * arena. The first chunk is small and each later one doubles the last,
+     * so a small log does not reserve {@code CHUNK_SIZE} bytes up front.
+     *
+     * @param minBytes
+     *            the number of bytes the new chunk must hold
+     * @return the new chunk
+     * @updates this.chunks, this.chunkCount
+     */
+    private ByteBuffer addChunk(int minBytes) {
+        if (this.chunkCount == this.chunks.length) {
+            this.chunks = Arrays.copyOf(this.chunks, 2 * this.chunkCount);
+        }
+        int chunkSize = FIRST_CHUNK_SIZE;
+        if (this.chunkCount > 0) {
+            chunkSize = Math.min(CHUNK_SIZE,
+                    2 * this.chunks[this.chunkCount - 1].capacity());
+        }
+        ByteBuffer chunk = ByteBuffer
+                .allocateDirect(Math.max(chunkSize, minBytes));
+        this.chunks[this.chunkCount] = chunk;
+        this.chunkCount++;
+        return chunk;
+    }
+
+    /**
+     * Reports the chunk where {@code bytes} more bytes go, adding one if the
+     * last chunk is too full.
+     *
+     * @param bytes
+     *            the number of bytes about to be written
+     * @return the chunk to write to
+     * @updates this.chunks, this.chunkCount
+     */
+    private ByteBuffer tailChunk(int bytes) {
+        ByteBuffer chunk = null;
+        if (this.chunkCount > 0) {
+            chunk = this.chunks[this.chunkCount - 1];
+        }
+        if (chunk == null || chunk.remaining() < bytes) {
+            chunk = this.addChunk(bytes);
+        }
+        return chunk;
+    }
+
+    /**
+     * Makes sure one more entry fits in the table, first by sliding the
+     * window to the start of the table and then by doubling it.
+     *
+     * @updates this
+     */
+    private void ensureCapacity() {
+        if (this.first + this.size == this.chunkOf.length) {
+            int capacity = this.chunkOf.length;
+            if (this.size + 1 > capacity / 2) {
+                capacity *= 2;
+            }
+            this.chunkOf = this.slide(this.chunkOf, capacity);
+            this.offsetOf = this.slide(this.offsetOf, capacity);
+            this.lengthOf = this.slide(this.lengthOf, capacity);
+            this.speakerOf = this.slide(this.speakerOf, capacity);
+            this.first = 0;
+        }
+    }
+
+    /**
+     * Copies the window of a table array to the start of a new array.
+     *
+     * @param column
+     *            a table array
+     * @param capacity
+     *            the length of the new array
+     * @return the new array
+     */
+    private int[] slide(int[] column, int capacity) {
+        int[] slid = new int[capacity];
+        System.arraycopy(column, this.first, slid, 0, this.size);
+        return slid;
+    }
+
+    /**
+     * Reports the id of {@code speaker}, giving it one if it has none.
+     *
+     * @param speaker
+     *            the speaker name
+     * @return the id of {@code speaker}
+     * @updates this.speakerNames, this.speakerCount, this.speakerIds
+     */
+    private int speakerId(String speaker) {
+        Integer id = this.speakerIds.get(speaker);
+        if (id == null) {
+            id = this.speakerCount;
+            if (this.speakerCount == this.speakerNames.length) {
+                this.speakerNames = Arrays.copyOf(this.speakerNames,
+                        2 * this.speakerCount);
+            }
+            this.speakerNames[this.speakerCount] = speaker;
+            this.speakerCount++;
+            this.speakerIds.put(speaker, id);
+        }
+        return id;
+    }
+
+    /**
+     * Decodes the text of table slot {@code slot}.
+     *
+     * @param slot
+     *            a table slot in the window
+     * @return the text
+     */
+    private String decode(int slot) {
+        int length = this.lengthOf[slot];
+        if (this.scratch.length < length) {
+            this.scratch = new byte[Math.max(length, 2 * this.scratch.length)];
+        }
+        this.chunks[this.chunkOf[slot]].get(this.offsetOf[slot], this.scratch,
+                0, length);
+        return new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reports whether the text of table slot {@code slot} contains
+     * {@code pattern}.
+     *
+     * @param slot
+     *            a table slot in the window
+     * @param pattern
+     *            the UTF-8 bytes to look for, at least one
+     * @return true if the text contains {@code pattern}
+     */
+    private boolean contains(int slot, byte[] pattern) {
+        ByteBuffer chunk = this.chunks[this.chunkOf[slot]];
+        int from = this.offsetOf[slot];
+        int last = from + this.lengthOf[slot] - pattern.length;
+        byte head = pattern[0];
+        boolean found = false;
+        for (int at = from; !found && at <= last; at++) {
+            if (chunk.get(at) == head) {
+                int k = 1;
+                while (k < pattern.length
+                        && chunk.get(at + k) == pattern[k]) {
+                    k++;
+                }
+                found = k == pattern.length;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Copies the live entries into a fresh arena and table, dropping the
+     * bytes and slots of the entries before the window.
+     *
+     * @updates this
+     */
+    private void compact() {
+        ByteBuffer[] oldChunks = this.chunks;
+        int[] oldChunkOf = this.chunkOf;
+        int[] oldOffsetOf = this.offsetOf;
+        int capacity = Math.max(INITIAL_CAPACITY, this.size);
+        this.chunks = new ByteBuffer[INITIAL_CHUNKS];
+        this.chunkCount = 0;
+        this.chunkOf = new int[capacity];
+        this.offsetOf = new int[capacity];
+        this.lengthOf = this.slide(this.lengthOf, capacity);
+        this.speakerOf = this.slide(this.speakerOf, capacity);
+        if (this.liveBytes > 0) {
+            // Size the first chunk from the live bytes, not from scratch
+            this.addChunk((int) Math.min(CHUNK_SIZE, this.liveBytes));
+        }
+        for (int i = 0; i < this.size; i++) {
+            int length = this.lengthOf[i];
+            ByteBuffer source = oldChunks[oldChunkOf[this.first + i]]
+                    .duplicate();
+            int from = oldOffsetOf[this.first + i];
+            source.limit(from + length).position(from);
+            ByteBuffer target = this.tailChunk(length);
+            this.chunkOf[i] = this.chunkCount - 1;
+            this.offsetOf[i] = target.position();
+            target.put(source);
+        }
+        this.first = 0;
+        this.deadBytes = 0;
+    }
+
+    // Standard interface methods
+    /**
+     * Returns a new object with the same <i>dynamic</i> type as {@code this},
+     * having an initial value.
+     */
+    @Override
+    public ConversationLogOffHeap newInstance() {
+        return new ConversationLogOffHeap();
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     */
+    @Override
+    public void clear() {
+        this.createNewRep();
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value; the declaration notwithstanding, the
+     * <i>dynamic</i> type of {@code source} must be the same as the
+     * <i>dynamic</i> type of {@code this}.
+     */
+    @Override
+    public void transferFrom(ConversationLog source) {
+        if (this != source) {
+            ConversationLogOffHeap that = (ConversationLogOffHeap) source;
+            this.chunks = that.chunks;
+            this.chunkCount = that.chunkCount;
+            this.chunkOf = that.chunkOf;
+            this.offsetOf = that.offsetOf;
+            this.lengthOf = that.lengthOf;
+            this.speakerOf = that.speakerOf;
+            this.first = that.first;
+            this.size = that.size;
+            this.liveBytes = that.liveBytes;
+            this.deadBytes = that.deadBytes;
+            this.speakerNames = that.speakerNames;
+            this.speakerCount = that.speakerCount;
+            this.speakerIds = that.speakerIds;
+            that.createNewRep();
+        }
+    }
+
+    // Kernel interface methods
+    /**
+     * Return the number of chat entries in the log.
+     *
+     * @return the number of entries
+     */
+    @Override
+    public int length() {
+        return this.size;
+    }
+
+    /**
+     * Check if the chat log is empty.
+     *
+     * @return true if empty, false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Report the speaker of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the speaker of entry {@code i}
+     */
+    @Override
+    public String speakerAt(int i) {
+        return this.speakerNames[this.speakerOf[this.first + i]];
+    }
+
+    /**
+     * Report the text of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the text of entry {@code i}
+     */
+    @Override
+    public String textAt(int i) {
+        return this.decode(this.first + i);
+    }
+
+    /**
+     * Append a chat entry to the log.
+     *
+     * @param speaker
+     *            non-null/non-empty
+     * @param text
+     *            non-null
+     */
+    @Override
+    public void append(String speaker, String text) {
+        this.ensureCapacity();
+        int slot = this.first + this.size;
+        ByteBuffer chunk = this.tailChunk(MAX_BYTES_PER_CHAR * text.length());
+        int offset = chunk.position();
+        this.encoder.reset();
+        this.encoder.encode(CharBuffer.wrap(text), chunk, true);
+        this.encoder.flush(chunk);
+        this.chunkOf[slot] = this.chunkCount - 1;
+        this.offsetOf[slot] = offset;
+        this.lengthOf[slot] = chunk.position() - offset;
+        this.speakerOf[slot] = this.speakerId(speaker);
+        this.liveBytes += this.lengthOf[slot];
+        this.size++;
+    }
+
+    /**
+     * Undo chat: removes the last entry and reports it as a map with keys
+     * "speaker", "text".
+     *
+     * @return removed entry encoded as a Map<String,String>
+     * @requires |this| > 0
+     */
+    @Override
+    public Map<String, String> removeChat() {
+        this.size--;
+        int slot = this.first + this.size;
+        Map<String, String> removedMap = new Map1L<>();
+        removedMap.add("speaker", this.speakerNames[this.speakerOf[slot]]);
+        removedMap.add("text", this.decode(slot));
+        this.liveBytes -= this.lengthOf[slot];
+        // The last entry ends the arena, so its bytes can be written over
+        int chunk = this.chunkOf[slot];
+        this.chunks[chunk].position(this.offsetOf[slot]);
+        if (this.offsetOf[slot] == 0 && chunk > 0) {
+            this.chunks[chunk] = null;
+            this.chunkCount = chunk;
+        }
+        return removedMap;
+    }
+
+    /**
+     * Resets the chat log to empty.
+     */
+    @Override
+    public void reset() {
+        this.clear();
+    }
+
+    /**
+     * Keeps only entries in [start, end) and deletes all other chat.
+     *
+     * @param start
+     *            inclusive index
+     * @param end
+     *            exclusive index (0 ≤ start ≤ end ≤ |#this|)
+     * @updates this
+     * @return this (now containing only the chosen segment)
+     */
+    @Override
+    public ConversationLog segment(int start, int end) {
+        if (end < this.size) {
+            int cut = this.first + end;
+            for (int slot = cut; slot < this.first + this.size; slot++) {
+                this.liveBytes -= this.lengthOf[slot];
+            }
+            int chunk = this.chunkOf[cut];
+            for (int c = chunk + 1; c < this.chunkCount; c++) {
+                this.chunks[c] = null;
+            }
+            this.chunkCount = chunk + 1;
+            this.chunks[chunk].position(this.offsetOf[cut]);
+        }
+        for (int slot = this.first; slot < this.first + start; slot++) {
+            this.liveBytes -= this.lengthOf[slot];
+            this.deadBytes += this.lengthOf[slot];
+        }
+        this.first += start;
+        this.size = end - start;
+        if (this.deadBytes > this.liveBytes) {
+            this.compact();
+        }
+        return this;
+    }
+
+    // Secondary methods
+    /**
+     * Export the chat log to a SimpleWriter.
+     *
+     * @param out
+     *            the SimpleWriter to write to
+     */
+    @Override
+    public void exportChat(SimpleWriter out) {
+        for (int slot = this.first; slot < this.first + this.size; slot++) {
+            out.println(this.speakerNames[this.speakerOf[slot]] + ": "
+                    + this.decode(slot));
+        }
+        out.close();
+    }
+
+    /**
+     * Import the chat log from a SimpleReader; the times of a timed
+     * transcript are dropped.
+     *
+     * @param in
+     *            the SimpleReader to read from
+     */
+    @Override
+    public void importChat(SimpleReader in) {
+        TranscriptReader transcript = new TranscriptReader(in);
+        while (transcript.next()) {
+            this.append(transcript.speaker(), transcript.text());
+        }
+        in.close();
+    }
+
+    /**
+     * Convert the entire conversation log to a transcript string.
+     *
+     * @return the transcript string
+     */
+    @Override
+    public String toTranscript() {
+        StringBuilder transcript = new StringBuilder();
+        for (int slot = this.first; slot < this.first + this.size; slot++) {
+            transcript.append(this.speakerNames[this.speakerOf[slot]])
+                    .append(": ").append(this.decode(slot)).append("\n");
+        }
+        return transcript.toString();
+    }
+
+    /**
+     * Search for a substring in the chat log and return the list of indices
+     * where found.
+     *
+     * @param substring
+     *            the substring to search for
+     * @return a sequence of indices where the substring is found
+     */
+    @Override
+    public Sequence<Integer> find(String substring) {
+        byte[] pattern = substring.getBytes(StandardCharsets.UTF_8);
+        Sequence<Integer> indices = new Sequence1L<>();
+        for (int i = 0; i < this.size; i++) {
+            if (pattern.length == 0 || this.contains(this.first + i, pattern)) {
+                indices.add(indices.length(), i);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Retrieve all chat entries from a specific speaker.
+     *
+     * @param speaker
+     *            the speaker to filter by
+     * @return a sequence of chat texts from the given speaker
+     */
+    @Override
+    public Sequence<String> speakerChat(String speaker) {
+        Sequence<String> chats = new Sequence1L<>();
+        Integer id = this.speakerIds.get(speaker);
+        if (id != null) {
+            int wanted = id;
+            for (int slot = this.first; slot < this.first + this.size; slot++) {
+                if (this.speakerOf[slot] == wanted) {
+                    chats.add(chats.length(), this.decode(slot));
+                }
+            }
+        }
+        return chats;
+    }
+
+    // Other methods
+    /**
+     * Reports the off-heap memory held by the arena.
+     *
+     * @return the capacity of the arena chunks, in bytes
+     */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (int c = 0; c < this.chunkCount; c++) {
+            bytes += this.chunks[c].capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Reports the UTF-8 size of the texts of the log.
+     *
+     * @return the number of arena bytes used by the entries of the log
+     */
+    public long textBytes() {
+        return this.liveBytes;
+    }
+
+}
@@ -0,0 +1,947 @@
+package conversationLog;
+
+import java.util.Arrays;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+import components.simplereader.SimpleReader;
+import components.simplewriter.SimpleWriter;
+
+/**
+ * Implementation of ConversationLog on a persistent vector, with O(1)
+ * immutable snapshots and multi-step undo.
+ *
+ * <p>
+ * Entries are kept in a 32-way trie of leaves of 32 entries, plus a tail leaf
+ * that takes the appends, in the style of Clojure's persistent vector. Trie
+ * nodes are never changed once built: pushing the tail into the trie,
+ * dropping the last leaf and cutting the trie short all copy the O(log n)
+ * nodes on one path and share the rest. The tail is written in place until a
+ * snapshot shares it, after which the next write copies it once.
+ * </p>
+ *
+ * <p>
+ * {@link #snapshot()} therefore costs O(1) and returns a read-only view that
+ * keeps its value while this log goes on taking {@code append},
+ * {@code removeChat} and {@code segment} calls; {@link #restore(Snapshot)}
+ * makes this log equal to any earlier snapshot, also in O(1), so a stack of
+ * snapshots is an undo history of any depth. Like
+ * {@link ConversationLog1A}, {@code segment} narrows a window over the trie
+ * and rebuilds the trie once the entries before the window outnumber those in
+ * it.
+ * </p>
+ */
+public class ConversationLogPersistent implements ConversationLog {
+
+    /**
+     * Bits of an index consumed by one trie level.
+     */
+    private static final int BITS = 5;
+
+    /**
+     * Number of entries in a leaf, and of children of an inner node.
+     */
+    private static final int WIDTH = 1 << BITS;
+
+    /**
+     * Mask of the bits of an index consumed by one trie level.
+     */
+    private static final int MASK = WIDTH - 1;
+
+    /**
+     * Length of a leaf array, which holds the speaker and the text of each
+     * entry side by side.
+     */
+    private static final int LEAF_LENGTH = 2 * WIDTH;
+
+    /**
+     * The empty trie.
+     */
+    private static final Object[] EMPTY_ROOT = new Object[WIDTH];
+
+    /**
+     * The empty view.
+     */
+    private static final View EMPTY_VIEW = new View(EMPTY_ROOT, BITS, 0,
+            new Object[LEAF_LENGTH], 0, 0);
+
+    /**
+     * An immutable value of the log: a trie, a tail and a window start.
+     */
+    private static final class View {
+
+        /**
+         * Root of the trie.
+         */
+        private final Object[] root;
+
+        /**
+         * Bit shift of the root level.
+         */
+        private final int shift;
+
+        /**
+         * Number of entry slots in the trie, a multiple of WIDTH.
+         */
+        private final int trieCount;
+
+        /**
+         * The tail leaf.
+         */
+        private final Object[] tail;
+
+        /**
+         * Number of entries in the tail.
+         */
+        private final int tailSize;
+
+        /**
+         * Slot of entry 0.
+         */
+        private final int offset;
+
+        /**
+         * Constructor for View.
+         *
+         * @param root
+         *            the root of the trie
+         * @param shift
+         *            the bit shift of the root level
+         * @param trieCount
+         *            the number of entry slots in the trie
+         * @param tail
+         *            the tail leaf
+         * @param tailSize
+         *            the number of entries in the tail
+         * @param offset
+         *            the slot of entry 0
+         */
+        View(Object[] root, int shift, int trieCount, Object[] tail,
+                int tailSize, int offset) {
+            this.root = root;
+            this.shift = shift;
+            this.trieCount = trieCount;
+            this.tail = tail;
+            this.tailSize = tailSize;
+            this.offset = offset;
+        }
+
+        /**
+         * Reports the number of entries.
+         *
+         * @return the number of entries
+         */
+        int length() {
+            return this.trieCount + this.tailSize - this.offset;
+        }
+
+        /**
+         * Reports the leaf holding slot {@code slot}.
+         *
+         * @param slot
+         *            a slot of the window
+         * @return the leaf of {@code slot}
+         */
+        Object[] leafOf(int slot) {
+            Object[] leaf = this.tail;
+            if (slot < this.trieCount) {
+                leaf = leafFor(this.root, this.shift, slot);
+            }
+            return leaf;
+        }
+
+        /**
+         * Reports the speaker of entry {@code i}.
+         *
+         * @param i
+         *            the entry index (0 ≤ i < |this|)
+         * @return the speaker of entry {@code i}
+         */
+        String speakerAt(int i) {
+            int slot = this.offset + i;
+            return (String) this.leafOf(slot)[2 * (slot & MASK)];
+        }
+
+        /**
+         * Reports the text of entry {@code i}.
+         *
+         * @param i
+         *            the entry index (0 ≤ i < |this|)
+         * @return the text of entry {@code i}
+         */
+        String textAt(int i) {
+            int slot = this.offset + i;
+            return (String) this.leafOf(slot)[2 * (slot & MASK) + 1];
+        }
+
+        /**
+         * Search for a substring in the entries.
+         *
+         * @param substring
+         *            the substring to search for
+         * @return a sequence of indices where the substring is found
+         */
+        Sequence<Integer> find(String substring) {
+            Sequence<Integer> indices = new Sequence1L<>();
+            int end = this.trieCount + this.tailSize;
+            Object[] leaf = null;
+            for (int slot = this.offset; slot < end; slot++) {
+                if (leaf == null || (slot & MASK) == 0) {
+                    leaf = this.leafOf(slot);
+                }
+                if (((String) leaf[2 * (slot & MASK) + 1]).contains(substring)) {
+                    indices.add(indices.length(), slot - this.offset);
+                }
+            }
+            return indices;
+        }
+
+        /**
+         * Retrieve all entries from a specific speaker.
+         *
+         * @param speaker
+         *            the speaker to filter by
+         * @return a sequence of chat texts from the given speaker
+         */
+        Sequence<String> speakerChat(String speaker) {
+            Sequence<String> chats = new Sequence1L<>();
+            int end = this.trieCount + this.tailSize;
+            Object[] leaf = null;
+            for (int slot = this.offset; slot < end; slot++) {
+                if (leaf == null || (slot & MASK) == 0) {
+                    leaf = this.leafOf(slot);
+                }
+                int at = 2 * (slot & MASK);
+                if (leaf[at].equals(speaker)) {
+                    chats.add(chats.length(), (String) leaf[at + 1]);
+                }
+            }
+            return chats;
+        }
+
+        /**
+         * Writes every entry as a transcript line.
+         *
+         * @param out
+         *            the transcript so far
+         * @param lineEnd
+         *            the line terminator
+         * @updates out
+         */
+        void render(StringBuilder out, String lineEnd) {
+            int end = this.trieCount + this.tailSize;
+            Object[] leaf = null;
+            for (int slot = this.offset; slot < end; slot++) {
+                if (leaf == null || (slot & MASK) == 0) {
+                    leaf = this.leafOf(slot);
+                }
+                int at = 2 * (slot & MASK);
+                out.append((String) leaf[at]).append(": ")
+                        .append((String) leaf[at + 1]).append(lineEnd);
+            }
+        }
+
+        /**
+         * Export the entries to a SimpleWriter.
+         *
+         * @param out
+         *            the SimpleWriter to write to
+         */
+        void exportChat(SimpleWriter out) {
+            int end = this.trieCount + this.tailSize;
+            Object[] leaf = null;
+            for (int slot = this.offset; slot < end; slot++) {
+                if (leaf == null || (slot & MASK) == 0) {
+                    leaf = this.leafOf(slot);
+                }
+                int at = 2 * (slot & MASK);
+                out.println(leaf[at] + ": " + leaf[at + 1]);
+            }
+            out.close();
+        }
+    }
+
+    /**
+     * A read-only snapshot of a {@link ConversationLogPersistent}. Its value
+     * never changes; every method that would change it throws
+     * {@link UnsupportedOperationException}.
+     */
+    public static final class Snapshot implements ConversationLog {
+
+        /**
+         * The value of the snapshot.
+         */
+        private final View view;
+
+        /**
+         * Constructor for Snapshot.
+         *
+         * @param view
+         *            the value of the snapshot
+         */
+        private Snapshot(View view) {
+            this.view = view;
+        }
+
+        /**
+         * Makes the exception thrown by every method that would change a
+         * snapshot.
+         *
+         * @return the exception to throw
+         */
+        private static UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException(
+                    "Snapshots are read-only");
+        }
+
+        // Standard interface methods
+        /**
+         * Returns an empty snapshot.
+         */
+        @Override
+        public Snapshot newInstance() {
+            return new Snapshot(EMPTY_VIEW);
+        }
+
+        /**
+         * Unsupported: snapshots are read-only.
+         */
+        @Override
+        public void clear() {
+            throw readOnly();
+        }
+
+        /**
+         * Unsupported: snapshots are read-only.
+         */
+        @Override
+        public void transferFrom(ConversationLog source) {
+            throw readOnly();
+        }
+
+        // Kernel interface methods
+        /**
+         * Return the number of chat entries in the snapshot.
+         *
+         * @return the number of entries
+         */
+        @Override
+        public int length() {
+            return this.view.length();
+        }
+
+        /**
+         * Check if the snapshot is empty.
+         *
+         * @return true if empty, false otherwise
+         */
+        @Override
+        public boolean isEmpty() {
+            return this.view.length() == 0;
+        }
+
+        /**
+         * Report the speaker of entry {@code i}.
+         *
+         * @param i
+         *            the entry index (0 ≤ i < |this|)
+         * @return the speaker of entry {@code i}
+         */
+        @Override
+        public String speakerAt(int i) {
+            return this.view.speakerAt(i);
+        }
+
+        /**
+         * Report the text of entry {@code i}.
+         *
+         * @param i
+         *            the entry index (0 ≤ i < |this|)
+         * @return the text of entry {@code i}
+         */
+        @Override
+        public String textAt(int i) {
+            return this.view.textAt(i);
+        }
+
+        /**
+         * Unsupported: snapshots are read-only.
+         *
+         * @param speaker
+         *            ignored
+         * @param text
+         *            ignored
+         */
+        @Override
+        public void append(String speaker, String text) {
+            throw readOnly();
+        }
+
+        /**
+         * Unsupported: snapshots are read-only.
+         *
+         * @return never returns
+         */
+        @Override
+        public Map<String, String> removeChat() {
+            throw readOnly();
+        }
+
+        /**
+         * Unsupported: snapshots are read-only.
+         */
+        @Override
+        public void reset() {
+            throw readOnly();
+        }
+
+        /**
+         * Unsupported: snapshots are read-only.
+         *
+         * @param start
+         *            ignored
+         * @param end
+         *            ignored
+         * @return never returns
+         */
+        @Override
+        public ConversationLog segment(int start, int end) {
+            throw readOnly();
+        }
+
+        // Secondary methods
+        /**
+         * Export the snapshot to a SimpleWriter.
+         *
+         * @param out
+         *            the SimpleWriter to write to
+         */
+        @Override
+        public void exportChat(SimpleWriter out) {
+            this.view.exportChat(out);
+        }
+
+        /**
+         * Unsupported: snapshots are read-only.
+         *
+         * @param in
+         *            ignored
+         */
+        @Override
+        public void importChat(SimpleReader in) {
+            throw readOnly();
+        }
+
+        /**
+         * Convert the snapshot to a transcript string.
+         *
+         * @return the transcript string
+         */
+        @Override
+        public String toTranscript() {
+            StringBuilder transcript = new StringBuilder();
+            this.view.render(transcript, "\n");
+            return transcript.toString();
+        }
+
+        /**
+         * Search for a substring in the snapshot and return the list of
+         * indices where found.
+         *
+         * @param substring
+         *            the substring to search for
+         * @return a sequence of indices where the substring is found
+         */
+        @Override
+        public Sequence<Integer> find(String substring) {
+            return this.view.find(substring);
+        }
+
+        /**
+         * Retrieve all chat entries of the snapshot from a specific speaker.
+         *
+         * @param speaker
+         *            the speaker to filter by
+         * @return a sequence of chat texts from the given speaker
+         */
+        @Override
+        public Sequence<String> speakerChat(String speaker) {
+            return this.view.speakerChat(speaker);
+        }
+    }
+
+    /**
+     * Root of the trie.
+     */
+    private Object[] root;
+
+    /**
+     * Bit shift of the root level.
+     */
+    private int shift;
+
+    /**
+     * Number of entry slots in the trie, a multiple of WIDTH.
+     */
+    private int trieCount;
+
+    /**
+     * The tail leaf, where appends go.
+     */
+    private Object[] tail;
+
+    /**
+     * Number of entries in the tail.
+     */
+    private int tailSize;
+
+    /**
+     * Whether the tail is shared with the trie or a snapshot, and must be
+     * copied before it is written.
+     */
+    private boolean tailShared;
+
+    /**
+     * Slot of entry 0; the slots before it are outside the window.
+     */
+    private int offset;
+
+    /**
+     * Constructor for ConversationLogPersistent.
+     */
+    public ConversationLogPersistent() {
+        this.createNewRep();
+    }
+
+    /**
+     * Initializes the representation to an empty log.
+     *
+     * @updates this
+     * @ensures {@code length = 0}
+     */
+    private void createNewRep() {
+        this.root = EMPTY_ROOT;
+        this.shift = BITS;
+        this.trieCount = 0;
+        this.tail = new Object[LEAF_LENGTH];
+        this.tailSize = 0;
+        this.tailShared = false;
+        this.offset = 0;
+    }
+
+    /**
+     * Reports the leaf of a trie holding slot {@code slot}.
+     *
+     * @param root
+     *            the root of the trie
+     * @param shift
+     *            the bit shift of the root level
+     * @param slot
+     *            a slot of the trie
+     * @return the leaf of {@code slot}
+     */
+    private static Object[] leafFor(Object[] root, int shift, int slot) {
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(slot >>> level) & MASK];
+        }
+        return node;
+    }
+
+    /**
+     * Copies the path of a trie down to slot {@code slot} and hangs
+     * {@code leaf} there.
+     *
+     * @param node
+     *            a node on the path, or null where the path is new
+     * @param level
+     *            the bit shift of the level of {@code node}
+     * @param slot
+     *            the first slot of {@code leaf}
+     * @param leaf
+     *            the leaf to add
+     * @return the copy of {@code node}
+     */
+    private static Object[] withLeaf(Object[] node, int level, int slot,
+            Object[] leaf) {
+        Object[] copy;
+        if (node == null) {
+            copy = new Object[WIDTH];
+        } else {
+            copy = node.clone();
+        }
+        int child = (slot >>> level) & MASK;
+        if (level == BITS) {
+            copy[child] = leaf;
+        } else {
+            copy[child] = withLeaf((Object[]) copy[child], level - BITS, slot,
+                    leaf);
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the path of a trie down to slot {@code last}, dropping every
+     * slot after it.
+     *
+     * @param node
+     *            a node on the path
+     * @param level
+     *            the bit shift of the level of {@code node}
+     * @param last
+     *            the last slot to keep
+     * @return the cut copy of {@code node}
+     */
+    private static Object[] cut(Object[] node, int level, int last) {
+        int child = (last >>> level) & MASK;
+        Object[] copy = Arrays.copyOf(node, WIDTH);
+        Arrays.fill(copy, child + 1, WIDTH, null);
+        if (level > BITS) {
+            copy[child] = cut((Object[]) node[child], level - BITS, last);
+        }
+        return copy;
+    }
+
+    /**
+     * Adds the full tail to the trie and starts a new tail.
+     *
+     * @updates this.root, this.shift, this.trieCount, this.tail,
+     *          this.tailSize, this.tailShared
+     */
+    private void pushTail() {
+        if (this.trieCount == 1 << (this.shift + BITS)) {
+            Object[] grown = new Object[WIDTH];
+            grown[0] = this.root;
+            this.root = grown;
+            this.shift += BITS;
+        }
+        this.root = withLeaf(this.root, this.shift, this.trieCount, this.tail);
+        this.trieCount += WIDTH;
+        this.tail = new Object[LEAF_LENGTH];
+        this.tailSize = 0;
+        this.tailShared = false;
+    }
+
+    /**
+     * Keeps only the slots before {@code end}.
+     *
+     * @param end
+     *            the end of the kept slots (offset ≤ end ≤ trieCount +
+     *            tailSize)
+     * @updates this.root, this.shift, this.trieCount, this.tail,
+     *          this.tailSize, this.tailShared
+     */
+    private void truncate(int end) {
+        if (end >= this.trieCount) {
+            if (!this.tailShared) {
+                Arrays.fill(this.tail, 2 * (end - this.trieCount),
+                        2 * this.tailSize, null);
+            }
+            this.tailSize = end - this.trieCount;
+        } else {
+            int newTrieCount = end & ~MASK;
+            if (end > newTrieCount) {
+                this.tail = leafFor(this.root, this.shift, newTrieCount);
+                this.tailShared = true;
+            } else {
+                this.tail = new Object[LEAF_LENGTH];
+                this.tailShared = false;
+            }
+            this.tailSize = end - newTrieCount;
+            if (newTrieCount == 0) {
+                this.root = EMPTY_ROOT;
+                this.shift = BITS;
+            } else {
+                this.root = cut(this.root, this.shift, newTrieCount - 1);
+                while (this.shift > BITS && this.root[1] == null) {
+                    this.root = (Object[]) this.root[0];
+                    this.shift -= BITS;
+                }
+            }
+            this.trieCount = newTrieCount;
+        }
+    }
+
+    /**
+     * Rebuilds the trie from the entries of the window, dropping the slots
+     * before it.
+     *
+     * @updates this
+     */
+    private void compact() {
+        View old = this.view();
+        this.createNewRep();
+        int end = old.trieCount + old.tailSize;
+        Object[] leaf = null;
+        for (int slot = old.offset; slot < end; slot++) {
+            if (leaf == null || (slot & MASK) == 0) {
+                leaf = old.leafOf(slot);
+            }
+            int at = 2 * (slot & MASK);
+            this.append((String) leaf[at], (String) leaf[at + 1]);
+        }
+    }
+
+    /**
+     * Reports the current value of this log.
+     *
+     * @return a view of the value
+     */
+    private View view() {
+        return new View(this.root, this.shift, this.trieCount, this.tail,
+                this.tailSize, this.offset);
+    }
+
+    // Standard interface methods
+    /**
+     * Returns a new object with the same <i>dynamic</i> type as {@code this},
+     * having an initial value.
+     */
+    @Override
+    public ConversationLogPersistent newInstance() {
+        return new ConversationLogPersistent();
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     */
+    @Override
+    public void clear() {
+        this.createNewRep();
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value; the declaration notwithstanding, the
+     * <i>dynamic</i> type of {@code source} must be the same as the
+     * <i>dynamic</i> type of {@code this}.
+     */
+    @Override
+    public void transferFrom(ConversationLog source) {
+        if (this != source) {
+            ConversationLogPersistent that = (ConversationLogPersistent) source;
+            this.root = that.root;
+            this.shift = that.shift;
+            this.trieCount = that.trieCount;
+            this.tail = that.tail;
+            this.tailSize = that.tailSize;
+            this.tailShared = that.tailShared;
+            this.offset = that.offset;
+            that.createNewRep();
+        }
+    }
+
+    // Kernel interface methods
+    /**
+     * Return the number of chat entries in the log.
+     *
+     * @return the number of entries
+     */
+    @Override
+    public int length() {
+        return this.trieCount + this.tailSize - this.offset;
+    }
+
+    /**
+     * Check if the chat log is empty.
+     *
+     * @return true if empty, false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.length() == 0;
+    }
+
+    /**
+     * Report the speaker of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the speaker of entry {@code i}
+     */
+    @Override
+    public String speakerAt(int i) {
+        return this.view().speakerAt(i);
+    }
+
+    /**
+     * Report the text of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the text of entry {@code i}
+     */
+    @Override
+    public String textAt(int i) {
+        return this.view().textAt(i);
+    }
+
+    /**
+     * Append a chat entry to the log.
+     *
+     * @param speaker
+     *            non-null/non-empty
+     * @param text
+     *            non-null
+     */
+    @Override
+    public void append(String speaker, String text) {
+        if (this.tailSize == WIDTH) {
+            this.pushTail();
+        } else if (this.tailShared) {
+            this.tail = Arrays.copyOf(this.tail, LEAF_LENGTH);
+            Arrays.fill(this.tail, 2 * this.tailSize, LEAF_LENGTH, null);
+            this.tailShared = false;
+        }
+        this.tail[2 * this.tailSize] = speaker;
+        this.tail[2 * this.tailSize + 1] = text;
+        this.tailSize++;
+    }
+
+    /**
+     * Undo chat: removes the last entry and reports it as a map with keys
+     * "speaker", "text".
+     *
+     * @return removed entry encoded as a Map<String,String>
+     * @requires |this| > 0
+     */
+    @Override
+    public Map<String, String> removeChat() {
+        int last = this.trieCount + this.tailSize - 1;
+        Object[] leaf = this.view().leafOf(last);
+        int at = 2 * (last & MASK);
+        Map<String, String> removedMap = new Map1L<>();
+        removedMap.add("speaker", (String) leaf[at]);
+        removedMap.add("text", (String) leaf[at + 1]);
+        this.truncate(last);
+        return removedMap;
+    }
+
+    /**
+     * Resets the chat log to empty.
+     */
+    @Override
+    public void reset() {
+        this.clear();
+    }
+
+    /**
+     * Keeps only entries in [start, end) and deletes all other chat.
+     *
+     * @param start
+     *            inclusive index
+     * @param end
+     *            exclusive index (0 ≤ start ≤ end ≤ |#this|)
+     * @updates this
+     * @return this (now containing only the chosen segment)
+     */
+    @Override
+    public ConversationLog segment(int start, int end) {
+        this.truncate(this.offset + end);
+        this.offset += start;
+        if (this.offset >= WIDTH && this.offset > this.length()) {
+            this.compact();
+        }
+        return this;
+    }
+
+    // Secondary methods
+    /**
+     * Export the chat log to a SimpleWriter.
+     *
+     * @param out
+     *            the SimpleWriter to write to
+     */
+    @Override
+    public void exportChat(SimpleWriter out) {
+        this.view().exportChat(out);
+    }
+
+    /**
+     * Import the chat log from a SimpleReader; the times of a timed
+     * transcript are dropped.
+     *
+     * @param in
+     *            the SimpleReader to read from
+     */
+    @Override
+    public void importChat(SimpleReader in) {
+        TranscriptReader transcript = new TranscriptReader(in);
+        while (transcript.next()) {
+            this.append(transcript.speaker(), transcript.text());
+        }
+        in.close();
+    }
+
+    /**
+     * Convert the entire conversation log to a transcript string.
+     *
+     * @return the transcript string
+     */
+    @Override
+    public String toTranscript() {
+        StringBuilder transcript = new StringBuilder();
+        this.view().render(transcript, "\n");
+        return transcript.toString();
+    }
+
+    /**
+     * Search for a substring in the chat log and return the list of indices
+     * where found.
+     *
+     * @param substring
+     *            the substring to search for
+     * @return a sequence of indices where the substring is found
+     */
+    @Override
+    public Sequence<Integer> find(String substring) {
+        return this.view().find(substring);
+    }
+
+    /**
+     * Retrieve all chat entries from a specific speaker.
+     *
+     * @param speaker
+     *            the speaker to filter by
+     * @return a sequence of chat texts from the given speaker
+     */
+    @Override
+    public Sequence<String> speakerChat(String speaker) {
+        return this.view().speakerChat(speaker);
+    }
+
+    // Snapshots
+    /**
+     * Reports a read-only snapshot of the current value of this log, in
+     * O(1). The snapshot keeps that value whatever this log does later.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        this.tailShared = true;
+        return new Snapshot(this.view());
+    }
+
+    /**
+     * Sets this log to the value of {@code snapshot}, in O(1). The snapshot
+     * may come from any ConversationLogPersistent, and stays valid.
+     *
+     * @param snapshot
+     *            the value to go back to
+     * @updates this
+     * @ensures this = snapshot
+     */
+    public void restore(Snapshot snapshot) {
+        View view = snapshot.view;
+        this.root = view.root;
+        this.shift = view.shift;
+        this.trieCount = view.trieCount;
+        this.tail = view.tail;
+        this.tailSize = view.tailSize;
+        this.tailShared = true;
+        this.offset = view.offset;
+    }
+
+}
@@ -0,0 +1,344 @@
+package conversationLog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.sequence.Sequence;
+
+/**
+ * Thread-safe registry of one ConversationLog per conversation id.
+ *
+ * <p>
+ * Ids are spread over a fixed number of shards, each a {@code HashMap} behind
+ * its own read-write lock, so threads working on different conversations
+ * rarely touch the same lock and lookups of the same shard proceed in
+ * parallel. New logs are made with {@code newInstance} of a prototype, by
+ * default a {@link ConversationLogConcurrent} so that many threads can append
+ * to the same conversation.
+ * </p>
+ *
+ * <p>
+ * {@link #findAll(String)} fans out over the shards on the common
+ * {@link ForkJoinPool}. It runs {@code find} on every log outside of the shard
+ * locks, so with a prototype that is not thread-safe it must not run
+ * concurrently with writers.
+ * </p>
+ */
+public final class ConversationLogRegistry {
+
+    /**
+     * Number of shards per available processor.
+     */
+    private static final int SHARDS_PER_PROCESSOR = 4;
+
+    /**
+     * Shift folding the high half of a hash code onto the low half.
+     */
+    private static final int SPREAD_SHIFT = 16;
+
+    /**
+     * The logs of the ids of one shard, with the lock guarding them.
+     */
+    private static final class Shard {
+
+        /**
+         * Guards {@code logs}.
+         */
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /**
+         * Log of each id of the shard.
+         */
+        private final HashMap<String, ConversationLog> logs = new HashMap<>();
+    }
+
+    /**
+     * The conversations of one shard where a substring was found.
+     */
+    private static final class Matches {
+
+        /**
+         * Id of each matching conversation.
+         */
+        private final List<String> ids = new ArrayList<>();
+
+        /**
+         * Indices found in each matching conversation.
+         */
+        private final List<Sequence<Integer>> indices = new ArrayList<>();
+    }
+
+    /**
+     * Runs {@code find} on the logs of a range of shards, splitting the range
+     * in halves down to one shard per task.
+     */
+    private static final class FindAllTask extends RecursiveAction {
+
+        /**
+         * Serialization version, as required of a ForkJoinTask.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The shards of the registry.
+         */
+        private final Shard[] shards;
+
+        /**
+         * The substring to search for.
+         */
+        private final String substring;
+
+        /**
+         * The matches of each shard.
+         */
+        private final Matches[] results;
+
+        /**
+         * First shard of the range.
+         */
+        private final int from;
+
+        /**
+         * One past the last shard of the range.
+         */
+        private final int to;
+
+        /**
+         * Constructor for FindAllTask.
+         *
+         * @param shards
+         *            the shards of the registry
+         * @param substring
+         *            the substring to search for
+         * @param results
+         *            the results, one slot per shard
+         * @param from
+         *            first shard of the range
+         * @param to
+         *            one past the last shard of the range
+         */
+        FindAllTask(Shard[] shards, String substring, Matches[] results,
+                int from, int to) {
+            this.shards = shards;
+            this.substring = substring;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from == 1) {
+                Shard shard = this.shards[this.from];
+                List<java.util.Map.Entry<String, ConversationLog>> logs;
+                shard.lock.readLock().lock();
+                try {
+                    logs = new ArrayList<>(shard.logs.entrySet());
+                } finally {
+                    shard.lock.readLock().unlock();
+                }
+                Matches matches = new Matches();
+                for (java.util.Map.Entry<String, ConversationLog> e : logs) {
+                    Sequence<Integer> found = e.getValue().find(this.substring);
+                    if (found.length() > 0) {
+                        matches.ids.add(e.getKey());
+                        matches.indices.add(found);
+                    }
+                }
+                this.results[this.from] = matches;
+            } else {
+                int mid = (this.from + this.to) >>> 1;
+                invokeAll(
+                        new FindAllTask(this.shards, this.substring,
+                                this.results, this.from, mid),
+                        new FindAllTask(this.shards, this.substring,
+                                this.results, mid, this.to));
+            }
+        }
+    }
+
+    /**
+     * The shards; their number is a power of two.
+     */
+    private final Shard[] shards;
+
+    /**
+     * Log whose {@code newInstance} makes the log of a new id.
+     */
+    private final ConversationLog prototype;
+
+    /**
+     * Constructor for a registry of {@link ConversationLogConcurrent} logs.
+     */
+    public ConversationLogRegistry() {
+        this(new ConversationLogConcurrent());
+    }
+
+    /**
+     * Constructor for a registry of logs of the dynamic type of
+     * {@code prototype}.
+     *
+     * @param prototype
+     *            the log whose {@code newInstance} makes new logs
+     */
+    public ConversationLogRegistry(ConversationLog prototype) {
+        this(prototype, SHARDS_PER_PROCESSOR
+                * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor for a registry of logs of the dynamic type of
+     * {@code prototype}, spread over at least {@code shardCount} shards.
+     *
+     * @param prototype
+     *            the log whose {@code newInstance} makes new logs
+     * @param shardCount
+     *            the minimum number of shards (shardCount > 0), rounded up to
+     *            a power of two
+     */
+    public ConversationLogRegistry(ConversationLog prototype, int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException(
+                    "Shard count must be positive: " + shardCount);
+        }
+        int count = Integer.highestOneBit(shardCount);
+        if (count < shardCount) {
+            count *= 2;
+        }
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new Shard();
+        }
+        this.prototype = prototype;
+    }
+
+    /**
+     * Reports the shard of {@code id}.
+     *
+     * @param id
+     *            the conversation id
+     * @return the shard holding the log of {@code id}
+     */
+    private Shard shardOf(String id) {
+        int h = id.hashCode();
+        // Spread the high bits, since only the low ones pick the shard
+        return this.shards[(h ^ (h >>> SPREAD_SHIFT)) & (this.shards.length - 1)];
+    }
+
+    /**
+     * Reports the log of {@code id}, creating an empty one if there is none.
+     *
+     * @param id
+     *            the conversation id
+     * @return the log of {@code id}
+     */
+    public ConversationLog getOrCreate(String id) {
+        Shard shard = this.shardOf(id);
+        ConversationLog log;
+        shard.lock.readLock().lock();
+        try {
+            log = shard.logs.get(id);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+        if (log == null) {
+            shard.lock.writeLock().lock();
+            try {
+                log = shard.logs.get(id);
+                if (log == null) {
+                    log = this.prototype.newInstance();
+                    shard.logs.put(id, log);
+                }
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Reports the log of {@code id}.
+     *
+     * @param id
+     *            the conversation id
+     * @return the log of {@code id}, or null if there is none
+     */
+    public ConversationLog get(String id) {
+        Shard shard = this.shardOf(id);
+        ConversationLog log;
+        shard.lock.readLock().lock();
+        try {
+            log = shard.logs.get(id);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+        return log;
+    }
+
+    /**
+     * Removes the log of {@code id} from the registry.
+     *
+     * @param id
+     *            the conversation id
+     * @return the removed log, or null if there was none
+     */
+    public ConversationLog evict(String id) {
+        Shard shard = this.shardOf(id);
+        ConversationLog log;
+        shard.lock.writeLock().lock();
+        try {
+            log = shard.logs.remove(id);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+        return log;
+    }
+
+    /**
+     * Reports the number of conversations in the registry. Not a snapshot:
+     * conversations added or evicted meanwhile may or may not be counted.
+     *
+     * @return the number of conversations
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : this.shards) {
+            shard.lock.readLock().lock();
+            try {
+                size += shard.logs.size();
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Search every conversation for a substring, in parallel.
+     *
+     * @param substring
+     *            the substring to search for
+     * @return the indices where {@code substring} is found, keyed by the id
+     *         of every conversation with at least one match
+     */
+    public Map<String, Sequence<Integer>> findAll(String substring) {
+        Matches[] results = new Matches[this.shards.length];
+        ForkJoinPool.commonPool().invoke(new FindAllTask(this.shards,
+                substring, results, 0, this.shards.length));
+        Map<String, Sequence<Integer>> found = new Map1L<>();
+        for (Matches matches : results) {
+            for (int i = 0; i < matches.ids.size(); i++) {
+                found.add(matches.ids.get(i), matches.indices.get(i));
+            }
+        }
+        return found;
+    }
+
+}
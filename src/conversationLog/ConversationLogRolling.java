@@ -0,0 +1,568 @@
+package conversationLog;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+import components.simplereader.SimpleReader;
+import components.simplewriter.SimpleWriter;
+
+/**
+ * Capacity-bounded implementation of ConversationLog that keeps only the most
+ * recent entries.
+ *
+ * <p>
+ * Entries live in a ring buffer of at most {@link #capacity()} slots. Once
+ * the log is full, {@code append} evicts the oldest entry in O(1) and hands
+ * it to the {@link EvictionSink} of the log, if any, so it can be archived;
+ * this replaces calling {@code segment(length() - capacity, length())} after
+ * every append, which copies the whole window. Entries dropped by
+ * {@code removeChat}, {@code segment} or {@code clear} are not evicted and
+ * never reach the sink.
+ * </p>
+ *
+ * <p>
+ * Indices are always relative to the current window: entry 0 is the oldest
+ * entry still in the log, so the results of {@code find} shift down by one
+ * with every eviction. Speakers are dictionary-encoded with a count of
+ * entries each; a speaker whose last entry leaves the window is dropped from
+ * the dictionary, so a long-running log over many speakers stays bounded.
+ * </p>
+ */
+public class ConversationLogRolling implements ConversationLog {
+
+    /**
+     * Receiver of the entries evicted from a full log.
+     */
+    @FunctionalInterface
+    public interface EvictionSink {
+
+        /**
+         * Receives one evicted entry; called in eviction order, oldest first.
+         *
+         * @param speaker
+         *            the speaker of the evicted entry
+         * @param text
+         *            the text of the evicted entry
+         */
+        void evicted(String speaker, String text);
+    }
+
+    /**
+     * Initial number of ring slots and speaker ids.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Receiver of evicted entries; null to discard them.
+     */
+    private final EvictionSink sink;
+
+    /**
+     * Most entries kept in the log.
+     */
+    private int capacity;
+
+    /**
+     * Speaker id of each ring slot.
+     */
+    private int[] speakerOf;
+
+    /**
+     * Text of each ring slot; null outside the window.
+     */
+    private String[] texts;
+
+    /**
+     * Ring slot of entry 0.
+     */
+    private int head;
+
+    /**
+     * Number of entries in the log.
+     */
+    private int size;
+
+    /**
+     * Name of each speaker id; null for free ids.
+     */
+    private String[] speakerNames;
+
+    /**
+     * Number of entries of each speaker id.
+     */
+    private int[] speakerCounts;
+
+    /**
+     * Number of speaker ids ever handed out, free or not.
+     */
+    private int speakerLimit;
+
+    /**
+     * Free speaker ids, reused before new ones are handed out.
+     */
+    private int[] freeIds;
+
+    /**
+     * Number of free speaker ids.
+     */
+    private int freeCount;
+
+    /**
+     * Id of each speaker with entries in the log.
+     */
+    private HashMap<String, Integer> speakerIds;
+
+    /**
+     * Constructor for ConversationLogRolling that discards evicted entries.
+     *
+     * @param capacity
+     *            the most entries kept (capacity > 0)
+     */
+    public ConversationLogRolling(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * Constructor for ConversationLogRolling.
+     *
+     * @param capacity
+     *            the most entries kept (capacity > 0)
+     * @param sink
+     *            the receiver of evicted entries, or null to discard them
+     */
+    public ConversationLogRolling(int capacity, EvictionSink sink) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        this.capacity = capacity;
+        this.sink = sink;
+        this.createNewRep();
+    }
+
+    /**
+     * Initializes the representation to an empty log.
+     *
+     * @updates this
+     * @ensures {@code size = 0}
+     */
+    private void createNewRep() {
+        int slots = Math.min(this.capacity, INITIAL_CAPACITY);
+        this.speakerOf = new int[slots];
+        this.texts = new String[slots];
+        this.head = 0;
+        this.size = 0;
+        this.speakerNames = new String[INITIAL_CAPACITY];
+        this.speakerCounts = new int[INITIAL_CAPACITY];
+        this.speakerLimit = 0;
+        this.freeIds = new int[INITIAL_CAPACITY];
+        this.freeCount = 0;
+        this.speakerIds = new HashMap<>();
+    }
+
+    /**
+     * Reports the ring slot of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i ≤ |this|)
+     * @return the ring slot of entry {@code i}
+     */
+    private int slotOf(int i) {
+        int slot = this.head + i;
+        if (slot >= this.texts.length) {
+            slot -= this.texts.length;
+        }
+        return slot;
+    }
+
+    /**
+     * Makes room for one more entry when the ring is full but below
+     * {@code capacity}, by unrolling it into larger arrays.
+     *
+     * @updates this.speakerOf, this.texts, this.head
+     */
+    private void grow() {
+        int slots = (int) Math.min(this.capacity, 2L * this.texts.length);
+        int[] newSpeakerOf = new int[slots];
+        String[] newTexts = new String[slots];
+        int firstRun = Math.min(this.size, this.texts.length - this.head);
+        System.arraycopy(this.speakerOf, this.head, newSpeakerOf, 0, firstRun);
+        System.arraycopy(this.texts, this.head, newTexts, 0, firstRun);
+        System.arraycopy(this.speakerOf, 0, newSpeakerOf, firstRun,
+                this.size - firstRun);
+        System.arraycopy(this.texts, 0, newTexts, firstRun,
+                this.size - firstRun);
+        this.speakerOf = newSpeakerOf;
+        this.texts = newTexts;
+        this.head = 0;
+    }
+
+    /**
+     * Counts one more entry of {@code speaker}, giving it an id if it has
+     * none.
+     *
+     * @param speaker
+     *            the speaker name
+     * @return the id of {@code speaker}
+     * @updates this.speakerNames, this.speakerCounts, this.speakerLimit,
+     *          this.freeIds, this.freeCount, this.speakerIds
+     */
+    private int addSpeaker(String speaker) {
+        Integer known = this.speakerIds.get(speaker);
+        int id;
+        if (known != null) {
+            id = known;
+        } else {
+            if (this.freeCount > 0) {
+                this.freeCount--;
+                id = this.freeIds[this.freeCount];
+            } else {
+                id = this.speakerLimit;
+                if (id == this.speakerNames.length) {
+                    this.speakerNames = Arrays.copyOf(this.speakerNames,
+                            2 * id);
+                    this.speakerCounts = Arrays.copyOf(this.speakerCounts,
+                            2 * id);
+                    this.freeIds = Arrays.copyOf(this.freeIds, 2 * id);
+                }
+                this.speakerLimit++;
+            }
+            this.speakerNames[id] = speaker;
+            this.speakerIds.put(speaker, id);
+        }
+        this.speakerCounts[id]++;
+        return id;
+    }
+
+    /**
+     * Counts one entry of speaker {@code id} less, freeing the id when it has
+     * none left.
+     *
+     * @param id
+     *            the speaker id of an entry leaving the log
+     * @updates this.speakerNames, this.speakerCounts, this.freeIds,
+     *          this.freeCount, this.speakerIds
+     */
+    private void removeSpeaker(int id) {
+        this.speakerCounts[id]--;
+        if (this.speakerCounts[id] == 0) {
+            this.speakerIds.remove(this.speakerNames[id]);
+            this.speakerNames[id] = null;
+            this.freeIds[this.freeCount] = id;
+            this.freeCount++;
+        }
+    }
+
+    /**
+     * Drops the oldest entry.
+     *
+     * @updates this
+     * @requires |this| > 0
+     */
+    private void dropFirst() {
+        this.removeSpeaker(this.speakerOf[this.head]);
+        this.texts[this.head] = null;
+        this.head = this.slotOf(1);
+        this.size--;
+    }
+
+    /**
+     * Drops the newest entry.
+     *
+     * @updates this
+     * @requires |this| > 0
+     */
+    private void dropLast() {
+        this.size--;
+        int slot = this.slotOf(this.size);
+        this.removeSpeaker(this.speakerOf[slot]);
+        this.texts[slot] = null;
+    }
+
+    // Standard interface methods
+    /**
+     * Returns a new object with the same <i>dynamic</i> type as {@code this},
+     * having an initial value.
+     */
+    @Override
+    public ConversationLogRolling newInstance() {
+        return new ConversationLogRolling(this.capacity, this.sink);
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     */
+    @Override
+    public void clear() {
+        this.createNewRep();
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value; the declaration notwithstanding, the
+     * <i>dynamic</i> type of {@code source} must be the same as the
+     * <i>dynamic</i> type of {@code this}. The capacity is part of the value;
+     * the eviction sink is not.
+     */
+    @Override
+    public void transferFrom(ConversationLog source) {
+        if (this != source) {
+            ConversationLogRolling that = (ConversationLogRolling) source;
+            this.capacity = that.capacity;
+            this.speakerOf = that.speakerOf;
+            this.texts = that.texts;
+            this.head = that.head;
+            this.size = that.size;
+            this.speakerNames = that.speakerNames;
+            this.speakerCounts = that.speakerCounts;
+            this.speakerLimit = that.speakerLimit;
+            this.freeIds = that.freeIds;
+            this.freeCount = that.freeCount;
+            this.speakerIds = that.speakerIds;
+            that.createNewRep();
+        }
+    }
+
+    // Kernel interface methods
+    /**
+     * Return the number of chat entries in the log.
+     *
+     * @return the number of entries
+     */
+    @Override
+    public int length() {
+        return this.size;
+    }
+
+    /**
+     * Check if the chat log is empty.
+     *
+     * @return true if empty, false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Report the speaker of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the speaker of entry {@code i}
+     */
+    @Override
+    public String speakerAt(int i) {
+        return this.speakerNames[this.speakerOf[this.slotOf(i)]];
+    }
+
+    /**
+     * Report the text of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the text of entry {@code i}
+     */
+    @Override
+    public String textAt(int i) {
+        return this.texts[this.slotOf(i)];
+    }
+
+    /**
+     * Append a chat entry to the log, evicting the oldest entry if the log is
+     * full.
+     *
+     * @param speaker
+     *            non-null/non-empty
+     * @param text
+     *            non-null
+     */
+    @Override
+    public void append(String speaker, String text) {
+        if (this.size == this.capacity) {
+            String evictedSpeaker = this.speakerNames[this.speakerOf[this.head]];
+            String evictedText = this.texts[this.head];
+            this.dropFirst();
+            if (this.sink != null) {
+                this.sink.evicted(evictedSpeaker, evictedText);
+            }
+        } else if (this.size == this.texts.length) {
+            this.grow();
+        }
+        int slot = this.slotOf(this.size);
+        this.speakerOf[slot] = this.addSpeaker(speaker);
+        this.texts[slot] = text;
+        this.size++;
+    }
+
+    /**
+     * Undo chat: removes the last entry and reports it as a map with keys
+     * "speaker", "text".
+     *
+     * @return removed entry encoded as a Map<String,String>
+     * @requires |this| > 0
+     */
+    @Override
+    public Map<String, String> removeChat() {
+        int slot = this.slotOf(this.size - 1);
+        Map<String, String> removedMap = new Map1L<>();
+        removedMap.add("speaker", this.speakerNames[this.speakerOf[slot]]);
+        removedMap.add("text", this.texts[slot]);
+        this.dropLast();
+        return removedMap;
+    }
+
+    /**
+     * Resets the chat log to empty.
+     */
+    @Override
+    public void reset() {
+        this.clear();
+    }
+
+    /**
+     * Keeps only entries in [start, end) and deletes all other chat. Deleted
+     * entries are not evicted to the sink.
+     *
+     * @param start
+     *            inclusive index
+     * @param end
+     *            exclusive index (0 ≤ start ≤ end ≤ |#this|)
+     * @updates this
+     * @return this (now containing only the chosen segment)
+     */
+    @Override
+    public ConversationLog segment(int start, int end) {
+        while (this.size > end) {
+            this.dropLast();
+        }
+        for (int i = 0; i < start; i++) {
+            this.dropFirst();
+        }
+        return this;
+    }
+
+    // Secondary methods
+    /**
+     * Export the chat log to a SimpleWriter.
+     *
+     * @param out
+     *            the SimpleWriter to write to
+     */
+    @Override
+    public void exportChat(SimpleWriter out) {
+        for (int i = 0; i < this.size; i++) {
+            int slot = this.slotOf(i);
+            out.println(this.speakerNames[this.speakerOf[slot]] + ": "
+                    + this.texts[slot]);
+        }
+        out.close();
+    }
+
+    /**
+     * Import the chat log from a SimpleReader, dropping the times of a timed
+     * transcript; entries pushed out of the window by the import are evicted
+     * to the sink.
+     *
+     * @param in
+     *            the SimpleReader to read from
+     */
+    @Override
+    public void importChat(SimpleReader in) {
+        TranscriptReader transcript = new TranscriptReader(in);
+        while (transcript.next()) {
+            this.append(transcript.speaker(), transcript.text());
+        }
+        in.close();
+    }
+
+    /**
+     * Convert the entire conversation log to a transcript string.
+     *
+     * @return the transcript string
+     */
+    @Override
+    public String toTranscript() {
+        StringBuilder transcript = new StringBuilder();
+        for (int i = 0; i < this.size; i++) {
+            int slot = this.slotOf(i);
+            transcript.append(this.speakerNames[this.speakerOf[slot]])
+                    .append(": ").append(this.texts[slot]).append("\n");
+        }
+        return transcript.toString();
+    }
+
+    /**
+     * Search for a substring in the chat log and return the list of indices
+     * where found.
+     *
+     * @param substring
+     *            the substring to search for
+     * @return a sequence of indices where the substring is found
+     */
+    @Override
+    public Sequence<Integer> find(String substring) {
+        Sequence<Integer> indices = new Sequence1L<>();
+        for (int i = 0; i < this.size; i++) {
+            if (this.texts[this.slotOf(i)].contains(substring)) {
+                indices.add(indices.length(), i);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Retrieve all chat entries from a specific speaker.
+     *
+     * @param speaker
+     *            the speaker to filter by
+     * @return a sequence of chat texts from the given speaker
+     */
+    @Override
+    public Sequence<String> speakerChat(String speaker) {
+        Sequence<String> chats = new Sequence1L<>();
+        Integer id = this.speakerIds.get(speaker);
+        if (id != null) {
+            int wanted = id;
+            int remaining = this.speakerCounts[wanted];
+            for (int i = 0; remaining > 0 && i < this.size; i++) {
+                int slot = this.slotOf(i);
+                if (this.speakerOf[slot] == wanted) {
+                    chats.add(chats.length(), this.texts[slot]);
+                    remaining--;
+                }
+            }
+        }
+        return chats;
+    }
+
+    // Other methods
+    /**
+     * Reports the most entries the log keeps.
+     *
+     * @return the capacity of the log
+     */
+    public final int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Report the number of entries from a specific speaker.
+     *
+     * @param speaker
+     *            the speaker whose entries to count
+     * @return the number of entries from {@code speaker}
+     */
+    public int countBySpeaker(String speaker) {
+        int count = 0;
+        Integer id = this.speakerIds.get(speaker);
+        if (id != null) {
+            count = this.speakerCounts[id];
+        }
+        return count;
+    }
+
+}
@@ -122,6 +122,32 @@ public class ConversationLogSecondary implements ConversationLog {
         return this.entries.length() == 0;
     }
 
+    /**
+     * Report the speaker of entry {@code i}; costs O(i), since the entries are
+     * in a {@code Sequence1L}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the speaker of entry {@code i}
+     */
+    @Override
+    public String speakerAt(int i) {
+        return this.entries.entry(i).speaker;
+    }
+
+    /**
+     * Report the text of entry {@code i}; costs O(i), since the entries are
+     * in a {@code Sequence1L}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the text of entry {@code i}
+     */
+    @Override
+    public String textAt(int i) {
+        return this.entries.entry(i).text;
+    }
+
     /**
      * Append a chat entry to the log.
      *
@@ -200,21 +226,17 @@ public class ConversationLogSecondary implements ConversationLog {
     }
 
     /**
-     * Import the chat log from a SimpleReader.
+     * Import the chat log from a SimpleReader; the times of a timed
+     * transcript are dropped.
      *
      * @param in
      *            the SimpleReader to read from
      */
     @Override
     public void importChat(SimpleReader in) {
-        while (!in.atEOS()) {
-            String line = in.nextLine();
-            int colonIndex = line.indexOf(": ");
-            if (colonIndex != -1) {
-                String speaker = line.substring(0, colonIndex);
-                String text = line.substring(colonIndex + 2);
-                this.append(speaker, text);
-            }
+        TranscriptReader transcript = new TranscriptReader(in);
+        while (transcript.next()) {
+            this.append(transcript.speaker(), transcript.text());
         }
         in.close();
     }
@@ -0,0 +1,402 @@
+package conversationLog;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import components.map.Map;
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+
+/**
+ * Array-backed ConversationLog that answers {@code find} from a trigram index.
+ *
+ * <p>
+ * Every run of three consecutive chars of an entry's text maps to the
+ * ascending indices of the entries that contain it. A query of length three
+ * or more only looks at the entries posted under all of its trigrams and then
+ * verifies each candidate with {@code String.contains}, so the results are
+ * identical to the scanning implementations. The other posting lists are
+ * searched by galloping from a cursor, so a query costs about
+ * O(r · g · log n) for r postings of its rarest trigram and g trigrams, even
+ * when it also holds a very common trigram. Shorter queries match too many
+ * entries for an index to pay off and are answered by a scan.
+ * </p>
+ *
+ * <p>
+ * Postings hold {@code base + i} for entry i, so {@code segment} only unposts
+ * the entries it drops from the end and moves {@code base} past the ones it
+ * drops from the front. Their postings are skipped by queries until more
+ * entries were dropped than are left, and are then purged in one pass.
+ * </p>
+ */
+public class ConversationLogSubstringIndexed extends ConversationLog1A {
+
+    /**
+     * Number of chars in a gram of the index.
+     */
+    private static final int GRAM_LENGTH = 3;
+
+    /**
+     * Bits used by one char in a trigram key.
+     */
+    private static final int CHAR_BITS = 16;
+
+    /**
+     * Estimated bytes of one index key: the hash map node, the boxed key and
+     * the posting list object.
+     */
+    private static final int KEY_BYTES = 88;
+
+    /**
+     * Bytes of one posting slot.
+     */
+    private static final int POSTING_BYTES = 4;
+
+    /**
+     * Bytes of one text char, ignoring the String headers.
+     */
+    private static final int CHAR_BYTES = 2;
+
+    /**
+     * Posting list of every trigram present in the log.
+     */
+    private HashMap<Long, IndexList> index;
+
+    /**
+     * Posting of entry 0; postings below it belong to dropped entries.
+     */
+    private int base;
+
+    /**
+     * Constructor for ConversationLogSubstringIndexed.
+     */
+    public ConversationLogSubstringIndexed() {
+        super();
+        this.index = new HashMap<>();
+        this.base = 0;
+    }
+
+    /**
+     * Packs the trigram starting at {@code pos} of {@code s} into one key.
+     *
+     * @param s
+     *            the string holding the trigram
+     * @param pos
+     *            the start of the trigram (pos + 3 ≤ |s|)
+     * @return the key of the trigram
+     */
+    private static long gramKey(String s, int pos) {
+        long key = 0;
+        for (int i = pos; i < pos + GRAM_LENGTH; i++) {
+            key = (key << CHAR_BITS) | s.charAt(i);
+        }
+        return key;
+    }
+
+    /**
+     * Adds posting {@code i} to the posting list of every trigram of
+     * {@code text}.
+     *
+     * @param i
+     *            the posting of the entry, greater than every indexed one
+     * @param text
+     *            the text of entry {@code i}
+     * @updates this.index
+     */
+    private void indexEntry(int i, String text) {
+        for (int pos = 0; pos + GRAM_LENGTH <= text.length(); pos++) {
+            Long key = gramKey(text, pos);
+            IndexList postings = this.index.get(key);
+            if (postings == null) {
+                postings = new IndexList();
+                this.index.put(key, postings);
+            }
+            // A trigram repeated in the same entry is posted only once
+            if (postings.length() == 0 || postings.last() != i) {
+                postings.add(i);
+            }
+        }
+    }
+
+    /**
+     * Removes posting {@code i}, the last indexed one, from the posting list
+     * of every trigram of {@code text}.
+     *
+     * @param i
+     *            the posting of the entry, the greatest indexed one
+     * @param text
+     *            the text of entry {@code i}
+     * @updates this.index
+     */
+    private void unindexEntry(int i, String text) {
+        for (int pos = 0; pos + GRAM_LENGTH <= text.length(); pos++) {
+            Long key = gramKey(text, pos);
+            IndexList postings = this.index.get(key);
+            if (postings != null && postings.length() > 0
+                    && postings.last() == i) {
+                postings.removeLast();
+                if (postings.length() == 0) {
+                    this.index.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the postings of the entries before {@code base} and renumbers
+     * the others from 0, in time proportional to the size of the index.
+     *
+     * @updates this.index, this.base
+     */
+    private void dropStalePostings() {
+        Iterator<IndexList> lists = this.index.values().iterator();
+        while (lists.hasNext()) {
+            IndexList postings = lists.next();
+            postings.dropBelow(this.base);
+            if (postings.length() == 0) {
+                lists.remove();
+            }
+        }
+        this.base = 0;
+    }
+
+    /**
+     * Reports whether {@code postings} contains {@code index}, advancing
+     * {@code cursors[which]} past every smaller index by galloping, in
+     * O(log d) for a cursor that moves d positions. Successive calls must ask
+     * for ascending indices.
+     *
+     * @param postings
+     *            the posting list to look in
+     * @param cursors
+     *            the current position in each posting list
+     * @param which
+     *            the position of {@code postings} in {@code cursors}
+     * @param index
+     *            the index to look for
+     * @return true if {@code postings} contains {@code index}
+     * @updates cursors
+     */
+    private static boolean advanceTo(IndexList postings, int[] cursors,
+            int which, int index) {
+        int pos = postings.lowerBound(index, cursors[which]);
+        cursors[which] = pos;
+        return pos < postings.length() && postings.get(pos) == index;
+    }
+
+    // Standard interface methods
+    /**
+     * Returns a new object with the same <i>dynamic</i> type as {@code this},
+     * having an initial value.
+     */
+    @Override
+    public ConversationLogSubstringIndexed newInstance() {
+        return new ConversationLogSubstringIndexed();
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        this.index = new HashMap<>();
+        this.base = 0;
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value; the declaration notwithstanding, the
+     * <i>dynamic</i> type of {@code source} must be the same as the
+     * <i>dynamic</i> type of {@code this}.
+     */
+    @Override
+    public void transferFrom(ConversationLog source) {
+        if (this != source) {
+            ConversationLogSubstringIndexed that =
+                    (ConversationLogSubstringIndexed) source;
+            super.transferFrom(that);
+            this.index = that.index;
+            this.base = that.base;
+            that.index = new HashMap<>();
+            that.base = 0;
+        }
+    }
+
+    // Kernel interface methods
+    /**
+     * Append a timed chat entry to the log, then index it.
+     *
+     * @param speaker
+     *            non-null/non-empty
+     * @param text
+     *            non-null
+     * @param time
+     *            the time of the entry, or {@code NO_TIME}
+     */
+    @Override
+    public void append(String speaker, String text, long time) {
+        super.append(speaker, text, time);
+        this.indexEntry(this.base + this.length() - 1, text);
+    }
+
+    /**
+     * Appends entries {@code [0, count)} of two parallel arrays in one bulk
+     * copy, then indexes them.
+     *
+     * @param newSpeakers
+     *            the speakers of the new entries
+     * @param newTexts
+     *            the texts of the new entries
+     * @param newTimes
+     *            the times of the new entries, or null
+     * @param count
+     *            the number of entries to append
+     * @updates this
+     */
+    @Override
+    void appendBlock(String[] newSpeakers, String[] newTexts, long[] newTimes,
+            int count) {
+        int from = this.base + this.length();
+        super.appendBlock(newSpeakers, newTexts, newTimes, count);
+        for (int i = 0; i < count; i++) {
+            this.indexEntry(from + i, newTexts[i]);
+        }
+    }
+
+    /**
+     * Undo chat: removes the last entry and reports it as a map with keys
+     * "speaker", "text".
+     *
+     * @return removed entry encoded as a Map<String,String>
+     * @requires |this| > 0
+     */
+    @Override
+    public Map<String, String> removeChat() {
+        Map<String, String> removedMap = super.removeChat();
+        this.unindexEntry(this.base + this.length(),
+                removedMap.value("text"));
+        return removedMap;
+    }
+
+    /**
+     * Keeps only entries in [start, end) and deletes all other chat, in time
+     * proportional to the text dropped from the end, plus an amortized purge
+     * of the postings dropped from the front.
+     *
+     * @param start
+     *            inclusive index
+     * @param end
+     *            exclusive index (0 ≤ start ≤ end ≤ |#this|)
+     * @updates this
+     * @return this (now containing only the chosen segment)
+     */
+    @Override
+    public ConversationLog segment(int start, int end) {
+        // Postings past the segment would collide with the next appends
+        for (int i = this.length() - 1; i >= end; i--) {
+            this.unindexEntry(this.base + i, this.textAt(i));
+        }
+        super.segment(start, end);
+        this.base += start;
+        if (this.base > this.length()) {
+            this.dropStalePostings();
+        }
+        return this;
+    }
+
+    // Secondary interface methods
+    /**
+     * Search for a substring in the chat log and return the list of indices
+     * where found.
+     *
+     * @param substring
+     *            the substring to search for
+     * @return a sequence of indices where the substring is found
+     */
+    @Override
+    public Sequence<Integer> find(String substring) {
+        Sequence<Integer> indices;
+        if (substring.length() < GRAM_LENGTH) {
+            indices = super.find(substring);
+        } else {
+            indices = this.findIndexed(substring);
+        }
+        return indices;
+    }
+
+    /**
+     * Answers {@code find(substring)} from the trigram index.
+     *
+     * @param substring
+     *            the substring to search for (|substring| ≥ 3)
+     * @return a sequence of indices where the substring is found
+     */
+    private Sequence<Integer> findIndexed(String substring) {
+        int grams = substring.length() - GRAM_LENGTH + 1;
+        IndexList[] lists = new IndexList[grams];
+        int rarest = 0;
+        boolean possible = true;
+        for (int g = 0; possible && g < grams; g++) {
+            lists[g] = this.index.get(gramKey(substring, g));
+            possible = lists[g] != null;
+            if (possible && lists[g].length() < lists[rarest].length()) {
+                rarest = g;
+            }
+        }
+        Sequence<Integer> indices = new Sequence1L<>();
+        if (possible) {
+            int[] cursors = new int[grams];
+            IndexList candidates = lists[rarest];
+            for (int c = candidates.lowerBound(this.base); c < candidates
+                    .length(); c++) {
+                int i = candidates.get(c);
+                boolean match = true;
+                for (int g = 0; match && g < grams; g++) {
+                    match = g == rarest || advanceTo(lists[g], cursors, g, i);
+                }
+                if (match && this.textAt(i - this.base).contains(substring)) {
+                    indices.add(indices.length(), i - this.base);
+                }
+            }
+        }
+        return indices;
+    }
+
+    // Memory usage
+    /**
+     * Report an estimate of the heap used by the trigram index, counting its
+     * keys and the allocated slots of its posting lists.
+     *
+     * @return the estimated size of the index in bytes
+     */
+    public long indexBytes() {
+        long bytes = (long) KEY_BYTES * this.index.size();
+        for (IndexList postings : this.index.values()) {
+            bytes += (long) POSTING_BYTES * postings.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Report the size of the trigram index next to the size of the text it
+     * indexes, to weigh index memory against query latency.
+     *
+     * @return a one-line memory usage report
+     */
+    public String memoryReport() {
+        long postings = 0;
+        for (IndexList list : this.index.values()) {
+            postings += list.length();
+        }
+        long textBytes = 0;
+        for (int i = 0; i < this.length(); i++) {
+            textBytes += (long) CHAR_BYTES * this.textAt(i).length();
+        }
+        long indexBytes = this.indexBytes();
+        return "entries=" + this.length() + ", trigrams=" + this.index.size()
+                + ", postings=" + postings + ", textBytes=" + textBytes
+                + ", indexBytes=" + indexBytes;
+    }
+
+}
@@ -0,0 +1,1211 @@
+package conversationLog;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+import components.simplereader.SimpleReader;
+import components.simplewriter.SimpleWriter;
+
+/**
+ * Tiered implementation of ConversationLog for long-lived logs whose old
+ * entries are rarely read.
+ *
+ * <p>
+ * The most recent entries live uncompressed in a hot tier of parallel arrays.
+ * Once it holds {@code hotEntries + blockEntries} entries, its oldest
+ * {@code blockEntries} entries are sealed into an immutable block: their
+ * speaker ids and UTF-8 texts, deflated against a dictionary shared by every
+ * block of the log (the tail of the first sealed block). Reads decompress
+ * blocks transparently, keeping the last decompressed block cached so that
+ * in-order scans inflate each block once. The compressor and decompressor
+ * hold native memory, so they are only created once a block is sealed or
+ * inflated, and {@code clear} releases them.
+ * </p>
+ *
+ * <p>
+ * Every block carries two small filters so queries can skip it without
+ * inflating it: a Bloom filter of the character trigrams of its texts for
+ * {@code find} (queries shorter than a trigram always inflate), and a bitset
+ * of its speaker ids for {@code speakerChat}. Inflated blocks are searched as
+ * UTF-8 bytes, and strings are only decoded for the entries returned.
+ * </p>
+ *
+ * <p>
+ * {@code removeChat} on an empty hot tier and {@code segment} ending inside a
+ * block move the surviving entries of that one block back to the hot tier;
+ * {@code segment} drops whole blocks from the front and skips the dropped
+ * entries of a partly kept first block without recompressing it.
+ * </p>
+ *
+ * <p>
+ * Texts are expected to be well-formed UTF-16: once sealed, unpaired
+ * surrogates read back as {@code '?'}, like {@code String.getBytes} does.
+ * </p>
+ */
+public class ConversationLogTiered implements ConversationLog {
+
+    /**
+     * Default number of recent entries kept uncompressed.
+     */
+    private static final int DEFAULT_HOT_ENTRIES = 4096;
+
+    /**
+     * Default number of entries per sealed block.
+     */
+    private static final int DEFAULT_BLOCK_ENTRIES = 4096;
+
+    /**
+     * Initial capacity of the hot tier and of the speaker dictionary.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Largest compression dictionary, the window of the deflate format.
+     */
+    private static final int DICTIONARY_SIZE = 1 << 15;
+
+    /**
+     * Length of the character grams kept in the block filters.
+     */
+    private static final int GRAM = 3;
+
+    /**
+     * Bloom filter bits per distinct gram of a block.
+     */
+    private static final int BITS_PER_GRAM = 4;
+
+    /**
+     * Shift from a bit index to the index of its long in a bitset.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Shift of the gram hash mixing function.
+     */
+    private static final int MIX_SHIFT = 33;
+
+    /**
+     * Multiplier of the gram hash mixing function.
+     */
+    private static final long MIX_MULTIPLIER = 0xFF51AFD7ED558CCDL;
+
+    /**
+     * Mask of the low 32 bits of a long.
+     */
+    private static final long INT_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Payload bits of one varint byte.
+     */
+    private static final int VARINT_BITS = 7;
+
+    /**
+     * Mask of the payload bits of one varint byte.
+     */
+    private static final int VARINT_PAYLOAD = 0x7F;
+
+    /**
+     * Flag marking a varint byte that is followed by another one.
+     */
+    private static final int VARINT_MORE = 0x80;
+
+    /**
+     * An immutable, compressed run of consecutive entries.
+     */
+    private static final class Block {
+
+        /**
+         * Number of entries in the block.
+         */
+        private final int count;
+
+        /**
+         * Deflated entries: for each, varint speaker id and varint UTF-8
+         * length, then every UTF-8 text; texts compress better together.
+         */
+        private final byte[] data;
+
+        /**
+         * Length of the inflated entries.
+         */
+        private final int rawLength;
+
+        /**
+         * Bloom filter of the trigrams of the texts.
+         */
+        private final long[] grams;
+
+        /**
+         * Bitset of the speaker ids of the entries.
+         */
+        private final long[] speakers;
+
+        /**
+         * Constructor for Block.
+         *
+         * @param count
+         *            the number of entries
+         * @param data
+         *            the deflated entries
+         * @param rawLength
+         *            the length of the inflated entries
+         * @param grams
+         *            the trigram filter
+         * @param speakers
+         *            the speaker bitset
+         */
+        Block(int count, byte[] data, int rawLength, long[] grams,
+                long[] speakers) {
+            this.count = count;
+            this.data = data;
+            this.rawLength = rawLength;
+            this.grams = grams;
+            this.speakers = speakers;
+        }
+
+        /**
+         * Reports whether a text of the block may hold every gram of a
+         * query.
+         *
+         * @param hashes
+         *            the hashes of the grams of the query
+         * @return false only if no text of the block contains the query
+         */
+        boolean mayContain(long[] hashes) {
+            boolean may = true;
+            for (int i = 0; may && i < hashes.length; i++) {
+                may = testBit(this.grams, firstBit(hashes[i], this.grams))
+                        && testBit(this.grams,
+                                secondBit(hashes[i], this.grams));
+            }
+            return may;
+        }
+
+        /**
+         * Reports whether the block has an entry of speaker {@code id}.
+         *
+         * @param id
+         *            a speaker id
+         * @return true if some entry of the block has speaker {@code id}
+         */
+        boolean hasSpeaker(int id) {
+            return (id >>> WORD_SHIFT) < this.speakers.length
+                    && testBit(this.speakers, id);
+        }
+
+        /**
+         * Reports the memory held by the block, not counting object headers.
+         *
+         * @return the size of the block's arrays, in bytes
+         */
+        long bytes() {
+            return this.data.length
+                    + (long) (this.grams.length + this.speakers.length)
+                            * Long.BYTES;
+        }
+    }
+
+    /**
+     * Number of recent entries kept uncompressed.
+     */
+    private final int hotEntries;
+
+    /**
+     * Number of entries per sealed block.
+     */
+    private final int blockEntries;
+
+    /**
+     * Compressor of the sealed blocks, created on the first seal; null until
+     * then.
+     */
+    private Deflater deflater;
+
+    /**
+     * Decompressor of the sealed blocks, created on the first inflate; null
+     * until then.
+     */
+    private Inflater inflater;
+
+    /**
+     * Sealed blocks, oldest first.
+     */
+    private List<Block> blocks;
+
+    /**
+     * Number of leading entries of the first block that are not in the log.
+     */
+    private int firstSkip;
+
+    /**
+     * Number of entries of the log in sealed blocks.
+     */
+    private int sealedSize;
+
+    /**
+     * Speaker id of each hot entry.
+     */
+    private int[] hotSpeakers;
+
+    /**
+     * Text of each hot entry.
+     */
+    private String[] hotTexts;
+
+    /**
+     * Number of hot entries.
+     */
+    private int hotSize;
+
+    /**
+     * Name of each speaker id.
+     */
+    private String[] speakerNames;
+
+    /**
+     * Number of speaker ids in use.
+     */
+    private int speakerCount;
+
+    /**
+     * Id of each speaker name.
+     */
+    private HashMap<String, Integer> speakerIds;
+
+    /**
+     * Compression dictionary of the blocks; null until the first seal.
+     */
+    private byte[] dictionary;
+
+    /**
+     * The last inflated block, or null.
+     */
+    private Block cachedBlock;
+
+    /**
+     * Speaker ids of the entries of {@code cachedBlock}.
+     */
+    private int[] cachedSpeakers;
+
+    /**
+     * Inflated entries of {@code cachedBlock}.
+     */
+    private byte[] cachedRaw;
+
+    /**
+     * Start in {@code cachedRaw} of the UTF-8 text of each entry of
+     * {@code cachedBlock}, and the end of the last one.
+     */
+    private int[] cachedStarts;
+
+    /**
+     * Block where the last lookup of a sealed entry by index ended, so
+     * reading entries in order walks the blocks once.
+     */
+    private int hintBlock;
+
+    /**
+     * Index of the first entry of the log in block {@code hintBlock}.
+     */
+    private int hintBase;
+
+    /**
+     * Constructor for ConversationLogTiered with the default tier sizes.
+     */
+    public ConversationLogTiered() {
+        this(DEFAULT_HOT_ENTRIES, DEFAULT_BLOCK_ENTRIES);
+    }
+
+    /**
+     * Constructor for ConversationLogTiered.
+     *
+     * @param hotEntries
+     *            the number of recent entries kept uncompressed (hotEntries ≥
+     *            0)
+     * @param blockEntries
+     *            the number of entries per sealed block (blockEntries > 0)
+     */
+    public ConversationLogTiered(int hotEntries, int blockEntries) {
+        if (hotEntries < 0 || blockEntries <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid tier sizes " + hotEntries + ", " + blockEntries);
+        }
+        this.hotEntries = hotEntries;
+        this.blockEntries = blockEntries;
+        this.createNewRep();
+    }
+
+    /**
+     * Initializes the representation to an empty log, releasing the native
+     * memory of the compressor and decompressor if they were created.
+     *
+     * @updates this
+     * @ensures {@code length = 0}
+     */
+    private void createNewRep() {
+        if (this.deflater != null) {
+            this.deflater.end();
+            this.deflater = null;
+        }
+        if (this.inflater != null) {
+            this.inflater.end();
+            this.inflater = null;
+        }
+        this.blocks = new ArrayList<>();
+        this.firstSkip = 0;
+        this.sealedSize = 0;
+        this.hintBlock = 0;
+        this.hintBase = 0;
+        this.hotSpeakers = new int[INITIAL_CAPACITY];
+        this.hotTexts = new String[INITIAL_CAPACITY];
+        this.hotSize = 0;
+        this.speakerNames = new String[INITIAL_CAPACITY];
+        this.speakerCount = 0;
+        this.speakerIds = new HashMap<>();
+        this.dictionary = null;
+        this.cachedBlock = null;
+        this.cachedSpeakers = null;
+        this.cachedRaw = null;
+        this.cachedStarts = null;
+    }
+
+    /**
+     * Mixes the bits of a gram key.
+     *
+     * @param key
+     *            the key
+     * @return the hash of the key
+     */
+    private static long mix(long key) {
+        long h = key ^ (key >>> MIX_SHIFT);
+        h *= MIX_MULTIPLIER;
+        return h ^ (h >>> MIX_SHIFT);
+    }
+
+    /**
+     * Reports the hash of the gram of {@code s} at {@code i}.
+     *
+     * @param s
+     *            the string
+     * @param i
+     *            the start of the gram (0 ≤ i ≤ |s| - GRAM)
+     * @return the hash of {@code s[i, i + GRAM)}
+     */
+    private static long gramHash(String s, int i) {
+        long key = 0;
+        for (int k = i; k < i + GRAM; k++) {
+            key = (key << Character.SIZE) | s.charAt(k);
+        }
+        return mix(key);
+    }
+
+    /**
+     * Reports the hashes of the grams of a query.
+     *
+     * @param query
+     *            the query
+     * @return the hash of each gram of {@code query}; none if it is shorter
+     *         than a gram
+     */
+    private static long[] gramHashes(String query) {
+        long[] hashes = new long[Math.max(0, query.length() - GRAM + 1)];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = gramHash(query, i);
+        }
+        return hashes;
+    }
+
+    /**
+     * Maps 32 hash bits onto the bits of a filter, by multiplying instead of
+     * dividing.
+     *
+     * @param hash
+     *            the hash bits, in the low half
+     * @param filter
+     *            the filter
+     * @return the bit index
+     */
+    private static int reduce(long hash, long[] filter) {
+        return (int) (((hash & INT_MASK) * filter.length * Long.SIZE)
+                >>> Integer.SIZE);
+    }
+
+    /**
+     * Reports the first filter bit of a gram hash.
+     *
+     * @param hash
+     *            the gram hash
+     * @param filter
+     *            the filter
+     * @return the bit index
+     */
+    private static int firstBit(long hash, long[] filter) {
+        return reduce(hash, filter);
+    }
+
+    /**
+     * Reports the second filter bit of a gram hash.
+     *
+     * @param hash
+     *            the gram hash
+     * @param filter
+     *            the filter
+     * @return the bit index
+     */
+    private static int secondBit(long hash, long[] filter) {
+        return reduce(hash >>> Integer.SIZE, filter);
+    }
+
+    /**
+     * Reports a bit of a bitset.
+     *
+     * @param bits
+     *            the bitset
+     * @param bit
+     *            the bit index
+     * @return whether the bit is set
+     */
+    private static boolean testBit(long[] bits, int bit) {
+        return (bits[bit >>> WORD_SHIFT] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Sets a bit of a bitset.
+     *
+     * @param bits
+     *            the bitset
+     * @param bit
+     *            the bit index
+     * @updates bits
+     */
+    private static void setBit(long[] bits, int bit) {
+        bits[bit >>> WORD_SHIFT] |= 1L << bit;
+    }
+
+    /**
+     * Writes an unsigned varint.
+     *
+     * @param out
+     *            the stream to write to
+     * @param value
+     *            the value (value ≥ 0)
+     * @updates out
+     */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        int rest = value;
+        while ((rest & ~VARINT_PAYLOAD) != 0) {
+            out.write((rest & VARINT_PAYLOAD) | VARINT_MORE);
+            rest >>>= VARINT_BITS;
+        }
+        out.write(rest);
+    }
+
+    /**
+     * Reports the id of {@code speaker}, giving it one if it has none.
+     *
+     * @param speaker
+     *            the speaker name
+     * @return the id of {@code speaker}
+     * @updates this.speakerNames, this.speakerCount, this.speakerIds
+     */
+    private int speakerId(String speaker) {
+        Integer id = this.speakerIds.get(speaker);
+        if (id == null) {
+            id = this.speakerCount;
+            if (this.speakerCount == this.speakerNames.length) {
+                this.speakerNames = Arrays.copyOf(this.speakerNames,
+                        2 * this.speakerCount);
+            }
+            this.speakerNames[this.speakerCount] = speaker;
+            this.speakerCount++;
+            this.speakerIds.put(speaker, id);
+        }
+        return id;
+    }
+
+    /**
+     * Adds an entry at the end of the hot tier.
+     *
+     * @param id
+     *            the speaker id of the entry
+     * @param text
+     *            the text of the entry
+     * @updates this.hotSpeakers, this.hotTexts, this.hotSize
+     */
+    private void addHot(int id, String text) {
+        if (this.hotSize == this.hotTexts.length) {
+            this.hotSpeakers = Arrays.copyOf(this.hotSpeakers,
+                    2 * this.hotSize);
+            this.hotTexts = Arrays.copyOf(this.hotTexts, 2 * this.hotSize);
+        }
+        this.hotSpeakers[this.hotSize] = id;
+        this.hotTexts[this.hotSize] = text;
+        this.hotSize++;
+    }
+
+    /**
+     * Removes the first {@code count} entries of the hot tier.
+     *
+     * @param count
+     *            the number of entries to remove (0 ≤ count ≤ hotSize)
+     * @updates this.hotSpeakers, this.hotTexts, this.hotSize
+     */
+    private void dropHot(int count) {
+        int rest = this.hotSize - count;
+        System.arraycopy(this.hotSpeakers, count, this.hotSpeakers, 0, rest);
+        System.arraycopy(this.hotTexts, count, this.hotTexts, 0, rest);
+        Arrays.fill(this.hotTexts, rest, this.hotSize, null);
+        this.hotSize = rest;
+    }
+
+    /**
+     * Seals the oldest {@code blockEntries} hot entries into a block.
+     *
+     * @updates this
+     */
+    private void seal() {
+        int count = this.blockEntries;
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        long[] hashes = new long[INITIAL_CAPACITY];
+        int hashCount = 0;
+        long[] speakers = new long[((this.speakerCount - 1) >>> WORD_SHIFT)
+                + 1];
+        for (int i = 0; i < count; i++) {
+            String text = this.hotTexts[i];
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            writeVarint(raw, this.hotSpeakers[i]);
+            writeVarint(raw, bytes.length);
+            body.write(bytes, 0, bytes.length);
+            setBit(speakers, this.hotSpeakers[i]);
+            if (hashCount + text.length() > hashes.length) {
+                hashes = Arrays.copyOf(hashes,
+                        Math.max(2 * hashes.length, hashCount + text.length()));
+            }
+            for (int k = 0; k + GRAM <= text.length(); k++) {
+                hashes[hashCount] = gramHash(text, k);
+                hashCount++;
+            }
+        }
+        Arrays.sort(hashes, 0, hashCount);
+        int distinct = 0;
+        for (int k = 0; k < hashCount; k++) {
+            if (k == 0 || hashes[k] != hashes[k - 1]) {
+                distinct++;
+            }
+        }
+        long[] grams = new long[(distinct * BITS_PER_GRAM) / Long.SIZE + 1];
+        for (int k = 0; k < hashCount; k++) {
+            setBit(grams, firstBit(hashes[k], grams));
+            setBit(grams, secondBit(hashes[k], grams));
+        }
+        raw.write(body.toByteArray(), 0, body.size());
+        byte[] input = raw.toByteArray();
+        if (this.dictionary == null) {
+            int length = Math.min(DICTIONARY_SIZE, input.length);
+            this.dictionary = Arrays.copyOfRange(input, input.length - length,
+                    input.length);
+        }
+        if (this.deflater == null) {
+            this.deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        }
+        this.deflater.reset();
+        this.deflater.setDictionary(this.dictionary);
+        this.deflater.setInput(input);
+        this.deflater.finish();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] buffer = new byte[DICTIONARY_SIZE];
+        while (!this.deflater.finished()) {
+            int n = this.deflater.deflate(buffer);
+            data.write(buffer, 0, n);
+        }
+        this.blocks.add(new Block(count, data.toByteArray(), input.length,
+                grams, speakers));
+        this.sealedSize += count;
+        this.dropHot(count);
+    }
+
+    /**
+     * Inflates {@code block} into {@code cachedSpeakers}, {@code cachedRaw}
+     * and {@code cachedStarts}, unless it is already there.
+     *
+     * @param block
+     *            a block of this log
+     * @updates this.cachedBlock, this.cachedSpeakers, this.cachedRaw,
+     *          this.cachedStarts
+     */
+    private void inflate(Block block) {
+        if (block != this.cachedBlock) {
+            byte[] raw = new byte[block.rawLength];
+            if (this.inflater == null) {
+                this.inflater = new Inflater();
+            }
+            this.inflater.reset();
+            this.inflater.setInput(block.data);
+            try {
+                int n = 0;
+                while (n < raw.length) {
+                    int k = this.inflater.inflate(raw, n, raw.length - n);
+                    if (k == 0 && this.inflater.needsDictionary()) {
+                        this.inflater.setDictionary(this.dictionary);
+                    } else if (k == 0 && (this.inflater.finished()
+                            || this.inflater.needsInput())) {
+                        throw new IllegalStateException("Truncated block");
+                    }
+                    n += k;
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupt block", e);
+            }
+            int[] speakers = new int[block.count];
+            int[] lengths = new int[block.count];
+            int[] value = new int[1];
+            int at = 0;
+            for (int i = 0; i < block.count; i++) {
+                at = readVarint(raw, at, value);
+                speakers[i] = value[0];
+                at = readVarint(raw, at, value);
+                lengths[i] = value[0];
+            }
+            int[] starts = new int[block.count + 1];
+            for (int i = 0; i < block.count; i++) {
+                starts[i] = at;
+                at += lengths[i];
+            }
+            starts[block.count] = at;
+            this.cachedBlock = block;
+            this.cachedSpeakers = speakers;
+            this.cachedRaw = raw;
+            this.cachedStarts = starts;
+        }
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param raw
+     *            the bytes to read from
+     * @param at
+     *            the position of the varint
+     * @param value
+     *            receives the value in its element 0
+     * @return the position after the varint
+     * @updates value
+     */
+    private static int readVarint(byte[] raw, int at, int[] value) {
+        int result = 0;
+        int shift = 0;
+        int position = at;
+        int b;
+        do {
+            b = raw[position];
+            position++;
+            result |= (b & VARINT_PAYLOAD) << shift;
+            shift += VARINT_BITS;
+        } while ((b & VARINT_MORE) != 0);
+        value[0] = result;
+        return position;
+    }
+
+    /**
+     * Decodes the text of entry {@code i} of the cached block.
+     *
+     * @param i
+     *            an entry index in the cached block
+     * @return the text
+     */
+    private String cachedText(int i) {
+        int start = this.cachedStarts[i];
+        return new String(this.cachedRaw, start,
+                this.cachedStarts[i + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reports whether the text of entry {@code i} of the cached block
+     * contains {@code pattern}.
+     *
+     * @param i
+     *            an entry index in the cached block
+     * @param pattern
+     *            the UTF-8 bytes to look for, at least one
+     * @return true if the text contains {@code pattern}
+     */
+    private boolean cachedContains(int i, byte[] pattern) {
+        byte[] raw = this.cachedRaw;
+        int last = this.cachedStarts[i + 1] - pattern.length;
+        byte head = pattern[0];
+        boolean found = false;
+        for (int at = this.cachedStarts[i]; !found && at <= last; at++) {
+            if (raw[at] == head) {
+                int k = 1;
+                while (k < pattern.length && raw[at + k] == pattern[k]) {
+                    k++;
+                }
+                found = k == pattern.length;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Reports the index of the first entry of block {@code b} that is in the
+     * log.
+     *
+     * @param b
+     *            the index of a block
+     * @return {@code firstSkip} for the first block, 0 for the others
+     */
+    private int lowIn(int b) {
+        int low = 0;
+        if (b == 0) {
+            low = this.firstSkip;
+        }
+        return low;
+    }
+
+    /**
+     * Replaces the hot tier with the entries of block {@code b} from
+     * {@code lowIn(b)} up to {@code end}, and drops the blocks from {@code b}
+     * on.
+     *
+     * @param b
+     *            the index of a block
+     * @param end
+     *            the end of the entries of the block to keep
+     * @updates this
+     */
+    private void unseal(int b, int end) {
+        Block block = this.blocks.get(b);
+        this.inflate(block);
+        int low = this.lowIn(b);
+        int[] speakers = this.cachedSpeakers;
+        for (int i = b; i < this.blocks.size(); i++) {
+            this.sealedSize -= this.blocks.get(i).count - this.lowIn(i);
+        }
+        this.blocks.subList(b, this.blocks.size()).clear();
+        if (b == 0) {
+            this.firstSkip = 0;
+        }
+        this.hintBlock = 0;
+        this.hintBase = 0;
+        this.hotSize = 0;
+        Arrays.fill(this.hotTexts, null);
+        for (int i = low; i < end; i++) {
+            this.addHot(speakers[i], this.cachedText(i));
+        }
+    }
+
+    /**
+     * Finds the block holding sealed entry {@code i}, walking forwards or
+     * backwards from the hint, and inflates it. Reads near the previous one
+     * cost O(1) block steps; a read far from it walks every block between.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < sealedSize)
+     * @return the index of entry {@code i} in the cached block
+     * @updates this.hintBlock, this.hintBase, this.cachedBlock,
+     *          this.cachedSpeakers, this.cachedRaw, this.cachedStarts
+     */
+    private int locate(int i) {
+        while (i < this.hintBase) {
+            this.hintBlock--;
+            this.hintBase -= this.blocks.get(this.hintBlock).count
+                    - this.lowIn(this.hintBlock);
+        }
+        int inBlock = this.blocks.get(this.hintBlock).count
+                - this.lowIn(this.hintBlock);
+        while (i >= this.hintBase + inBlock) {
+            this.hintBase += inBlock;
+            this.hintBlock++;
+            inBlock = this.blocks.get(this.hintBlock).count;
+        }
+        this.inflate(this.blocks.get(this.hintBlock));
+        return this.lowIn(this.hintBlock) + i - this.hintBase;
+    }
+
+    // Standard interface methods
+    /**
+     * Returns a new object with the same <i>dynamic</i> type as {@code this},
+     * having an initial value.
+     */
+    @Override
+    public ConversationLogTiered newInstance() {
+        return new ConversationLogTiered(this.hotEntries, this.blockEntries);
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     */
+    @Override
+    public void clear() {
+        this.createNewRep();
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value; the declaration notwithstanding, the
+     * <i>dynamic</i> type of {@code source} must be the same as the
+     * <i>dynamic</i> type of {@code this}.
+     */
+    @Override
+    public void transferFrom(ConversationLog source) {
+        if (this != source) {
+            ConversationLogTiered that = (ConversationLogTiered) source;
+            this.blocks = that.blocks;
+            this.firstSkip = that.firstSkip;
+            this.sealedSize = that.sealedSize;
+            this.hintBlock = that.hintBlock;
+            this.hintBase = that.hintBase;
+            this.hotSpeakers = that.hotSpeakers;
+            this.hotTexts = that.hotTexts;
+            this.hotSize = that.hotSize;
+            this.speakerNames = that.speakerNames;
+            this.speakerCount = that.speakerCount;
+            this.speakerIds = that.speakerIds;
+            this.dictionary = that.dictionary;
+            this.cachedBlock = that.cachedBlock;
+            this.cachedSpeakers = that.cachedSpeakers;
+            this.cachedRaw = that.cachedRaw;
+            this.cachedStarts = that.cachedStarts;
+            that.createNewRep();
+        }
+    }
+
+    // Kernel interface methods
+    /**
+     * Return the number of chat entries in the log.
+     *
+     * @return the number of entries
+     */
+    @Override
+    public int length() {
+        return this.sealedSize + this.hotSize;
+    }
+
+    /**
+     * Check if the chat log is empty.
+     *
+     * @return true if empty, false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.length() == 0;
+    }
+
+    /**
+     * Report the speaker of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the speaker of entry {@code i}
+     */
+    @Override
+    public String speakerAt(int i) {
+        String speaker;
+        if (i >= this.sealedSize) {
+            speaker = this.speakerNames[this.hotSpeakers[i - this.sealedSize]];
+        } else {
+            int at = this.locate(i);
+            speaker = this.speakerNames[this.cachedSpeakers[at]];
+        }
+        return speaker;
+    }
+
+    /**
+     * Report the text of entry {@code i}.
+     *
+     * @param i
+     *            the entry index (0 ≤ i < |this|)
+     * @return the text of entry {@code i}
+     */
+    @Override
+    public String textAt(int i) {
+        String text;
+        if (i >= this.sealedSize) {
+            text = this.hotTexts[i - this.sealedSize];
+        } else {
+            text = this.cachedText(this.locate(i));
+        }
+        return text;
+    }
+
+    /**
+     * Append a chat entry to the log.
+     *
+     * @param speaker
+     *            non-null/non-empty
+     * @param text
+     *            non-null
+     */
+    @Override
+    public void append(String speaker, String text) {
+        this.addHot(this.speakerId(speaker), text);
+        if (this.hotSize >= this.hotEntries + this.blockEntries) {
+            this.seal();
+        }
+    }
+
+    /**
+     * Undo chat: removes the last entry and reports it as a map with keys
+     * "speaker", "text".
+     *
+     * @return removed entry encoded as a Map<String,String>
+     * @requires |this| > 0
+     */
+    @Override
+    public Map<String, String> removeChat() {
+        if (this.hotSize == 0) {
+            int last = this.blocks.size() - 1;
+            this.unseal(last, this.blocks.get(last).count);
+        }
+        this.hotSize--;
+        Map<String, String> removedMap = new Map1L<>();
+        removedMap.add("speaker",
+                this.speakerNames[this.hotSpeakers[this.hotSize]]);
+        removedMap.add("text", this.hotTexts[this.hotSize]);
+        this.hotTexts[this.hotSize] = null;
+        return removedMap;
+    }
+
+    /**
+     * Resets the chat log to empty.
+     */
+    @Override
+    public void reset() {
+        this.clear();
+    }
+
+    /**
+     * Keeps only entries in [start, end) and deletes all other chat.
+     *
+     * @param start
+     *            inclusive index
+     * @param end
+     *            exclusive index (0 ≤ start ≤ end ≤ |#this|)
+     * @updates this
+     * @return this (now containing only the chosen segment)
+     */
+    @Override
+    public ConversationLog segment(int start, int end) {
+        if (end >= this.sealedSize) {
+            Arrays.fill(this.hotTexts, end - this.sealedSize, this.hotSize,
+                    null);
+            this.hotSize = end - this.sealedSize;
+        } else {
+            // Find the block holding the last kept entry
+            int b = 0;
+            int before = 0;
+            int inBlock = this.blocks.get(0).count - this.firstSkip;
+            while (before + inBlock < end) {
+                before += inBlock;
+                b++;
+                inBlock = this.blocks.get(b).count;
+            }
+            int cut = this.lowIn(b) + end - before;
+            if (cut == this.blocks.get(b).count) {
+                // The block ends exactly at end, so it stays sealed
+                for (int i = b + 1; i < this.blocks.size(); i++) {
+                    this.sealedSize -= this.blocks.get(i).count;
+                }
+                this.blocks.subList(b + 1, this.blocks.size()).clear();
+                Arrays.fill(this.hotTexts, null);
+                this.hotSize = 0;
+            } else {
+                this.unseal(b, cut);
+            }
+        }
+        int rest = start;
+        int dropped = 0;
+        while (rest > 0 && dropped < this.blocks.size()
+                && rest >= this.blocks.get(dropped).count - this.lowIn(dropped)) {
+            rest -= this.blocks.get(dropped).count - this.lowIn(dropped);
+            dropped++;
+        }
+        if (dropped > 0) {
+            this.blocks.subList(0, dropped).clear();
+            this.sealedSize -= start - rest;
+            this.firstSkip = 0;
+        }
+        if (this.blocks.isEmpty()) {
+            this.dropHot(rest);
+        } else {
+            this.firstSkip += rest;
+            this.sealedSize -= rest;
+        }
+        this.hintBlock = 0;
+        this.hintBase = 0;
+        return this;
+    }
+
+    // Secondary methods
+    /**
+     * Export the chat log to a SimpleWriter.
+     *
+     * @param out
+     *            the SimpleWriter to write to
+     */
+    @Override
+    public void exportChat(SimpleWriter out) {
+        for (int b = 0; b < this.blocks.size(); b++) {
+            Block block = this.blocks.get(b);
+            this.inflate(block);
+            for (int i = this.lowIn(b); i < block.count; i++) {
+                out.println(this.speakerNames[this.cachedSpeakers[i]] + ": "
+                        + this.cachedText(i));
+            }
+        }
+        for (int i = 0; i < this.hotSize; i++) {
+            out.println(this.speakerNames[this.hotSpeakers[i]] + ": "
+                    + this.hotTexts[i]);
+        }
+        out.close();
+    }
+
+    /**
+     * Import the chat log from a SimpleReader; the times of a timed
+     * transcript are dropped.
+     *
+     * @param in
+     *            the SimpleReader to read from
+     */
+    @Override
+    public void importChat(SimpleReader in) {
+        TranscriptReader transcript = new TranscriptReader(in);
+        while (transcript.next()) {
+            this.append(transcript.speaker(), transcript.text());
+        }
+        in.close();
+    }
+
+    /**
+     * Convert the entire conversation log to a transcript string.
+     *
+     * @return the transcript string
+     */
+    @Override
+    public String toTranscript() {
+        StringBuilder transcript = new StringBuilder();
+        for (int b = 0; b < this.blocks.size(); b++) {
+            Block block = this.blocks.get(b);
+            this.inflate(block);
+            for (int i = this.lowIn(b); i < block.count; i++) {
+                transcript.append(this.speakerNames[this.cachedSpeakers[i]])
+                        .append(": ").append(this.cachedText(i))
+                        .append("\n");
+            }
+        }
+        for (int i = 0; i < this.hotSize; i++) {
+            transcript.append(this.speakerNames[this.hotSpeakers[i]])
+                    .append(": ").append(this.hotTexts[i]).append("\n");
+        }
+        return transcript.toString();
+    }
+
+    /**
+     * Search for a substring in the chat log and return the list of indices
+     * where found.
+     *
+     * @param substring
+     *            the substring to search for
+     * @return a sequence of indices where the substring is found
+     */
+    @Override
+    public Sequence<Integer> find(String substring) {
+        long[] hashes = gramHashes(substring);
+        byte[] pattern = substring.getBytes(StandardCharsets.UTF_8);
+        Sequence<Integer> indices = new Sequence1L<>();
+        int index = 0;
+        for (int b = 0; b < this.blocks.size(); b++) {
+            Block block = this.blocks.get(b);
+            int low = this.lowIn(b);
+            if (block.mayContain(hashes)) {
+                this.inflate(block);
+                for (int i = low; i < block.count; i++) {
+                    if (pattern.length == 0
+                            || this.cachedContains(i, pattern)) {
+                        indices.add(indices.length(), index + i - low);
+                    }
+                }
+            }
+            index += block.count - low;
+        }
+        for (int i = 0; i < this.hotSize; i++) {
+            if (this.hotTexts[i].contains(substring)) {
+                indices.add(indices.length(), index + i);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Retrieve all chat entries from a specific speaker.
+     *
+     * @param speaker
+     *            the speaker to filter by
+     * @return a sequence of chat texts from the given speaker
+     */
+    @Override
+    public Sequence<String> speakerChat(String speaker) {
+        Sequence<String> chats = new Sequence1L<>();
+        Integer id = this.speakerIds.get(speaker);
+        if (id != null) {
+            int wanted = id;
+            for (int b = 0; b < this.blocks.size(); b++) {
+                Block block = this.blocks.get(b);
+                if (block.hasSpeaker(wanted)) {
+                    this.inflate(block);
+                    for (int i = this.lowIn(b); i < block.count; i++) {
+                        if (this.cachedSpeakers[i] == wanted) {
+                            chats.add(chats.length(), this.cachedText(i));
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < this.hotSize; i++) {
+                if (this.hotSpeakers[i] == wanted) {
+                    chats.add(chats.length(), this.hotTexts[i]);
+                }
+            }
+        }
+        return chats;
+    }
+
+    // Other methods
+    /**
+     * Reports the number of sealed blocks.
+     *
+     * @return the number of compressed blocks
+     */
+    public int sealedBlocks() {
+        return this.blocks.size();
+    }
+
+    /**
+     * Reports the memory held by the sealed blocks: compressed entries and
+     * filters, not counting object headers.
+     *
+     * @return the size of the sealed tier, in bytes
+     */
+    public long sealedBytes() {
+        long bytes = 0;
+        for (Block block : this.blocks) {
+            bytes += block.bytes();
+        }
+        if (this.dictionary != null) {
+            bytes += this.dictionary.length;
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,341 @@
+package conversationLog;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import components.map.Map;
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+
+/**
+ * Array-backed ConversationLog that also keeps an inverted word index
+ * (token → ascending entry indices) up to date.
+ *
+ * <p>
+ * A token is a maximal run of letters and digits, compared case-sensitively
+ * like {@code find}. {@code append} and {@code removeChat} update the index in
+ * time proportional to the words of the entry, and
+ * {@link #findWord(String)} answers whole-word queries in O(result size).
+ * {@code find} keeps its substring contract and still scans.
+ * </p>
+ *
+ * <p>
+ * Postings hold {@code base + i} for entry i, so {@code segment} only unposts
+ * the entries it drops from the end and moves {@code base} past the ones it
+ * drops from the front. Their postings are skipped by the queries until more
+ * entries were dropped than are left, and are then purged in one pass, so a
+ * sliding window costs amortized O(words) per entry.
+ * </p>
+ */
+public class ConversationLogWordIndexed extends ConversationLog1A {
+
+    /**
+     * Posting list of every token present in the log.
+     */
+    private HashMap<String, IndexList> index;
+
+    /**
+     * Posting of entry 0; postings below it belong to dropped entries.
+     */
+    private int base;
+
+    /**
+     * Constructor for ConversationLogWordIndexed.
+     */
+    public ConversationLogWordIndexed() {
+        super();
+        this.index = new HashMap<>();
+        this.base = 0;
+    }
+
+    /**
+     * Reports whether {@code c} is part of a token.
+     *
+     * @param c
+     *            the character to check
+     * @return true if {@code c} is a letter or a digit
+     */
+    private static boolean isTokenChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * Reports whether {@code word} is exactly one token.
+     *
+     * @param word
+     *            the word to check
+     * @return true if {@code word} is non-empty and made only of token chars
+     */
+    private static boolean isToken(String word) {
+        boolean token = !word.isEmpty();
+        for (int i = 0; token && i < word.length(); i++) {
+            token = isTokenChar(word.charAt(i));
+        }
+        return token;
+    }
+
+    /**
+     * Adds posting {@code i} to the posting list of every token of
+     * {@code text}.
+     *
+     * @param i
+     *            the posting of the entry, greater than every indexed one
+     * @param text
+     *            the text of entry {@code i}
+     * @updates this.index
+     */
+    private void indexEntry(int i, String text) {
+        int pos = 0;
+        while (pos < text.length()) {
+            if (isTokenChar(text.charAt(pos))) {
+                int start = pos;
+                while (pos < text.length() && isTokenChar(text.charAt(pos))) {
+                    pos++;
+                }
+                String token = text.substring(start, pos);
+                IndexList postings = this.index.get(token);
+                if (postings == null) {
+                    postings = new IndexList();
+                    this.index.put(token, postings);
+                }
+                // A token repeated in the same entry is posted only once
+                if (postings.length() == 0 || postings.last() != i) {
+                    postings.add(i);
+                }
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Removes posting {@code i}, the last indexed one, from the posting list
+     * of every token of {@code text}.
+     *
+     * @param i
+     *            the posting of the entry, the greatest indexed one
+     * @param text
+     *            the text of entry {@code i}
+     * @updates this.index
+     */
+    private void unindexEntry(int i, String text) {
+        int pos = 0;
+        while (pos < text.length()) {
+            if (isTokenChar(text.charAt(pos))) {
+                int start = pos;
+                while (pos < text.length() && isTokenChar(text.charAt(pos))) {
+                    pos++;
+                }
+                String token = text.substring(start, pos);
+                IndexList postings = this.index.get(token);
+                if (postings != null && postings.length() > 0
+                        && postings.last() == i) {
+                    postings.removeLast();
+                    if (postings.length() == 0) {
+                        this.index.remove(token);
+                    }
+                }
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Drops the postings of the entries before {@code base} and renumbers
+     * the others from 0, in time proportional to the size of the index.
+     *
+     * @updates this.index, this.base
+     */
+    private void dropStalePostings() {
+        Iterator<IndexList> lists = this.index.values().iterator();
+        while (lists.hasNext()) {
+            IndexList postings = lists.next();
+            postings.dropBelow(this.base);
+            if (postings.length() == 0) {
+                lists.remove();
+            }
+        }
+        this.base = 0;
+    }
+
+    /**
+     * Reports whether {@code word} occurs in {@code text} as a whole word,
+     * i.e. not preceded or followed by a token char where {@code word} itself
+     * starts or ends with one.
+     *
+     * @param text
+     *            the text to search
+     * @param word
+     *            the word to look for
+     * @return true if {@code word} occurs in {@code text} as a whole word
+     */
+    private static boolean containsWord(String text, String word) {
+        boolean checkStart = !word.isEmpty() && isTokenChar(word.charAt(0));
+        boolean checkEnd = !word.isEmpty()
+                && isTokenChar(word.charAt(word.length() - 1));
+        boolean found = false;
+        int at = text.indexOf(word);
+        while (!found && at != -1) {
+            int after = at + word.length();
+            found = !(checkStart && at > 0 && isTokenChar(text.charAt(at - 1)))
+                    && !(checkEnd && after < text.length()
+                            && isTokenChar(text.charAt(after)));
+            at = text.indexOf(word, at + 1);
+        }
+        return found;
+    }
+
+    // Standard interface methods
+    /**
+     * Returns a new object with the same <i>dynamic</i> type as {@code this},
+     * having an initial value.
+     */
+    @Override
+    public ConversationLogWordIndexed newInstance() {
+        return new ConversationLogWordIndexed();
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        this.index = new HashMap<>();
+        this.base = 0;
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value; the declaration notwithstanding, the
+     * <i>dynamic</i> type of {@code source} must be the same as the
+     * <i>dynamic</i> type of {@code this}.
+     */
+    @Override
+    public void transferFrom(ConversationLog source) {
+        if (this != source) {
+            ConversationLogWordIndexed that = (ConversationLogWordIndexed) source;
+            super.transferFrom(that);
+            this.index = that.index;
+            this.base = that.base;
+            that.index = new HashMap<>();
+            that.base = 0;
+        }
+    }
+
+    // Kernel interface methods
+    /**
+     * Append a timed chat entry to the log, then index it.
+     *
+     * @param speaker
+     *            non-null/non-empty
+     * @param text
+     *            non-null
+     * @param time
+     *            the time of the entry, or {@code NO_TIME}
+     */
+    @Override
+    public void append(String speaker, String text, long time) {
+        super.append(speaker, text, time);
+        this.indexEntry(this.base + this.length() - 1, text);
+    }
+
+    /**
+     * Appends entries {@code [0, count)} of two parallel arrays in one bulk
+     * copy, then indexes them.
+     *
+     * @param newSpeakers
+     *            the speakers of the new entries
+     * @param newTexts
+     *            the texts of the new entries
+     * @param newTimes
+     *            the times of the new entries, or null
+     * @param count
+     *            the number of entries to append
+     * @updates this
+     */
+    @Override
+    void appendBlock(String[] newSpeakers, String[] newTexts, long[] newTimes,
+            int count) {
+        int from = this.base + this.length();
+        super.appendBlock(newSpeakers, newTexts, newTimes, count);
+        for (int i = 0; i < count; i++) {
+            this.indexEntry(from + i, newTexts[i]);
+        }
+    }
+
+    /**
+     * Undo chat: removes the last entry and reports it as a map with keys
+     * "speaker", "text".
+     *
+     * @return removed entry encoded as a Map<String,String>
+     * @requires |this| > 0
+     */
+    @Override
+    public Map<String, String> removeChat() {
+        Map<String, String> removedMap = super.removeChat();
+        this.unindexEntry(this.base + this.length(),
+                removedMap.value("text"));
+        return removedMap;
+    }
+
+    /**
+     * Keeps only entries in [start, end) and deletes all other chat, in time
+     * proportional to the words of the entries dropped from the end, plus an
+     * amortized purge of the postings dropped from the front.
+     *
+     * @param start
+     *            inclusive index
+     * @param end
+     *            exclusive index (0 ≤ start ≤ end ≤ |#this|)
+     * @updates this
+     * @return this (now containing only the chosen segment)
+     */
+    @Override
+    public ConversationLog segment(int start, int end) {
+        // Postings past the segment would collide with the next appends
+        for (int i = this.length() - 1; i >= end; i--) {
+            this.unindexEntry(this.base + i, this.textAt(i));
+        }
+        super.segment(start, end);
+        this.base += start;
+        if (this.base > this.length()) {
+            this.dropStalePostings();
+        }
+        return this;
+    }
+
+    // Indexed queries
+    /**
+     * Search for a whole word in the chat log and return the list of indices
+     * where found. A single-token {@code word} is answered from the index in
+     * O(result size); any other {@code word} (several tokens, punctuation)
+     * falls back to scanning the log.
+     *
+     * @param word
+     *            the word to search for
+     * @return a sequence of indices of the entries containing {@code word} as
+     *         a whole word
+     */
+    public Sequence<Integer> findWord(String word) {
+        Sequence<Integer> indices = new Sequence1L<>();
+        if (isToken(word)) {
+            IndexList postings = this.index.get(word);
+            if (postings != null) {
+                for (int p = postings.lowerBound(this.base); p < postings
+                        .length(); p++) {
+                    indices.add(indices.length(), postings.get(p) - this.base);
+                }
+            }
+        } else {
+            for (int i = 0; i < this.length(); i++) {
+                if (containsWord(this.textAt(i), word)) {
+                    indices.add(indices.length(), i);
+                }
+            }
+        }
+        return indices;
+    }
+
+}
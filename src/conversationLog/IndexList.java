@@ -0,0 +1,180 @@
+package conversationLog;
+
+/**
+ * Growable list of ascending entry indices (a posting list), used by the
+ * indexed ConversationLog implementations.
+ */
+final class IndexList {
+
+    /**
+     * Capacity of a freshly created list.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * The indices; only slots [0, size) are meaningful.
+     */
+    private int[] items;
+
+    /**
+     * Number of indices in the list.
+     */
+    private int size;
+
+    /**
+     * Constructor for IndexList.
+     */
+    IndexList() {
+        this.items = new int[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Report the number of indices in the list.
+     *
+     * @return the number of indices
+     */
+    int length() {
+        return this.size;
+    }
+
+    /**
+     * Report the number of indices the list can hold before it grows.
+     *
+     * @return the capacity of the list
+     */
+    int capacity() {
+        return this.items.length;
+    }
+
+    /**
+     * Report the index at position {@code pos}.
+     *
+     * @param pos
+     *            the position (0 ≤ pos < |this|)
+     * @return the index stored at {@code pos}
+     */
+    int get(int pos) {
+        return this.items[pos];
+    }
+
+    /**
+     * Report the last index in the list.
+     *
+     * @return the last index
+     * @requires |this| > 0
+     */
+    int last() {
+        return this.items[this.size - 1];
+    }
+
+    /**
+     * Adds {@code index} at the end of the list.
+     *
+     * @param index
+     *            the index to add (greater than every index in the list)
+     */
+    void add(int index) {
+        if (this.size == this.items.length) {
+            int[] newItems = new int[2 * this.items.length];
+            System.arraycopy(this.items, 0, newItems, 0, this.size);
+            this.items = newItems;
+        }
+        this.items[this.size] = index;
+        this.size++;
+    }
+
+    /**
+     * Removes the last index of the list.
+     *
+     * @requires |this| > 0
+     */
+    void removeLast() {
+        this.size--;
+    }
+
+    /**
+     * Keeps only the first {@code length} indices of the list.
+     *
+     * @param length
+     *            the new length (0 ≤ length ≤ |this|)
+     * @updates this
+     */
+    void truncate(int length) {
+        this.size = length;
+    }
+
+    /**
+     * Reports the position of the first index that is at least {@code index},
+     * or |this| if there is none.
+     *
+     * @param index
+     *            the index to look for
+     * @return the lower-bound position of {@code index}
+     */
+    int lowerBound(int index) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.items[mid] < index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reports the position of the first index that is at least {@code index},
+     * or |this| if there is none, searching from position {@code from} only.
+     * The search gallops (positions from + 1, from + 3, from + 7, ...) before
+     * it bisects, so it costs O(log d) for a result d positions past
+     * {@code from}.
+     *
+     * @param index
+     *            the index to look for
+     * @param from
+     *            the first position to look at (0 ≤ from ≤ |this|); every
+     *            index before it is less than {@code index}
+     * @return the lower-bound position of {@code index}
+     */
+    int lowerBound(int index, int from) {
+        int low = from;
+        int high = from;
+        int step = 1;
+        while (high < this.size && this.items[high] < index) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, this.size);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.items[mid] < index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Drops the indices below {@code start} and shifts the others down by
+     * {@code start}.
+     *
+     * @param start
+     *            the smallest index kept
+     * @updates this
+     */
+    void dropBelow(int start) {
+        int from = this.lowerBound(start);
+        for (int i = from; i < this.size; i++) {
+            this.items[i - from] = this.items[i] - start;
+        }
+        this.size -= from;
+    }
+
+}
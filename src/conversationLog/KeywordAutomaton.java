@@ -0,0 +1,348 @@
+package conversationLog;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of patterns compiled into an Aho–Corasick automaton, so one pass over
+ * a text finds every occurrence of every pattern.
+ *
+ * <p>
+ * Pattern {@code p} has id {@code p}, its position in the collection it was
+ * compiled from (duplicates keep their first id). Matching is
+ * case-sensitive, as {@code String.contains} is; the empty pattern matches
+ * every text. Transitions on ASCII chars are precomputed into a dense table
+ * for the root and the shallowest states, where a scan spends most of its
+ * time, so there scanning ASCII text costs one array read per char; deeper
+ * states and other chars follow the sorted trie edges and the failure links
+ * until they reach a dense state. A table row costs 512 bytes, so only the
+ * first {@code DENSE_STATES} states in breadth-first order get one, whatever
+ * the number of patterns. The automaton is immutable, so it can be
+ * compiled once, kept, and shared by any number of logs and threads.
+ * </p>
+ */
+public final class KeywordAutomaton {
+
+    /**
+     * Number of chars with a precomputed transition.
+     */
+    private static final int ASCII = 128;
+
+    /**
+     * Most states with a dense row of ASCII transitions.
+     */
+    private static final int DENSE_STATES = 256;
+
+    /**
+     * Initial capacity of the trie arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Marks a state where no pattern ends, and the end of a dictionary
+     * chain.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The patterns, by id.
+     */
+    private final String[] patterns;
+
+    /**
+     * Next state of each dense state on each ASCII char, at
+     * {@code denseRow[state] * ASCII + c}.
+     */
+    private final int[] ascii;
+
+    /**
+     * Row in {@code ascii} of each state, or {@code NONE} if it has none.
+     */
+    private final int[] denseRow;
+
+    /**
+     * Start in {@code labels} and {@code targets} of the trie edges of each
+     * state, and the end of the last one.
+     */
+    private final int[] edgeStart;
+
+    /**
+     * Char of each trie edge, ascending within a state.
+     */
+    private final char[] labels;
+
+    /**
+     * Target state of each trie edge.
+     */
+    private final int[] targets;
+
+    /**
+     * Failure link of each state: the state of its longest proper suffix in
+     * the trie.
+     */
+    private final int[] fail;
+
+    /**
+     * Id of the pattern spelled by each state, or {@code NONE}.
+     */
+    private final int[] patternAt;
+
+    /**
+     * Nearest state other than the root, along the failure links of each
+     * state, where a pattern ends, or {@code NONE}.
+     */
+    private final int[] dictionaryLink;
+
+    /**
+     * Constructor for KeywordAutomaton.
+     *
+     * @param patterns
+     *            the patterns to look for
+     */
+    public KeywordAutomaton(Collection<String> patterns) {
+        LinkedHashMap<String, Integer> ids = new LinkedHashMap<>();
+        for (String pattern : patterns) {
+            ids.putIfAbsent(pattern, ids.size());
+        }
+        this.patterns = ids.keySet().toArray(new String[0]);
+
+        // Trie, with the children of each state in a linked list
+        char[] label = new char[INITIAL_CAPACITY];
+        int[] firstChild = new int[INITIAL_CAPACITY];
+        int[] nextSibling = new int[INITIAL_CAPACITY];
+        int[] ending = new int[INITIAL_CAPACITY];
+        firstChild[0] = NONE;
+        ending[0] = NONE;
+        int states = 1;
+        for (int id = 0; id < this.patterns.length; id++) {
+            String pattern = this.patterns[id];
+            int state = 0;
+            for (int k = 0; k < pattern.length(); k++) {
+                char c = pattern.charAt(k);
+                int child = firstChild[state];
+                while (child != NONE && label[child] != c) {
+                    child = nextSibling[child];
+                }
+                if (child == NONE) {
+                    if (states == label.length) {
+                        label = Arrays.copyOf(label, 2 * states);
+                        firstChild = Arrays.copyOf(firstChild, 2 * states);
+                        nextSibling = Arrays.copyOf(nextSibling, 2 * states);
+                        ending = Arrays.copyOf(ending, 2 * states);
+                    }
+                    child = states;
+                    states++;
+                    label[child] = c;
+                    firstChild[child] = NONE;
+                    ending[child] = NONE;
+                    nextSibling[child] = firstChild[state];
+                    firstChild[state] = child;
+                }
+                state = child;
+            }
+            ending[state] = id;
+        }
+
+        // Edges of each state, sorted by char for binary search
+        this.edgeStart = new int[states + 1];
+        this.labels = new char[states - 1];
+        this.targets = new int[states - 1];
+        int edges = 0;
+        for (int state = 0; state < states; state++) {
+            this.edgeStart[state] = edges;
+            int first = edges;
+            int child = firstChild[state];
+            while (child != NONE) {
+                int at = edges;
+                while (at > first && this.labels[at - 1] > label[child]) {
+                    this.labels[at] = this.labels[at - 1];
+                    this.targets[at] = this.targets[at - 1];
+                    at--;
+                }
+                this.labels[at] = label[child];
+                this.targets[at] = child;
+                edges++;
+                child = nextSibling[child];
+            }
+        }
+        this.edgeStart[states] = edges;
+
+        // Failure links and ASCII transitions, breadth first; a failure link
+        // leads to a shallower state, so it is dense whenever its state is
+        this.fail = new int[states];
+        this.patternAt = Arrays.copyOf(ending, states);
+        this.dictionaryLink = new int[states];
+        this.ascii = new int[Math.min(states, DENSE_STATES) * ASCII];
+        this.denseRow = new int[states];
+        Arrays.fill(this.denseRow, NONE);
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        queue[tail] = 0;
+        tail++;
+        this.dictionaryLink[0] = NONE;
+        while (head < tail) {
+            int state = queue[head];
+            int rank = head;
+            head++;
+            for (int e = this.edgeStart[state]; e < this.edgeStart[state + 1]; e++) {
+                int child = this.targets[e];
+                int link = 0;
+                if (state != 0) {
+                    link = this.next(this.fail[state], this.labels[e]);
+                }
+                this.fail[child] = link;
+                if (link != 0 && this.patternAt[link] != NONE) {
+                    this.dictionaryLink[child] = link;
+                } else {
+                    this.dictionaryLink[child] = this.dictionaryLink[link];
+                }
+                queue[tail] = child;
+                tail++;
+            }
+            if (rank < DENSE_STATES) {
+                this.denseRow[state] = rank;
+                int row = rank * ASCII;
+                int failRow = this.denseRow[this.fail[state]] * ASCII;
+                for (char c = 0; c < ASCII; c++) {
+                    int target = this.edge(state, c);
+                    if (target == NONE) {
+                        target = 0;
+                        if (state != 0) {
+                            target = this.ascii[failRow + c];
+                        }
+                    }
+                    this.ascii[row + c] = target;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports the trie edge of {@code state} on {@code c}.
+     *
+     * @param state
+     *            a state
+     * @param c
+     *            a char
+     * @return the target state, or {@code NONE} if there is no such edge
+     */
+    private int edge(int state, char c) {
+        int low = this.edgeStart[state];
+        int high = this.edgeStart[state + 1] - 1;
+        int target = NONE;
+        while (target == NONE && low <= high) {
+            int mid = (low + high) >>> 1;
+            if (this.labels[mid] < c) {
+                low = mid + 1;
+            } else if (this.labels[mid] > c) {
+                high = mid - 1;
+            } else {
+                target = this.targets[mid];
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Reports the state the automaton moves to from {@code state} on
+     * {@code c}.
+     *
+     * @param state
+     *            a state whose failure links, and whose dense row if it has
+     *            one, are computed
+     * @param c
+     *            the next char of the text
+     * @return the next state
+     */
+    private int next(int state, char c) {
+        int current = state;
+        int target = NONE;
+        while (target == NONE) {
+            int row = NONE;
+            if (c < ASCII) {
+                row = this.denseRow[current];
+            }
+            if (row != NONE) {
+                target = this.ascii[row * ASCII + c];
+            } else {
+                target = this.edge(current, c);
+                if (target == NONE && current == 0) {
+                    target = 0;
+                }
+                current = this.fail[current];
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Reports the number of distinct patterns.
+     *
+     * @return the number of patterns
+     */
+    public int patternCount() {
+        return this.patterns.length;
+    }
+
+    /**
+     * Reports the pattern with id {@code id}.
+     *
+     * @param id
+     *            a pattern id (0 ≤ id < patternCount())
+     * @return the pattern
+     */
+    public String pattern(int id) {
+        return this.patterns[id];
+    }
+
+    /**
+     * Reports whether {@code text} contains at least one of the patterns,
+     * stopping at the first occurrence.
+     *
+     * @param text
+     *            the text to scan
+     * @return true if some pattern occurs in {@code text}
+     */
+    public boolean matchesAny(String text) {
+        boolean found = this.patternAt[0] != NONE;
+        int state = 0;
+        for (int k = 0; !found && k < text.length(); k++) {
+            state = this.next(state, text.charAt(k));
+            found = this.patternAt[state] != NONE
+                    || this.dictionaryLink[state] != NONE;
+        }
+        return found;
+    }
+
+    /**
+     * Scans {@code text} once and reports the id of the pattern of each
+     * occurrence to {@code action}, in order of where the occurrences end; a
+     * pattern occurring several times is reported each time.
+     *
+     * @param text
+     *            the text to scan
+     * @param action
+     *            receives the pattern id of each occurrence
+     */
+    public void forEachMatch(String text, IntConsumer action) {
+        if (this.patternAt[0] != NONE) {
+            action.accept(this.patternAt[0]);
+        }
+        int state = 0;
+        for (int k = 0; k < text.length(); k++) {
+            state = this.next(state, text.charAt(k));
+            int match = state;
+            if (match == 0 || this.patternAt[match] == NONE) {
+                match = this.dictionaryLink[match];
+            }
+            while (match != NONE) {
+                action.accept(this.patternAt[match]);
+                match = this.dictionaryLink[match];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+package conversationLog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of latencies in nanoseconds, with log-linear buckets
+ * in the style of HdrHistogram.
+ *
+ * <p>
+ * Values below 2^{@value #SUB_BITS} have a bucket each; above that, every
+ * power of two is split into 2^{@value #SUB_BITS} equal buckets, so a
+ * recorded value is known within 1/32 of itself. Values of 2^{@value #MAX_BITS}
+ * ns (about 18 minutes) or more share the last bucket. Recording is three
+ * uncontended atomic updates and no allocation; the buckets are allocated on
+ * the first record.
+ * </p>
+ */
+final class LatencyHistogram {
+
+    /**
+     * Bits of precision kept below the highest bit of a value.
+     */
+    private static final int SUB_BITS = 5;
+
+    /**
+     * Number of buckets per power of two.
+     */
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /**
+     * Bits of the largest value told apart from larger ones.
+     */
+    private static final int MAX_BITS = 40;
+
+    /**
+     * Largest value told apart from larger ones.
+     */
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+    /**
+     * Number of buckets.
+     */
+    private static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB_COUNT;
+
+    /**
+     * A whole, in percent.
+     */
+    private static final double PERCENT = 100.0;
+
+    /**
+     * Number of values in each bucket; null until the first record.
+     */
+    private volatile AtomicLongArray counts;
+
+    /**
+     * Sum of the recorded values.
+     */
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Largest recorded value.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Reports the bucket of {@code value}.
+     *
+     * @param value
+     *            a value in [0, MAX_VALUE]
+     * @return the index of its bucket
+     */
+    private static int bucketOf(long value) {
+        int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = Math.max(0, highestBit - SUB_BITS);
+        return shift * SUB_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Reports the largest value that falls in {@code bucket}.
+     *
+     * @param bucket
+     *            the index of a bucket
+     * @return the largest value of the bucket
+     */
+    private static long highestIn(int bucket) {
+        int shift = Math.max(0, bucket / SUB_COUNT - 1);
+        long lowest = (long) (bucket - shift * SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Reports the buckets, allocating them if needed.
+     *
+     * @return the buckets
+     */
+    private AtomicLongArray buckets() {
+        AtomicLongArray buckets = this.counts;
+        if (buckets == null) {
+            synchronized (this) {
+                buckets = this.counts;
+                if (buckets == null) {
+                    buckets = new AtomicLongArray(BUCKETS);
+                    this.counts = buckets;
+                }
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos
+     *            the latency in nanoseconds
+     */
+    void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        this.buckets().incrementAndGet(bucketOf(value));
+        this.sum.addAndGet(value);
+        long largest = this.max.get();
+        while (value > largest && !this.max.compareAndSet(largest, value)) {
+            largest = this.max.get();
+        }
+    }
+
+    /**
+     * Makes a copy of this histogram, optionally emptying it. Values recorded
+     * while copying may be counted in either histogram, but never in both and
+     * never lost.
+     *
+     * @param reset
+     *            whether to empty this histogram
+     * @return the copy
+     */
+    LatencyHistogram copy(boolean reset) {
+        LatencyHistogram copy = new LatencyHistogram();
+        AtomicLongArray buckets = this.counts;
+        if (buckets != null) {
+            AtomicLongArray copied = copy.buckets();
+            for (int i = 0; i < BUCKETS; i++) {
+                long n;
+                if (reset) {
+                    n = buckets.getAndSet(i, 0);
+                } else {
+                    n = buckets.get(i);
+                }
+                copied.set(i, n);
+            }
+        }
+        if (reset) {
+            copy.sum.set(this.sum.getAndSet(0));
+            copy.max.set(this.max.getAndSet(0));
+        } else {
+            copy.sum.set(this.sum.get());
+            copy.max.set(this.max.get());
+        }
+        return copy;
+    }
+
+    /**
+     * Reports the number of recorded values.
+     *
+     * @return the number of values
+     */
+    long count() {
+        long count = 0;
+        AtomicLongArray buckets = this.counts;
+        if (buckets != null) {
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reports the sum of the recorded values.
+     *
+     * @return the sum of the values
+     */
+    long sum() {
+        return this.sum.get();
+    }
+
+    /**
+     * Reports the largest recorded value.
+     *
+     * @return the largest value, or 0 if there is none
+     */
+    long max() {
+        return this.max.get();
+    }
+
+    /**
+     * Reports the value below or at which {@code percentile} percent of the
+     * recorded values fall, rounded up to the end of its bucket.
+     *
+     * @param percentile
+     *            the percentile (0 ≤ percentile ≤ 100)
+     * @return the value at {@code percentile}, or 0 if there are no values
+     */
+    long percentile(double percentile) {
+        long count = this.count();
+        long rank = Math.max(1, (long) Math.ceil(percentile / PERCENT * count));
+        long value = 0;
+        AtomicLongArray buckets = this.counts;
+        long seen = 0;
+        for (int i = 0; buckets != null && seen < rank && i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                value = Math.min(highestIn(i), this.max.get());
+            }
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,77 @@
+package conversationLog;
+
+/**
+ * One entry of a ConversationLog, as read by its lazy read methods: the
+ * index of the entry when it was read, its speaker and its text.
+ */
+public final class LogEntry {
+
+    /**
+     * Index of the entry in the log when it was read.
+     */
+    private final int index;
+
+    /**
+     * Speaker of the entry.
+     */
+    private final String speaker;
+
+    /**
+     * Text of the entry.
+     */
+    private final String text;
+
+    /**
+     * Constructor for LogEntry.
+     *
+     * @param index
+     *            the index of the entry
+     * @param speaker
+     *            the speaker of the entry
+     * @param text
+     *            the text of the entry
+     */
+    public LogEntry(int index, String speaker, String text) {
+        this.index = index;
+        this.speaker = speaker;
+        this.text = text;
+    }
+
+    /**
+     * Reports the index of the entry in the log when it was read.
+     *
+     * @return the index of the entry
+     */
+    public int index() {
+        return this.index;
+    }
+
+    /**
+     * Reports the speaker of the entry.
+     *
+     * @return the speaker
+     */
+    public String speaker() {
+        return this.speaker;
+    }
+
+    /**
+     * Reports the text of the entry.
+     *
+     * @return the text
+     */
+    public String text() {
+        return this.text;
+    }
+
+    /**
+     * Reports the entry as a transcript line, without the line terminator.
+     *
+     * @return "speaker: text"
+     */
+    @Override
+    public String toString() {
+        return this.speaker + ": " + this.text;
+    }
+
+}
@@ -0,0 +1,71 @@
+package conversationLog;
+
+import components.sequence.Sequence;
+
+/**
+ * One page of the entries of a ConversationLog, and the cursor of the next
+ * page.
+ */
+public final class LogPage {
+
+    /**
+     * The entries of the page, in log order.
+     */
+    private final Sequence<LogEntry> entries;
+
+    /**
+     * Cursor of the next page.
+     */
+    private final int nextCursor;
+
+    /**
+     * Whether the log had entries after this page when it was read.
+     */
+    private final boolean hasNext;
+
+    /**
+     * Constructor for LogPage.
+     *
+     * @param entries
+     *            the entries of the page
+     * @param nextCursor
+     *            the cursor of the next page
+     * @param hasNext
+     *            whether the log had entries after this page
+     */
+    public LogPage(Sequence<LogEntry> entries, int nextCursor,
+            boolean hasNext) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+    }
+
+    /**
+     * Reports the entries of the page.
+     *
+     * @return the entries, in log order
+     */
+    public Sequence<LogEntry> entries() {
+        return this.entries;
+    }
+
+    /**
+     * Reports the cursor to pass to {@code page} for the next page: the
+     * index of the entry after the last one of this page.
+     *
+     * @return the cursor of the next page
+     */
+    public int nextCursor() {
+        return this.nextCursor;
+    }
+
+    /**
+     * Reports whether the log had entries after this page when it was read.
+     *
+     * @return true if there is a next page
+     */
+    public boolean hasNext() {
+        return this.hasNext;
+    }
+
+}
@@ -0,0 +1,388 @@
+package conversationLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses an {@code exportChat} transcript file in parallel: the file is cut
+ * into byte ranges that end right after a line feed, and every range is
+ * parsed by its own task on the common {@link ForkJoinPool}. Lines follow the
+ * rules of {@code SimpleReader.nextLine}, lines without {@code ": "} are
+ * skipped and, in a file starting with the timed header, a leading
+ * {@code @time } is read as the time of the entry, exactly like
+ * {@code importChat}.
+ */
+final class ParallelImport {
+
+    /**
+     * Smallest byte range worth a task of its own.
+     */
+    private static final int MIN_CHUNK = 1 << 20;
+
+    /**
+     * Largest byte range parsed by one task.
+     */
+    private static final int MAX_CHUNK = 1 << 26;
+
+    /**
+     * Number of ranges per worker thread, to even out uneven lines.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Bytes read at a time while looking for a range boundary.
+     */
+    private static final int PROBE_SIZE = 4096;
+
+    /**
+     * Byte value of a line feed.
+     */
+    private static final byte LF = '\n';
+
+    /**
+     * Byte value of a carriage return.
+     */
+    private static final byte CR = '\r';
+
+    /**
+     * Byte value of the first separator char.
+     */
+    private static final byte COLON = ':';
+
+    /**
+     * Byte value of the second separator char.
+     */
+    private static final byte SPACE = ' ';
+
+    /**
+     * Byte value of the first char of a time prefix.
+     */
+    private static final byte AT = '@';
+
+    /**
+     * Bytes of the first line of a timed transcript.
+     */
+    private static final byte[] TIMED_HEADER = ConversationLog1A.TIMED_HEADER
+            .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Entries parsed from one byte range.
+     */
+    static final class Block {
+
+        /**
+         * Speaker of each entry; only slots [0, count) are meaningful.
+         */
+        private String[] speakers = new String[1];
+
+        /**
+         * Text of each entry; only slots [0, count) are meaningful.
+         */
+        private String[] texts = new String[1];
+
+        /**
+         * Time of each entry; null until an entry has a time.
+         */
+        private long[] times = null;
+
+        /**
+         * Number of entries in the block.
+         */
+        private int count = 0;
+
+        /**
+         * Report the speakers of the block.
+         *
+         * @return the speaker array, meaningful in [0, count())
+         */
+        String[] speakers() {
+            return this.speakers;
+        }
+
+        /**
+         * Report the texts of the block.
+         *
+         * @return the text array, meaningful in [0, count())
+         */
+        String[] texts() {
+            return this.texts;
+        }
+
+        /**
+         * Report the times of the block.
+         *
+         * @return the time array, meaningful in [0, count()), or null if no
+         *         entry has a time
+         */
+        long[] times() {
+            return this.times;
+        }
+
+        /**
+         * Report the number of entries of the block.
+         *
+         * @return the number of entries
+         */
+        int count() {
+            return this.count;
+        }
+
+        /**
+         * Adds an entry at the end of the block.
+         *
+         * @param speaker
+         *            the speaker of the entry
+         * @param text
+         *            the text of the entry
+         * @param time
+         *            the time of the entry, or {@code NO_TIME}
+         */
+        void add(String speaker, String text, long time) {
+            if (this.count == this.speakers.length) {
+                this.speakers = Arrays.copyOf(this.speakers, 2 * this.count);
+                this.texts = Arrays.copyOf(this.texts, 2 * this.count);
+                if (this.times != null) {
+                    this.times = Arrays.copyOf(this.times, 2 * this.count);
+                }
+            }
+            if (this.times == null && time != ConversationLog1A.NO_TIME) {
+                this.times = new long[this.speakers.length];
+                Arrays.fill(this.times, ConversationLog1A.NO_TIME);
+            }
+            this.speakers[this.count] = speaker;
+            this.texts[this.count] = text;
+            if (this.times != null) {
+                this.times[this.count] = time;
+            }
+            this.count++;
+        }
+    }
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ParallelImport() {
+    }
+
+    /**
+     * Parses every entry of {@code fileName}, in file order.
+     *
+     * @param fileName
+     *            the transcript file, in the {@code exportChat} format
+     * @return the parsed entries, one block per byte range, in file order
+     */
+    static List<Block> parse(String fileName) {
+        List<Block> blocks = new ArrayList<>();
+        try (FileChannel channel = FileChannel
+                .open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            boolean timed = startsTimed(channel, size);
+            int workers = ForkJoinPool.commonPool().getParallelism();
+            long target = size / ((long) workers * CHUNKS_PER_WORKER);
+            long chunk = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, target));
+            List<Callable<Block>> tasks = new ArrayList<>();
+            long start = 0;
+            while (start < size) {
+                long end = boundaryAfter(channel,
+                        Math.min(size, start + chunk), size);
+                long from = start;
+                tasks.add(() -> parseRange(channel, from, end, timed));
+                start = end;
+            }
+            for (Future<Block> result : ForkJoinPool.commonPool()
+                    .invokeAll(tasks)) {
+                blocks.add(result.get());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return blocks;
+    }
+
+    /**
+     * Reports whether the file starts with the timed header line.
+     *
+     * @param channel
+     *            the open file
+     * @param size
+     *            the size of the file
+     * @return true if the first line is the timed header
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static boolean startsTimed(FileChannel channel, long size)
+            throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(
+                (int) Math.min(size, TIMED_HEADER.length + 1));
+        int read = 0;
+        while (head.hasRemaining() && read >= 0) {
+            read = channel.read(head, head.position());
+        }
+        byte[] bytes = head.array();
+        boolean timed = head.position() >= TIMED_HEADER.length
+                && Arrays.equals(bytes, 0, TIMED_HEADER.length, TIMED_HEADER,
+                        0, TIMED_HEADER.length);
+        if (timed && head.position() > TIMED_HEADER.length) {
+            byte after = bytes[TIMED_HEADER.length];
+            timed = after == LF || after == CR;
+        }
+        return timed;
+    }
+
+    /**
+     * Reports the offset just past the first line feed at or after
+     * {@code pos}, or {@code size} if there is none.
+     *
+     * @param channel
+     *            the open file
+     * @param pos
+     *            where to start looking
+     * @param size
+     *            the size of the file
+     * @return the end of the byte range starting before {@code pos}
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static long boundaryAfter(FileChannel channel, long pos,
+            long size) throws IOException {
+        long boundary = size;
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long at = pos;
+        while (boundary == size && at < size) {
+            probe.clear();
+            int read = channel.read(probe, at);
+            for (int i = 0; boundary == size && i < read; i++) {
+                if (probe.get(i) == LF) {
+                    boundary = at + i + 1;
+                }
+            }
+            at += Math.max(read, 0);
+        }
+        return boundary;
+    }
+
+    /**
+     * Parses the entries of the byte range [from, to) of the file.
+     *
+     * @param channel
+     *            the open file
+     * @param from
+     *            start of the range, at the start of a line
+     * @param to
+     *            end of the range, just past a line feed or at the end of the
+     *            file
+     * @param timed
+     *            whether the file starts with the timed header
+     * @return the entries of the range, in file order
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static Block parseRange(FileChannel channel, long from, long to,
+            boolean timed) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) < 0) {
+                throw new IOException("File shrank while importing");
+            }
+        }
+        byte[] bytes = buffer.array();
+        // Speakers repeat endlessly, so keep one String per distinct speaker
+        HashMap<String, String> speakerNames = new HashMap<>();
+        Block block = new Block();
+        int start = 0;
+        int pos = 0;
+        while (pos <= bytes.length) {
+            boolean endOfLine = pos == bytes.length || bytes[pos] == LF
+                    || bytes[pos] == CR;
+            if (endOfLine) {
+                if (pos > start || pos < bytes.length) {
+                    addLine(bytes, start, pos, timed, speakerNames, block);
+                }
+                if (pos < bytes.length && bytes[pos] == CR
+                        && pos + 1 < bytes.length && bytes[pos + 1] == LF) {
+                    pos++;
+                }
+                start = pos + 1;
+            }
+            pos++;
+        }
+        return block;
+    }
+
+    /**
+     * Adds the line {@code bytes[start, end)} to {@code block} if it holds a
+     * {@code ": "} after its time prefix, if any.
+     *
+     * @param bytes
+     *            the bytes of the range
+     * @param start
+     *            start of the line
+     * @param end
+     *            end of the line, without its terminator
+     * @param timed
+     *            whether the file starts with the timed header
+     * @param speakerNames
+     *            the canonical String of every speaker seen in the range
+     * @param block
+     *            the entries of the range
+     * @updates speakerNames, block
+     */
+    private static void addLine(byte[] bytes, int start, int end,
+            boolean timed, HashMap<String, String> speakerNames, Block block) {
+        long time = ConversationLog1A.NO_TIME;
+        int from = start;
+        if (timed && start < end && bytes[start] == AT) {
+            int space = start + 1;
+            while (space < end && bytes[space] != SPACE) {
+                space++;
+            }
+            if (space < end) {
+                // Same rule as importChat; non-ASCII bytes are never digits
+                String prefix = new String(bytes, start, space + 1 - start,
+                        StandardCharsets.ISO_8859_1);
+                int length = ConversationLog1A.timePrefixLength(prefix);
+                time = ConversationLog1A.prefixTime(prefix, length);
+                from = start + length;
+            }
+        }
+        int separator = -1;
+        for (int i = from; separator == -1 && i + 1 < end; i++) {
+            if (bytes[i] == COLON && bytes[i + 1] == SPACE) {
+                separator = i;
+            }
+        }
+        if (separator != -1) {
+            String speaker = new String(bytes, from, separator - from,
+                    StandardCharsets.UTF_8);
+            String known = speakerNames.putIfAbsent(speaker, speaker);
+            if (known != null) {
+                speaker = known;
+            }
+            String text = new String(bytes, separator + 2,
+                    end - separator - 2, StandardCharsets.UTF_8);
+            block.add(speaker, text, time);
+        }
+    }
+
+}
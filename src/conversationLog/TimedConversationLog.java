@@ -0,0 +1,26 @@
+package conversationLog;
+
+/**
+ * A ConversationLog whose entries may carry a time, for example epoch
+ * milliseconds. Times never decrease along the log; entries without one
+ * report {@link ConversationLog1A#NO_TIME}.
+ */
+public interface TimedConversationLog extends ConversationLog {
+
+    /**
+     * Reports whether some entry was appended with a time.
+     *
+     * @return true if the entries of the log carry times
+     */
+    boolean isTimed();
+
+    /**
+     * Reports the time of entry {@code i}.
+     *
+     * @param i
+     *            the entry index
+     * @return the time of entry {@code i}, or {@code NO_TIME}
+     * @requires 0 ≤ i < |this|
+     */
+    long timeAt(int i);
+}
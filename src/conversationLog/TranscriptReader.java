@@ -0,0 +1,166 @@
+package conversationLog;
+
+import components.simplereader.SimpleReader;
+
+/**
+ * Reads the entries of a transcript from a SimpleReader, one line at a time,
+ * with the rules shared by every {@code importChat}: lines without
+ * {@code ": "} are skipped, and if the first line is
+ * {@link ConversationLog1A#TIMED_HEADER}, the {@code @time } prefix of each
+ * line is read as the time of its entry and is not part of its speaker.
+ * Untimed transcripts have no prefixes, so their speakers are read as they
+ * are, {@code '@'} included. The header is recognized whoever wrote the
+ * transcript, so a hand-written one starting with a bare {@code @timed} line,
+ * which older versions skipped, now reads as timed.
+ */
+final class TranscriptReader {
+
+    /**
+     * Separator between the speaker and the text of a line.
+     */
+    private static final String SEPARATOR = ": ";
+
+    /**
+     * The reader of the transcript.
+     */
+    private final SimpleReader in;
+
+    /**
+     * Whether the first line was read.
+     */
+    private boolean started;
+
+    /**
+     * Whether the transcript starts with the timed header.
+     */
+    private boolean timed;
+
+    /**
+     * The line of the current entry.
+     */
+    private String line;
+
+    /**
+     * Start of the speaker of the current entry in {@code line}.
+     */
+    private int speakerStart;
+
+    /**
+     * Offset of the separator of the current entry in {@code line}.
+     */
+    private int separator;
+
+    /**
+     * Time of the current entry, or {@code NO_TIME}.
+     */
+    private long time;
+
+    /**
+     * Constructor for TranscriptReader.
+     *
+     * @param in
+     *            the reader of the transcript, left open
+     */
+    TranscriptReader(SimpleReader in) {
+        this.in = in;
+        this.started = false;
+        this.timed = false;
+        this.time = ConversationLog1A.NO_TIME;
+    }
+
+    /**
+     * Reads lines up to the next entry and makes it the current one.
+     *
+     * @return true if an entry was read, false at the end of the input
+     */
+    boolean next() {
+        boolean read = false;
+        while (!read && !this.in.atEOS()) {
+            String next = this.in.nextLine();
+            int start = 0;
+            long nextTime = ConversationLog1A.NO_TIME;
+            if (!this.started && next.equals(ConversationLog1A.TIMED_HEADER)) {
+                this.timed = true;
+            } else if (this.timed) {
+                start = ConversationLog1A.timePrefixLength(next);
+                nextTime = ConversationLog1A.prefixTime(next, start);
+            }
+            this.started = true;
+            int at = next.indexOf(SEPARATOR, start);
+            if (at != -1) {
+                this.line = next;
+                this.speakerStart = start;
+                this.separator = at;
+                this.time = nextTime;
+                read = true;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Reports whether the transcript starts with the timed header.
+     *
+     * @return true if the lines carry time prefixes
+     */
+    boolean isTimed() {
+        return this.timed;
+    }
+
+    /**
+     * Reports the line of the current entry.
+     *
+     * @return the line, time prefix included
+     */
+    String line() {
+        return this.line;
+    }
+
+    /**
+     * Reports where the speaker of the current entry starts in
+     * {@link #line()}.
+     *
+     * @return the offset of the speaker
+     */
+    int speakerStart() {
+        return this.speakerStart;
+    }
+
+    /**
+     * Reports where the speaker of the current entry ends in
+     * {@link #line()}.
+     *
+     * @return the offset of the separator after the speaker
+     */
+    int speakerEnd() {
+        return this.separator;
+    }
+
+    /**
+     * Reports the speaker of the current entry.
+     *
+     * @return the speaker
+     */
+    String speaker() {
+        return this.line.substring(this.speakerStart, this.separator);
+    }
+
+    /**
+     * Reports the text of the current entry.
+     *
+     * @return the text
+     */
+    String text() {
+        return this.line.substring(this.separator + SEPARATOR.length());
+    }
+
+    /**
+     * Reports the time of the current entry.
+     *
+     * @return the time, or {@code NO_TIME} if the entry has none
+     */
+    long time() {
+        return this.time;
+    }
+
+}
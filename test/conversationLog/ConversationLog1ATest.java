@@ -0,0 +1,280 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * JUnit test fixture for the transcript import and export of
+ * {@link ConversationLog1A}, timed or not, serial and parallel.
+ */
+public class ConversationLog1ATest {
+
+    /**
+     * Number of lines of the large transcripts, enough to be split between
+     * several parallel parsers (chunks are at least 1 MiB).
+     */
+    private static final int LINES = 200_000;
+
+    /**
+     * The transcript file of each test.
+     */
+    private String fileName;
+
+    /**
+     * Creates a fresh file for each test.
+     *
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        File file = File.createTempFile("conversation", ".txt");
+        file.deleteOnExit();
+        this.fileName = file.getPath();
+    }
+
+    /**
+     * Writes {@code transcript} to the transcript file.
+     *
+     * @param transcript
+     *            the contents of the file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private void write(String transcript) throws IOException {
+        Files.write(new File(this.fileName).toPath(),
+                transcript.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks that {@code actual} holds the entries of {@code expected}, times
+     * included.
+     *
+     * @param expected
+     *            the expected log
+     * @param actual
+     *            the log under test
+     */
+    private static void assertSameEntries(ConversationLog1A expected,
+            ConversationLog1A actual) {
+        assertEquals(expected.length(), actual.length());
+        assertEquals(expected.isTimed(), actual.isTimed());
+        for (int i = 0; i < expected.length(); i++) {
+            assertEquals(expected.speakerAt(i), actual.speakerAt(i));
+            assertEquals(expected.textAt(i), actual.textAt(i));
+            assertEquals(expected.timeAt(i), actual.timeAt(i));
+        }
+    }
+
+    /**
+     * Imports the transcript file both serially and in parallel and checks
+     * that both give the same entries.
+     *
+     * @return the log imported serially
+     */
+    private ConversationLog1A assertImportsAgree() {
+        ConversationLog1A serial = new ConversationLog1A();
+        serial.importChat(new SimpleReader1L(this.fileName));
+        ConversationLog1A parallel = new ConversationLog1A();
+        parallel.importChatParallel(this.fileName);
+        assertSameEntries(serial, parallel);
+        return serial;
+    }
+
+    /**
+     * Serial and parallel imports agree on a large untimed transcript.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Test
+    public void testImportParallelUntimed() throws IOException {
+        StringBuilder transcript = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            transcript.append("speaker").append(i % 7).append(": text ")
+                    .append(i).append('\n');
+        }
+        this.write(transcript.toString());
+        ConversationLog1A log = this.assertImportsAgree();
+        assertEquals(LINES, log.length());
+        assertFalse(log.isTimed());
+    }
+
+    /**
+     * Serial and parallel imports agree on a large timed transcript, times
+     * included.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Test
+    public void testImportParallelTimed() throws IOException {
+        StringBuilder transcript = new StringBuilder(
+                ConversationLog1A.TIMED_HEADER).append('\n');
+        for (int i = 0; i < LINES; i++) {
+            transcript.append('@').append(i / 3).append(" speaker")
+                    .append(i % 7).append(": text ").append(i).append('\n');
+        }
+        this.write(transcript.toString());
+        ConversationLog1A log = this.assertImportsAgree();
+        assertEquals(LINES, log.length());
+        assertTrue(log.isTimed());
+        assertEquals((LINES - 1) / 3, log.timeAt(LINES - 1));
+    }
+
+    /**
+     * Serial and parallel imports agree on CRLF line ends, lines without
+     * {@code ": "}, non-ASCII text and a last line without a line end.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Test
+    public void testImportParallelIrregularLines() throws IOException {
+        this.write("alice: hi\r\nno separator here\r\n\r\nbob: café: naïve\n"
+                + "日本: テキスト\ncarol: last");
+        ConversationLog1A log = this.assertImportsAgree();
+        assertEquals(4, log.length());
+        assertEquals("café: naïve", log.textAt(1));
+        assertEquals("last", log.textAt(3));
+    }
+
+    /**
+     * Serial and parallel imports agree on an empty transcript.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Test
+    public void testImportParallelEmpty() throws IOException {
+        this.write("");
+        assertEquals(0, this.assertImportsAgree().length());
+    }
+
+    /**
+     * Speakers that start with {@code '@'} survive a timed export and
+     * import, and so do the times, serial or parallel.
+     */
+    @Test
+    public void testTimedAtSpeakersRoundTrip() {
+        ConversationLog1A log = new ConversationLog1A();
+        log.append("plain", "0");
+        log.append("@2024 bot", "hi", 5);
+        log.append("@1 x", "y", 7);
+        log.append("@ odd", "z");
+        log.append("@-3 y", "w: v", 9);
+        log.exportChat(new SimpleWriter1L(this.fileName));
+        ConversationLog1A back = this.assertImportsAgree();
+        assertSameEntries(log, back);
+        assertEquals(log.toTranscript(), back.toTranscript());
+        assertEquals(log.toTranscript().length(), log.transcriptLength());
+    }
+
+    /**
+     * Speakers that start with {@code '@'} survive an untimed export and
+     * import: without the timed header, nothing is read as a time.
+     */
+    @Test
+    public void testUntimedAtSpeakersRoundTrip() {
+        ConversationLog1A log = new ConversationLog1A();
+        log.append("@2024 bot", "hi");
+        log.append("@ odd", "z");
+        log.exportChat(new SimpleWriter1L(this.fileName));
+        ConversationLog1A back = this.assertImportsAgree();
+        assertSameEntries(log, back);
+        assertEquals("@2024 bot", back.speakerAt(0));
+    }
+
+    /**
+     * A timed transcript whose times decrease is rejected, the log is left
+     * unchanged and the reader is closed.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Test
+    public void testDecreasingTimesRejected() throws IOException {
+        this.write(ConversationLog1A.TIMED_HEADER + "\n@5 a: x\n@3 b: y\n");
+        ConversationLog1A log = new ConversationLog1A();
+        log.append("kept", "entry");
+        boolean[] closed = { false };
+        SimpleReader1L in = new SimpleReader1L(this.fileName) {
+            @Override
+            public void close() {
+                closed[0] = true;
+                super.close();
+            }
+        };
+        try {
+            log.importChat(in);
+            fail("decreasing times were imported");
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, log.length());
+            assertTrue(closed[0]);
+        }
+        try {
+            log.importChatParallel(this.fileName);
+            fail("decreasing times were imported in parallel");
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, log.length());
+        }
+    }
+
+    /**
+     * A transcript whose first line is exactly the timed header reads as
+     * timed, whoever wrote it: the {@code @time } prefixes of the lines after
+     * it are not part of their speakers.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Test
+    public void testHandWrittenTimedHeader() throws IOException {
+        this.write(ConversationLog1A.TIMED_HEADER + "\n@7 bob: hi\n@ @7 amy: yo\n");
+        ConversationLog1A log = this.assertImportsAgree();
+        assertTrue(log.isTimed());
+        assertEquals(2, log.length());
+        assertEquals("bob", log.speakerAt(0));
+        assertEquals(7, log.timeAt(0));
+        assertEquals("@7 amy", log.speakerAt(1));
+    }
+
+    /**
+     * A full log trimmed by one entry after each append, as a sliding
+     * window, keeps the right entries and speaker postings; with a
+     * compaction per append this would take minutes instead of moments.
+     */
+    @Test
+    public void testSlidingWindow() {
+        final int window = 1 << 16;
+        final int slides = 4 * window;
+        final int speakers = 5;
+        ConversationLog1A log = new ConversationLog1A();
+        for (int i = 0; i < window; i++) {
+            log.append("s" + i % speakers, "t" + i);
+        }
+        for (int i = window; i < window + slides; i++) {
+            log.segment(1, log.length());
+            log.append("s" + i % speakers, "t" + i);
+        }
+        assertEquals(window, log.length());
+        assertEquals("t" + slides, log.textAt(0));
+        assertEquals("t" + (window + slides - 1), log.textAt(window - 1));
+        assertEquals("s" + slides % speakers, log.speakerAt(0));
+        assertEquals(window / speakers, log.speakerChat("s0").length());
+    }
+
+}
@@ -0,0 +1,198 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import components.map.Map;
+
+/**
+ * JUnit test fixture for the binary file format of
+ * {@link ConversationLogBinary}.
+ */
+public class ConversationLogBinaryTest {
+
+    /**
+     * Speakers of the test entries, some of which the line-based transcript
+     * could not hold.
+     */
+    private static final String[] SPEAKERS = { "Ann", "B: ob", "日本", "x" };
+
+    /**
+     * Texts of the test entries, including line breaks.
+     */
+    private static final String[] TEXTS = { "", "hi\nthere", "a\r\nb",
+            "naïve", "long long long long long long long long long long" };
+
+    /**
+     * Number of entries of the larger test logs.
+     */
+    private static final int ENTRIES = 1000;
+
+    /**
+     * The file each test saves to.
+     */
+    private String fileName;
+
+    /**
+     * Creates a fresh file for each test.
+     *
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        File file = File.createTempFile("conversation", ".clog");
+        file.deleteOnExit();
+        this.fileName = file.getPath();
+    }
+
+    /**
+     * Reports a log of {@code n} entries.
+     *
+     * @param n
+     *            the number of entries
+     * @return the log
+     */
+    private static ConversationLog1A logOf(int n) {
+        return logOf(n, false);
+    }
+
+    /**
+     * Reports a log of {@code n} entries, timed if {@code timed}, in which
+     * case some entries keep the time of the entry before them.
+     *
+     * @param n
+     *            the number of entries
+     * @param timed
+     *            whether the entries have times
+     * @return the log
+     */
+    private static ConversationLog1A logOf(int n, boolean timed) {
+        ConversationLog1A log = new ConversationLog1A();
+        for (int i = 0; i < n; i++) {
+            String speaker = SPEAKERS[i % SPEAKERS.length];
+            String text = TEXTS[i % TEXTS.length] + i;
+            if (timed && i % 3 != 0) {
+                log.append(speaker, text, 1_700_000_000_000L + i / 2);
+            } else {
+                log.append(speaker, text);
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Checks that {@code actual} holds the entries of {@code expected}, times
+     * included.
+     *
+     * @param expected
+     *            the saved log
+     * @param actual
+     *            the loaded log
+     */
+    private static void assertSameEntries(ConversationLog1A expected,
+            ConversationLog1A actual) {
+        assertEquals(expected.length(), actual.length());
+        assertEquals(expected.isTimed(), actual.isTimed());
+        for (int i = 0; i < expected.length(); i++) {
+            assertEquals(expected.speakerAt(i), actual.speakerAt(i));
+            assertEquals(expected.textAt(i), actual.textAt(i));
+            assertEquals(expected.timeAt(i), actual.timeAt(i));
+        }
+    }
+
+    /**
+     * Checks that {@code readEntry} reads some entries of {@code log}, saved
+     * to the test file, the same as they are in {@code log}.
+     *
+     * @param log
+     *            the saved log
+     */
+    private void assertReadEntries(ConversationLog1A log) {
+        for (int i : new int[] { 0, 1, 2, 3, 4, log.length() / 2,
+                log.length() - 1 }) {
+            Map<String, String> entry = ConversationLogBinary
+                    .readEntry(this.fileName, i);
+            assertEquals(log.speakerAt(i), entry.value("speaker"));
+            assertEquals(log.textAt(i), entry.value("text"));
+        }
+    }
+
+    /**
+     * An empty log saves and loads as an empty log.
+     */
+    @Test
+    public void testRoundTripEmpty() {
+        ConversationLog1A log = new ConversationLog1A();
+        ConversationLogBinary.save(log, this.fileName);
+        ConversationLog1A back = new ConversationLog1A();
+        ConversationLogBinary.load(this.fileName, back);
+        assertEquals(0, back.length());
+    }
+
+    /**
+     * Entries whose texts hold line breaks and whose speakers hold
+     * {@code ": "} load back unchanged.
+     */
+    @Test
+    public void testRoundTrip() {
+        ConversationLog1A log = logOf(ENTRIES);
+        ConversationLogBinary.save(log, this.fileName);
+        ConversationLog1A back = new ConversationLogWordIndexed();
+        ConversationLogBinary.load(this.fileName, back);
+        assertSameEntries(log, back);
+    }
+
+    /**
+     * The times of a timed log load back with its entries.
+     */
+    @Test
+    public void testRoundTripTimed() {
+        ConversationLog1A log = logOf(ENTRIES, true);
+        ConversationLogBinary.save(log, this.fileName);
+        ConversationLog1A back = new ConversationLog1A();
+        ConversationLogBinary.load(this.fileName, back);
+        assertTrue(back.isTimed());
+        assertSameEntries(log, back);
+    }
+
+    /**
+     * Loading appends to the entries already in the log.
+     */
+    @Test
+    public void testLoadAppends() {
+        ConversationLog1A log = logOf(2);
+        ConversationLogBinary.save(log, this.fileName);
+        ConversationLog1A back = logOf(2);
+        ConversationLogBinary.load(this.fileName, back);
+        assertEquals(2 * 2, back.length());
+        assertEquals(log.textAt(1), back.textAt(2 + 1));
+    }
+
+    /**
+     * {@code readEntry} reads any single entry the same as a full load.
+     */
+    @Test
+    public void testReadEntry() {
+        ConversationLog1A log = logOf(ENTRIES);
+        ConversationLogBinary.save(log, this.fileName);
+        assertReadEntries(log);
+    }
+
+    /**
+     * {@code readEntry} rejects an index past the last entry.
+     */
+    @Test(expected = UncheckedIOException.class)
+    public void testReadEntryPastEnd() {
+        ConversationLogBinary.save(logOf(2), this.fileName);
+        ConversationLogBinary.readEntry(this.fileName, 2);
+    }
+
+}
@@ -0,0 +1,228 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for the thread safety of
+ * {@link ConversationLogConcurrent}.
+ */
+public class ConversationLogConcurrentTest {
+
+    /**
+     * Number of writer threads of the concurrent tests.
+     */
+    private static final int WRITERS = 8;
+
+    /**
+     * Number of entries each writer appends; spans several chunks.
+     */
+    private static final int PER_WRITER = 5000;
+
+    /**
+     * Runs {@code task} on {@code threads} threads at once and waits for all
+     * of them.
+     *
+     * @param threads
+     *            the number of threads
+     * @param task
+     *            the task, given the number of its thread
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    private static void runConcurrently(int threads, IntConsumer task)
+            throws InterruptedException {
+        Thread[] running = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int which = t;
+            running[t] = new Thread(() -> task.accept(which));
+            running[t].start();
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Checks that {@code log} can still be appended to and removed from.
+     *
+     * @param log
+     *            the log under test
+     */
+    private static void assertUsable(ConversationLog log) {
+        int length = log.length();
+        log.append("after", "still works");
+        assertEquals(length + 1, log.length());
+        assertEquals("still works", log.removeChat().value("text"));
+    }
+
+    /**
+     * A removal from an empty log is rejected and leaves the log usable.
+     */
+    @Test
+    public void testRemoveChatOnEmptyLog() {
+        ConversationLogConcurrent log = new ConversationLogConcurrent();
+        try {
+            log.removeChat();
+            fail("removed from an empty log");
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals(0, log.length());
+        }
+        assertUsable(log);
+    }
+
+    /**
+     * A removal from a log emptied after a segment dropped entries from its
+     * front is rejected, rather than bringing a dropped entry back.
+     */
+    @Test
+    public void testRemoveChatOnShrunkLog() {
+        ConversationLogConcurrent log = new ConversationLogConcurrent();
+        log.append("a", "0");
+        log.append("b", "1");
+        log.append("c", "2");
+        log.segment(1, 3);
+        assertEquals("2", log.removeChat().value("text"));
+        assertEquals("1", log.removeChat().value("text"));
+        try {
+            log.removeChat();
+            fail("removed from an emptied log");
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals(0, log.length());
+        }
+        assertUsable(log);
+    }
+
+    /**
+     * A segment with invalid or stale bounds is rejected and leaves the log
+     * unchanged and usable.
+     */
+    @Test
+    public void testSegmentWithInvalidBounds() {
+        ConversationLogConcurrent log = new ConversationLogConcurrent();
+        log.append("a", "0");
+        log.append("b", "1");
+        log.removeChat();
+        int[][] bounds = { { 0, 2 }, { 1, 0 }, { -1, 1 } };
+        for (int[] bound : bounds) {
+            try {
+                log.segment(bound[0], bound[1]);
+                fail("segment [" + bound[0] + ", " + bound[1] + ")");
+            } catch (IndexOutOfBoundsException e) {
+                assertEquals(1, log.length());
+                assertEquals("0", log.textAt(0));
+            }
+        }
+        assertUsable(log);
+    }
+
+    /**
+     * Of two removals racing on a one-entry log, exactly one succeeds, and
+     * the log stays usable.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testRacingRemovals() throws InterruptedException {
+        final int rounds = 200;
+        for (int round = 0; round < rounds; round++) {
+            ConversationLogConcurrent log = new ConversationLogConcurrent();
+            log.append("a", "only");
+            AtomicInteger removed = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+            runConcurrently(2, t -> {
+                try {
+                    log.removeChat();
+                    removed.incrementAndGet();
+                } catch (IndexOutOfBoundsException e) {
+                    rejected.incrementAndGet();
+                }
+            });
+            assertEquals(1, removed.get());
+            assertEquals(1, rejected.get());
+            assertUsable(log);
+        }
+    }
+
+    /**
+     * Concurrent appends are all kept, each writer's in its own order, while
+     * readers see a length that never decreases.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testConcurrentAppends() throws InterruptedException {
+        ConversationLogConcurrent log = new ConversationLogConcurrent();
+        AtomicInteger readerErrors = new AtomicInteger();
+        runConcurrently(WRITERS + 1, t -> {
+            if (t < WRITERS) {
+                for (int i = 0; i < PER_WRITER; i++) {
+                    log.append("w" + t, Integer.toString(i));
+                }
+            } else {
+                int seen = 0;
+                while (seen < WRITERS * PER_WRITER) {
+                    int length = log.length();
+                    if (length < seen) {
+                        readerErrors.incrementAndGet();
+                    }
+                    seen = length;
+                }
+            }
+        });
+        assertEquals(0, readerErrors.get());
+        assertEquals(WRITERS * PER_WRITER, log.length());
+        int[] next = new int[WRITERS];
+        for (int i = 0; i < log.length(); i++) {
+            int writer = Integer.parseInt(log.speakerAt(i).substring(1));
+            assertEquals(Integer.toString(next[writer]), log.textAt(i));
+            next[writer]++;
+        }
+        for (int writer = 0; writer < WRITERS; writer++) {
+            assertEquals(PER_WRITER, next[writer]);
+            assertEquals(PER_WRITER, log.speakerChat("w" + writer).length());
+        }
+    }
+
+    /**
+     * Removals running alongside appends never lose an append they did not
+     * remove: the length adds up, and each writer's entries stay in order.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testAppendsWithRemovals() throws InterruptedException {
+        ConversationLogConcurrent log = new ConversationLogConcurrent();
+        AtomicInteger removals = new AtomicInteger();
+        runConcurrently(WRITERS, t -> {
+            for (int i = 0; i < PER_WRITER; i++) {
+                log.append("w" + t, Integer.toString(i));
+                // Only writer 0 removes, right after its own append
+                if (t == 0 && i % 10 == 0) {
+                    log.removeChat();
+                    removals.incrementAndGet();
+                }
+            }
+        });
+        assertEquals(WRITERS * PER_WRITER - removals.get(), log.length());
+        int[] last = new int[WRITERS];
+        Arrays.fill(last, -1);
+        for (int i = 0; i < log.length(); i++) {
+            int writer = Integer.parseInt(log.speakerAt(i).substring(1));
+            int value = Integer.parseInt(log.textAt(i));
+            assertTrue(value > last[writer]);
+            last[writer] = value;
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import conversationLog.ConversationLogJournaled.SyncPolicy;
+
+/**
+ * JUnit test fixture for the recovery of {@link ConversationLogJournaled}
+ * from its snapshot and journal files.
+ */
+public class ConversationLogJournaledTest {
+
+    /**
+     * Base path of the journal and snapshot files of each test.
+     */
+    private String base;
+
+    /**
+     * Creates a fresh directory for the files of each test.
+     *
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        Path dir = Files.createTempDirectory("journaled");
+        dir.toFile().deleteOnExit();
+        this.base = dir.resolve("room").toString();
+    }
+
+    /**
+     * Reports the path of the journal.
+     *
+     * @return the journal
+     */
+    private Path journal() {
+        return Path.of(this.base + ".journal");
+    }
+
+    /**
+     * Opens the log stored at {@code base}, journaling every record.
+     *
+     * @return the recovered log
+     */
+    private ConversationLogJournaled open() {
+        return new ConversationLogJournaled(this.base, SyncPolicy.NONE, 1,
+                ConversationLogJournaled.DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Reopening a closed log recovers every entry.
+     */
+    @Test
+    public void testReopenRecoversEntries() {
+        ConversationLogJournaled log = this.open();
+        log.append("alice", "hi");
+        log.append("bob", "hello: there");
+        String expected = log.toTranscript();
+        log.close();
+        ConversationLogJournaled again = this.open();
+        assertEquals(expected, again.toTranscript());
+        again.close();
+    }
+
+    /**
+     * Removals, segments and batches are replayed too, across snapshots.
+     */
+    @Test
+    public void testReplaysEveryOperation() {
+        ConversationLogJournaled log = new ConversationLogJournaled(this.base,
+                SyncPolicy.EVERY_RECORD, 1, 2);
+        for (int i = 0; i < 10; i++) {
+            log.append("s" + i, "t" + i);
+        }
+        log.removeChat();
+        log.segment(2, 7);
+        log.appendAll(new String[] { "carol", "dave" },
+                new String[] { "batch", "too" });
+        String expected = log.toTranscript();
+        log.close();
+        ConversationLogJournaled again = this.open();
+        assertEquals(expected, again.toTranscript());
+        again.close();
+    }
+
+    /**
+     * Entry times are replayed from the journal and restored from
+     * snapshots.
+     */
+    @Test
+    public void testReplaysTimes() {
+        for (int interval : new int[] { 2,
+                ConversationLogJournaled.DEFAULT_SNAPSHOT_INTERVAL }) {
+            ConversationLogJournaled log = new ConversationLogJournaled(
+                    this.base, SyncPolicy.EVERY_RECORD, 1, interval);
+            log.clear();
+            log.append("alice", "untimed");
+            log.append("carol", "timed", 42);
+            log.append("dave", "inherits");
+            log.append("erin", "later", 50);
+            log.close();
+            ConversationLogJournaled again = this.open();
+            assertTrue(again.isTimed());
+            assertEquals(4, again.length());
+            assertEquals(ConversationLog1A.NO_TIME, again.timeAt(0));
+            assertEquals(42, again.timeAt(1));
+            assertEquals(42, again.timeAt(2));
+            assertEquals(50, again.timeAt(3));
+            again.close();
+        }
+    }
+
+    /**
+     * A record cut short at the end of the journal is dropped, and the
+     * journal is truncated back to the last complete record.
+     *
+     * @throws IOException
+     *             if the journal cannot be read or written
+     */
+    @Test
+    public void testRecoversFromTornTail() throws IOException {
+        ConversationLogJournaled log = this.open();
+        log.append("alice", "first");
+        log.append("bob", "second");
+        log.close();
+        long intact = Files.size(this.journal());
+        log = this.open();
+        log.append("carol", "torn");
+        log.close();
+        byte[] written = Files.readAllBytes(this.journal());
+        Files.write(this.journal(),
+                Arrays.copyOf(written, written.length - 3));
+        ConversationLogJournaled again = this.open();
+        assertEquals(2, again.length());
+        assertEquals("bob", again.speakerAt(1));
+        assertEquals("second", again.textAt(1));
+        again.close();
+        assertEquals(intact, Files.size(this.journal()));
+    }
+
+    /**
+     * A garbage record length at the end of the journal is a torn tail too,
+     * rather than a reason to allocate or read past the file.
+     *
+     * @throws IOException
+     *             if the journal cannot be read or written
+     */
+    @Test
+    public void testRecoversFromGarbageLength() throws IOException {
+        ConversationLogJournaled log = this.open();
+        log.append("alice", "kept");
+        log.close();
+        byte[] good = Files.readAllBytes(this.journal());
+        for (int length : new int[] { -1, Integer.MAX_VALUE, 3 }) {
+            ByteBuffer tail = ByteBuffer.allocate(3 * Integer.BYTES)
+                    .putInt(length).putInt(0x01020304).putInt(7);
+            byte[] torn = Arrays.copyOf(good, good.length + tail.capacity());
+            System.arraycopy(tail.array(), 0, torn, good.length,
+                    tail.capacity());
+            Files.write(this.journal(), torn);
+            ConversationLogJournaled again = this.open();
+            assertEquals(1, again.length());
+            assertEquals("kept", again.textAt(0));
+            again.close();
+            assertEquals(good.length, Files.size(this.journal()));
+        }
+    }
+
+    /**
+     * Records written before a crash, without {@code close}, are recovered
+     * by the next open.
+     */
+    @Test
+    public void testRecoversWithoutClose() {
+        ConversationLogJournaled log = new ConversationLogJournaled(this.base,
+                SyncPolicy.EVERY_RECORD, 1,
+                ConversationLogJournaled.DEFAULT_SNAPSHOT_INTERVAL);
+        log.append("alice", "unclosed");
+        ConversationLogJournaled again = this.open();
+        assertEquals(1, again.length());
+        assertEquals("unclosed", again.textAt(0));
+        again.close();
+        log.close();
+    }
+
+    /**
+     * A removal from an empty log and a segment with invalid bounds are
+     * rejected before they reach the journal, which still reopens.
+     *
+     * @throws IOException
+     *             if the journal cannot be read
+     */
+    @Test
+    public void testRejectedOperationsAreNotJournaled() throws IOException {
+        ConversationLogJournaled log = this.open();
+        try {
+            log.removeChat();
+            fail("removed from an empty log");
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals(0, log.length());
+        }
+        log.append("alice", "only");
+        long size = Files.size(this.journal());
+        int[][] bounds = { { 0, 2 }, { 1, 0 }, { -1, 1 } };
+        for (int[] bound : bounds) {
+            try {
+                log.segment(bound[0], bound[1]);
+                fail("segment [" + bound[0] + ", " + bound[1] + ")");
+            } catch (IndexOutOfBoundsException e) {
+                assertEquals(1, log.length());
+            }
+        }
+        log.close();
+        assertEquals(size, Files.size(this.journal()));
+        ConversationLogJournaled again = this.open();
+        assertEquals(1, again.length());
+        assertEquals("only", again.textAt(0));
+        again.close();
+    }
+
+}
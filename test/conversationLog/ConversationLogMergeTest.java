@@ -0,0 +1,225 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter1L;
+
+import conversationLog.ConversationLogMerge.Order;
+
+/**
+ * JUnit test fixture for the k-way merges of {@link ConversationLogMerge}.
+ */
+public class ConversationLogMergeTest {
+
+    /**
+     * Reports a timed log of entries {@code prefix0, prefix1, ...}, entry
+     * {@code i} spoken by {@code prefix} at {@code times[i]}.
+     *
+     * @param prefix
+     *            the speaker, and prefix of the texts
+     * @param times
+     *            the times of the entries, in order
+     * @return the log
+     */
+    private static ConversationLog1A timedLog(String prefix, long... times) {
+        ConversationLog1A log = new ConversationLog1A();
+        for (int i = 0; i < times.length; i++) {
+            log.append(prefix, prefix + i, times[i]);
+        }
+        return log;
+    }
+
+    /**
+     * Reports the texts of {@code log}, one per entry, separated by spaces.
+     *
+     * @param log
+     *            the log
+     * @return the texts
+     */
+    private static String texts(ConversationLog log) {
+        StringBuilder texts = new StringBuilder();
+        for (int i = 0; i < log.length(); i++) {
+            if (i > 0) {
+                texts.append(' ');
+            }
+            texts.append(log.textAt(i));
+        }
+        return texts.toString();
+    }
+
+    /**
+     * Exports each of {@code logs} to a fresh transcript file.
+     *
+     * @param logs
+     *            the logs to export
+     * @return the names of the files, in the order of {@code logs}
+     * @throws IOException
+     *             if a file cannot be created
+     */
+    private static List<String> export(List<ConversationLog1A> logs)
+            throws IOException {
+        List<String> fileNames = new ArrayList<>();
+        for (ConversationLog1A log : logs) {
+            File file = File.createTempFile("merge", ".txt");
+            file.deleteOnExit();
+            log.exportChat(new SimpleWriter1L(file.getPath()));
+            fileNames.add(file.getPath());
+        }
+        return fileNames;
+    }
+
+    /**
+     * Merging by time orders entries by time, ties going to the earlier
+     * input, and keeps their times.
+     */
+    @Test
+    public void testMergeByTime() {
+        List<ConversationLog1A> inputs = List.of(timedLog("a", 1, 4, 4, 9),
+                timedLog("b", 0, 4, 10), timedLog("c"), timedLog("d", 4));
+        ConversationLog1A output = new ConversationLog1A();
+        ConversationLogMerge.merge(inputs, Order.TIME, output);
+        assertEquals("b0 a0 a1 a2 b1 d0 a3 b2", texts(output));
+        long[] times = { 0, 1, 4, 4, 4, 4, 9, 10 };
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(times[i], output.timeAt(i));
+        }
+    }
+
+    /**
+     * Merging many random timed logs by time gives a stable sort of all
+     * their entries by time.
+     */
+    @Test
+    public void testMergeManyByTime() {
+        final int inputs = 50;
+        Random random = new Random(10);
+        List<ConversationLog1A> logs = new ArrayList<>();
+        List<long[]> entries = new ArrayList<>();
+        for (int k = 0; k < inputs; k++) {
+            long[] times = new long[random.nextInt(40)];
+            long time = random.nextInt(20);
+            for (int i = 0; i < times.length; i++) {
+                time += random.nextInt(3);
+                times[i] = time;
+                entries.add(new long[] { time, k, i });
+            }
+            logs.add(timedLog("s" + k + "_", times));
+        }
+        entries.sort(Comparator.comparingLong(entry -> entry[0]));
+        StringBuilder expected = new StringBuilder();
+        for (long[] entry : entries) {
+            if (expected.length() > 0) {
+                expected.append(' ');
+            }
+            expected.append('s').append(entry[1]).append('_').append(entry[2]);
+        }
+        ConversationLog1A output = new ConversationLog1A();
+        ConversationLogMerge.merge(logs, Order.TIME, output);
+        assertEquals(expected.toString(), texts(output));
+    }
+
+    /**
+     * Merging by sequence interleaves the inputs entry by entry, ties going
+     * to the earlier input, whatever their times.
+     */
+    @Test
+    public void testMergeBySequence() {
+        ConversationLog untimed = new ConversationLogSecondary();
+        untimed.append("u", "u0");
+        List<ConversationLog> inputs = List.of(timedLog("a", 5, 6, 7),
+                untimed, timedLog("b", 1, 2));
+        ConversationLog output = new ConversationLogSecondary();
+        ConversationLogMerge.merge(inputs, Order.SEQUENCE, output);
+        assertEquals("a0 u0 b0 a1 b1 a2", texts(output));
+    }
+
+    /**
+     * Merging files gives the same entries as merging the logs they were
+     * exported from, and leaves the inputs unchanged.
+     *
+     * @throws IOException
+     *             if a file cannot be created
+     */
+    @Test
+    public void testMergeFilesMatchesMerge() throws IOException {
+        List<ConversationLog1A> inputs = List.of(timedLog("a", 1, 3, 5),
+                timedLog("b", 2, 3, 3, 8), timedLog("c", 0));
+        List<String> fileNames = export(inputs);
+        for (Order order : Order.values()) {
+            ConversationLog1A fromLogs = new ConversationLog1A();
+            ConversationLogMerge.merge(inputs, order, fromLogs);
+            ConversationLog1A fromFiles = new ConversationLog1A();
+            ConversationLogMerge.mergeFiles(fileNames, order, fromFiles);
+            assertEquals(fromLogs.toTranscript(), fromFiles.toTranscript());
+        }
+        assertEquals("a0 a1 a2", texts(inputs.get(0)));
+    }
+
+    /**
+     * Merging by time to a writer writes a timed transcript that imports
+     * back to the merged entries.
+     *
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    @Test
+    public void testMergeByTimeToWriter() throws IOException {
+        List<ConversationLog1A> inputs = List.of(timedLog("a", 1, 3),
+                timedLog("b", 2));
+        File file = File.createTempFile("merged", ".txt");
+        file.deleteOnExit();
+        ConversationLogMerge.merge(inputs, Order.TIME,
+                new SimpleWriter1L(file.getPath()));
+        ConversationLog1A back = new ConversationLog1A();
+        back.importChat(new SimpleReader1L(file.getPath()));
+        assertTrue(back.isTimed());
+        assertEquals("a0 b0 a1", texts(back));
+        assertEquals(2, back.timeAt(1));
+    }
+
+    /**
+     * Merging by time rejects an input with entries but no times, before
+     * appending anything.
+     */
+    @Test
+    public void testMergeByTimeRejectsUntimed() {
+        ConversationLog untimed = new ConversationLogSecondary();
+        untimed.append("u", "u0");
+        List<ConversationLog> inputs = List.of(timedLog("a", 1), untimed);
+        ConversationLog1A output = new ConversationLog1A();
+        try {
+            ConversationLogMerge.merge(inputs, Order.TIME, output);
+            fail("an untimed input was merged by time");
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, output.length());
+        }
+    }
+
+    /**
+     * Merging files by time rejects a transcript without the timed header.
+     *
+     * @throws IOException
+     *             if a file cannot be created
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeFilesByTimeRejectsUntimed() throws IOException {
+        ConversationLog1A untimed = new ConversationLog1A();
+        untimed.append("u", "u0");
+        List<String> fileNames = export(List.of(timedLog("a", 1), untimed));
+        ConversationLogMerge.mergeFiles(fileNames, Order.TIME,
+                new ConversationLog1A());
+    }
+
+}
@@ -0,0 +1,141 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for the snapshots of {@link ConversationLogPersistent}.
+ */
+public class ConversationLogPersistentTest {
+
+    /**
+     * Number of random operations of each run.
+     */
+    private static final int STEPS = 6000;
+
+    /**
+     * Number of entries appended before the random operations; enough to
+     * need several trie levels.
+     */
+    private static final int PREFILL = 3000;
+
+    /**
+     * Checks that {@code log} holds exactly {@code expected}, as
+     * "speaker: text".
+     *
+     * @param expected
+     *            the expected entries
+     * @param log
+     *            the log under test
+     */
+    private static void assertEntries(List<String> expected,
+            ConversationLog log) {
+        assertEquals(expected.size(), log.length());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i),
+                    log.speakerAt(i) + ": " + log.textAt(i));
+        }
+    }
+
+    /**
+     * Snapshots taken along random appends, removals and segments on a large
+     * log keep their values to the end, and restoring one brings its value back into the
+     * live log, which can then be edited without changing the snapshot.
+     */
+    @Test
+    public void testSnapshotsKeepTheirValues() {
+        Random random = new Random(7);
+        ConversationLogPersistent log = new ConversationLogPersistent();
+        List<String> live = new ArrayList<>();
+        List<ConversationLogPersistent.Snapshot> snapshots = new ArrayList<>();
+        List<List<String>> values = new ArrayList<>();
+        for (int i = 0; i < PREFILL; i++) {
+            log.append("s", "p" + i);
+            live.add("s: p" + i);
+        }
+        for (int step = 0; step < STEPS; step++) {
+            int op = random.nextInt(100);
+            if (op < 80) {
+                String speaker = "s" + random.nextInt(5);
+                log.append(speaker, "t" + step);
+                live.add(speaker + ": t" + step);
+            } else if (op < 90 && !live.isEmpty()) {
+                log.removeChat();
+                live.remove(live.size() - 1);
+            } else if (op < 92 && !live.isEmpty()) {
+                int start = random.nextInt(Math.min(live.size(), 4));
+                log.segment(start, live.size());
+                live = new ArrayList<>(live.subList(start, live.size()));
+            } else if (op < 98) {
+                snapshots.add(log.snapshot());
+                values.add(new ArrayList<>(live));
+            } else if (!snapshots.isEmpty()) {
+                int which = random.nextInt(snapshots.size());
+                log.restore(snapshots.get(which));
+                live = new ArrayList<>(values.get(which));
+            }
+            assertEquals(live.size(), log.length());
+        }
+        assertEntries(live, log);
+        for (int k = 0; k < snapshots.size(); k++) {
+            assertEntries(values.get(k), snapshots.get(k));
+        }
+    }
+
+    /**
+     * A snapshot answers queries like the log it was taken from, and
+     * rejects every change.
+     */
+    @Test
+    public void testSnapshotIsReadOnly() {
+        ConversationLogPersistent log = new ConversationLogPersistent();
+        log.append("ann", "hi bob");
+        log.append("bob", "hi ann");
+        ConversationLogPersistent.Snapshot snapshot = log.snapshot();
+        log.append("ann", "bye");
+        assertEquals(2, snapshot.length());
+        assertEquals(log.find("hi").length(), snapshot.find("hi").length());
+        assertEquals(1, snapshot.speakerChat("ann").length());
+        Runnable[] changes = { () -> snapshot.append("c", "x"),
+            () -> snapshot.removeChat(), () -> snapshot.segment(0, 1),
+            () -> snapshot.clear(), () -> snapshot.reset() };
+        for (Runnable change : changes) {
+            try {
+                change.run();
+                fail("changed a snapshot");
+            } catch (UnsupportedOperationException e) {
+                assertEquals(2, snapshot.length());
+            }
+        }
+    }
+
+    /**
+     * A snapshot of one log can be restored into another, and both logs can
+     * then be edited independently.
+     */
+    @Test
+    public void testRestoreAcrossLogs() {
+        ConversationLogPersistent first = new ConversationLogPersistent();
+        for (int i = 0; i < 100; i++) {
+            first.append("a", Integer.toString(i));
+        }
+        ConversationLogPersistent second = new ConversationLogPersistent();
+        second.restore(first.snapshot());
+        first.append("a", "first");
+        second.removeChat();
+        second.append("b", "second");
+        assertEquals(101, first.length());
+        assertEquals("99", first.textAt(99));
+        assertEquals("first", first.textAt(100));
+        assertEquals(100, second.length());
+        assertEquals("98", second.textAt(98));
+        assertEquals("second", second.textAt(99));
+    }
+
+}
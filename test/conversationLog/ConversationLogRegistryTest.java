@@ -0,0 +1,131 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.sequence.Sequence;
+
+/**
+ * JUnit test fixture for {@link ConversationLogRegistry}.
+ */
+public class ConversationLogRegistryTest {
+
+    /**
+     * Number of threads of the concurrent test.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Number of conversations of the larger tests, more than the shards.
+     */
+    private static final int CONVERSATIONS = 500;
+
+    /**
+     * The log of an id is created once and then found, until it is evicted.
+     */
+    @Test
+    public void testGetOrCreateGetEvict() {
+        ConversationLogRegistry registry = new ConversationLogRegistry();
+        assertNull(registry.get("a"));
+        ConversationLog a = registry.getOrCreate("a");
+        assertTrue(a instanceof ConversationLogConcurrent);
+        assertSame(a, registry.getOrCreate("a"));
+        assertSame(a, registry.get("a"));
+        registry.getOrCreate("b");
+        assertEquals(2, registry.size());
+        assertSame(a, registry.evict("a"));
+        assertNull(registry.get("a"));
+        assertNull(registry.evict("a"));
+        assertEquals(1, registry.size());
+    }
+
+    /**
+     * New logs have the dynamic type of the prototype, whatever the shard
+     * count.
+     */
+    @Test
+    public void testPrototypeAndShards() {
+        for (int shards : new int[] { 1, 3, 64 }) {
+            ConversationLogRegistry registry = new ConversationLogRegistry(
+                    new ConversationLogWordIndexed(), shards);
+            for (int c = 0; c < CONVERSATIONS; c++) {
+                assertTrue(registry.getOrCreate(
+                        "c" + c) instanceof ConversationLogWordIndexed);
+            }
+            assertEquals(CONVERSATIONS, registry.size());
+        }
+    }
+
+    /**
+     * A registry needs at least one shard.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoShards() {
+        new ConversationLogRegistry(new ConversationLog1A(), 0);
+    }
+
+    /**
+     * Threads racing to create the same conversations share one log per
+     * conversation.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public void testConcurrentGetOrCreate() throws InterruptedException {
+        ConversationLogRegistry registry = new ConversationLogRegistry();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final String speaker = "t" + t;
+            threads[t] = new Thread(() -> {
+                for (int c = 0; c < CONVERSATIONS; c++) {
+                    registry.getOrCreate("c" + c).append(speaker, "hi");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(CONVERSATIONS, registry.size());
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            assertEquals(THREADS, registry.get("c" + c).length());
+        }
+    }
+
+    /**
+     * {@code findAll} reports what {@code find} reports on each log, for
+     * the conversations with a match only.
+     */
+    @Test
+    public void testFindAll() {
+        ConversationLogRegistry registry = new ConversationLogRegistry(
+                new ConversationLog1A(), 4);
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            ConversationLog log = registry.getOrCreate("c" + c);
+            for (int i = 0; i <= c % 3; i++) {
+                log.append("s", "entry " + i + " of " + c);
+            }
+        }
+        Map<String, Sequence<Integer>> found = registry.findAll("entry 2");
+        int expected = 0;
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            String id = "c" + c;
+            Sequence<Integer> indices = registry.get(id).find("entry 2");
+            if (indices.length() > 0) {
+                expected++;
+                assertEquals(indices, found.value(id));
+            } else {
+                assertFalse(found.hasKey(id));
+            }
+        }
+        assertEquals(expected, found.size());
+    }
+
+}
@@ -0,0 +1,196 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.map.Map;
+
+/**
+ * JUnit test fixture for the eviction of {@link ConversationLogRolling}.
+ */
+public class ConversationLogRollingTest {
+
+    /**
+     * Capacity of the logs under test.
+     */
+    private static final int CAPACITY = 7;
+
+    /**
+     * Speakers of the random entries.
+     */
+    private static final String[] SPEAKERS = { "ann", "bob", "cy", "dee",
+            "eve", "fay", "gus", "hal", "ivy", "jo" };
+
+    /**
+     * Number of random operations of each run.
+     */
+    private static final int STEPS = 5000;
+
+    /**
+     * Records the entries evicted to it, as "speaker: text", oldest first.
+     */
+    private static final class RecordingSink
+            implements ConversationLogRolling.EvictionSink {
+
+        /**
+         * The evicted entries.
+         */
+        private final List<String> evicted = new ArrayList<>();
+
+        /**
+         * Records an evicted entry.
+         *
+         * @param speaker
+         *            the speaker of the entry
+         * @param text
+         *            the text of the entry
+         */
+        @Override
+        public void evicted(String speaker, String text) {
+            this.evicted.add(speaker + ": " + text);
+        }
+
+    }
+
+    /**
+     * Checks that {@code log} holds exactly {@code expected}, as
+     * "speaker: text", and counts each speaker as {@code expected} does.
+     *
+     * @param expected
+     *            the expected entries
+     * @param log
+     *            the log under test
+     */
+    private static void assertEntries(List<String> expected,
+            ConversationLogRolling log) {
+        assertEquals(expected.size(), log.length());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i),
+                    log.speakerAt(i) + ": " + log.textAt(i));
+        }
+        for (String speaker : SPEAKERS) {
+            int count = 0;
+            for (String entry : expected) {
+                if (entry.startsWith(speaker + ": ")) {
+                    count++;
+                }
+            }
+            assertEquals(speaker, count, log.countBySpeaker(speaker));
+            assertEquals(speaker, count, log.speakerChat(speaker).length());
+        }
+    }
+
+    /**
+     * A log needs room for at least one entry.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCapacity() {
+        new ConversationLogRolling(0);
+    }
+
+    /**
+     * Appending past the capacity evicts the oldest entries to the sink, in
+     * order, and shifts the indices of the rest down.
+     */
+    @Test
+    public void testEvictionOrder() {
+        RecordingSink sink = new RecordingSink();
+        ConversationLogRolling log = new ConversationLogRolling(3, sink);
+        assertEquals(3, log.capacity());
+        for (int i = 0; i < 5; i++) {
+            log.append("s" + i, "t" + i);
+        }
+        assertEquals(3, log.length());
+        assertEquals("s2", log.speakerAt(0));
+        assertEquals("t4", log.textAt(2));
+        List<String> evicted = new ArrayList<>();
+        evicted.add("s0: t0");
+        evicted.add("s1: t1");
+        assertEquals(evicted, sink.evicted);
+        assertEquals(0, log.countBySpeaker("s0"));
+        assertEquals(0, log.find("t1").length());
+        assertEquals(1, log.find("t2").length());
+    }
+
+    /**
+     * Under random appends, removals, segments and clears, the log keeps
+     * the newest entries up to its capacity, and only appends over a full
+     * log reach the sink.
+     */
+    @Test
+    public void testRandomEdits() {
+        Random random = new Random(6);
+        RecordingSink sink = new RecordingSink();
+        ConversationLogRolling log = new ConversationLogRolling(CAPACITY,
+                sink);
+        List<String> window = new ArrayList<>();
+        List<String> evicted = new ArrayList<>();
+        for (int step = 0; step < STEPS; step++) {
+            int op = random.nextInt(20);
+            if (op < 14) {
+                String speaker = SPEAKERS[random.nextInt(SPEAKERS.length)];
+                String text = "t" + step;
+                log.append(speaker, text);
+                window.add(speaker + ": " + text);
+                if (window.size() > CAPACITY) {
+                    evicted.add(window.remove(0));
+                }
+            } else if (op < 17 && !window.isEmpty()) {
+                Map<String, String> removed = log.removeChat();
+                assertEquals(window.remove(window.size() - 1),
+                        removed.value("speaker") + ": " + removed.value("text"));
+            } else if (op < 19 && !window.isEmpty()) {
+                int start = random.nextInt(window.size());
+                int end = start + random.nextInt(window.size() - start + 1);
+                log.segment(start, end);
+                window = new ArrayList<>(window.subList(start, end));
+            } else if (op == 19) {
+                log.clear();
+                window.clear();
+            }
+            assertEntries(window, log);
+            assertEquals(evicted, sink.evicted);
+        }
+    }
+
+    /**
+     * A log without a sink discards what it evicts.
+     */
+    @Test
+    public void testEvictionWithoutSink() {
+        ConversationLogRolling log = new ConversationLogRolling(2);
+        log.append("a", "0");
+        log.append("b", "1");
+        log.append("c", "2");
+        List<String> expected = new ArrayList<>();
+        expected.add("b: 1");
+        expected.add("c: 2");
+        assertEntries(expected, log);
+    }
+
+    /**
+     * The capacity moves with the value, and new instances keep the
+     * capacity and sink of their prototype.
+     */
+    @Test
+    public void testCapacityTransfer() {
+        RecordingSink sink = new RecordingSink();
+        ConversationLogRolling small = new ConversationLogRolling(2, sink);
+        ConversationLogRolling large = new ConversationLogRolling(5);
+        large.transferFrom(small);
+        assertEquals(2, large.capacity());
+        ConversationLogRolling copy = small.newInstance();
+        assertEquals(2, copy.capacity());
+        copy.append("a", "0");
+        copy.append("b", "1");
+        copy.append("c", "2");
+        assertEquals(1, sink.evicted.size());
+        assertEquals("a: 0", sink.evicted.get(0));
+    }
+
+}
@@ -0,0 +1,129 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+
+/**
+ * JUnit test fixture for the trigram index of
+ * {@link ConversationLogSubstringIndexed}.
+ */
+public class ConversationLogSubstringIndexedTest {
+
+    /**
+     * Fragments of the random texts.
+     */
+    private static final String[] FRAGMENTS = { "hello", "yellow", "low",
+            "café", "ell", "o w", "xyz" };
+
+    /**
+     * Queries, of and above the trigram length.
+     */
+    private static final String[] QUERIES = { "ell", "llo", "hello",
+            "yellow", "lowlow", "o wo", "afé", "xyzxyz", "none" };
+
+    /**
+     * Number of random operations of each run.
+     */
+    private static final int STEPS = 2000;
+
+    /**
+     * Reports the indices of the entries of {@code log} whose texts contain
+     * {@code substring}, by scanning every text.
+     *
+     * @param log
+     *            the log to search
+     * @param substring
+     *            the substring to look for
+     * @return the indices, ascending
+     */
+    private static Sequence<Integer> scan(ConversationLog log,
+            String substring) {
+        Sequence<Integer> indices = new Sequence1L<>();
+        for (int i = 0; i < log.length(); i++) {
+            if (log.textAt(i).contains(substring)) {
+                indices.add(indices.length(), i);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Reports a random text made of a few fragments.
+     *
+     * @param random
+     *            the source of randomness
+     * @return the text
+     */
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int fragments = random.nextInt(4);
+        for (int k = 0; k < fragments; k++) {
+            text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Checks {@code find} against a scan for every query.
+     *
+     * @param log
+     *            the log under test
+     */
+    private static void assertIndexMatches(
+            ConversationLogSubstringIndexed log) {
+        for (String query : QUERIES) {
+            assertEquals(query, scan(log, query), log.find(query));
+        }
+    }
+
+    /**
+     * The index stays exact under random appends, removals and segments
+     * that drop entries from either end.
+     */
+    @Test
+    public void testFindAfterRandomEdits() {
+        Random random = new Random(4);
+        ConversationLogSubstringIndexed log =
+                new ConversationLogSubstringIndexed();
+        for (int step = 0; step < STEPS; step++) {
+            int op = random.nextInt(10);
+            if (op < 7) {
+                log.append("s", randomText(random));
+            } else if (op < 9 && log.length() > 0) {
+                log.removeChat();
+            } else if (log.length() > 0) {
+                int start = random.nextInt(log.length());
+                int end = start + random.nextInt(log.length() - start + 1);
+                log.segment(start, end);
+            }
+            assertIndexMatches(log);
+        }
+    }
+
+    /**
+     * A sliding window, trimmed by one entry after each append, keeps the
+     * index exact across the purges of its dropped postings.
+     */
+    @Test
+    public void testFindInSlidingWindow() {
+        Random random = new Random(5);
+        ConversationLogSubstringIndexed log =
+                new ConversationLogSubstringIndexed();
+        final int window = 50;
+        for (int step = 0; step < STEPS; step++) {
+            log.append("s", randomText(random));
+            if (log.length() > window) {
+                log.segment(1, log.length());
+            }
+            assertIndexMatches(log);
+        }
+        assertEquals(window, log.length());
+    }
+
+}
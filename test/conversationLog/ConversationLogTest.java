@@ -0,0 +1,249 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * JUnit test fixture checking every ConversationLog implementation against
+ * the reference implementation, {@link ConversationLogSecondary}, on the same
+ * sequences of operations.
+ */
+public class ConversationLogTest {
+
+    /**
+     * Number of random operations of each differential run.
+     */
+    private static final int STEPS = 600;
+
+    /**
+     * Speakers of the random entries, including some that look like the time
+     * prefix of a timed transcript.
+     */
+    private static final String[] SPEAKERS = { "alice", "bob", "carol",
+            "@2024 bot", "@ odd", "dave" };
+
+    /**
+     * Words of the random texts.
+     */
+    private static final String[] WORDS = { "hi", "there", "a: b", "café",
+            "naïve", "x", "", "hello world", "@1 y", "bob" };
+
+    /**
+     * Reports a fresh, empty instance of every implementation under test.
+     *
+     * @return the implementations
+     */
+    private static ConversationLog[] implementations() {
+        return new ConversationLog[] { new ConversationLog1A(),
+                new ConversationLogSubstringIndexed(),
+                new ConversationLogWordIndexed(), new ConversationLogJournaled(),
+                new ConversationLogConcurrent(), new ConversationLogOffHeap(),
+                new ConversationLogPersistent(),
+                new ConversationLogRolling(2 * STEPS),
+                new ConversationLogTiered(2, 4), new ConversationLogMapped(),
+                new ConversationLogInstrumented() };
+    }
+
+    /**
+     * Reports a random speaker.
+     *
+     * @param random
+     *            the source of randomness
+     * @return the speaker
+     */
+    private static String randomSpeaker(Random random) {
+        return SPEAKERS[random.nextInt(SPEAKERS.length)];
+    }
+
+    /**
+     * Reports a random text made of a few words.
+     *
+     * @param random
+     *            the source of randomness
+     * @return the text
+     */
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int words = random.nextInt(4);
+        for (int k = 0; k < words; k++) {
+            if (k > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Checks that {@code actual} holds the same entries as {@code expected},
+     * and answers the read-only operations the same way.
+     *
+     * @param name
+     *            the name of the implementation, for failure messages
+     * @param expected
+     *            the reference log
+     * @param actual
+     *            the log under test
+     * @param random
+     *            the source of randomness
+     */
+    private static void assertSameLog(String name, ConversationLog expected,
+            ConversationLog actual, Random random) {
+        assertEquals(name, expected.length(), actual.length());
+        assertEquals(name, expected.isEmpty(), actual.isEmpty());
+        assertEquals(name, expected.toTranscript(), actual.toTranscript());
+        String word = WORDS[random.nextInt(WORDS.length)];
+        assertEquals(name + " find " + word, expected.find(word),
+                actual.find(word));
+        String speaker = SPEAKERS[random.nextInt(SPEAKERS.length)];
+        assertEquals(name + " speakerChat " + speaker,
+                expected.speakerChat(speaker), actual.speakerChat(speaker));
+        if (expected.length() > 0) {
+            int i = random.nextInt(expected.length());
+            assertEquals(name, expected.speakerAt(i), actual.speakerAt(i));
+            assertEquals(name, expected.textAt(i), actual.textAt(i));
+        }
+    }
+
+    /**
+     * Applies the same random appends, removals and segments to every
+     * implementation and to the reference, comparing them after each one.
+     */
+    @Test
+    public void testMatchesSecondary() {
+        for (ConversationLog implementation : implementations()) {
+            String name = implementation.getClass().getSimpleName();
+            Random random = new Random(name.hashCode());
+            ConversationLog expected = new ConversationLogSecondary();
+            ConversationLog actual = implementation;
+            for (int step = 0; step < STEPS; step++) {
+                int op = random.nextInt(20);
+                if (op < 12) {
+                    String speaker = randomSpeaker(random);
+                    String text = randomText(random);
+                    expected.append(speaker, text);
+                    actual.append(speaker, text);
+                } else if (op < 14) {
+                    String[] speakers = new String[random.nextInt(5)];
+                    String[] texts = new String[speakers.length];
+                    for (int k = 0; k < speakers.length; k++) {
+                        speakers[k] = randomSpeaker(random);
+                        texts[k] = randomText(random);
+                    }
+                    expected.appendAll(speakers, texts);
+                    actual.appendAll(speakers, texts);
+                } else if (op < 18 && expected.length() > 0) {
+                    Map<String, String> removed = expected.removeChat();
+                    Map<String, String> actualRemoved = actual.removeChat();
+                    assertEquals(name, removed.value("speaker"),
+                            actualRemoved.value("speaker"));
+                    assertEquals(name, removed.value("text"),
+                            actualRemoved.value("text"));
+                } else if (op == 18 && expected.length() > 2) {
+                    int start = random.nextInt(expected.length() / 2);
+                    int end = expected.length() - random.nextInt(2);
+                    expected.segment(start, end);
+                    actual.segment(start, end);
+                }
+                assertSameLog(name, expected, actual, random);
+            }
+        }
+    }
+
+    /**
+     * Exports every implementation to a file and imports the file back into
+     * a fresh instance, getting the same entries as the reference.
+     *
+     * @throws IOException
+     *             if the temporary file cannot be created
+     */
+    @Test
+    public void testExportImportRoundTrip() throws IOException {
+        Random random = new Random(1);
+        ConversationLog expected = new ConversationLogSecondary();
+        for (int k = 0; k < STEPS / 4; k++) {
+            expected.append(randomSpeaker(random), randomText(random));
+        }
+        File file = File.createTempFile("conversation", ".txt");
+        file.deleteOnExit();
+        for (ConversationLog implementation : implementations()) {
+            String name = implementation.getClass().getSimpleName();
+            ConversationLog source = implementation;
+            source.appendAll(expected);
+            source.exportChat(new SimpleWriter1L(file.getPath()));
+            ConversationLog copy = source.newInstance();
+            copy.importChat(new SimpleReader1L(file.getPath()));
+            assertSameLog(name, expected, copy, random);
+        }
+    }
+
+    /**
+     * Reads every implementation lazily through its iterator, stream, page
+     * and lazy search methods, getting the entries of the reference.
+     */
+    @Test
+    public void testLazyReadsMatchSecondary() {
+        Random random = new Random(2);
+        ConversationLog expected = new ConversationLogSecondary();
+        for (int k = 0; k < STEPS / 4; k++) {
+            expected.append(randomSpeaker(random), randomText(random));
+        }
+        int from = expected.length() / 3;
+        for (ConversationLog implementation : implementations()) {
+            String name = implementation.getClass().getSimpleName();
+            ConversationLog actual = implementation;
+            actual.appendAll(expected);
+            int i = from;
+            Iterator<LogEntry> entries = actual.entryIterator(from,
+                    actual.length());
+            while (entries.hasNext()) {
+                LogEntry entry = entries.next();
+                assertEquals(name, i, entry.index());
+                assertEquals(name, expected.speakerAt(i), entry.speaker());
+                assertEquals(name, expected.textAt(i), entry.text());
+                i++;
+            }
+            assertEquals(name, expected.length(), i);
+            assertEquals(name, expected.length() - from,
+                    actual.entries(from, actual.length()).count());
+            int cursor = 0;
+            LogPage page;
+            do {
+                page = actual.page(cursor, 7);
+                for (int k = 0; k < page.entries().length(); k++) {
+                    LogEntry entry = page.entries().entry(k);
+                    assertEquals(name, cursor + k, entry.index());
+                    assertEquals(name, expected.textAt(cursor + k),
+                            entry.text());
+                }
+                cursor = page.nextCursor();
+            } while (page.hasNext());
+            assertEquals(name, expected.length(), cursor);
+            for (String word : WORDS) {
+                Sequence<Integer> streamed = new Sequence1L<>();
+                actual.findStream(word, 0).forEach(
+                        entry -> streamed.add(streamed.length(), entry.index()));
+                assertEquals(name + " find " + word, expected.find(word),
+                        streamed);
+            }
+            for (String speaker : SPEAKERS) {
+                assertEquals(name + " speakerChat " + speaker,
+                        expected.speakerChat(speaker).length(),
+                        actual.speakerChatStream(speaker, 0).count());
+            }
+        }
+    }
+
+}
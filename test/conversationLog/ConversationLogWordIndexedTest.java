@@ -0,0 +1,140 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+
+/**
+ * JUnit test fixture for the word index of
+ * {@link ConversationLogWordIndexed}.
+ */
+public class ConversationLogWordIndexedTest {
+
+    /**
+     * Words of the random texts.
+     */
+    private static final String[] WORDS = { "hi", "there", "hello", "x",
+            "café", "42", "bob" };
+
+    /**
+     * Number of random operations of each run.
+     */
+    private static final int STEPS = 2000;
+
+    /**
+     * Reports the indices of the entries of {@code log} holding
+     * {@code word} as a token, by splitting every text.
+     *
+     * @param log
+     *            the log to search
+     * @param word
+     *            the token to look for
+     * @return the indices, ascending
+     */
+    private static Sequence<Integer> scan(ConversationLog log, String word) {
+        Sequence<Integer> indices = new Sequence1L<>();
+        for (int i = 0; i < log.length(); i++) {
+            if (Arrays.asList(log.textAt(i).split("[^\\p{L}\\p{N}]+"))
+                    .contains(word)) {
+                indices.add(indices.length(), i);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Reports a random text of a few words joined by punctuation.
+     *
+     * @param random
+     *            the source of randomness
+     * @return the text
+     */
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int words = random.nextInt(4);
+        for (int k = 0; k < words; k++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(", ");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Checks {@code findWord} against a scan for every word.
+     *
+     * @param log
+     *            the log under test
+     */
+    private static void assertIndexMatches(ConversationLogWordIndexed log) {
+        for (String word : WORDS) {
+            assertEquals(word, scan(log, word), log.findWord(word));
+        }
+        assertEquals(scan(log, "nothing"), log.findWord("nothing"));
+    }
+
+    /**
+     * The index stays exact under random appends, removals and segments
+     * that drop entries from either end.
+     */
+    @Test
+    public void testFindWordAfterRandomEdits() {
+        Random random = new Random(2);
+        ConversationLogWordIndexed log = new ConversationLogWordIndexed();
+        for (int step = 0; step < STEPS; step++) {
+            int op = random.nextInt(10);
+            if (op < 6) {
+                log.append("s", randomText(random));
+            } else if (op < 8 && log.length() > 0) {
+                log.removeChat();
+            } else if (op == 8) {
+                log.appendAll(new String[] { "a", "b" },
+                        new String[] { randomText(random), randomText(random) });
+            } else if (log.length() > 0) {
+                int start = random.nextInt(log.length());
+                int end = start + random.nextInt(log.length() - start + 1);
+                log.segment(start, end);
+            }
+            assertIndexMatches(log);
+        }
+    }
+
+    /**
+     * A sliding window, trimmed by one entry after each append, keeps the
+     * index exact across the purges of its dropped postings.
+     */
+    @Test
+    public void testFindWordInSlidingWindow() {
+        Random random = new Random(3);
+        ConversationLogWordIndexed log = new ConversationLogWordIndexed();
+        final int window = 50;
+        for (int step = 0; step < STEPS; step++) {
+            log.append("s", randomText(random));
+            if (log.length() > window) {
+                log.segment(1, log.length());
+            }
+            assertIndexMatches(log);
+        }
+        assertEquals(window, log.length());
+    }
+
+    /**
+     * A word made of several tokens is found by scanning.
+     */
+    @Test
+    public void testFindWordSeveralTokens() {
+        ConversationLogWordIndexed log = new ConversationLogWordIndexed();
+        log.append("a", "say hello there");
+        log.append("b", "hellothere");
+        log.append("c", "hello, there");
+        log.segment(1, log.length());
+        Sequence<Integer> expected = new Sequence1L<>();
+        expected.add(0, 1);
+        assertEquals(expected, log.findWord("hello, there"));
+    }
+
+}
@@ -0,0 +1,184 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.sequence.Sequence;
+import components.sequence.Sequence1L;
+
+/**
+ * JUnit test fixture for {@link KeywordAutomaton} and the multi-pattern
+ * searches of {@link ConversationLog}.
+ */
+public class KeywordAutomatonTest {
+
+    /**
+     * Chars of the random texts and patterns, few enough for many overlaps,
+     * with some outside ASCII.
+     */
+    private static final String ALPHABET = "abcé€";
+
+    /**
+     * Number of random patterns; their trie has more states than get a dense
+     * table row.
+     */
+    private static final int PATTERNS = 400;
+
+    /**
+     * Number of entries of the logs under test.
+     */
+    private static final int ENTRIES = 300;
+
+    /**
+     * Reports a random string over {@code ALPHABET}.
+     *
+     * @param random
+     *            the source of randomness
+     * @param maxLength
+     *            the longest string reported
+     * @return the string
+     */
+    private static String randomString(Random random, int maxLength) {
+        StringBuilder string = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int k = 0; k < length; k++) {
+            string.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return string.toString();
+    }
+
+    /**
+     * Reports random patterns, including duplicates, prefixes and suffixes
+     * of one another.
+     *
+     * @param random
+     *            the source of randomness
+     * @return the patterns
+     */
+    private static List<String> randomPatterns(Random random) {
+        List<String> patterns = new ArrayList<>();
+        for (int p = 0; p < PATTERNS; p++) {
+            patterns.add(randomString(random, 7));
+        }
+        return patterns;
+    }
+
+    /**
+     * Reports the number of occurrences of {@code pattern} in {@code text},
+     * overlapping ones included; the empty pattern occurs once, as the
+     * automaton reports it.
+     *
+     * @param text
+     *            the text to search
+     * @param pattern
+     *            the pattern to count
+     * @return the number of occurrences
+     */
+    private static int occurrences(String text, String pattern) {
+        int count = 1;
+        if (!pattern.isEmpty()) {
+            count = 0;
+            int from = text.indexOf(pattern);
+            while (from >= 0) {
+                count++;
+                from = text.indexOf(pattern, from + 1);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * One scan reports every occurrence of every pattern, and
+     * {@code matchesAny} tells whether there is one, as repeated
+     * {@code indexOf} and {@code contains} calls do.
+     */
+    @Test
+    public void testMatchesAgreeWithIndexOf() {
+        Random random = new Random(8);
+        for (int round = 0; round < 20; round++) {
+            List<String> patterns = randomPatterns(random);
+            if (round % 2 == 0) {
+                patterns.removeIf(String::isEmpty);
+            }
+            KeywordAutomaton automaton = new KeywordAutomaton(patterns);
+            for (int t = 0; t < 50; t++) {
+                String text = randomString(random, 40);
+                int[] counts = new int[automaton.patternCount()];
+                automaton.forEachMatch(text, id -> counts[id]++);
+                boolean any = false;
+                for (int id = 0; id < counts.length; id++) {
+                    String pattern = automaton.pattern(id);
+                    assertEquals(pattern + " in " + text,
+                            occurrences(text, pattern), counts[id]);
+                    any |= text.contains(pattern);
+                }
+                assertEquals(text, any, automaton.matchesAny(text));
+            }
+        }
+    }
+
+    /**
+     * Duplicate patterns keep the id of their first occurrence.
+     */
+    @Test
+    public void testDuplicatePatterns() {
+        KeywordAutomaton automaton = new KeywordAutomaton(
+                Arrays.asList("ab", "b", "ab", "", "b"));
+        assertEquals(3, automaton.patternCount());
+        assertEquals("ab", automaton.pattern(0));
+        assertEquals("b", automaton.pattern(1));
+        assertEquals("", automaton.pattern(2));
+    }
+
+    /**
+     * {@code findAll} reports for each pattern what {@code find} reports,
+     * and {@code findAny} the entries where some {@code find} succeeds, on
+     * every implementation, with a compiled automaton reused across logs.
+     */
+    @Test
+    public void testFindAllAgreesWithFind() {
+        Random random = new Random(9);
+        List<String> patterns = randomPatterns(random);
+        patterns.removeIf(String::isEmpty);
+        KeywordAutomaton automaton = new KeywordAutomaton(patterns);
+        ConversationLog[] logs = { new ConversationLog1A(),
+            new ConversationLogConcurrent(), new ConversationLogInstrumented(),
+            new ConversationLogWordIndexed() };
+        for (int i = 0; i < ENTRIES; i++) {
+            String text = randomString(random, 12);
+            for (ConversationLog log : logs) {
+                log.append("s", text);
+            }
+        }
+        for (ConversationLog log : logs) {
+            String name = log.getClass().getSimpleName();
+            Map<String, Sequence<Integer>> found = log.findAll(automaton);
+            assertEquals(name, automaton.patternCount(), found.size());
+            boolean[] any = new boolean[ENTRIES];
+            for (String pattern : patterns) {
+                Sequence<Integer> indices = log.find(pattern);
+                assertEquals(name + " " + pattern, indices,
+                        found.value(pattern));
+                for (int k = 0; k < indices.length(); k++) {
+                    any[indices.entry(k)] = true;
+                }
+            }
+            Sequence<Integer> expected = new Sequence1L<>();
+            for (int i = 0; i < ENTRIES; i++) {
+                if (any[i]) {
+                    expected.add(expected.length(), i);
+                }
+            }
+            assertEquals(name, expected, log.findAny(automaton));
+            assertEquals(name, expected, log.findAny(patterns));
+        }
+    }
+
+}
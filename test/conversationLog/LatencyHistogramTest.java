@@ -0,0 +1,130 @@
+package conversationLog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for the buckets and statistics of
+ * {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Largest value told apart from larger ones: 2^40 - 1 ns.
+     */
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    /**
+     * Relative precision of a bucket: 1/32.
+     */
+    private static final int PRECISION = 32;
+
+    /**
+     * Reports the largest value of the bucket of {@code value}, read back as
+     * the median of {@code value} and a larger value.
+     *
+     * @param value
+     *            the value (0 ≤ value < MAX_VALUE)
+     * @return the end of the bucket of {@code value}
+     */
+    private static long bucketEnd(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(MAX_VALUE);
+        return histogram.percentile(50);
+    }
+
+    /**
+     * Values below 64 have a bucket each, and each power of two above is
+     * split into 32 buckets.
+     */
+    @Test
+    public void testBucketBoundaries() {
+        for (long value = 0; value < 2 * PRECISION; value++) {
+            assertEquals(value, bucketEnd(value));
+        }
+        long[][] ends = { { 64, 65 }, { 65, 65 }, { 66, 67 }, { 127, 127 },
+                { 128, 131 }, { 131, 131 }, { 132, 135 }, { 255, 255 },
+                { 256, 263 }, { 1 << 20, (1 << 20) + (1 << 15) - 1 } };
+        for (long[] end : ends) {
+            assertEquals("end of " + end[0], end[1], bucketEnd(end[0]));
+        }
+    }
+
+    /**
+     * Every value is known within 1/32 of itself.
+     */
+    @Test
+    public void testRelativePrecision() {
+        Random random = new Random(1);
+        for (int k = 0; k < 10_000; k++) {
+            long value = random.nextLong() & (MAX_VALUE >>> random.nextInt(40));
+            long end = bucketEnd(value);
+            assertTrue(value + " -> " + end, end >= value);
+            assertTrue(value + " -> " + end, end - value <= value / PRECISION);
+        }
+    }
+
+    /**
+     * Negative values count as 0, values past 2^40 - 1 ns as 2^40 - 1, and
+     * the largest value caps every percentile.
+     */
+    @Test
+    public void testClamping() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.percentile(100));
+        histogram.record(1L << 50);
+        assertEquals(MAX_VALUE, histogram.max());
+        assertEquals(MAX_VALUE, histogram.percentile(100));
+        assertEquals(MAX_VALUE, histogram.sum());
+        LatencyHistogram capped = new LatencyHistogram();
+        capped.record(200);
+        assertEquals(200, capped.percentile(100));
+    }
+
+    /**
+     * Counts, sums and percentiles of several values.
+     */
+    @Test
+    public void testStatistics() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100, histogram.count());
+        assertEquals(5050, histogram.sum());
+        assertEquals(100, histogram.max());
+        assertEquals(1, histogram.percentile(0));
+        assertEquals(50, histogram.percentile(50));
+        assertEquals(91, histogram.percentile(90));
+        assertEquals(100, histogram.percentile(100));
+    }
+
+    /**
+     * A copy keeps the values, and a resetting copy moves them out.
+     */
+    @Test
+    public void testCopy() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.record(1000);
+        LatencyHistogram kept = histogram.copy(false);
+        assertEquals(2, kept.count());
+        assertEquals(2, histogram.count());
+        LatencyHistogram moved = histogram.copy(true);
+        assertEquals(2, moved.count());
+        assertEquals(1010, moved.sum());
+        assertEquals(1000, moved.max());
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.sum());
+        assertEquals(0, histogram.max());
+    }
+
+}